@@ -1,55 +1,60 @@
 package com.wil.avicola_backend.config;
 
+import java.util.concurrent.ThreadLocalRandom;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
+/**
+ * Access log muestreado: una sola línea clave=valor por petición registrada, en el logger
+ * "avicola.access" (appender asíncrono en logback-spring.xml).
+ *
+ * Se registra 1 de cada {@code app.access-log.muestreo} peticiones, y siempre las que terminan
+ * con error (>= 400) o tardan más de {@code app.access-log.lenta-ms}.
+ */
 @Component
 public class RequestLoggingInterceptor implements HandlerInterceptor {
     
-    private static final Logger logger = LoggerFactory.getLogger(RequestLoggingInterceptor.class);
+    private static final Logger accessLog = LoggerFactory.getLogger("avicola.access");
+    
+    private static final String ATRIBUTO_INICIO = RequestLoggingInterceptor.class.getName() + ".inicio";
+    
+    @Value("${app.access-log.enabled:true}")
+    private boolean habilitado;
+    
+    @Value("${app.access-log.muestreo:10}")
+    private int muestreo;
+    
+    @Value("${app.access-log.lenta-ms:1000}")
+    private long lentaMs;
     
     @Override
-    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
-        
-        String requestURI = request.getRequestURI();
-        String method = request.getMethod();
-        String authHeader = request.getHeader("Authorization");
-        
-        logger.info("=== 🌐 INCOMING REQUEST ===");
-        logger.info("Method: {}", method);
-        logger.info("URI: {}", requestURI);
-        logger.info("Authorization Header: {}", authHeader != null ? "Present" : "Not present");
-        logger.info("User-Agent: {}", request.getHeader("User-Agent"));
-        logger.info("Content-Type: {}", request.getContentType());
-        logger.info("Parameters: {}", request.getParameterMap());
-        
-        // Verificar específicamente rutas de plan-alimentacion
-        if (requestURI.startsWith("/api/plan-alimentacion")) {
-            logger.info("🎯 PLAN-ALIMENTACION REQUEST DETECTED!");
-            logger.info("Should be PUBLIC - No auth required");
-            
-            // Verificar contexto de seguridad
-            var auth = org.springframework.security.core.context.SecurityContextHolder.getContext().getAuthentication();
-            logger.info("Security Context: {}", auth != null ? auth.getClass().getSimpleName() : "null");
-        }
-        
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (habilitado) request.setAttribute(ATRIBUTO_INICIO, System.nanoTime());
         return true;
     }
     
     @Override
-    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) throws Exception {
-        logger.info("=== 📤 RESPONSE COMPLETED ===");
-        logger.info("Status: {}", response.getStatus());
-        logger.info("URI: {}", request.getRequestURI());
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (!habilitado || !accessLog.isInfoEnabled()) return;
+        Object inicio = request.getAttribute(ATRIBUTO_INICIO);
+        if (!(inicio instanceof Long)) return;
+        
+        long ms = (System.nanoTime() - (Long) inicio) / 1_000_000;
+        int status = response.getStatus();
+        boolean registrar = status >= 400 || ms >= lentaMs
+            || muestreo <= 1 || ThreadLocalRandom.current().nextInt(muestreo) == 0;
+        if (!registrar) return;
         
-        if (response.getStatus() == 401) {
-            logger.error("❌ 401 UNAUTHORIZED for: {}", request.getRequestURI());
-            logger.error("This should NOT happen for plan-alimentacion routes!");
-        }
+        accessLog.info("method={} uri={} status={} ms={} auth={}{}",
+            request.getMethod(), request.getRequestURI(), status, ms,
+            request.getHeader("Authorization") != null,
+            ex != null ? " error=" + ex.getClass().getSimpleName() : "");
     }
-} 
\ No newline at end of file
+}
@@ -1,26 +1,15 @@
 package com.wil.avicola_backend.config;
 
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 
 @Configuration
 public class StaticResourceConfig implements WebMvcConfigurer {
     
-    @Value("${app.upload.dir}")
-    private String uploadDir;
-
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        Path uploadPath = Paths.get(uploadDir).toAbsolutePath().normalize();
-        
-        // Configurar el manejo de archivos estáticos para las imágenes subidas
-        registry.addResourceHandler("/uploads/**")
-                .addResourceLocations("file:" + uploadPath.toString() + "/")
-                .setCachePeriod(3600);
+        // /uploads/** lo sirve ArchivoSubidoController (ETag por contenido, Range, sendfile)
 
         // Configurar el manejo de recursos estáticos por defecto
         registry.addResourceHandler("/static/**")
@@ -0,0 +1,22 @@
+package com.wil.avicola_backend.config;
+
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.TaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Ejecutor de tareas de la aplicación. Spring Boot solo crea el suyo si no hay otro Executor en el
+ * contexto, y los canales de STOMP ({@link WebSocketConfig}) ya registran los suyos, así que aquí se
+ * declara explícitamente con el mismo builder (propiedades {@code spring.task.execution.*}) para que
+ * el trabajo en segundo plano no cree hilos por su cuenta.
+ */
+@Configuration
+public class TaskExecutorConfig {
+
+    @Bean(name = { TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME, "taskExecutor" })
+    public ThreadPoolTaskExecutor applicationTaskExecutor(TaskExecutorBuilder builder) {
+        return builder.build();
+    }
+}
@@ -1,22 +0,0 @@
-package com.wil.avicola_backend.config;
-
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.annotation.Configuration;
-import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
-import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
-
-@Configuration
-public class WebMvcConfig implements WebMvcConfigurer {
-
-    @Value("${app.upload.dir}")
-    private String uploadDir;
-
-    @Override
-    public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        // Sirve archivos en /uploads/** desde el directorio configurado
-        // Asegura el prefijo file: y la barra final
-        String location = "file:" + (uploadDir.endsWith("/") ? uploadDir : uploadDir + "/");
-        registry.addResourceHandler("/uploads/**")
-                .addResourceLocations(location);
-    }
-}
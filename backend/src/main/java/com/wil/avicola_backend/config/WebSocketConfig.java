@@ -1,15 +1,78 @@
 package com.wil.avicola_backend.config;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
+import jakarta.annotation.PreDestroy;
+
+/**
+ * STOMP sobre WebSocket/SockJS. Con {@code avicola.websocket.broker=simple} (por defecto) las
+ * suscripciones viven en el broker en memoria de esta instancia: sirve para un solo nodo y para tests.
+ * Con {@code relay} se reenvían a un broker STOMP externo (RabbitMQ, ActiveMQ...) para que varias
+ * instancias detrás del balanceador publiquen a los mismos tableros; ese modo necesita reactor-netty
+ * en el classpath (perfil Maven {@code broker-relay}).
+ *
+ * Los latidos y el pool de salida están pensados para muchos clientes móviles casi siempre inactivos:
+ * latidos espaciados para detectar conexiones muertas sin despertar a los teléfonos, y un pool de salida
+ * acotado con límites de envío para que un cliente lento no retenga hilos ni memoria.
+ */
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private static final Logger logger = LoggerFactory.getLogger(WebSocketConfig.class);
+
+    private static final String[] DESTINOS = { "/topic", "/queue" };
+
+    @Value("${avicola.websocket.broker:simple}")
+    private String broker;
+
+    @Value("${avicola.websocket.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${avicola.websocket.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${avicola.websocket.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${avicola.websocket.relay.passcode:guest}")
+    private String relayPasscode;
+
+    @Value("${avicola.websocket.relay.virtual-host:}")
+    private String relayVirtualHost;
+
+    /** Latido servidor→cliente y cliente→servidor, en ms (0 desactiva). */
+    @Value("${avicola.websocket.heartbeat-ms:25000}")
+    private long heartbeatMs;
+
+    @Value("${avicola.websocket.outbound.core-pool:4}")
+    private int outboundCore;
+
+    @Value("${avicola.websocket.outbound.max-pool:16}")
+    private int outboundMax;
+
+    @Value("${avicola.websocket.outbound.queue-capacity:10000}")
+    private int outboundQueue;
+
+    @Value("${avicola.websocket.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+
+    @Value("${avicola.websocket.send-buffer-limit-bytes:262144}")
+    private int sendBufferLimit;
+
+    private ThreadPoolTaskScheduler heartbeatScheduler;
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws")
@@ -19,12 +82,64 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                     "https://granja.improvement-solution.com",
                     "http://granja.improvement-solution.com"
                 )
-                .withSockJS();
+                .withSockJS()
+                .setHeartbeatTime(Math.max(heartbeatMs, 5000));
     }
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
         registry.setApplicationDestinationPrefixes("/app");
-        registry.enableSimpleBroker("/topic", "/queue");
+        if ("relay".equalsIgnoreCase(broker)) {
+            logger.info("WebSocket: broker STOMP externo en {}:{}", relayHost, relayPort);
+            var relay = registry.enableStompBrokerRelay(DESTINOS)
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode)
+                    .setSystemHeartbeatSendInterval(heartbeatMs)
+                    .setSystemHeartbeatReceiveInterval(heartbeatMs);
+            if (!relayVirtualHost.isBlank()) {
+                relay.setVirtualHost(relayVirtualHost);
+            }
+        } else {
+            registry.enableSimpleBroker(DESTINOS)
+                    .setHeartbeatValue(new long[] { heartbeatMs, heartbeatMs })
+                    .setTaskScheduler(webSocketHeartbeatScheduler());
+        }
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor()
+                .corePoolSize(outboundCore)
+                .maxPoolSize(outboundMax)
+                .queueCapacity(outboundQueue)
+                .keepAliveSeconds(60);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Un cliente que no lee (pantalla apagada, mala señal) se desconecta en vez de acumular mensajes
+        registration.setSendTimeLimit(sendTimeLimitMs)
+                .setSendBufferSizeLimit(sendBufferLimit);
+    }
+
+    /** Propio (no como bean) para no competir con el messageBrokerTaskScheduler de Spring. */
+    private TaskScheduler webSocketHeartbeatScheduler() {
+        if (heartbeatScheduler == null) {
+            heartbeatScheduler = new ThreadPoolTaskScheduler();
+            heartbeatScheduler.setPoolSize(1);
+            heartbeatScheduler.setThreadNamePrefix("ws-heartbeat-");
+            heartbeatScheduler.setDaemon(true);
+            heartbeatScheduler.initialize();
+        }
+        return heartbeatScheduler;
+    }
+
+    @PreDestroy
+    public void detener() {
+        if (heartbeatScheduler != null) heartbeatScheduler.shutdown();
     }
 }
@@ -5,6 +5,7 @@ import com.wil.avicola_backend.model.Role;
 import com.wil.avicola_backend.model.Usuario;
 import com.wil.avicola_backend.repository.RoleRepository;
 import com.wil.avicola_backend.repository.UsuarioRepository;
+import com.wil.avicola_backend.security.services.UserDetailsCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -39,6 +40,9 @@ public class AdminToolsController {
     @Autowired
     private DataSource dataSource;
 
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+
     @GetMapping("/check-admin")
     public ResponseEntity<?> checkAndFixAdminUser() {
         Map<String, Object> response = new HashMap<>();
@@ -73,6 +77,7 @@ public class AdminToolsController {
                 if (!adminUser.isActive()) {
                     adminUser.setActive(true);
                     adminUser = usuarioRepository.save(adminUser);
+                    userDetailsCache.evictUsuario(adminUser.getId());
                     response.put("message", "Usuario admin activado exitosamente");
                 } else {
                     response.put("message", "Usuario admin ya existe y está activo");
@@ -96,6 +101,18 @@ public class AdminToolsController {
         }
     }
     
+    /** Aciertos, fallos y tamaño de la caché de usuarios del filtro JWT. */
+    @GetMapping("/cache-usuarios")
+    public ResponseEntity<Map<String, Object>> cacheUsuarios() {
+        return ResponseEntity.ok(userDetailsCache.estadisticas());
+    }
+
+    @PostMapping("/cache-usuarios/limpiar")
+    public ResponseEntity<Map<String, Object>> limpiarCacheUsuarios() {
+        userDetailsCache.invalidarTodo();
+        return ResponseEntity.ok(userDetailsCache.estadisticas());
+    }
+
     @PostMapping("/clean-plan-detalle")
     public ResponseEntity<?> cleanPlanDetalle(@RequestParam(required = false) Long planId) {
         Map<String, Object> response = new HashMap<>();
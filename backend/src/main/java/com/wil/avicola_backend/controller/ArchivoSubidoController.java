@@ -0,0 +1,128 @@
+package com.wil.avicola_backend.controller;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import com.wil.avicola_backend.service.ArchivoSubidoService;
+import com.wil.avicola_backend.service.ArchivoSubidoService.Archivo;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Sirve /uploads/** (fotos de gestación, fotos de perfil). Reemplaza al manejador de recursos estáticos:
+ * ETag fuerte por contenido y {@code Cache-Control: immutable} para nombres que nunca cambian, así que
+ * recargar un tablero revalida con 304 o ni siquiera pregunta; peticiones Range de un solo tramo; y el
+ * cuerpo sale por sendfile de Tomcat cuando el conector lo permite, o por {@code FileChannel.transferTo}.
+ */
+@RestController
+public class ArchivoSubidoController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArchivoSubidoController.class);
+
+    private static final String CACHE_INMUTABLE = "public, max-age=31536000, immutable";
+    private static final String CACHE_REVALIDAR = "public, max-age=3600";
+
+    // Atributos de sendfile de Tomcat (org.apache.catalina.Globals), como los usa su DefaultServlet
+    private static final String SENDFILE_SOPORTADO = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_ARCHIVO = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_INICIO = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FIN = "org.apache.tomcat.sendfile.end";
+    /** Por debajo de esto la copia por el buffer de salida es más barata que preparar sendfile. */
+    private static final long MINIMO_SENDFILE = 48 * 1024;
+
+    @Autowired
+    private ArchivoSubidoService archivoSubidoService;
+
+    @GetMapping("/uploads/{*ruta}")
+    public void servir(@PathVariable String ruta, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        Optional<Archivo> encontrado = archivoSubidoService.resolver(ruta.startsWith("/") ? ruta.substring(1) : ruta);
+        if (encontrado.isEmpty()) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        Archivo archivo = encontrado.get();
+        String etag = "\"" + archivo.etag() + "\"";
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, archivo.inmutable() ? CACHE_INMUTABLE : CACHE_REVALIDAR);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        // Responde 304 con If-None-Match / If-Modified-Since y deja puestos ETag y Last-Modified
+        if (new ServletWebRequest(request, response).checkNotModified(etag, archivo.modificado())) {
+            return;
+        }
+        response.setContentType(archivo.tipo().toString());
+
+        long inicio = 0;
+        long fin = archivo.tamano() - 1;
+        String rango = request.getHeader(HttpHeaders.RANGE);
+        if (rango != null && rangoVigente(request.getHeader(HttpHeaders.IF_RANGE), etag)) {
+            List<HttpRange> tramos;
+            try {
+                tramos = HttpRange.parseRanges(rango);
+            } catch (IllegalArgumentException e) {
+                tramos = List.of();
+            }
+            // Varios tramos (multipart/byteranges) no los pide ningún cliente nuestro: se responde completo
+            if (tramos.size() == 1) {
+                inicio = tramos.get(0).getRangeStart(archivo.tamano());
+                fin = tramos.get(0).getRangeEnd(archivo.tamano());
+                if (inicio >= archivo.tamano() || inicio > fin) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + archivo.tamano());
+                    response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                    return;
+                }
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + inicio + "-" + fin + "/" + archivo.tamano());
+            }
+        }
+
+        long largo = fin - inicio + 1;
+        response.setContentLengthLong(largo);
+        if ("HEAD".equals(request.getMethod()) || largo <= 0) {
+            return;
+        }
+
+        if (largo >= MINIMO_SENDFILE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SOPORTADO))) {
+            // Tomcat escribe el archivo directamente al socket cuando termina la petición
+            request.setAttribute(SENDFILE_ARCHIVO, archivo.ruta().toString());
+            request.setAttribute(SENDFILE_INICIO, inicio);
+            request.setAttribute(SENDFILE_FIN, fin + 1);
+            return;
+        }
+        try (FileChannel canal = FileChannel.open(archivo.ruta(), StandardOpenOption.READ)) {
+            WritableByteChannel salida = Channels.newChannel(response.getOutputStream());
+            long posicion = inicio;
+            long hasta = fin + 1;
+            while (posicion < hasta) {
+                long enviados = canal.transferTo(posicion, hasta - posicion, salida);
+                if (enviados <= 0) break;
+                posicion += enviados;
+            }
+        } catch (IOException e) {
+            // El cliente cortó la descarga (scroll, cambio de pantalla): no es un error del servidor
+            logger.debug("Envío de /uploads/{} interrumpido: {}", ruta, e.getMessage());
+        }
+    }
+
+    /** If-Range: el rango vale solo si el cliente todavía tiene esta misma versión. */
+    private static boolean rangoVigente(String ifRange, String etag) {
+        return ifRange == null || ifRange.equals(etag);
+    }
+}
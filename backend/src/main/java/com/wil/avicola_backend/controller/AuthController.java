@@ -8,9 +8,9 @@ import com.wil.avicola_backend.model.Usuario;
 import com.wil.avicola_backend.model.ERole;
 import com.wil.avicola_backend.model.UserSession;
 import com.wil.avicola_backend.repository.UserSessionRepository;
-import com.wil.avicola_backend.repository.UsuarioRepository;
 import com.wil.avicola_backend.security.jwt.JwtUtils;
 import com.wil.avicola_backend.security.services.LoginIdentifierResolver;
+import com.wil.avicola_backend.security.services.UserDetailsCache;
 import com.wil.avicola_backend.security.services.UserDetailsImpl;
 import com.wil.avicola_backend.service.UserService;
 
@@ -20,8 +20,8 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.DisabledException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -43,13 +43,12 @@ import java.util.Collection;
 @RequestMapping("/api/auth")
 @RequiredArgsConstructor
 public class AuthController {
-    private final AuthenticationManager authenticationManager;
     private final UserService userService;
     private final JwtUtils jwtUtils;
     private final UserSessionRepository userSessionRepository;
-    private final UsuarioRepository usuarioRepository;
     private final PasswordEncoder passwordEncoder;
     private final LoginIdentifierResolver loginIdentifierResolver;
+    private final UserDetailsCache userDetailsCache;
 
     @PostMapping({"/signin", "/login"})
     public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequestDto loginRequest, HttpServletRequest request) {
@@ -75,21 +74,20 @@ public class AuthController {
             log.info("Usuario encontrado: username='{}', activo={}, roles={}", 
                 usuario.getUsername(), usuario.isActive(), usuario.getRoles());
             
-            // Verificar contraseña manualmente para loguear el resultado
-            boolean passwordMatches = false;
-            try {
-                passwordMatches = passwordEncoder.matches(loginRequest.getPassword(), usuario.getPassword());
-            } catch (Exception e) {
-                log.error("Error al verificar la contraseña: {}", e.getMessage());
+            // Una sola verificación bcrypt sobre el usuario ya cargado (el AuthenticationManager
+            // volvería a leerlo y a verificar la contraseña)
+            if (loginRequest.getPassword() == null
+                    || !passwordEncoder.matches(loginRequest.getPassword(), usuario.getPassword())) {
+                throw new BadCredentialsException("Credenciales inválidas");
+            }
+            if (!usuario.isActive()) {
+                throw new DisabledException("Usuario inactivo");
             }
-            log.info("¿Contraseña coincide?: {}", passwordMatches);
-            
-            // Usar el username real del usuario (no el identifier) para autenticación
-            Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(usuario.getUsername(), loginRequest.getPassword()));
 
+            UserDetailsImpl userDetails = UserDetailsImpl.build(usuario);
+            Authentication authentication = new UsernamePasswordAuthenticationToken(
+                    userDetails, null, userDetails.getAuthorities());
             SecurityContextHolder.getContext().setAuthentication(authentication);
-            UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
             
             String jwt = jwtUtils.generateJwtToken(authentication);
             String refreshToken = jwtUtils.generateRefreshToken(authentication);
@@ -98,33 +96,20 @@ public class AuthController {
                     .map(item -> item.getAuthority())
                     .collect(Collectors.toList());
             
-            // Actualizar último login (usar username real, no identifier)
-            userService.updateLastLogin(userDetails.getUsername());
-            
-            // Registrar sesión
-            Usuario user = usuarioRepository.findById(userDetails.getId())
-                    .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
-            
-            // Invalidar sesiones anteriores
-            List<UserSession> activeSessions = userSessionRepository.findByUserAndActiveTrue(user);
-            for (UserSession session : activeSessions) {
-                session.setActive(false);
-                session.setLogoutTime(LocalDateTime.now());
-                userSessionRepository.save(session);
-            }
-            
+            // Último login, cierre de sesiones anteriores (un UPDATE) y sesión nueva en una transacción
+            LocalDateTime ahora = LocalDateTime.now();
             UserSession session = UserSession.builder()
-                    .user(user)
+                    .user(usuario)
                     .sessionToken(refreshToken)
                     .ipAddress(request.getRemoteAddr())
                     .userAgent(request.getHeader("User-Agent"))
-                    .loginTime(LocalDateTime.now())
+                    .loginTime(ahora)
                     .active(true)
-                    .lastActivity(LocalDateTime.now())
-                    .expiryDate(LocalDateTime.now().plusDays(7)) // Token válido por 7 días
+                    .lastActivity(ahora)
+                    .expiryDate(ahora.plusDays(7)) // Token válido por 7 días
                     .build();
             
-            userSessionRepository.save(session);
+            userService.iniciarSesion(usuario, session);
             
             log.info("Login exitoso para usuario: {}", userDetails.getUsername());
             
@@ -145,6 +130,11 @@ public class AuthController {
             Map<String, String> response = new HashMap<>();
             response.put("message", "Usuario o contraseña incorrectos. Verifique que la contraseña respete mayúsculas y minúsculas.");
             return ResponseEntity.status(401).body(response);
+        } catch (DisabledException e) {
+            log.warn("Intento de login de usuario inactivo: {}", identifier);
+            Map<String, String> response = new HashMap<>();
+            response.put("message", "Usuario inactivo. Contacte al administrador.");
+            return ResponseEntity.status(401).body(response);
         } catch (Exception e) {
             log.error("Error en el proceso de autenticación para: {}", identifier, e);
             Map<String, String> response = new HashMap<>();
@@ -205,7 +195,7 @@ public class AuthController {
     }
 
     @PostMapping("/logout")
-    public ResponseEntity<?> logout(@RequestBody Map<String, String> body) {
+    public ResponseEntity<?> logout(@RequestBody Map<String, String> body, HttpServletRequest request) {
         String refreshToken = body.get("refreshToken");
         if (refreshToken == null) {
             return ResponseEntity.badRequest().body(Map.of("message", "Refresh token no proporcionado"));
@@ -219,6 +209,12 @@ public class AuthController {
             session.setLogoutTime(LocalDateTime.now());
             userSessionRepository.save(session);
 
+            // La próxima petición con un token de este usuario vuelve a validar contra la base
+            jwtUtils.evictToken(jwtUtils.parseJwt(request));
+            if (session.getUser() != null) {
+                userDetailsCache.evictUsuario(session.getUser().getId());
+            }
+
             return ResponseEntity.ok(Map.of("message", "Sesión cerrada exitosamente"));
         } catch (Exception e) {
             log.error("Error al cerrar sesión", e);
@@ -259,25 +255,10 @@ public class AuthController {
         }
         
         try {
-            boolean isValid = jwtUtils.validateJwtToken(token);
-            String username = null;
-            Long expiryTime = null;
-            
-            if (isValid) {
-                username = jwtUtils.getUserNameFromJwtToken(token);
-                // Intentar extraer fecha de expiración
-                try {
-                    String[] parts = token.split("\\.");
-                    if (parts.length == 3) {
-                        String payload = new String(java.util.Base64.getDecoder().decode(parts[1]));
-                        expiryTime = com.fasterxml.jackson.databind.JsonNode.class.cast(
-                            new com.fasterxml.jackson.databind.ObjectMapper().readTree(payload).get("exp")
-                        ).asLong() * 1000; // Convertir a milisegundos
-                    }
-                } catch (Exception e) {
-                    log.warn("No se pudo extraer fecha de expiración del token");
-                }
-            }
+            io.jsonwebtoken.Claims claims = jwtUtils.getValidClaims(token);
+            boolean isValid = claims != null;
+            String username = isValid ? claims.getSubject() : null;
+            Long expiryTime = isValid && claims.getExpiration() != null ? claims.getExpiration().getTime() : null;
             
             Map<String, Object> response = new HashMap<>();
             response.put("valid", isValid);
@@ -2,238 +2,40 @@ package com.wil.avicola_backend.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.wil.avicola_backend.model.Especie;
+import com.wil.avicola_backend.service.ConsumoLoteResumenService;
+
 import java.util.*;
-import java.time.LocalDateTime;
 
 @RestController
 @RequestMapping("/api/consumos-lote")
 @CrossOrigin(origins = "http://localhost:4200")
 public class ConsumosLoteController {
 
+    private static final int HISTORIAL_LIMITE_DEFECTO = 50;
+    private static final int HISTORIAL_LIMITE_MAXIMO = 500;
+
     @Autowired
-    private JdbcTemplate jdbcTemplate;
+    private ConsumoLoteResumenService consumoLoteResumenService;
 
+    /**
+     * Totales por lote/producto leídos del acumulado consumo_lote_diario y la primera página
+     * del historial de cada lote. Las páginas siguientes se piden a /{loteId}/historial.
+     */
     @GetMapping
-    public List<ConsumosPorLote> getConsumosPorLote(@RequestParam(defaultValue = "chanchos") String especie) {
+    public List<ConsumosPorLote> getConsumosPorLote(@RequestParam(defaultValue = "chanchos") String especie,
+                                                    @RequestParam(required = false) Integer historialLimite) {
         List<ConsumosPorLote> consumos = new ArrayList<>();
         
         try {
-            // Determinar el tipo de animal basado en la especie
-            String tipoAnimal = "chanchos".equals(especie) ? "Chanchos" : "Pollos";
-            
-            System.out.println("[ConsumosLote] ========== DIAGNÓSTICO ==========");
-            System.out.println("[ConsumosLote] Especie solicitada: " + especie);
-            System.out.println("[ConsumosLote] Buscando animal: " + tipoAnimal);
-            
-            // Patrones de búsqueda por especie (sinónimos y variantes)
-            List<String> patrones = new ArrayList<>();
-            if ("chanchos".equalsIgnoreCase(especie)) {
-                Collections.addAll(patrones, "%chancho%", "%cerdo%", "%porc%", "%porcino%", "%puerco%");
-            } else {
-                Collections.addAll(patrones, "%pollo%", "%gallin%", "%ave%", "%avicola%", "%broiler%");
-            }
-            // Asegurar tamaño fijo de 5 parámetros para SQL (completar con el último patrón)
-            while (patrones.size() < 5) {
-                patrones.add(patrones.get(patrones.size() - 1));
-            }
-            
-            // Diagnóstico: Ver qué animales existen
-            try {
-                List<Map<String, Object>> animales = jdbcTemplate.queryForList("SELECT id, name FROM animal");
-                System.out.println("[ConsumosLote] Animales en BD: " + animales);
-            } catch (Exception e) {
-                System.out.println("[ConsumosLote] Error consultando animales: " + e.getMessage());
-            }
-            
-            // Diagnóstico: Ver cuántos registros hay en plan_ejecucion
-            try {
-                List<Map<String, Object>> ejecuciones = jdbcTemplate.queryForList(
-                    "SELECT status, COUNT(*) as cantidad FROM plan_ejecucion GROUP BY status");
-                System.out.println("[ConsumosLote] Ejecuciones por status: " + ejecuciones);
-            } catch (Exception e) {
-                System.out.println("[ConsumosLote] Error consultando ejecuciones: " + e.getMessage());
-            }
-            
-            // Diagnóstico: Ver lotes de chanchos
-            try {
-                List<Map<String, Object>> lotesChanchos = jdbcTemplate.queryForList(
-                    "SELECT l.id, l.codigo, a.name as animal FROM lote l " +
-                    "LEFT JOIN race r ON l.race_id = r.id " +
-                    "LEFT JOIN animal a ON r.animal_id = a.id " +
-                    "WHERE a.name LIKE '%Chancho%' OR a.name LIKE '%Cerdo%' OR a.name LIKE '%Porcino%'");
-                System.out.println("[ConsumosLote] Lotes de chanchos encontrados: " + lotesChanchos.size());
-            } catch (Exception e) {
-                System.out.println("[ConsumosLote] Error consultando lotes: " + e.getMessage());
-            }
+            // Cualquier valor que no sea chanchos se interpreta como pollos (comportamiento histórico)
+            Especie filtro = Especie.desdeFiltro(especie) == Especie.CHANCHOS ? Especie.CHANCHOS : Especie.POLLOS;
             
-            // Consulta SQL principal: flexible por sinónimos y status EJECUTADO (case-insensitive)
-            String sql = """
-                SELECT 
-                    l.id as lote_id,
-                    l.codigo as lote_codigo,
-                    pe.id as ejecucion_id,
-                    pe.quantity_applied as cantidad,
-                    pe.execution_date as fecha,
-                    pe.create_date as fecha_hora,
-                    pe.observations as observaciones,
-                    p.name as producto_nombre,
-                    p.id as producto_id,
-                    u.username as usuario_nombre,
-                    u.name as usuario_nombre_completo
-                FROM plan_ejecucion pe
-                LEFT JOIN plan_asignacion pa ON pe.asignacion_id = pa.id
-                LEFT JOIN lote l ON pa.lote_id = l.id
-                LEFT JOIN plan_detalle pd ON pe.detalle_id = pd.id
-                LEFT JOIN product p ON pd.product_id = p.id
-                LEFT JOIN usuarios u ON pe.executed_by_user_id = u.id
-                LEFT JOIN race r ON l.race_id = r.id
-                LEFT JOIN animal a ON r.animal_id = a.id
-                WHERE (
-                    LOWER(a.name) LIKE ? OR LOWER(a.name) LIKE ? OR LOWER(a.name) LIKE ? OR LOWER(a.name) LIKE ? OR LOWER(a.name) LIKE ?
-                )
-                AND UPPER(pe.status) = 'EJECUTADO'
-                ORDER BY l.codigo, pe.create_date DESC
-            """;
-            
-            List<Map<String, Object>> results = jdbcTemplate.queryForList(
-                sql,
-                patrones.get(0), patrones.get(1), patrones.get(2), patrones.get(3), patrones.get(4)
-            );
-            System.out.println("[ConsumosLote] Registros (EJECUTADO) con patrones " + patrones + ": " + results.size());
-            
-            // Fallback 1: ampliar estatus si no hay resultados
-            if (results.isEmpty()) {
-                String sqlFallbackStatus = """
-                    SELECT 
-                        l.id as lote_id,
-                        l.codigo as lote_codigo,
-                        pe.id as ejecucion_id,
-                        pe.quantity_applied as cantidad,
-                        pe.execution_date as fecha,
-                        pe.create_date as fecha_hora,
-                        pe.observations as observaciones,
-                        p.name as producto_nombre,
-                        p.id as producto_id,
-                        u.username as usuario_nombre,
-                        u.name as usuario_nombre_completo
-                    FROM plan_ejecucion pe
-                    LEFT JOIN plan_asignacion pa ON pe.asignacion_id = pa.id
-                    LEFT JOIN lote l ON pa.lote_id = l.id
-                    LEFT JOIN plan_detalle pd ON pe.detalle_id = pd.id
-                    LEFT JOIN product p ON pd.product_id = p.id
-                    LEFT JOIN usuarios u ON pe.executed_by_user_id = u.id
-                    LEFT JOIN race r ON l.race_id = r.id
-                    LEFT JOIN animal a ON r.animal_id = a.id
-                    WHERE (
-                        LOWER(a.name) LIKE ? OR LOWER(a.name) LIKE ? OR LOWER(a.name) LIKE ? OR LOWER(a.name) LIKE ? OR LOWER(a.name) LIKE ?
-                    )
-                    AND UPPER(pe.status) IN ('EJECUTADO','REGISTRADO','REALIZADO')
-                    ORDER BY l.codigo, pe.create_date DESC
-                """;
-                results = jdbcTemplate.queryForList(
-                    sqlFallbackStatus,
-                    patrones.get(0), patrones.get(1), patrones.get(2), patrones.get(3), patrones.get(4)
-                );
-                System.out.println("[ConsumosLote] Fallback estatus (EJECUTADO/REGISTRADO/REALIZADO), registros: " + results.size());
-            }
-            
-            // Agrupar por lote
-            Map<String, ConsumosPorLote> lotesMap = new LinkedHashMap<>();
-            Map<String, Map<String, Double>> productosMap = new HashMap<>();
-            Map<String, List<RegistroConsumoLote>> historialMap = new HashMap<>();
-            
-            for (Map<String, Object> row : results) {
-                String loteId = row.get("lote_id") != null ? row.get("lote_id").toString() : "0";
-                String loteCodigo = row.get("lote_codigo") != null ? row.get("lote_codigo").toString() : "SIN_CODIGO";
-                
-                // Crear o actualizar lote
-                if (!lotesMap.containsKey(loteId)) {
-                    ConsumosPorLote lote = new ConsumosPorLote();
-                    lote.setLoteId(loteId);
-                    lote.setLoteCodigo(loteCodigo);
-                    lote.setTotalConsumo(0.0);
-                    lotesMap.put(loteId, lote);
-                    productosMap.put(loteId, new HashMap<>());
-                    historialMap.put(loteId, new ArrayList<>());
-                }
-                
-                // Cantidad
-                Double cantidad = 0.0;
-                if (row.get("cantidad") != null) {
-                    cantidad = ((Number) row.get("cantidad")).doubleValue();
-                }
-                
-                // Actualizar total del lote
-                ConsumosPorLote lote = lotesMap.get(loteId);
-                lote.setTotalConsumo(lote.getTotalConsumo() + cantidad);
-                
-                // Nombre del producto
-                String productoNombre = row.get("producto_nombre") != null ? 
-                    row.get("producto_nombre").toString() : "Alimento";
-                
-                // Agregar al mapa de productos
-                Map<String, Double> productosLote = productosMap.get(loteId);
-                productosLote.merge(productoNombre, cantidad, Double::sum);
-                
-                // Nombre del usuario REAL desde la base de datos
-                String usuarioNombre = "Sistema";
-                if (row.get("usuario_nombre_completo") != null && !row.get("usuario_nombre_completo").toString().isEmpty()) {
-                    usuarioNombre = row.get("usuario_nombre_completo").toString();
-                } else if (row.get("usuario_nombre") != null) {
-                    usuarioNombre = row.get("usuario_nombre").toString();
-                }
-                
-                // Fecha/hora
-                String fecha = "";
-                if (row.get("fecha_hora") != null) {
-                    fecha = row.get("fecha_hora").toString();
-                } else if (row.get("fecha") != null) {
-                    fecha = row.get("fecha").toString();
-                }
-                
-                // Agregar registro al historial
-                RegistroConsumoLote registro = new RegistroConsumoLote(
-                    row.get("ejecucion_id") != null ? ((Number) row.get("ejecucion_id")).intValue() : 0,
-                    fecha,
-                    productoNombre,
-                    cantidad,
-                    loteId,
-                    loteCodigo,
-                    usuarioNombre,
-                    row.get("observaciones") != null ? row.get("observaciones").toString() : ""
-                );
-                historialMap.get(loteId).add(registro);
-            }
-            
-            // Convertir mapas a listas de DTOs
-            for (String loteId : lotesMap.keySet()) {
-                ConsumosPorLote lote = lotesMap.get(loteId);
-                
-                // Productos
-                List<ConsumoProductoLote> productos = new ArrayList<>();
-                Map<String, Double> productosLote = productosMap.get(loteId);
-                int prodId = 1;
-                for (Map.Entry<String, Double> entry : productosLote.entrySet()) {
-                    productos.add(new ConsumoProductoLote(
-                        prodId++,
-                        entry.getKey(),
-                        loteId,
-                        lote.getLoteCodigo(),
-                        entry.getValue(),
-                        1,
-                        LocalDateTime.now().toString()
-                    ));
-                }
-                lote.setProductos(productos);
-                
-                // Historial
-                lote.setHistorial(historialMap.get(loteId));
-                
-                consumos.add(lote);
-            }
-            
-            System.out.println("[ConsumosLote] Especie: " + especie + ", Lotes encontrados: " + consumos.size());
+            Map<String, ConsumosPorLote> lotesMap = agruparTotales(consumoLoteResumenService.totalesPorEspecie(filtro));
+            agregarHistorial(lotesMap, consumoLoteResumenService.historialReciente(
+                new ArrayList<>(lotesMap.keySet()), limite(historialLimite)));
+            consumos.addAll(lotesMap.values());
             
         } catch (Exception e) {
             System.err.println("[ConsumosLote] Error consultando base de datos: " + e.getMessage());
@@ -244,9 +46,100 @@ public class ConsumosLoteController {
     }
     
     @GetMapping("/{loteId}")
-    public ConsumosPorLote getConsumosLoteEspecifico(@PathVariable String loteId) {
-        List<ConsumosPorLote> todos = getConsumosPorLote("chanchos");
-        return todos.stream().filter(c -> c.getLoteId().equals(loteId)).findFirst().orElse(null);
+    public ConsumosPorLote getConsumosLoteEspecifico(@PathVariable String loteId,
+                                                     @RequestParam(required = false) Integer historialLimite) {
+        Map<String, ConsumosPorLote> lotesMap = agruparTotales(consumoLoteResumenService.totalesPorLote(loteId));
+        if (lotesMap.isEmpty()) return null;
+        agregarHistorial(lotesMap, consumoLoteResumenService.historial(loteId, null, limite(historialLimite)));
+        return lotesMap.get(loteId);
+    }
+    
+    /**
+     * Historial de un lote paginado por cursor: {@code antesDe} es el último id recibido.
+     */
+    @GetMapping("/{loteId}/historial")
+    public Map<String, Object> getHistorialLote(@PathVariable String loteId,
+                                                @RequestParam(required = false) Long antesDe,
+                                                @RequestParam(required = false) Integer limite) {
+        int n = limite(limite);
+        List<RegistroConsumoLote> registros = new ArrayList<>();
+        for (Map<String, Object> row : consumoLoteResumenService.historial(loteId, antesDe, n)) {
+            registros.add(toRegistro(row));
+        }
+        Map<String, Object> resp = new LinkedHashMap<>();
+        resp.put("registros", registros);
+        resp.put("siguienteCursor", registros.size() == n ? registros.get(registros.size() - 1).getId() : null);
+        return resp;
+    }
+    
+    private static int limite(Integer solicitado) {
+        if (solicitado == null || solicitado <= 0) return HISTORIAL_LIMITE_DEFECTO;
+        return Math.min(solicitado, HISTORIAL_LIMITE_MAXIMO);
+    }
+    
+    private static Map<String, ConsumosPorLote> agruparTotales(List<Map<String, Object>> filas) {
+        Map<String, ConsumosPorLote> lotesMap = new LinkedHashMap<>();
+        for (Map<String, Object> row : filas) {
+            String loteId = row.get("lote_id") != null ? row.get("lote_id").toString() : "0";
+            String loteCodigo = row.get("lote_codigo") != null ? row.get("lote_codigo").toString() : "SIN_CODIGO";
+            ConsumosPorLote lote = lotesMap.computeIfAbsent(loteId, id -> {
+                ConsumosPorLote l = new ConsumosPorLote();
+                l.setLoteId(id);
+                l.setLoteCodigo(loteCodigo);
+                l.setTotalConsumo(0.0);
+                l.setProductos(new ArrayList<>());
+                l.setHistorial(new ArrayList<>());
+                return l;
+            });
+            double total = row.get("total") != null ? ((Number) row.get("total")).doubleValue() : 0.0;
+            lote.setTotalConsumo(lote.getTotalConsumo() + total);
+            lote.getProductos().add(new ConsumoProductoLote(
+                row.get("product_id") != null ? ((Number) row.get("product_id")).intValue() : 0,
+                row.get("producto_nombre") != null ? row.get("producto_nombre").toString() : "Alimento",
+                loteId,
+                loteCodigo,
+                total,
+                row.get("registros") != null ? ((Number) row.get("registros")).intValue() : 0,
+                row.get("ultima_fecha") != null ? row.get("ultima_fecha").toString() : ""
+            ));
+        }
+        return lotesMap;
+    }
+    
+    private static void agregarHistorial(Map<String, ConsumosPorLote> lotesMap, List<Map<String, Object>> filas) {
+        for (Map<String, Object> row : filas) {
+            ConsumosPorLote lote = lotesMap.get(row.get("lote_id") != null ? row.get("lote_id").toString() : "0");
+            if (lote != null) lote.getHistorial().add(toRegistro(row));
+        }
+    }
+    
+    private static RegistroConsumoLote toRegistro(Map<String, Object> row) {
+        // Nombre del usuario REAL desde la base de datos
+        String usuarioNombre = "Sistema";
+        if (row.get("usuario_nombre_completo") != null && !row.get("usuario_nombre_completo").toString().isEmpty()) {
+            usuarioNombre = row.get("usuario_nombre_completo").toString();
+        } else if (row.get("usuario_nombre") != null) {
+            usuarioNombre = row.get("usuario_nombre").toString();
+        }
+        
+        // Fecha/hora
+        String fecha = "";
+        if (row.get("fecha_hora") != null) {
+            fecha = row.get("fecha_hora").toString();
+        } else if (row.get("fecha") != null) {
+            fecha = row.get("fecha").toString();
+        }
+        
+        return new RegistroConsumoLote(
+            row.get("ejecucion_id") != null ? ((Number) row.get("ejecucion_id")).intValue() : 0,
+            fecha,
+            row.get("producto_nombre") != null ? row.get("producto_nombre").toString() : "Alimento",
+            row.get("cantidad") != null ? ((Number) row.get("cantidad")).doubleValue() : 0.0,
+            row.get("lote_id") != null ? row.get("lote_id").toString() : "0",
+            row.get("lote_codigo") != null ? row.get("lote_codigo").toString() : "SIN_CODIGO",
+            usuarioNombre,
+            row.get("observaciones") != null ? row.get("observaciones").toString() : ""
+        );
     }
 }
 
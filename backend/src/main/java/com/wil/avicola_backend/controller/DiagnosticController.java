@@ -5,6 +5,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import com.wil.avicola_backend.model.*;
 import com.wil.avicola_backend.repository.*;
+import com.wil.avicola_backend.security.services.UserDetailsCache;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import java.util.*;
 import org.slf4j.Logger;
@@ -26,6 +27,9 @@ public class DiagnosticController {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+
     @GetMapping("/system-check")
     public ResponseEntity<?> checkSystem() {
         Map<String, Object> response = new HashMap<>();
@@ -152,6 +156,8 @@ public class DiagnosticController {
 
             // Guardar el usuario
             admin = usuarioRepository.save(admin);
+            // Roles, contraseña y estado cambiaron: el filtro JWT no debe seguir usando la copia en caché
+            userDetailsCache.evictUsuario(admin.getId());
             fixes.add("Usuario admin configurado y activado");
 
             response.put("status", "success");
@@ -1,6 +1,6 @@
 package com.wil.avicola_backend.controller;
 
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
@@ -8,13 +8,12 @@ import org.springframework.web.multipart.MultipartFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.wil.avicola_backend.service.ImagenUploadService;
+import com.wil.avicola_backend.service.ImagenUploadService.ImagenGuardada;
+
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/upload")
@@ -22,42 +21,32 @@ import java.util.UUID;
 public class FileUploadController {
     private static final Logger logger = LoggerFactory.getLogger(FileUploadController.class);
 
-    @Value("${app.upload.dir}")
-    private String uploadDir;
+    @Autowired
+    private ImagenUploadService imagenUploadService;
 
     @PostMapping("/profile-picture")
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<?> uploadProfilePicture(@RequestParam("file") MultipartFile file) {
         try {
-            // Crear directorio si no existe
-            Path uploadPath = Paths.get(uploadDir);
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
-            }
-
             // Validar tipo de archivo
             String contentType = file.getContentType();
             if (contentType == null || !contentType.startsWith("image/")) {
                 throw new IllegalArgumentException("Solo se permiten archivos de imagen");
             }
 
-            // Generar nombre único para el archivo
             String originalFilename = file.getOriginalFilename();
-            String extension = originalFilename != null ? originalFilename.substring(originalFilename.lastIndexOf(".")) : ".jpg";
-            String fileName = UUID.randomUUID().toString() + extension;
-            
-            Path filePath = uploadPath.resolve(fileName);
+            String extension = originalFilename != null && originalFilename.contains(".")
+                    ? originalFilename.substring(originalFilename.lastIndexOf(".")).toLowerCase()
+                    : ".jpg";
 
-            // Guardar archivo
-            Files.copy(file.getInputStream(), filePath);
+            // Imagen reducida + miniaturas, sin EXIF y con nombre por contenido (cacheable como inmutable)
+            ImagenGuardada imagen = imagenUploadService.guardar(file, "", extension);
 
-            // Devolver la URL relativa del archivo
-            String fileUrl = "/uploads/" + fileName;
-
-            Map<String, String> response = new HashMap<>();
-            response.put("url", fileUrl);
+            Map<String, Object> response = new HashMap<>();
+            response.put("url", imagen.url());
+            response.put("miniaturas", imagen.miniaturas());
             
-            logger.info("Archivo subido exitosamente: {}", fileName);
+            logger.info("Archivo subido exitosamente: {}", imagen.url());
             return ResponseEntity.ok(response);
 
         } catch (IOException e) {
@@ -69,6 +58,10 @@ public class FileUploadController {
             Map<String, String> response = new HashMap<>();
             response.put("error", e.getMessage());
             return ResponseEntity.badRequest().body(response);
+        } catch (IllegalStateException e) {
+            Map<String, String> response = new HashMap<>();
+            response.put("error", e.getMessage());
+            return ResponseEntity.status(503).body(response);
         }
     }
 }
\ No newline at end of file
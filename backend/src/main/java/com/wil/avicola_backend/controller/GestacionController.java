@@ -1,14 +1,9 @@
 package com.wil.avicola_backend.controller;
 
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -32,6 +27,8 @@ import com.wil.avicola_backend.dto.GestacionNoPrenadaResponseDto;
 import com.wil.avicola_backend.dto.GestacionPartoRequestDto;
 import com.wil.avicola_backend.dto.GestacionPartoResponseDto;
 import com.wil.avicola_backend.service.GestacionService;
+import com.wil.avicola_backend.service.ImagenUploadService;
+import com.wil.avicola_backend.service.ImagenUploadService.ImagenGuardada;
 
 import lombok.RequiredArgsConstructor;
 
@@ -42,9 +39,7 @@ import lombok.RequiredArgsConstructor;
 public class GestacionController {
 
     private final GestacionService gestacionService;
-
-    @Value("${app.upload.dir}")
-    private String uploadDir;
+    private final ImagenUploadService imagenUploadService;
 
     @GetMapping
     public ResponseEntity<Map<String, Object>> listar() {
@@ -84,19 +79,12 @@ public class GestacionController {
                 return ResponseEntity.badRequest().body(response);
             }
 
-            Path uploadPath = Paths.get(uploadDir, "gestacion");
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
-            }
-
-            String extension = extensionImagen(contentType, original);
-            String fileName = UUID.randomUUID() + extension;
-            Files.copy(file.getInputStream(), uploadPath.resolve(fileName));
-
-            String fileUrl = "/uploads/gestacion/" + fileName;
+            // Imagen principal reducida + miniaturas, sin EXIF y con nombre por contenido
+            ImagenGuardada imagen = imagenUploadService.guardar(file, "gestacion", extensionImagen(contentType, original));
             response.put("success", true);
-            response.put("data", fileUrl);
-            response.put("url", fileUrl);
+            response.put("data", imagen.url());
+            response.put("url", imagen.url());
+            response.put("miniaturas", imagen.miniaturas());
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             response.put("success", false);
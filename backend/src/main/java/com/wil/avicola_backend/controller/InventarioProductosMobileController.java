@@ -3,6 +3,7 @@ package com.wil.avicola_backend.controller;
 import java.math.BigDecimal;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -17,6 +18,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.wil.avicola_backend.error.RequestException;
@@ -28,6 +30,7 @@ import com.wil.avicola_backend.model.UnitMeasurement;
 import com.wil.avicola_backend.repository.AnimalRepository;
 import com.wil.avicola_backend.repository.CategoryRepository;
 import com.wil.avicola_backend.repository.ProductRepository;
+import com.wil.avicola_backend.repository.ProductoCatalogoVista;
 import com.wil.avicola_backend.repository.ProviderRepository;
 import com.wil.avicola_backend.repository.StageRepository;
 import com.wil.avicola_backend.repository.SubcategoryRepository;
@@ -117,17 +120,20 @@ public class InventarioProductosMobileController {
     // Endpoints principales
     // =============================
 
+    /**
+     * Lista los productos activos. Con {@code ids} devuelve solo esos (los cambiados que informó
+     * /api/sync/cambios). Relaciones y stock válido salen de una sola consulta de proyección.
+     */
     @GetMapping
-    public ResponseEntity<List<ProductoInventarioDto>> listar() {
-        Iterable<Product> productos = productRepository.findByActiveTrue();
-        Map<Long, BigDecimal> stockValido = inventarioEntradaProductoService.obtenerStockValidoAgrupado();
+    public ResponseEntity<List<ProductoInventarioDto>> listar(@RequestParam(value = "ids", required = false) List<Long> ids) {
+        LocalDate hoy = LocalDate.now();
+        List<ProductoCatalogoVista> productos = ids != null && !ids.isEmpty()
+                ? productRepository.findCatalogoByIds(hoy, ids)
+                : productRepository.findCatalogo(hoy);
 
-        List<ProductoInventarioDto> lista = new ArrayList<>();
-        for (Product p : productos) {
-            if (p == null) continue;
-            Long pid = p.getId();
-            BigDecimal stock = stockValido != null && pid != null ? stockValido.get(pid) : null;
-            lista.add(toDto(p, stock));
+        List<ProductoInventarioDto> lista = new ArrayList<>(productos.size());
+        for (ProductoCatalogoVista v : productos) {
+            lista.add(toDto(v));
         }
         return ResponseEntity.ok(lista);
     }
@@ -466,9 +472,62 @@ public class InventarioProductosMobileController {
                 .build();
     }
 
+    private ProductoInventarioDto toDto(ProductoCatalogoVista v) {
+        String unidadMedida = null;
+        if (v.getUnitMeasurementAbreviatura() != null && !v.getUnitMeasurementAbreviatura().isBlank()) {
+            unidadMedida = v.getUnitMeasurementAbreviatura();
+        } else if (v.getUnitMeasurementNombre() != null && !v.getUnitMeasurementNombre().isBlank()) {
+            unidadMedida = v.getUnitMeasurementNombre();
+        }
+        if (unidadMedida == null) {
+            unidadMedida = "unidad";
+        }
+
+        boolean conTipo = v.getTypeFoodId() != null && v.getTypeFoodNombre() != null;
+        boolean conSubcategoria = v.getSubcategoryId() != null && v.getSubcategoryNombre() != null;
+
+        return ProductoInventarioDto.builder()
+                .id(v.getId() != 0 ? Long.toString(v.getId()) : null)
+                .nombre(v.getName())
+                .descripcion(v.getDescription())
+                .animalTipo(mapAnimalTipo(v.getAnimalNombre()))
+                .animalId(v.getAnimalId())
+                .providerId(v.getProviderId())
+                .typeFoodId(conTipo ? v.getTypeFoodId() : null)
+                .unitMeasurementId(v.getUnitMeasurementId())
+                .stageId(v.getStageId())
+                .subcategoryId(conSubcategoria ? v.getSubcategoryId() : null)
+                .categoriaPrincipal(conTipo ? v.getTypeFoodNombre() : null)
+                .subcategoria(conSubcategoria ? v.getSubcategoryNombre() : null)
+                .etapaAplicacion(v.getName_stage())
+                .unidadMedida(unidadMedida)
+                .cantidadActual(v.getStockValido() != null ? v.getStockValido().doubleValue() : 0d)
+                .nivelMinimo(v.getLevel_min())
+                .nivelMaximo(v.getLevel_max())
+                .usoPrincipal(v.getUsoPrincipal())
+                .dosisRecomendada(v.getDosisRecomendada())
+                .viaAplicacion(v.getViaAdministracion())
+                .precioUnitario(v.getPrice_unit())
+                .fechaCompra(formatDate(v.getDate_compra()))
+                .proveedor(v.getProviderNombre())
+                .numeroFactura(v.getNumber_facture() != 0 ? Integer.toString(v.getNumber_facture()) : null)
+                .fechaVencimiento(formatDate(v.getFechaVencimiento()))
+                .loteFabricante(null)
+                .incluirEnBotiquin(v.getIncluirEnBotiquin())
+                .tiempoRetiro(v.getTiempoRetiro())
+                .observacionesMedicas(v.getObservacionesMedicas())
+                .presentacion(v.getPresentacion())
+                .infoNutricional(v.getInfoNutricional())
+                .build();
+    }
+
     private String mapAnimalTipo(Animal animal) {
-        if (animal == null || animal.getName() == null) return "ambos";
-        String n = animal.getName().toLowerCase();
+        return mapAnimalTipo(animal != null ? animal.getName() : null);
+    }
+
+    private String mapAnimalTipo(String nombreAnimal) {
+        if (nombreAnimal == null) return "ambos";
+        String n = nombreAnimal.toLowerCase();
         if (n.contains("pollo") || n.contains("ave") || n.contains("broiler")) {
             return "pollos";
         }
@@ -0,0 +1,50 @@
+package com.wil.avicola_backend.controller;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.wil.avicola_backend.dto.OperacionOfflineDTO;
+import com.wil.avicola_backend.dto.ResultadoOperacionOfflineDTO;
+import com.wil.avicola_backend.security.services.UserDetailsImpl;
+import com.wil.avicola_backend.service.OperacionesOfflineService;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Recibe la cola de operaciones que la app móvil registró sin conexión y la aplica de una vez.
+ * Responde siempre 200 con un resultado por operación; el dispositivo borra las APLICADA/DUPLICADA y
+ * reenvía las PENDIENTE con la misma clave.
+ */
+@RestController
+@RequestMapping("/api/offline")
+@RequiredArgsConstructor
+public class OperacionesOfflineController {
+
+    private final OperacionesOfflineService operacionesOfflineService;
+
+    @PostMapping("/operaciones")
+    public ResponseEntity<Map<String, Object>> procesar(@RequestBody List<OperacionOfflineDTO> operaciones,
+                                                        Authentication authentication) {
+        Long userId = null;
+        String usuario = "APP";
+        if (authentication != null && authentication.getPrincipal() instanceof UserDetailsImpl u) {
+            userId = u.getId();
+            usuario = u.getUsername();
+        }
+        List<ResultadoOperacionOfflineDTO> resultados = operacionesOfflineService.procesar(operaciones, userId, usuario);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("procesadas", resultados.size());
+        response.put("resultados", resultados);
+        return ResponseEntity.ok(response);
+    }
+}
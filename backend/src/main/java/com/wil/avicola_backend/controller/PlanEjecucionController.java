@@ -4,11 +4,11 @@ import java.security.Principal;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -19,18 +19,16 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.wil.avicola_backend.model.PlanEjecucion;
-import com.wil.avicola_backend.model.Lote;
-import com.wil.avicola_backend.repository.PlanEjecucionRepository;
-import com.wil.avicola_backend.repository.LoteRepository;
+import com.wil.avicola_backend.model.Especie;
 import com.wil.avicola_backend.service.PlanEjecucionService;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.Optional;
 import com.wil.avicola_backend.dto.AlertaRapidaDto;
 // Nuevos imports para el sistema de corrección
 import com.wil.avicola_backend.service.CorreccionService;
+import com.wil.avicola_backend.service.HistorialEjecucionService;
 import com.wil.avicola_backend.dto.CorreccionRequest;
 import com.wil.avicola_backend.dto.ValidacionResult;
 import com.wil.avicola_backend.dto.HistorialResponseDto;
@@ -42,6 +40,9 @@ import jakarta.servlet.http.HttpServletRequest;
 @RequestMapping("/api/plan-ejecucion")
 public class PlanEjecucionController {
     
+    /** Cursor de la página siguiente de /debug/historial (se envía como antesDe). */
+    public static final String HEADER_SIGUIENTE_CURSOR = "X-Siguiente-Cursor";
+    
     @Autowired
     private PlanEjecucionService planEjecucionService;
     
@@ -49,10 +50,10 @@ public class PlanEjecucionController {
     private CorreccionService correccionService;
     
     @Autowired
-    private PlanEjecucionRepository planEjecucionRepository;
+    private HistorialEjecucionService historialEjecucionService;
     
     @Autowired
-    private LoteRepository loteRepository;
+    private ObjectMapper objectMapper;
     
     /**
      * Endpoint de prueba con información del estado del sistema
@@ -323,195 +324,68 @@ public class PlanEjecucionController {
      * ✅ TEMPORAL: Endpoint público para obtener historial (sin autenticación)
      * 🔥 SOLUCIONADO: Usa DTO para evitar lazy initialization exception
      * 🐔 Soporta filtro por especie (pollos, chanchos)
+     * Sin {@code limite} devuelve la ventana completa, escrita en streaming por bloques (los clientes
+     * existentes no leen el cursor). Con {@code limite} devuelve a lo sumo esa cantidad (máximo
+     * LIMITE_MAXIMO) y, si hay más, el header X-Siguiente-Cursor trae el {@code antesDe} siguiente.
      */
     @GetMapping("/debug/historial")
-    public ResponseEntity<List<HistorialResponseDto>> getHistorialPublico(
+    public ResponseEntity<StreamingResponseBody> getHistorialPublico(
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaInicio,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaFin,
-            @RequestParam(required = false) String especie) {
-        
-        System.out.println("📚 === OBTENER HISTORIAL (ENDPOINT DEBUG PÚBLICO) ===");
-        System.out.println("Fecha inicio: " + fechaInicio);
-        System.out.println("Fecha fin: " + fechaFin);
-        System.out.println("Especie filtro: " + (especie != null ? especie : "TODAS"));
+            @RequestParam(required = false) String especie,
+            @RequestParam(required = false) Long antesDe,
+            @RequestParam(required = false) Integer limite) {
         
         try {
             // Si no se proporcionan fechas, usar últimos 6 meses
             if (fechaInicio == null || fechaFin == null) {
                 fechaFin = LocalDate.now();
                 fechaInicio = fechaFin.minusMonths(6);
-                System.out.println("✅ Usando rango por defecto - Inicio: " + fechaInicio + ", Fin: " + fechaFin);
             }
             
-            // Variables finales para el stream
-            final LocalDate fechaInicioFinal = fechaInicio;
-            final LocalDate fechaFinFinal = fechaFin;
-            
-            // 🔥 CONSULTA CON JOIN FETCH - Carga las relaciones en una sola consulta
-            System.out.println("🔍 Consultando registros con JOIN FETCH para evitar lazy loading...");
-            
-            // Usar consulta personalizada con JOIN FETCH
-            List<PlanEjecucion> registros = planEjecucionRepository.findHistorialWithDetails(fechaInicioFinal, fechaFinFinal);
-            
-            System.out.println("✅ Registros obtenidos con JOIN FETCH: " + registros.size());
-            
-            // Variable final para usar en el stream
-            final String especieFiltro = especie;
-            
-            List<HistorialResponseDto> registrosFiltrados = registros.stream()
-                .map(pe -> {
-                    // Convertir a DTO para evitar lazy initialization
-                    HistorialResponseDto dto = new HistorialResponseDto(
-                        pe.getId(),
-                        pe.getExecutionDate(),
-                        pe.getQuantityApplied(),
-                        pe.getObservations(),
-                        pe.getStatus() != null ? pe.getStatus().toString() : "PENDIENTE",
-                        pe.getDayNumber(),
-                        null, // loteId - se establecerá abajo
-                        null, // animalesVivos - no disponible en esta entidad
-                        null, // animalesMuertos - no disponible en esta entidad
-                        pe.getCreateDate(),
-                        pe.getUpdateDate()
-                    );
-                    
-                    // Variable para guardar la especie del lote
-                    String especieLote = null;
-                    
-                    // Mapear información del lote y usuario usando las relaciones cargadas
-                    if (pe.getPlanAsignacion() != null && pe.getPlanAsignacion().getLote() != null) {
-                        Lote lote = pe.getPlanAsignacion().getLote();
-                        dto.setLoteId(lote.getId());
-                        dto.setLoteCodigo(lote.getCodigo());
-                        dto.setLoteDescripcion(lote.getName());
-                        
-                        // Obtener especie del lote
-                        if (lote.getRace() != null && lote.getRace().getAnimal() != null) {
-                            var animal = lote.getRace().getAnimal();
-                            // Normalizar: si es ID=1 (pollos), etiquetar como 'pollos'
-                            if (animal.getId() == 1L) {
-                                especieLote = "pollos";
-                            } else {
-                                String nombreAnimal = animal.getName();
-                                if (nombreAnimal != null) {
-                                    String n = nombreAnimal.toLowerCase();
-                                    // Sinónimos básicos
-                                    if (n.contains("pollo") || n.contains("gallin") || n.contains("ave")) {
-                                        especieLote = "pollos";
-                                    } else if (n.contains("cerd") || n.contains("chancho")) {
-                                        especieLote = "chanchos";
-                                    } else {
-                                        especieLote = nombreAnimal;
-                                    }
-                                }
-                            }
-                        }
-                        
-                        if (pe.getPlanAsignacion().getAssignedUser() != null) {
-                            dto.setUsuarioNombre(pe.getPlanAsignacion().getAssignedUser().getUsername());
-                            dto.setUsuarioId(pe.getPlanAsignacion().getAssignedUser().getId().toString());
-                        }
-                    } else {
-                        // Para registros manuales: extraer loteId de observaciones y buscar nombre real
-                        String loteIdExtraido = extraerLoteIdDeObservaciones(pe.getObservations());
-                        if (loteIdExtraido != null && !loteIdExtraido.isEmpty()) {
-                            Optional<Lote> loteOpt = loteRepository.findById(loteIdExtraido);
-                            if (loteOpt.isPresent()) {
-                                Lote lote = loteOpt.get();
-                                dto.setLoteId(lote.getId());
-                                dto.setLoteCodigo(lote.getCodigo() != null ? lote.getCodigo() : "S/C");
-                                dto.setLoteDescripcion(lote.getName());
-                                
-                                // Obtener especie del lote manual
-                                if (lote.getRace() != null && lote.getRace().getAnimal() != null) {
-                                    var animal = lote.getRace().getAnimal();
-                                    if (animal.getId() == 1L) {
-                                        especieLote = "pollos";
-                                    } else {
-                                        String nombreAnimal = animal.getName();
-                                        if (nombreAnimal != null) {
-                                            String n = nombreAnimal.toLowerCase();
-                                            if (n.contains("pollo") || n.contains("gallin") || n.contains("ave")) especieLote = "pollos";
-                                            else if (n.contains("cerd") || n.contains("chancho")) especieLote = "chanchos";
-                                            else especieLote = nombreAnimal;
-                                        }
-                                    }
-                                }
-                                
-                                System.out.println("✅ Lote encontrado para registro manual: " + lote.getName() + " (Especie: " + especieLote + ")");
-                            } else {
-                                dto.setLoteId(loteIdExtraido);
-                                dto.setLoteCodigo("MANUAL");
-                                dto.setLoteDescripcion("Lote no encontrado: " + loteIdExtraido.substring(0, Math.min(8, loteIdExtraido.length())));
-                            }
-                        } else {
-                            dto.setLoteId("LOT-MANUAL");
-                            dto.setLoteCodigo("MANUAL");
-                            dto.setLoteDescripcion("Registro Manual");
-                        }
-                    }
-                    
-                    // Guardar la especie en el DTO para filtrar después
-                    dto.setEspecie(especieLote);
-                    
-                    // Mapear información del producto desde PlanDetalle
-                    if (pe.getPlanDetalle() != null && pe.getPlanDetalle().getProduct() != null) {
-                        dto.setProductoNombre(pe.getPlanDetalle().getProduct().getName());
-                        dto.setProductoId(pe.getPlanDetalle().getProduct().getId());
-                    } else {
-                        // Intentar extraer producto de observaciones
-                        String productoExtraido = extraerProductoDeObservaciones(pe.getObservations());
-                        if (productoExtraido != null) {
-                            dto.setProductoNombre(productoExtraido);
-                        }
-                    }
-                    
-                    // Mapear usuario ejecutor
-                    if (pe.getExecutedByUser() != null) {
-                        dto.setUsuarioNombre(pe.getExecutedByUser().getUsername());
-                        dto.setUsuarioId(pe.getExecutedByUser().getId().toString());
-                    } else {
-                        dto.setUsuarioNombre("Usuario N/A");
-                        dto.setUsuarioId("N/A");
-                    }
-                    
-                    System.out.println("✅ Registro mapeado - ID: " + dto.getId() + ", Lote: " + dto.getLoteCodigo() + ", Especie: " + dto.getEspecie());
-                    
-                    return dto;
-                })
-                // Filtrar por especie si se especificó
-                .filter(dto -> {
-                    if (especieFiltro == null || especieFiltro.isEmpty()) {
-                        return true; // Sin filtro, devolver todos
-                    }
-                    String especieDto = dto.getEspecie();
-                    if (especieDto == null) {
-                        // Si no tiene especie pero hay observaciones que mencionan "pollo", incluirlo
-                        String obs = dto.getObservations() != null ? dto.getObservations().toLowerCase() : "";
-                        String filtroNorm = especieFiltro.toLowerCase();
-                        if (filtroNorm.contains("pollo") && (obs.contains("pollo") || obs.contains("lote") || dto.getLoteCodigo() != null)) {
-                            return true; // Incluir registros manuales de pollos
-                        }
-                        return false; // Si no tiene especie y no hay indicios, excluir
-                    }
-                    // Comparar ignorando mayúsculas y acentos
-                    String filtroNorm = especieFiltro.toLowerCase().replace("á", "a").replace("é", "e").replace("í", "i").replace("ó", "o").replace("ú", "u");
-                    String especieNorm = especieDto.toLowerCase().replace("á", "a").replace("é", "e").replace("í", "i").replace("ó", "o").replace("ú", "u");
-                    return especieNorm.contains(filtroNorm) || filtroNorm.contains(especieNorm);
-                })
-                .collect(Collectors.toList());
-            
-            System.out.println("✅ Registros después de filtrar por especie '" + (especie != null ? especie : "TODAS") + "': " + registrosFiltrados.size());
-            
-            return ResponseEntity.ok(registrosFiltrados);
+            if (limite == null) {
+                HistorialEjecucionService.Filtro completo = HistorialEjecucionService.Filtro.completo(
+                    fechaInicio, fechaFin, Especie.desdeFiltro(especie), antesDe);
+                StreamingResponseBody cuerpo = out -> historialEjecucionService.escribirArreglo(completo, out);
+                return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(cuerpo);
+            }
+
+            HistorialEjecucionService.Filtro filtro = HistorialEjecucionService.Filtro.de(
+                fechaInicio, fechaFin, Especie.desdeFiltro(especie), antesDe, limite);
+            HistorialEjecucionService.Pagina pagina = historialEjecucionService.listar(filtro);
+            ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON);
+            if (pagina.siguienteCursor() != null) {
+                respuesta.header(HEADER_SIGUIENTE_CURSOR, pagina.siguienteCursor().toString());
+            }
+            return respuesta.body(out -> objectMapper.writeValue(out, pagina.registros()));
             
         } catch (Exception e) {
             System.err.println("❌ Error al obtener historial: " + e.getMessage());
             e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new ArrayList<>());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).contentType(MediaType.APPLICATION_JSON)
+                .body(out -> objectMapper.writeValue(out, new ArrayList<>()));
         }
     }
 
+    /**
+     * Historial paginado por cursor y escrito en streaming.
+     * Respuesta: {"registros":[...], "siguienteCursor": id|null}; para la página siguiente
+     * enviar {@code antesDe=siguienteCursor}. Fechas opcionales (sin ventana por defecto).
+     */
+    @GetMapping("/debug/historial/pagina")
+    public ResponseEntity<StreamingResponseBody> getHistorialPaginado(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaInicio,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaFin,
+            @RequestParam(required = false) String especie,
+            @RequestParam(required = false) Long antesDe,
+            @RequestParam(required = false) Integer limite) {
+        
+        HistorialEjecucionService.Filtro filtro = HistorialEjecucionService.Filtro.de(
+            fechaInicio, fechaFin, Especie.desdeFiltro(especie), antesDe, limite);
+        StreamingResponseBody cuerpo = out -> historialEjecucionService.escribir(filtro, out);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(cuerpo);
+    }
+
     // Nuevos endpoints para el sistema de corrección
 
     /**
@@ -654,50 +528,4 @@ public class PlanEjecucionController {
                 loteId, fecha, cantidadAplicada, animalesVivos, animalesMuertos);
         }
     }
-    
-    // ========== MÉTODOS AUXILIARES PARA PARSING ==========
-    
-    /**
-     * Extrae el loteId (UUID) desde el campo de observaciones
-     * Formato esperado: "... - Lote: UUID | ..." o "Lote: nombre (codigo)"
-     */
-    private String extraerLoteIdDeObservaciones(String observations) {
-        if (observations == null || observations.isEmpty()) {
-            return null;
-        }
-        
-        // Patrón para UUID: 8-4-4-4-12 caracteres hex
-        Pattern uuidPattern = Pattern.compile("Lote:\\s*([0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12})");
-        Matcher matcher = uuidPattern.matcher(observations);
-        if (matcher.find()) {
-            return matcher.group(1);
-        }
-        
-        // Fallback: buscar cualquier UUID en las observaciones
-        Pattern anyUuidPattern = Pattern.compile("([0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12})");
-        Matcher anyMatcher = anyUuidPattern.matcher(observations);
-        if (anyMatcher.find()) {
-            return anyMatcher.group(1);
-        }
-        
-        return null;
-    }
-    
-    /**
-     * Extrae el nombre del producto desde el campo de observaciones
-     * Formato esperado: "Producto: NombreProducto | ..."
-     */
-    private String extraerProductoDeObservaciones(String observations) {
-        if (observations == null || observations.isEmpty()) {
-            return null;
-        }
-        
-        Pattern productoPattern = Pattern.compile("Producto:\\s*([^|]+)");
-        Matcher matcher = productoPattern.matcher(observations);
-        if (matcher.find()) {
-            return matcher.group(1).trim();
-        }
-        
-        return null;
-    }
 }
@@ -0,0 +1,76 @@
+package com.wil.avicola_backend.controller;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.wil.avicola_backend.dto.SyncCambiosDTO;
+import com.wil.avicola_backend.error.RequestException;
+import com.wil.avicola_backend.service.SyncCambiosService;
+import com.wil.avicola_backend.service.SyncCambiosService.Cambio;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Sincronización incremental para la app móvil. El cliente guarda la última secuencia recibida y pide
+ * solo lo cambiado desde ahí; los datos de los ids cambiados se piden a los endpoints de siempre
+ * (p. ej. GET /api/inventario/productos?ids=1,2,3).
+ */
+@RestController
+@RequestMapping("/api/sync")
+@RequiredArgsConstructor
+public class SyncController {
+
+    private static final int LIMITE_DEFECTO = 1000;
+    private static final int LIMITE_MAXIMO = 5000;
+
+    private final SyncCambiosService syncCambiosService;
+
+    @GetMapping("/cambios")
+    public ResponseEntity<SyncCambiosDTO> cambios(
+            @RequestParam(value = "desde", required = false) Long desde,
+            @RequestParam(value = "entidades", required = false) List<String> entidades,
+            @RequestParam(value = "limite", required = false) Integer limite) {
+        Set<String> pedidas = new LinkedHashSet<>();
+        if (entidades == null || entidades.isEmpty()) {
+            pedidas.addAll(SyncCambiosService.ENTIDADES);
+        } else {
+            for (String e : entidades) {
+                String nombre = e.trim().toLowerCase();
+                if (!SyncCambiosService.ENTIDADES.contains(nombre)) {
+                    throw new RequestException("Entidad de sincronización desconocida: " + e);
+                }
+                pedidas.add(nombre);
+            }
+        }
+
+        if (desde == null || desde < 0) {
+            return ResponseEntity.ok(new SyncCambiosDTO(0, syncCambiosService.ultimaSecuencia(), false, true, Map.of()));
+        }
+
+        int max = limite == null ? LIMITE_DEFECTO : Math.max(1, Math.min(limite, LIMITE_MAXIMO));
+        // Uno de más para saber si quedan cambios sin mandar
+        List<Cambio> cambios = syncCambiosService.cambiosDesde(desde, pedidas, max + 1);
+        boolean hayMas = cambios.size() > max;
+        if (hayMas) cambios = cambios.subList(0, max);
+
+        Map<String, SyncCambiosDTO.Entidad> porEntidad = new LinkedHashMap<>();
+        long hasta = desde;
+        for (Cambio c : cambios) {
+            SyncCambiosDTO.Entidad e = porEntidad.computeIfAbsent(c.entidad(),
+                k -> new SyncCambiosDTO.Entidad(new ArrayList<>(), new ArrayList<>()));
+            (c.eliminado() ? e.eliminados() : e.cambiados()).add(c.id());
+            hasta = c.secuencia();
+        }
+        return ResponseEntity.ok(new SyncCambiosDTO(desde, hasta, hayMas, false, porEntidad));
+    }
+}
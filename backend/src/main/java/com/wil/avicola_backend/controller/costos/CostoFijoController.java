@@ -2,6 +2,7 @@ package com.wil.avicola_backend.controller.costos;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
@@ -17,6 +18,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.wil.avicola_backend.dto.costos.CostoFijoDTO;
 import com.wil.avicola_backend.model.costos.CostoFijo;
+import com.wil.avicola_backend.model.costos.CostoFijoAsignacion;
 import com.wil.avicola_backend.service.costos.CostoFijoService;
 
 import jakarta.validation.Valid;
@@ -44,6 +46,19 @@ public class CostoFijoController {
         return ResponseEntity.ok(service.listar(desde, hasta, loteId, loteCodigo));
     }
 
+    @GetMapping("/asignaciones")
+    public ResponseEntity<List<CostoFijoAsignacion>> asignaciones(
+        @RequestParam(name = "costoFijoId", required = false) String costoFijoId,
+        @RequestParam(name = "loteId", required = false) String loteId
+    ) {
+        return ResponseEntity.ok(service.asignaciones(costoFijoId, loteId));
+    }
+
+    @PostMapping("/prorrateo/recalcular")
+    public ResponseEntity<Map<String, Object>> recalcularProrrateo() {
+        return ResponseEntity.ok(Map.of("costos", service.recalcularProrrateo()));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<CostoFijo> obtener(@PathVariable String id) {
         return ResponseEntity.ok(service.obtener(id));
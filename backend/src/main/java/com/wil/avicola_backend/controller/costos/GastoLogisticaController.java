@@ -18,8 +18,12 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.wil.avicola_backend.dto.costos.GastoLogisticaDTO;
+import com.wil.avicola_backend.dto.costos.ResumenGastoDTO;
+import com.wil.avicola_backend.dto.costos.ResumenGastoLoteDTO;
 import com.wil.avicola_backend.model.costos.GastoLogistica;
 import com.wil.avicola_backend.service.costos.GastoLogisticaService;
+import com.wil.avicola_backend.service.costos.ResumenGastosService;
+import com.wil.avicola_backend.service.costos.ResumenGastosService.TipoGasto;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -30,6 +34,7 @@ import lombok.RequiredArgsConstructor;
 public class GastoLogisticaController {
 
     private final GastoLogisticaService service;
+    private final ResumenGastosService resumenGastos;
 
     @PostMapping
     public ResponseEntity<GastoLogistica> crear(@Valid @RequestBody GastoLogisticaDTO body) {
@@ -46,6 +51,24 @@ public class GastoLogisticaController {
         return ResponseEntity.ok(service.listar(desde, hasta, loteId, loteCodigo));
     }
 
+    @GetMapping("/resumen")
+    public ResponseEntity<ResumenGastoDTO> resumen(
+        @RequestParam(name = "desde", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+        @RequestParam(name = "hasta", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+        @RequestParam(name = "loteId", required = false) String loteId,
+        @RequestParam(name = "loteCodigo", required = false) String loteCodigo
+    ) {
+        return ResponseEntity.ok(resumenGastos.resumen(TipoGasto.LOGISTICA, desde, hasta, loteId, loteCodigo));
+    }
+
+    @GetMapping("/resumen/lotes")
+    public ResponseEntity<List<ResumenGastoLoteDTO>> resumenPorLote(
+        @RequestParam(name = "desde", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+        @RequestParam(name = "hasta", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta
+    ) {
+        return ResponseEntity.ok(resumenGastos.porLote(TipoGasto.LOGISTICA, desde, hasta));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<GastoLogistica> obtener(@PathVariable String id) {
         return ResponseEntity.ok(service.obtener(id));
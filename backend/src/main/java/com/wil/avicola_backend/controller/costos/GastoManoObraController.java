@@ -16,8 +16,12 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.wil.avicola_backend.dto.costos.GastoManoObraDTO;
+import com.wil.avicola_backend.dto.costos.ResumenGastoDTO;
+import com.wil.avicola_backend.dto.costos.ResumenGastoLoteDTO;
 import com.wil.avicola_backend.model.costos.GastoManoObra;
 import com.wil.avicola_backend.service.costos.GastoManoObraService;
+import com.wil.avicola_backend.service.costos.ResumenGastosService;
+import com.wil.avicola_backend.service.costos.ResumenGastosService.TipoGasto;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -28,6 +32,7 @@ import lombok.RequiredArgsConstructor;
 public class GastoManoObraController {
 
     private final GastoManoObraService service;
+    private final ResumenGastosService resumenGastos;
 
     @PostMapping
     public ResponseEntity<GastoManoObra> crear(@Valid @RequestBody GastoManoObraDTO body) {
@@ -44,6 +49,24 @@ public class GastoManoObraController {
         return ResponseEntity.ok(service.listar(desde, hasta, loteId, loteCodigo));
     }
 
+    @GetMapping("/resumen")
+    public ResponseEntity<ResumenGastoDTO> resumen(
+        @RequestParam(name = "desde", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+        @RequestParam(name = "hasta", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+        @RequestParam(name = "loteId", required = false) String loteId,
+        @RequestParam(name = "loteCodigo", required = false) String loteCodigo
+    ) {
+        return ResponseEntity.ok(resumenGastos.resumen(TipoGasto.MANO_OBRA, desde, hasta, loteId, loteCodigo));
+    }
+
+    @GetMapping("/resumen/lotes")
+    public ResponseEntity<List<ResumenGastoLoteDTO>> resumenPorLote(
+        @RequestParam(name = "desde", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+        @RequestParam(name = "hasta", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta
+    ) {
+        return ResponseEntity.ok(resumenGastos.porLote(TipoGasto.MANO_OBRA, desde, hasta));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<GastoManoObra> obtener(@PathVariable String id) {
         return ResponseEntity.ok(service.obtener(id));
@@ -16,8 +16,11 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.wil.avicola_backend.dto.costos.GastoSanidadDTO;
+import com.wil.avicola_backend.dto.costos.ResumenGastoLoteDTO;
 import com.wil.avicola_backend.model.costos.GastoSanidad;
 import com.wil.avicola_backend.service.costos.GastoSanidadService;
+import com.wil.avicola_backend.service.costos.ResumenGastosService;
+import com.wil.avicola_backend.service.costos.ResumenGastosService.TipoGasto;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -28,6 +31,7 @@ import lombok.RequiredArgsConstructor;
 public class GastoSanidadController {
 
     private final GastoSanidadService service;
+    private final ResumenGastosService resumenGastos;
 
     @PostMapping
     public ResponseEntity<GastoSanidad> crear(@Valid @RequestBody GastoSanidadDTO body) {
@@ -54,6 +58,14 @@ public class GastoSanidadController {
         return ResponseEntity.ok(service.resumen(desde, hasta, loteId, loteCodigo));
     }
 
+    @GetMapping("/resumen/lotes")
+    public ResponseEntity<List<ResumenGastoLoteDTO>> resumenPorLote(
+        @RequestParam(name = "desde", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+        @RequestParam(name = "hasta", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta
+    ) {
+        return ResponseEntity.ok(resumenGastos.porLote(TipoGasto.SANIDAD, desde, hasta));
+    }
+
     @GetMapping("/agenda")
     public ResponseEntity<List<GastoSanidad>> agenda(
         @RequestParam(name = "desde", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
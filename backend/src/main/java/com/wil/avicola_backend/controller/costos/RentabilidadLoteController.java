@@ -0,0 +1,36 @@
+package com.wil.avicola_backend.controller.costos;
+
+import java.util.List;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.wil.avicola_backend.service.costos.RentabilidadLoteService;
+import com.wil.avicola_backend.service.costos.RentabilidadLoteService.RentabilidadLote;
+
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequestMapping("/api/costos/rentabilidad")
+@RequiredArgsConstructor
+public class RentabilidadLoteController {
+
+    private final RentabilidadLoteService service;
+
+    @GetMapping
+    public ResponseEntity<List<RentabilidadLote>> listar(
+        @RequestParam(name = "animalId", required = false) Long animalId,
+        @RequestParam(name = "activos", required = false) Boolean activos
+    ) {
+        return ResponseEntity.ok(service.listar(animalId, activos));
+    }
+
+    @GetMapping("/{loteId}")
+    public ResponseEntity<RentabilidadLote> obtener(@PathVariable String loteId) {
+        return ResponseEntity.ok(service.obtener(loteId));
+    }
+}
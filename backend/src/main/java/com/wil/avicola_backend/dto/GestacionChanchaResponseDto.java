@@ -17,6 +17,8 @@ public class GestacionChanchaResponseDto {
     private Integer numeroParto;
     private String observaciones;
     private String fotoUrl;
+    /** Miniatura de la foto para listados (igual a fotoUrl en fotos antiguas sin miniaturas) */
+    private String fotoMiniaturaUrl;
     private String loteId;
     private String loteCodigo;
     private String loteNombre;
@@ -21,5 +21,7 @@ public class GestacionNoPrenadaResponseDto {
     private String motivo;
     private String observaciones;
     private String fotoUrl;
+    /** Miniatura de la foto para listados (igual a fotoUrl en fotos antiguas sin miniaturas) */
+    private String fotoMiniaturaUrl;
     private String loteNombre;
 }
@@ -25,5 +25,8 @@ public class GestacionPartoResponseDto {
     private String fotoUrl;
     /** Foto de la chancha tomada en la gestación */
     private String fotoChanchaUrl;
+    /** Miniaturas para listados (iguales a la foto en fotos antiguas sin miniaturas) */
+    private String fotoMiniaturaUrl;
+    private String fotoChanchaMiniaturaUrl;
     private String loteNombre;
 }
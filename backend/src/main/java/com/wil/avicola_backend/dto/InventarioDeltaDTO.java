@@ -0,0 +1,22 @@
+package com.wil.avicola_backend.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Cambio de stock publicado por WebSocket, ya agrupado por ventana: recurso PRODUCTO (inventario por
+ * producto) o TIPO_ALIMENTO (inventario por tipo), stock después del último movimiento, id de ese
+ * movimiento, cantidad neta (entradas positivas, salidas negativas) y lotes que lo movieron.
+ */
+public record InventarioDeltaDTO(
+    String recurso,
+    Long id,
+    BigDecimal stock,
+    Long movimientoId,
+    BigDecimal cantidadNeta,
+    int movimientos,
+    List<String> lotes,
+    Instant fecha
+) {
+}
@@ -0,0 +1,21 @@
+package com.wil.avicola_backend.dto;
+
+import java.util.Map;
+
+/**
+ * Operación encolada por la app sin conexión. {@code clave} la genera el dispositivo (UUID) y se
+ * reenvía igual en cada reintento; {@code datos} es el mismo cuerpo que acepta el endpoint de cada tipo:
+ * <ul>
+ *   <li>ALIMENTACION: /api/plan-ejecucion/registrar-alimentacion</li>
+ *   <li>MORTALIDAD: /api/mortalidad/registrar (con {@code causaId} opcional)</li>
+ *   <li>MORBILIDAD: /api/morbilidad/registrar</li>
+ *   <li>CONSUMO_MANUAL: /api/consumos/manual</li>
+ * </ul>
+ */
+public record OperacionOfflineDTO(
+    String clave,
+    Tipo tipo,
+    Map<String, Object> datos
+) {
+    public enum Tipo { ALIMENTACION, MORTALIDAD, MORBILIDAD, CONSUMO_MANUAL }
+}
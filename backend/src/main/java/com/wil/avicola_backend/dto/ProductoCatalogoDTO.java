@@ -0,0 +1,79 @@
+package com.wil.avicola_backend.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Date;
+
+import com.wil.avicola_backend.model.Especie;
+import com.wil.avicola_backend.repository.ProductoCatalogoVista;
+
+/**
+ * Producto tal como lo lista GET /api/product: mismos nombres de campo que la entidad Product y las
+ * relaciones como objetos {id, name}, que es lo que lee el frontend, más {@code stockValido}. Se arma
+ * desde {@link ProductoCatalogoVista}, sin entidades ni proxies de Hibernate de por medio.
+ */
+public record ProductoCatalogoDTO(
+    long id,
+    String name,
+    String name_stage,
+    int quantity,
+    double price_unit,
+    int number_facture,
+    Date date_compra,
+    double level_max,
+    double level_min,
+    String description,
+    Boolean active,
+    LocalDateTime create_date,
+    LocalDateTime update_date,
+    AnimalRef animal,
+    Ref provider,
+    Ref typeFood,
+    UnidadRef unitMeasurement,
+    Ref stage,
+    Ref category,
+    SubcategoriaRef subcategory,
+    Boolean incluirEnBotiquin,
+    String usoPrincipal,
+    String dosisRecomendada,
+    String viaAdministracion,
+    Integer tiempoRetiro,
+    Date fechaVencimiento,
+    String observacionesMedicas,
+    String presentacion,
+    String infoNutricional,
+    BigDecimal stockValido
+) {
+    public record Ref(Long id, String name) {}
+
+    public record AnimalRef(Long id, String name, Especie especie) {}
+
+    public record UnidadRef(Long id, String name, String name_short) {}
+
+    public record SubcategoriaRef(Long id, String name, String description) {}
+
+    public static ProductoCatalogoDTO desde(ProductoCatalogoVista v) {
+        return new ProductoCatalogoDTO(
+            v.getId(), v.getName(), v.getName_stage(), v.getQuantity(), v.getPrice_unit(), v.getNumber_facture(),
+            v.getDate_compra(), v.getLevel_max(), v.getLevel_min(), v.getDescription(), v.getActive(),
+            v.getCreate_date(), v.getUpdate_date(),
+            v.getAnimalId() != null ? new AnimalRef(v.getAnimalId(), v.getAnimalNombre(), v.getAnimalEspecie()) : null,
+            ref(v.getProviderId(), v.getProviderNombre()),
+            ref(v.getTypeFoodId(), v.getTypeFoodNombre()),
+            v.getUnitMeasurementId() != null
+                ? new UnidadRef(v.getUnitMeasurementId(), v.getUnitMeasurementNombre(), v.getUnitMeasurementAbreviatura())
+                : null,
+            ref(v.getStageId(), v.getStageNombre()),
+            ref(v.getCategoryId(), v.getCategoryNombre()),
+            v.getSubcategoryId() != null
+                ? new SubcategoriaRef(v.getSubcategoryId(), v.getSubcategoryNombre(), v.getSubcategoryDescripcion())
+                : null,
+            v.getIncluirEnBotiquin(), v.getUsoPrincipal(), v.getDosisRecomendada(), v.getViaAdministracion(),
+            v.getTiempoRetiro(), v.getFechaVencimiento(), v.getObservacionesMedicas(), v.getPresentacion(),
+            v.getInfoNutricional(), v.getStockValido());
+    }
+
+    private static Ref ref(Long id, String name) {
+        return id != null ? new Ref(id, name) : null;
+    }
+}
@@ -0,0 +1,15 @@
+package com.wil.avicola_backend.dto;
+
+/**
+ * Resultado de una operación offline. APLICADA y DUPLICADA significan que el dispositivo puede
+ * descartarla; RECHAZADA no se aplicó por un error de la propia operación (stock, datos inválidos);
+ * PENDIENTE no se pudo confirmar y debe reenviarse con la misma clave.
+ */
+public record ResultadoOperacionOfflineDTO(
+    String clave,
+    Estado estado,
+    String resultadoId,
+    String mensaje
+) {
+    public enum Estado { APLICADA, DUPLICADA, RECHAZADA, PENDIENTE }
+}
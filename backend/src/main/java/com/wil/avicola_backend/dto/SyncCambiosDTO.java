@@ -0,0 +1,20 @@
+package com.wil.avicola_backend.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Respuesta de /api/sync/cambios. {@code hasta} es la secuencia que el cliente guarda para la próxima
+ * llamada; con {@code hayMas} debe volver a pedir enseguida. {@code reiniciar} indica que no mandó
+ * secuencia: descarga las listas completas y sigue desde {@code hasta}.
+ */
+public record SyncCambiosDTO(
+    long desde,
+    long hasta,
+    boolean hayMas,
+    boolean reiniciar,
+    Map<String, Entidad> entidades
+) {
+    /** Ids cambiados (alta o edición) y dados de baja de una entidad. */
+    public record Entidad(List<String> cambiados, List<String> eliminados) {}
+}
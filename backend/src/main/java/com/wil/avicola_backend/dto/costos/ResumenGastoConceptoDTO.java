@@ -0,0 +1,5 @@
+package com.wil.avicola_backend.dto.costos;
+
+/** Totales de un concepto de gasto (producto, transporte, trabajador...) en el rango consultado. */
+public record ResumenGastoConceptoDTO(Long productId, String concepto, double cantidadTotal, double costoTotal, long registros) {
+}
@@ -0,0 +1,7 @@
+package com.wil.avicola_backend.dto.costos;
+
+import java.util.List;
+
+/** Resumen de un tipo de gasto: totales generales y desglose por concepto. */
+public record ResumenGastoDTO(long registros, double cantidadTotal, double costoTotal, List<ResumenGastoConceptoDTO> porConcepto) {
+}
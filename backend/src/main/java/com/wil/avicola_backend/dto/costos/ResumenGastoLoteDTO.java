@@ -0,0 +1,5 @@
+package com.wil.avicola_backend.dto.costos;
+
+/** Totales de un tipo de gasto por lote; loteId null agrupa los gastos generales. */
+public record ResumenGastoLoteDTO(String loteId, String loteCodigo, double cantidadTotal, double costoTotal, long registros) {
+}
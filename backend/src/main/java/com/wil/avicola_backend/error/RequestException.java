@@ -5,4 +5,8 @@ public class RequestException extends RuntimeException {
     public RequestException(String message) {
         super(message);
     }
+
+    public RequestException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
\ No newline at end of file
@@ -11,7 +11,13 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotBlank;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -24,6 +30,7 @@ import lombok.NoArgsConstructor;
 @Builder
 @Entity
 @EntityListeners(AuditingEntityListener.class)
+@Table(indexes = @Index(name = "idx_animal_especie", columnList = "especie"))
 public class Animal {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -36,8 +43,19 @@ public class Animal {
     @Column(name = "descripcion")
     private String description;
 
+    // Especie canónica derivada del nombre (se recalcula al guardar)
+    @Enumerated(EnumType.STRING)
+    @Column(name = "especie", length = 20)
+    private Especie especie;
+
     @CreatedDate
     LocalDateTime create_date;
     @LastModifiedDate
     LocalDateTime update_date;
+
+    @PrePersist
+    @PreUpdate
+    public void clasificarEspecie() {
+        this.especie = Especie.deAnimal(this.id, this.name);
+    }
 }
@@ -0,0 +1,33 @@
+package com.wil.avicola_backend.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Último número reservado para los códigos de lote de un prefijo (animal).
+ * CodigoLoteService lo avanza por bloques con SQL atómico; no se edita desde JPA.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "codigo_lote_secuencia")
+public class CodigoLoteSecuencia {
+
+    @Id
+    @Column(length = 10)
+    private String prefijo;
+
+    @Column(nullable = false)
+    private Long ultimo;
+
+    @Column(name = "actualizado_en")
+    private LocalDateTime actualizadoEn;
+}
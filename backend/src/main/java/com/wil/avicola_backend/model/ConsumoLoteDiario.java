@@ -0,0 +1,57 @@
+package com.wil.avicola_backend.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Acumulado incremental de consumo (plan_ejecucion EJECUTADO con asignación) por lote, producto y día.
+ * Lo mantiene ConsumoLoteResumenService en cada registro/corrección; product_id = 0 cuando no hay producto.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "consumo_lote_diario",
+       uniqueConstraints = @UniqueConstraint(name = "uk_consumo_lote_diario", columnNames = {"lote_id", "product_id", "fecha"}),
+       indexes = @Index(name = "idx_consumo_lote_diario_lote", columnList = "lote_id"))
+public class ConsumoLoteDiario {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "lote_id", nullable = false)
+    private String loteId;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(name = "producto_nombre")
+    private String productoNombre;
+
+    @Column(name = "fecha", nullable = false)
+    private LocalDate fecha;
+
+    @Column(name = "cantidad_total", nullable = false)
+    private Double cantidadTotal;
+
+    @Column(name = "registros", nullable = false)
+    private Integer registros;
+
+    @Column(name = "ultima_fecha_hora")
+    private LocalDateTime ultimaFechaHora;
+}
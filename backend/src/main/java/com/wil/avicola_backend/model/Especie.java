@@ -0,0 +1,65 @@
+package com.wil.avicola_backend.model;
+
+import java.text.Normalizer;
+
+/**
+ * Clasificación canónica de especie. Se resuelve una sola vez al guardar Animal (y se copia a Lote),
+ * para que reportes y filtros comparen una columna indexada en vez de nombres con LIKE o contains.
+ */
+public enum Especie {
+    POLLOS("pollos"),
+    CHANCHOS("chanchos"),
+    OTROS("otros");
+
+    private final String etiqueta;
+
+    Especie(String etiqueta) {
+        this.etiqueta = etiqueta;
+    }
+
+    /** Etiqueta usada históricamente por el frontend ("pollos", "chanchos"). */
+    public String getEtiqueta() {
+        return etiqueta;
+    }
+
+    /** Id del animal de pollos en la carga inicial (initializeDefaultAnimals). */
+    public static final long ID_ANIMAL_POLLOS = 1L;
+
+    /**
+     * Especie de un animal: el animal 1 siempre es pollos, aunque lo hayan renombrado (así lo trataba
+     * el historial de alimentación); el resto se clasifica por nombre.
+     */
+    public static Especie deAnimal(long animalId, String nombreAnimal) {
+        if (animalId == ID_ANIMAL_POLLOS) return POLLOS;
+        return clasificar(nombreAnimal);
+    }
+
+    /** Clasifica un nombre de animal por sinónimos (sin acentos, sin mayúsculas). */
+    public static Especie clasificar(String nombreAnimal) {
+        String n = normalizar(nombreAnimal);
+        if (n.isEmpty()) return OTROS;
+        if (n.contains("chancho") || n.contains("cerd") || n.contains("porc") || n.contains("puerco")) return CHANCHOS;
+        if (n.contains("pollo") || n.contains("gallin") || n.contains("ave") || n.contains("broiler")) return POLLOS;
+        return OTROS;
+    }
+
+    /**
+     * Interpreta el parámetro "especie" de los endpoints (pollos, chanchos, cerdos, aves...).
+     * Devuelve null si viene vacío (sin filtro).
+     */
+    public static Especie desdeFiltro(String filtro) {
+        if (filtro == null || filtro.isBlank()) return null;
+        for (Especie e : values()) {
+            if (e.name().equalsIgnoreCase(filtro.trim()) || e.etiqueta.equalsIgnoreCase(filtro.trim())) return e;
+        }
+        return clasificar(filtro);
+    }
+
+    private static String normalizar(String s) {
+        if (s == null) return "";
+        return Normalizer.normalize(s, Normalizer.Form.NFD)
+            .replaceAll("\\p{InCombiningDiacriticalMarks}+", "")
+            .toLowerCase()
+            .trim();
+    }
+}
@@ -8,6 +8,8 @@ import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
+import com.wil.avicola_backend.service.SyncCambiosListener;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EntityListeners;
@@ -17,6 +19,7 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
@@ -30,7 +33,7 @@ import lombok.NoArgsConstructor;
 @Builder
 @Entity
 @Table(name = "inventario_entrada_producto")
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({ AuditingEntityListener.class, SyncCambiosListener.class })
 public class InventarioEntradaProducto {
 
     @Id
@@ -86,6 +89,11 @@ public class InventarioEntradaProducto {
     @Column(length = 500)
     private String observaciones;
 
+    /** Versión optimista: la incrementan JPA y el batch FEFO de AsignadorFefoService (que exige la versión leída). */
+    @Version
+    @Column(name = "version", columnDefinition = "bigint default 0 not null")
+    private Long version;
+
     @CreatedDate
     @Column(name = "create_date")
     private LocalDateTime createDate;
@@ -8,13 +8,20 @@ import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
+import com.wil.avicola_backend.service.SyncCambiosListener;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EntityListeners;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
 import jakarta.persistence.Transient;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -28,7 +35,8 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @Builder
 @Entity
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({ AuditingEntityListener.class, SyncCambiosListener.class })
+@Table(indexes = @Index(name = "idx_lote_especie", columnList = "especie"))
 public class Lote {
     @Id
     private String id; // Mantenemos UUID como identificador técnico
@@ -65,6 +73,11 @@ public class Lote {
     @ManyToOne
     @JoinColumn(name = "race_id")
     private Race race;
+
+    // Copia de la especie del animal de la raza, para filtrar lotes sin joins ni LIKE
+    @Enumerated(EnumType.STRING)
+    @Column(name = "especie", length = 20)
+    private Especie especie;
     
     // Campos específicos para chanchos - distribución por sexo y propósito
     @Column(name = "male_count")
@@ -91,5 +104,14 @@ public class Lote {
         if (this.id == null || this.id.isEmpty()) {
             this.id = UUID.randomUUID().toString();
         }
+        asignarEspecie();
+    }
+
+    @PreUpdate
+    public void asignarEspecie() {
+        if (this.race != null && this.race.getAnimal() != null) {
+            Animal animal = this.race.getAnimal();
+            this.especie = animal.getEspecie() != null ? animal.getEspecie() : Especie.deAnimal(animal.getId(), animal.getName());
+        }
     }
 }
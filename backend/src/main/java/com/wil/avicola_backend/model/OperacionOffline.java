@@ -0,0 +1,58 @@
+package com.wil.avicola_backend.model;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Clave de idempotencia de una operación que la app móvil encoló sin conexión. Se inserta en la
+ * misma transacción que aplica la operación, así que una clave presente significa "ya aplicada".
+ * Cada usuario tiene sus propias claves; OperacionesOfflineService la escribe con SQL.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "operacion_offline", indexes = @Index(name = "idx_operacion_offline_procesado", columnList = "procesado_en"))
+@IdClass(OperacionOffline.Clave.class)
+public class OperacionOffline {
+
+    @Id
+    @Column(length = 100)
+    private String usuario;
+
+    @Id
+    @Column(length = 100)
+    private String clave;
+
+    @Column(nullable = false, length = 30)
+    private String tipo;
+
+    @Column(name = "lote_id", length = 64)
+    private String loteId;
+
+    /** Id del registro creado (ejecución, mortalidad, morbilidad o consumo manual). */
+    @Column(name = "resultado_id", length = 64)
+    private String resultadoId;
+
+    @Column(name = "procesado_en", nullable = false)
+    private LocalDateTime procesadoEn;
+
+    /** Clave primaria: la clave de idempotencia de cada usuario. */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Clave implements Serializable {
+        private String usuario;
+        private String clave;
+    }
+}
@@ -8,6 +8,8 @@ import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
+import com.wil.avicola_backend.service.SyncCambiosListener;
+
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EntityListeners;
@@ -33,7 +35,7 @@ import lombok.NoArgsConstructor;
 @Builder
 @Entity
 @Table(name = "plan_asignacion")
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({ AuditingEntityListener.class, SyncCambiosListener.class })
 public class PlanAsignacion {
     
     @Id
@@ -7,6 +7,8 @@ import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import jakarta.persistence.Entity;
 import jakarta.persistence.EntityListeners;
 import jakarta.persistence.EnumType;
@@ -15,6 +17,7 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
@@ -30,7 +33,11 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @Builder
 @Entity
-@Table(name = "plan_ejecucion")
+@Table(name = "plan_ejecucion",
+       indexes = {
+           @Index(name = "idx_plan_ejecucion_asignacion_id", columnList = "asignacion_id, id"),
+           @Index(name = "idx_plan_ejecucion_lote_fecha", columnList = "lote_id, execution_date")
+       })
 @EntityListeners(AuditingEntityListener.class)
 public class PlanEjecucion {
     
@@ -54,6 +61,7 @@ public class PlanEjecucion {
     private Usuario executedByUser;
     
     @NotNull(message = "La fecha de ejecución es obligatoria")
+    @Column(name = "execution_date")
     private LocalDate executionDate;
     
     @NotNull(message = "El número de día es obligatorio")
@@ -64,6 +72,31 @@ public class PlanEjecucion {
     
     private String observations;
     
+    // Datos estructurados del registro (antes solo existían dentro de observations)
+    @Column(name = "lote_id", length = 64)
+    private String loteId;
+    
+    @Column(name = "product_id")
+    private Long productId;
+    
+    @Column(name = "animales_vivos")
+    private Integer animalesVivos;
+    
+    @Column(name = "animales_muertos")
+    private Integer animalesMuertos;
+    
+    @Column(name = "cantidad_por_animal")
+    private Double cantidadPorAnimal;
+    
+    @Column(name = "movimiento_inventario_id")
+    private Long movimientoInventarioId;
+    
+    // null en filas antiguas hasta que el backfill extrae los datos de observations
+    @JsonIgnore
+    @Column(name = "metadatos_estructurados")
+    @Builder.Default
+    private Boolean metadatosEstructurados = true;
+    
     @Enumerated(EnumType.STRING)
     @Builder.Default
     private Status status = Status.PENDIENTE;
@@ -7,6 +7,9 @@ import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
+import com.wil.avicola_backend.service.PlanCompiladoListener;
+import com.wil.avicola_backend.service.SyncCambiosListener;
+
 import jakarta.persistence.Entity;
 import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
@@ -26,7 +29,7 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @Builder
 @Entity
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({ AuditingEntityListener.class, SyncCambiosListener.class, PlanCompiladoListener.class })
 public class Product {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,51 @@
+package com.wil.avicola_backend.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Último cambio de cada registro sincronizable con la app móvil (una fila por entidad e id).
+ * {@code secuencia} sale de sync_cambio_seq y crece con cada cambio; SyncCambiosService escribe la
+ * fila con secuencia 0 al confirmar la transacción y la numera después. No se edita desde JPA.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "sync_cambio",
+    uniqueConstraints = @UniqueConstraint(name = "uk_sync_cambio_entidad", columnNames = { "entidad", "entidad_id" }),
+    indexes = @Index(name = "idx_sync_cambio_secuencia", columnList = "secuencia"))
+public class SyncCambio {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sync_cambio_seq")
+    @SequenceGenerator(name = "sync_cambio_seq", sequenceName = "sync_cambio_seq", allocationSize = 1)
+    private Long id;
+
+    @Column(nullable = false, length = 40)
+    private String entidad;
+
+    @Column(name = "entidad_id", nullable = false, length = 64)
+    private String entidadId;
+
+    @Column(nullable = false)
+    private Long secuencia;
+
+    @Column(nullable = false)
+    private Boolean eliminado;
+
+    @Column(name = "actualizado_en")
+    private LocalDateTime actualizadoEn;
+}
@@ -5,6 +5,8 @@ import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 
+import com.wil.avicola_backend.security.services.UsuarioCacheListener;
+
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
@@ -16,6 +18,7 @@ import java.util.Set;
  * Todas las operaciones de autenticación y gestión de usuarios utilizan esta entidad.
  */
 @Entity
+@EntityListeners(UsuarioCacheListener.class)
 @Table(name = "usuarios",
         uniqueConstraints = {
                 @UniqueConstraint(columnNames = "username"),
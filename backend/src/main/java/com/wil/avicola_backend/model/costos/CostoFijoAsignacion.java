@@ -0,0 +1,63 @@
+package com.wil.avicola_backend.model.costos;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Parte de un CostoFijo asignada a un lote en su periodo de prorrateo.
+ * La materializa ProrrateoCostoFijoService; base = días-animal (o kg·día para biomasa) del lote en el periodo.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "costo_fijo_asignacion",
+       uniqueConstraints = @UniqueConstraint(name = "uk_costo_fijo_asignacion", columnNames = {"costo_fijo_id", "lote_id"}),
+       indexes = @Index(name = "idx_costo_fijo_asignacion_lote", columnList = "lote_id"))
+public class CostoFijoAsignacion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "costo_fijo_id", nullable = false)
+    private String costoFijoId;
+
+    @Column(name = "lote_id", nullable = false)
+    private String loteId;
+
+    @Column(name = "periodo_desde", nullable = false)
+    private LocalDate periodoDesde;
+
+    @Column(name = "periodo_hasta", nullable = false)
+    private LocalDate periodoHasta;
+
+    @Column(name = "metodo", nullable = false, length = 20)
+    private String metodo;
+
+    @Column(name = "base", nullable = false)
+    private Double base;
+
+    @Column(name = "proporcion", nullable = false)
+    private Double proporcion;
+
+    @Column(name = "monto", nullable = false)
+    private Double monto;
+
+    @Column(name = "calculado_en")
+    private LocalDateTime calculadoEn;
+}
@@ -9,15 +9,18 @@ import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import com.wil.avicola_backend.model.Lote;
+import com.wil.avicola_backend.service.SyncCambiosListener;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EntityListeners;
+import jakarta.persistence.Index;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -31,7 +34,11 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @Builder
 @Entity
-@EntityListeners(AuditingEntityListener.class)
+@Table(name = "gasto_operacion", indexes = {
+        @Index(name = "idx_gasto_operacion_lote_fecha", columnList = "lote_id, fecha"),
+        @Index(name = "idx_gasto_operacion_fecha", columnList = "fecha")
+})
+@EntityListeners({ AuditingEntityListener.class, SyncCambiosListener.class })
 public class GastoOperacion {
     @Id
     private String id;
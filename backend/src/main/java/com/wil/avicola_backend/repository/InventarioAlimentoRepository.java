@@ -1,5 +1,6 @@
 package com.wil.avicola_backend.repository;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
 
@@ -7,6 +8,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.wil.avicola_backend.model.InventarioAlimento;
 import com.wil.avicola_backend.model.TypeFood;
@@ -44,4 +46,24 @@ public interface InventarioAlimentoRepository extends JpaRepository<InventarioAl
      * Verificar si existe inventario para un tipo de alimento
      */
     boolean existsByTipoAlimento(TypeFood tipoAlimento);
+
+    /**
+     * Descuenta stock en un solo UPDATE condicionado: sin fila si no alcanza (o no existe).
+     */
+    @Transactional
+    @Query(value = "UPDATE inventario_alimentos SET cantidad_stock = cantidad_stock - :cantidad, fecha_actualizacion = now() " +
+                   "WHERE id = :id AND cantidad_stock >= :cantidad " +
+                   "RETURNING cantidad_stock + :cantidad AS \"stockAnterior\", cantidad_stock AS \"stockNuevo\"",
+           nativeQuery = true)
+    Optional<StockActualizado> descontarStock(@Param("id") Long id, @Param("cantidad") BigDecimal cantidad);
+
+    /**
+     * Suma stock en un solo UPDATE.
+     */
+    @Transactional
+    @Query(value = "UPDATE inventario_alimentos SET cantidad_stock = COALESCE(cantidad_stock, 0) + :cantidad, " +
+                   "fecha_actualizacion = now() WHERE id = :id " +
+                   "RETURNING cantidad_stock - :cantidad AS \"stockAnterior\", cantidad_stock AS \"stockNuevo\"",
+           nativeQuery = true)
+    Optional<StockActualizado> sumarStock(@Param("id") Long id, @Param("cantidad") BigDecimal cantidad);
 }
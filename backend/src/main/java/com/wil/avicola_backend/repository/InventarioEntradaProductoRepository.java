@@ -41,4 +41,12 @@ public interface InventarioEntradaProductoRepository extends JpaRepository<Inven
            "AND (e.fechaVencimiento IS NULL OR e.fechaVencimiento >= :hoy) " +
            "GROUP BY e.product.id")
     List<Object[]> sumValidStockGroupByProduct(@Param("hoy") LocalDate hoy);
+
+    // Lo mismo para unos pocos productos (sincronización incremental de la app móvil)
+    @Query("SELECT e.product.id, COALESCE(SUM(e.stockBaseRestante), 0) " +
+           "FROM InventarioEntradaProducto e " +
+           "WHERE e.product.id IN :ids AND (e.activo = true OR e.activo IS NULL) " +
+           "AND (e.fechaVencimiento IS NULL OR e.fechaVencimiento >= :hoy) " +
+           "GROUP BY e.product.id")
+    List<Object[]> sumValidStockGroupByProductIn(@Param("hoy") LocalDate hoy, @Param("ids") java.util.Collection<Long> ids);
 }
@@ -1,11 +1,14 @@
 package com.wil.avicola_backend.repository;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.wil.avicola_backend.model.InventarioProducto;
 
@@ -21,4 +24,32 @@ public interface InventarioProductoRepository extends JpaRepository<InventarioPr
 
     @Query("SELECT i FROM InventarioProducto i WHERE i.cantidadStock > 0")
     List<InventarioProducto> findInventariosDisponibles();
+
+    /**
+     * Descuenta stock en un solo UPDATE condicionado: sin fila si no alcanza (o no existe).
+     * El bloqueo de la fila dura hasta el commit, así que dos consumos concurrentes no se pisan.
+     */
+    @Transactional
+    @Query(value = "UPDATE inventario_producto SET cantidad_stock = cantidad_stock - :cantidad, update_date = now() " +
+                   "WHERE id = :id AND cantidad_stock >= :cantidad " +
+                   "RETURNING cantidad_stock + :cantidad AS \"stockAnterior\", cantidad_stock AS \"stockNuevo\"",
+           nativeQuery = true)
+    Optional<StockActualizado> descontarStock(@Param("id") Long id, @Param("cantidad") BigDecimal cantidad);
+
+    /**
+     * Suma stock en un solo UPDATE y, si viene costo, recalcula el costo promedio ponderado con el
+     * stock que había en la fila (no con el leído antes).
+     */
+    @Transactional
+    @Query(value = "UPDATE inventario_producto SET " +
+                   "costo_unitario_promedio = CASE WHEN :costo > 0 AND COALESCE(cantidad_stock, 0) + :cantidad > 0 " +
+                   "  THEN (COALESCE(costo_unitario_promedio, 0) * COALESCE(cantidad_stock, 0) + :costo * :cantidad) " +
+                   "       / (COALESCE(cantidad_stock, 0) + :cantidad) " +
+                   "  ELSE costo_unitario_promedio END, " +
+                   "cantidad_stock = COALESCE(cantidad_stock, 0) + :cantidad, update_date = now() " +
+                   "WHERE id = :id " +
+                   "RETURNING cantidad_stock - :cantidad AS \"stockAnterior\", cantidad_stock AS \"stockNuevo\"",
+           nativeQuery = true)
+    Optional<StockActualizado> sumarStock(@Param("id") Long id, @Param("cantidad") BigDecimal cantidad,
+                                          @Param("costo") BigDecimal costo);
 }
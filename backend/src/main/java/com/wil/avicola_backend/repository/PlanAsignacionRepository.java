@@ -73,4 +73,12 @@ public interface PlanAsignacionRepository extends CrudRepository<PlanAsignacion,
            "LEFT JOIN FETCH pa.assignedByUser " +
            "WHERE pa.id = :asignacionId")
     java.util.Optional<PlanAsignacion> findByIdWithAllDetails(@Param("asignacionId") Long asignacionId);
-}
\ No newline at end of file
+    
+    // Asignaciones activas del usuario con lote y plan ya cargados (programación diaria)
+    @Query("SELECT pa FROM PlanAsignacion pa " +
+           "LEFT JOIN FETCH pa.lote " +
+           "LEFT JOIN FETCH pa.planAlimentacion " +
+           "WHERE pa.assignedUser.id = :userId AND pa.status = 'ACTIVO' " +
+           "ORDER BY pa.createDate DESC")
+    List<PlanAsignacion> findActivasConLoteYPlanByUser(@Param("userId") Long userId);
+}
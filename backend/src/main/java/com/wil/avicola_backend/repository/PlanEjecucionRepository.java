@@ -129,4 +129,15 @@ public interface PlanEjecucionRepository extends JpaRepository<PlanEjecucion, Lo
            "LEFT JOIN FETCH pe.executedByUser u " +
            "ORDER BY pe.createDate DESC, pe.executionDate DESC")
     List<PlanEjecucion> findAllWithDetails();
-}
\ No newline at end of file
+    
+    /**
+     * Triples (asignación, detalle, día) ya registrados para un conjunto de asignaciones
+     */
+    @Query("SELECT pe.planAsignacion.id, pe.planDetalle.id, pe.dayNumber FROM PlanEjecucion pe " +
+           "WHERE pe.planAsignacion.id IN :asignacionIds " +
+           "AND pe.planDetalle IS NOT NULL " +
+           "AND pe.dayNumber BETWEEN :diaMin AND :diaMax")
+    List<Object[]> findEjecucionesRegistradas(@Param("asignacionIds") java.util.Collection<Long> asignacionIds,
+                                              @Param("diaMin") Integer diaMin,
+                                              @Param("diaMax") Integer diaMax);
+}
@@ -2,15 +2,53 @@ package com.wil.avicola_backend.repository;
 
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.wil.avicola_backend.model.Product;
+
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ProductRepository extends CrudRepository<Product, Long> {
 
+    // Catálogo en una sola consulta: relaciones por LEFT JOIN y stock válido FEFO (mismas condiciones
+    // que InventarioEntradaProductoRepository.sumValidStockGroupByProduct) como subconsulta correlacionada
+    // Productos con active NULL (anteriores a la columna) siguen siendo activos
+    String CATALOGO =
+        "SELECT p.id AS id, p.name AS name, p.name_stage AS name_stage, p.quantity AS quantity, " +
+        "p.price_unit AS price_unit, p.number_facture AS number_facture, p.date_compra AS date_compra, " +
+        "p.level_max AS level_max, p.level_min AS level_min, p.description AS description, p.active AS active, " +
+        "p.create_date AS create_date, p.update_date AS update_date, " +
+        "p.incluirEnBotiquin AS incluirEnBotiquin, p.usoPrincipal AS usoPrincipal, " +
+        "p.dosisRecomendada AS dosisRecomendada, p.viaAdministracion AS viaAdministracion, " +
+        "p.tiempoRetiro AS tiempoRetiro, p.fechaVencimiento AS fechaVencimiento, " +
+        "p.observacionesMedicas AS observacionesMedicas, p.presentacion AS presentacion, " +
+        "p.infoNutricional AS infoNutricional, " +
+        "a.id AS animalId, a.name AS animalNombre, a.especie AS animalEspecie, " +
+        "pr.id AS providerId, pr.name AS providerNombre, " +
+        "tf.id AS typeFoodId, tf.name AS typeFoodNombre, " +
+        "um.id AS unitMeasurementId, um.name AS unitMeasurementNombre, um.name_short AS unitMeasurementAbreviatura, " +
+        "st.id AS stageId, st.name AS stageNombre, " +
+        "c.id AS categoryId, c.name AS categoryNombre, " +
+        "sc.id AS subcategoryId, sc.name AS subcategoryNombre, sc.description AS subcategoryDescripcion, " +
+        "(SELECT COALESCE(SUM(e.stockBaseRestante), 0) FROM InventarioEntradaProducto e " +
+        " WHERE e.product.id = p.id AND (e.activo = true OR e.activo IS NULL) " +
+        " AND (e.fechaVencimiento IS NULL OR e.fechaVencimiento >= :hoy)) AS stockValido " +
+        "FROM Product p " +
+        "LEFT JOIN p.animal a LEFT JOIN p.provider pr LEFT JOIN p.typeFood tf LEFT JOIN p.unitMeasurement um " +
+        "LEFT JOIN p.stage st LEFT JOIN p.category c LEFT JOIN p.subcategory sc " +
+        "WHERE COALESCE(p.active, true) = true ";
+
+    @Query(CATALOGO + "ORDER BY p.id")
+    List<ProductoCatalogoVista> findCatalogo(@Param("hoy") LocalDate hoy);
+
+    @Query(CATALOGO + "AND p.id IN :ids ORDER BY p.id")
+    List<ProductoCatalogoVista> findCatalogoByIds(@Param("hoy") LocalDate hoy, @Param("ids") Collection<Long> ids);
+
     boolean existsByName(String name);
 
     @Query("SELECT case when count(prod)> 0 then true else false end FROM Product prod WHERE prod.id != ?1 AND prod.name = ?2")
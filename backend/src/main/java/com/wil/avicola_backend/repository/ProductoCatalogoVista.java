@@ -0,0 +1,95 @@
+package com.wil.avicola_backend.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Date;
+
+import com.wil.avicola_backend.model.Especie;
+
+/**
+ * Fila plana del catálogo de productos: columnas del producto, id y nombre de cada relación y el stock
+ * válido FEFO (entradas activas no vencidas), todo en una sola consulta. Las relaciones que el producto
+ * no tiene llegan en null.
+ */
+public interface ProductoCatalogoVista {
+
+    long getId();
+
+    String getName();
+
+    String getName_stage();
+
+    int getQuantity();
+
+    double getPrice_unit();
+
+    int getNumber_facture();
+
+    Date getDate_compra();
+
+    double getLevel_max();
+
+    double getLevel_min();
+
+    String getDescription();
+
+    Boolean getActive();
+
+    LocalDateTime getCreate_date();
+
+    LocalDateTime getUpdate_date();
+
+    Boolean getIncluirEnBotiquin();
+
+    String getUsoPrincipal();
+
+    String getDosisRecomendada();
+
+    String getViaAdministracion();
+
+    Integer getTiempoRetiro();
+
+    Date getFechaVencimiento();
+
+    String getObservacionesMedicas();
+
+    String getPresentacion();
+
+    String getInfoNutricional();
+
+    Long getAnimalId();
+
+    String getAnimalNombre();
+
+    Especie getAnimalEspecie();
+
+    Long getProviderId();
+
+    String getProviderNombre();
+
+    Long getTypeFoodId();
+
+    String getTypeFoodNombre();
+
+    Long getUnitMeasurementId();
+
+    String getUnitMeasurementNombre();
+
+    String getUnitMeasurementAbreviatura();
+
+    Long getStageId();
+
+    String getStageNombre();
+
+    Long getCategoryId();
+
+    String getCategoryNombre();
+
+    Long getSubcategoryId();
+
+    String getSubcategoryNombre();
+
+    String getSubcategoryDescripcion();
+
+    BigDecimal getStockValido();
+}
@@ -0,0 +1,13 @@
+package com.wil.avicola_backend.repository;
+
+import java.math.BigDecimal;
+
+/**
+ * Stock antes y después de un UPDATE atómico sobre cantidad_stock (columnas del RETURNING).
+ */
+public interface StockActualizado {
+
+    BigDecimal getStockAnterior();
+
+    BigDecimal getStockNuevo();
+}
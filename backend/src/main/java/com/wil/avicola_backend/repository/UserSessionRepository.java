@@ -30,7 +30,7 @@ public interface UserSessionRepository extends JpaRepository<UserSession, Long>
 
     @Modifying
     @Query("UPDATE UserSession s SET s.active = false, s.logoutTime = CURRENT_TIMESTAMP WHERE s.user.id = :userId AND s.active = true")
-    void deactivateAllUserSessions(@Param("userId") Long userId);
+    int deactivateAllUserSessions(@Param("userId") Long userId);
     
     @Query("SELECT s FROM UserSession s WHERE s.lastActivity < :cutoffTime AND s.active = true")
     List<UserSession> findInactiveSessions(@Param("cutoffTime") LocalDateTime cutoffTime);
@@ -3,9 +3,12 @@ package com.wil.avicola_backend.repository;
 import com.wil.avicola_backend.model.Usuario;
 import com.wil.avicola_backend.model.ERole;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 @Repository
@@ -32,4 +35,8 @@ public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
     long countByRoles_Name(ERole role);
 
     Optional<Usuario> findFirstByActiveTrueOrderByIdAsc();
+
+    @Modifying
+    @Query("UPDATE Usuario u SET u.lastLoginDate = :fecha WHERE u.id = :id")
+    int updateLastLoginDate(@Param("id") Long id, @Param("fecha") LocalDateTime fecha);
 }
\ No newline at end of file
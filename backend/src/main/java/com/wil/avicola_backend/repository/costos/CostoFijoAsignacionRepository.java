@@ -0,0 +1,14 @@
+package com.wil.avicola_backend.repository.costos;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.wil.avicola_backend.model.costos.CostoFijoAsignacion;
+
+@Repository
+public interface CostoFijoAsignacionRepository extends JpaRepository<CostoFijoAsignacion, Long> {
+    List<CostoFijoAsignacion> findByCostoFijoIdOrderByMontoDesc(String costoFijoId);
+    List<CostoFijoAsignacion> findByLoteIdOrderByPeriodoDesdeDesc(String loteId);
+}
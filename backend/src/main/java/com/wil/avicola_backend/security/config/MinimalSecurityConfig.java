@@ -25,6 +25,7 @@ import com.wil.avicola_backend.security.jwt.AuthEntryPointJwt;
 import com.wil.avicola_backend.security.jwt.JwtAuthenticationFilter;
 import com.wil.avicola_backend.security.services.UserDetailsServiceImpl;
 import com.wil.avicola_backend.security.jwt.JwtUtils;
+import com.wil.avicola_backend.service.SesionActividadService;
 
 import java.util.Arrays;
 
@@ -44,9 +45,12 @@ public class MinimalSecurityConfig {
     @Autowired
     private JwtUtils jwtUtils;
 
+    @Autowired
+    private SesionActividadService sesionActividad;
+
     @Bean
     public JwtAuthenticationFilter authenticationJwtTokenFilter() {
-        return new JwtAuthenticationFilter(jwtUtils, userDetailsService);
+        return new JwtAuthenticationFilter(jwtUtils, userDetailsService, sesionActividad);
     }
 
     @Bean
@@ -164,6 +168,8 @@ public class MinimalSecurityConfig {
         ));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS", "HEAD"));
         configuration.setAllowedHeaders(Arrays.asList("Content-Type", "Authorization", "X-Requested-With", "Accept", "Origin"));
+        // Paginación por cursor de /api/plan-ejecucion/debug/historial
+        configuration.setExposedHeaders(Arrays.asList("X-Siguiente-Cursor"));
         configuration.setAllowCredentials(true); // 🔧 Necesario para SockJS con withCredentials
         configuration.setMaxAge(3600L);
         
@@ -1,6 +1,9 @@
 package com.wil.avicola_backend.security.jwt;
 
+import com.wil.avicola_backend.security.services.UserDetailsImpl;
 import com.wil.avicola_backend.security.services.UserDetailsServiceImpl;
+import com.wil.avicola_backend.service.SesionActividadService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -11,7 +14,6 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
-import org.springframework.util.AntPathMatcher;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
@@ -22,9 +24,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtils jwtUtils;
     private final UserDetailsServiceImpl userDetailsService;
+    private final SesionActividadService sesionActividad;
     
     private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
-    private final AntPathMatcher pathMatcher = new AntPathMatcher();
 
     // Lista consolidada de rutas públicas
     private static final List<String> PUBLIC_PATHS = Arrays.asList(
@@ -45,9 +47,14 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             "/ws/**"  // Handshake SockJS/STOMP
     );
 
-    public JwtAuthenticationFilter(JwtUtils jwtUtils, UserDetailsServiceImpl userDetailsService) {
+    // Compilado una sola vez: la verificación por petición no recorre patrones
+    private static final RutasPublicas RUTAS_PUBLICAS = new RutasPublicas(PUBLIC_PATHS);
+
+    public JwtAuthenticationFilter(JwtUtils jwtUtils, UserDetailsServiceImpl userDetailsService,
+            SesionActividadService sesionActividad) {
         this.jwtUtils = jwtUtils;
         this.userDetailsService = userDetailsService;
+        this.sesionActividad = sesionActividad;
     }
 
     @Override
@@ -55,20 +62,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
 
         final String requestURI = request.getRequestURI();
-        final String method = request.getMethod();
-
-        logger.debug("🔍 Filtro JWT procesando: {} {}", method, requestURI);
 
-        // VERIFICAR SI ES UNA RUTA COMPLETAMENTE PÚBLICA (incluye plan-alimentacion)
-        boolean isPublicPath = PUBLIC_PATHS.stream()
-                .anyMatch(pattern -> pathMatcher.match(pattern, requestURI));
-        
-        // También verificar específicamente debug endpoints
-        if (requestURI.startsWith("/api/plan-alimentacion") || 
-            requestURI.startsWith("/api/plan-ejecucion/debug") ||
-            requestURI.equals("/api/plan-ejecucion/registrar-alimentacion") ||
-            isPublicPath) {
-            logger.info("🟢 SALTANDO COMPLETAMENTE filtro JWT para ruta pública: {} {}", method, requestURI);
+        // VERIFICAR SI ES UNA RUTA COMPLETAMENTE PÚBLICA (incluye plan-alimentacion y debug)
+        if (RUTAS_PUBLICAS.coincide(requestURI)) {
+            if (logger.isTraceEnabled()) {
+                logger.trace("Saltando filtro JWT para ruta pública: {} {}", request.getMethod(), requestURI);
+            }
             // PARA RUTAS PÚBLICAS: NO HACER NADA, CONTINUAR DIRECTAMENTE
             filterChain.doFilter(request, response);
             return;
@@ -79,34 +78,37 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = jwtUtils.parseJwt(request);
             
-            logger.debug("=== DEBUG JWT FILTER (RUTA PROTEGIDA) ===");
-            logger.debug("URI: {}", requestURI);
-            logger.debug("Token presente: {}", jwt != null);
+            // Nunca se registra el token (ni parte de él)
+            logger.trace("Token presente: {}", jwt != null);
             
             if (jwt != null) {
-                logger.debug("Token (primeros 20 chars): {}", jwt.substring(0, Math.min(20, jwt.length())));
-                boolean isValid = jwtUtils.validateJwtToken(jwt);
-                logger.debug("Token válido: {}", isValid);
+                // Un solo parseo (o ninguno si el token ya fue verificado) para validar y leer el usuario
+                Claims claims = jwtUtils.getValidClaims(jwt);
+                logger.trace("Token válido: {}", claims != null);
                 
-                if (isValid) {
-                    String username = jwtUtils.getUserNameFromJwtToken(jwt);
-                    logger.debug("Username extraído del token: {}", username);
+                if (claims != null) {
+                    String username = claims.getSubject();
+                    logger.trace("Username extraído del token: {}", username);
 
-                    UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                    logger.debug("UserDetails cargado: {}", userDetails.getUsername());
+                    UserDetails userDetails = userDetailsService.loadUserForToken(username);
+                    logger.trace("UserDetails cargado: {}", userDetails.getUsername());
 
                     UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                             userDetails, null, userDetails.getAuthorities());
                     
                     authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                     SecurityContextHolder.getContext().setAuthentication(authentication);
+                    if (userDetails instanceof UserDetailsImpl usuario) {
+                        // Solo se anota en memoria; la escritura a user_session va por lotes
+                        sesionActividad.registrar(usuario.getId());
+                    }
                     
-                    logger.info("✅ Usuario '{}' autenticado correctamente vía JWT para la ruta: {}", username, requestURI);
+                    logger.trace("✅ Usuario '{}' autenticado correctamente vía JWT para la ruta: {}", username, requestURI);
                 } else {
                     logger.warn("❌ Token JWT inválido para la ruta protegida: {}", requestURI);
                 }
             } else {
-                logger.warn("❌ Token JWT no encontrado para la ruta protegida: {}", requestURI);
+                logger.trace("Token JWT no encontrado para la ruta protegida: {}", requestURI);
             }
         } catch (Exception e) {
             logger.error("❌ Error al procesar el token JWT para ruta protegida '{}': {}", requestURI, e.getMessage());
@@ -1,9 +1,18 @@
 package com.wil.avicola_backend.security.jwt;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
+import javax.crypto.SecretKey;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -16,24 +25,52 @@ import com.wil.avicola_backend.security.services.UserDetailsImpl;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
 
-import java.security.Key;
-import java.nio.charset.StandardCharsets;
-
 /**
  * Utility class for handling JWT tokens.
+ *
+ * La clave HMAC y el parser se construyen una sola vez. Los tokens ya verificados se guardan por su
+ * hash SHA-256 con sus claims durante unos minutos (nunca más allá de su expiración), así que las
+ * peticiones repetidas de un mismo cliente no vuelven a decodificar ni a verificar la firma.
  */
 @Component
 public class JwtUtils {
     private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
 
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
     @Value("${avicola.app.jwtSecret}")
     private String jwtSecret;    @Value("${avicola.app.jwtExpirationMs}")
     private long jwtExpirationMs;@Value("${avicola.app.jwtRefreshExpirationMs}")
     private long refreshTokenDurationMs;
 
-    private Key key() {
+    @Value("${avicola.app.jwtCacheTtlMs:300000}")
+    private long cacheTtlMs;
+    @Value("${avicola.app.jwtCacheMaxEntries:10000}")
+    private int cacheMaxEntries;
+
+    private SecretKey signingKey;
+    private JwtParser parser;
+
+    private final Map<ByteBuffer, TokenVerificado> verificados = new ConcurrentHashMap<>();
+
+    private record TokenVerificado(Claims claims, long validoHastaMs) {}
+
+    @PostConstruct
+    void init() {
+        this.signingKey = key();
+        this.parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+    }
+
+    private SecretKey key() {
         try {
             return Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
         } catch (IllegalArgumentException e) {
@@ -55,7 +92,7 @@ public class JwtUtils {
                 .claim("roles", roles)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-                .signWith(key(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
@@ -65,7 +102,7 @@ public class JwtUtils {
                 .setSubject(userPrincipal.getUsername())
                 .setIssuedAt(new Date())
                 .setExpiration(new Date((new Date()).getTime() + refreshTokenDurationMs))
-                .signWith(key(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
@@ -75,24 +112,31 @@ public class JwtUtils {
                 .setSubject(username)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-                .signWith(key(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
+    /** Claims de un token válido; lanza la excepción de JJWT si no lo es. */
     public Claims getClaimsFromToken(String token) {
-        return Jwts.parserBuilder().setSigningKey(key()).build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
-
-    public String getUserNameFromJwtToken(String token) {
-        return getClaimsFromToken(token).getSubject();
+        long ahora = System.currentTimeMillis();
+        ByteBuffer hash = hash(token);
+        TokenVerificado v = verificados.get(hash);
+        if (v != null) {
+            if (ahora < v.validoHastaMs()) return v.claims();
+            verificados.remove(hash, v);
+        }
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        recordar(hash, claims, ahora);
+        return claims;
     }
 
-    public boolean validateJwtToken(String authToken) {
+    /**
+     * Verifica el token una sola vez y devuelve sus claims, o null si no es válido.
+     * Es lo que usa el filtro para validar y obtener el usuario con un único parseo.
+     */
+    public Claims getValidClaims(String authToken) {
         try {
-            Jwts.parserBuilder().setSigningKey(key()).build().parse(authToken);
-            return true;
+            return getClaimsFromToken(authToken);
         } catch (MalformedJwtException e) {
             logger.error("Token JWT inválido: {}", e.getMessage());
         } catch (ExpiredJwtException e) {
@@ -101,9 +145,48 @@ public class JwtUtils {
             logger.error("Token JWT no soportado: {}", e.getMessage());
         } catch (IllegalArgumentException e) {
             logger.error("La cadena claims JWT está vacía: {}", e.getMessage());
+        } catch (io.jsonwebtoken.security.SecurityException e) {
+            logger.error("Firma JWT inválida: {}", e.getMessage());
         }
+        return null;
+    }
+
+    public String getUserNameFromJwtToken(String token) {
+        return getClaimsFromToken(token).getSubject();
+    }
+
+    public boolean validateJwtToken(String authToken) {
+        return getValidClaims(authToken) != null;
+    }
+
+    /** Olvida un token verificado (logout), para que la próxima petición lo vuelva a comprobar. */
+    public void evictToken(String token) {
+        if (token != null && !token.isEmpty()) verificados.remove(hash(token));
+    }
+
+    private void recordar(ByteBuffer hash, Claims claims, long ahora) {
+        long hasta = ahora + cacheTtlMs;
+        Date exp = claims.getExpiration();
+        if (exp != null) hasta = Math.min(hasta, exp.getTime());
+        if (hasta <= ahora) return;
+        if (verificados.size() >= cacheMaxEntries) podar(ahora);
+        verificados.put(hash, new TokenVerificado(claims, hasta));
+    }
+
+    /** Quita los vencidos y, si todavía está lleno, descarta entradas hasta dejar un 25% libre. */
+    private void podar(long ahora) {
+        verificados.values().removeIf(v -> v.validoHastaMs() <= ahora);
+        int sobrantes = verificados.size() - (cacheMaxEntries * 3 / 4);
+        Iterator<ByteBuffer> it = verificados.keySet().iterator();
+        while (sobrantes-- > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
 
-        return false;
+    private static ByteBuffer hash(String token) {
+        if (token == null || token.isEmpty()) throw new IllegalArgumentException("JWT String argument cannot be null or empty.");
+        return ByteBuffer.wrap(SHA256.get().digest(token.getBytes(StandardCharsets.UTF_8)));
     }
 
     public String parseJwt(HttpServletRequest request) {
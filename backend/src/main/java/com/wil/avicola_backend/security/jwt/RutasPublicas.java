@@ -0,0 +1,75 @@
+package com.wil.avicola_backend.security.jwt;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Matcher de rutas públicas precompilado como trie por segmentos.
+ *
+ * Soporta los patrones que usa la aplicación: rutas literales ("/api/health") y prefijos con
+ * "/**" ("/api/auth/**", que también cubre "/api/auth"). Se construye una sola vez y la búsqueda
+ * recorre la URI sin crear substrings ni objetos por petición.
+ */
+final class RutasPublicas {
+
+    private static final class Nodo {
+        String[] segmentos = new String[0];
+        Nodo[] hijos = new Nodo[0];
+        boolean exacta;
+        boolean todoDebajo;
+
+        Nodo hijo(String segmento) {
+            for (int i = 0; i < segmentos.length; i++) {
+                if (segmentos[i].equals(segmento)) return hijos[i];
+            }
+            Nodo n = new Nodo();
+            segmentos = Arrays.copyOf(segmentos, segmentos.length + 1);
+            hijos = Arrays.copyOf(hijos, hijos.length + 1);
+            segmentos[segmentos.length - 1] = segmento;
+            hijos[hijos.length - 1] = n;
+            return n;
+        }
+
+        Nodo buscar(String uri, int desde, int hasta) {
+            int largo = hasta - desde;
+            for (int i = 0; i < segmentos.length; i++) {
+                String s = segmentos[i];
+                if (s.length() == largo && uri.regionMatches(desde, s, 0, largo)) return hijos[i];
+            }
+            return null;
+        }
+    }
+
+    private final Nodo raiz = new Nodo();
+
+    RutasPublicas(List<String> patrones) {
+        for (String patron : patrones) {
+            boolean todoDebajo = patron.endsWith("/**");
+            String base = todoDebajo ? patron.substring(0, patron.length() - 3) : patron;
+            Nodo n = raiz;
+            for (String segmento : base.split("/")) {
+                if (!segmento.isEmpty()) n = n.hijo(segmento);
+            }
+            if (todoDebajo) n.todoDebajo = true;
+            else n.exacta = true;
+        }
+    }
+
+    boolean coincide(String uri) {
+        if (uri == null) return false;
+        Nodo n = raiz;
+        int i = 0;
+        int largo = uri.length();
+        while (true) {
+            if (n.todoDebajo) return true;
+            // saltar barras
+            while (i < largo && uri.charAt(i) == '/') i++;
+            if (i >= largo) return n.exacta;
+            int fin = uri.indexOf('/', i);
+            if (fin < 0) fin = largo;
+            n = n.buscar(uri, i, fin);
+            if (n == null) return false;
+            i = fin;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.wil.avicola_backend.security.services;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.wil.avicola_backend.service.Transacciones;
+
+/**
+ * Caché acotada de {@link UserDetailsImpl} para autenticar peticiones con JWT sin ir a la base.
+ * Solo la usa el filtro JWT; el login sigue cargando el usuario (y su contraseña) desde la base.
+ * Las entradas se descartan al cambiar roles, contraseña o estado del usuario y al cerrar sesión;
+ * el TTL cubre los cambios hechos fuera de la aplicación o en otra instancia (el descarte no se
+ * difunde entre nodos), por eso es de segundos.
+ */
+@Component
+public class UserDetailsCache {
+
+    private record Entrada(UserDetailsImpl usuario, long validoHastaMs) {}
+
+    private final ConcurrentHashMap<String, Entrada> usuarios = new ConcurrentHashMap<>();
+    /** Sube con cada descarte, para no guardar un usuario leído antes de un cambio concurrente. */
+    private final AtomicLong generacion = new AtomicLong();
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder descartes = new LongAdder();
+
+    @Value("${avicola.app.userCacheTtlMs:30000}")
+    private long ttlMs;
+
+    @Value("${avicola.app.userCacheMaxEntries:2000}")
+    private int maxEntries;
+
+    /** Devuelve el usuario en caché o lo carga con {@code cargar} y lo guarda. */
+    public UserDetailsImpl obtener(String identificador, Function<String, UserDetailsImpl> cargar) {
+        long ahora = System.currentTimeMillis();
+        Entrada entrada = usuarios.get(identificador);
+        if (entrada != null && entrada.validoHastaMs() > ahora) {
+            aciertos.increment();
+            return entrada.usuario();
+        }
+        fallos.increment();
+        long gen = generacion.get();
+        UserDetailsImpl usuario = cargar.apply(identificador);
+        if (gen == generacion.get()) {
+            if (usuarios.size() >= maxEntries) podar(ahora);
+            usuarios.put(identificador, new Entrada(usuario, ahora + ttlMs));
+        }
+        return usuario;
+    }
+
+    /** Descarta el usuario por id (y por los identificadores con que se haya cargado). */
+    public void evictUsuario(Long id) {
+        if (id == null) return;
+        descartar(() -> usuarios.values().removeIf(e -> id.equals(e.usuario().getId())));
+    }
+
+    /** Descarta el usuario por su username o email. */
+    public void evictUsuario(String username) {
+        if (username == null) return;
+        descartar(() -> usuarios.entrySet().removeIf(e -> e.getKey().equals(username)
+            || username.equals(e.getValue().usuario().getUsername())
+            || username.equalsIgnoreCase(e.getValue().usuario().getEmail())));
+    }
+
+    public void invalidarTodo() {
+        descartar(usuarios::clear);
+    }
+
+    public Map<String, Object> estadisticas() {
+        long hits = aciertos.sum();
+        long misses = fallos.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entradas", usuarios.size());
+        stats.put("maxEntradas", maxEntries);
+        stats.put("aciertos", hits);
+        stats.put("fallos", misses);
+        stats.put("descartes", descartes.sum());
+        stats.put("tasaAcierto", hits + misses == 0 ? 0.0 : Math.round(hits * 10000.0 / (hits + misses)) / 10000.0);
+        return stats;
+    }
+
+    /**
+     * Descarta ya (para que nadie en esta transacción use el usuario viejo) y otra vez al confirmar,
+     * por si otra petición volvió a cargar la fila antes del commit.
+     */
+    private void descartar(Runnable accion) {
+        generacion.incrementAndGet();
+        accion.run();
+        descartes.increment();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            Transacciones.despuesDeCommit(() -> {
+                generacion.incrementAndGet();
+                accion.run();
+            });
+        }
+    }
+
+    private void podar(long ahora) {
+        usuarios.values().removeIf(e -> e.validoHastaMs() <= ahora);
+        if (usuarios.size() >= maxEntries) {
+            // Sin orden de uso que respetar: se vacía y se vuelve a llenar con los usuarios activos
+            usuarios.clear();
+        }
+    }
+}
@@ -19,6 +19,9 @@ public class UserDetailsServiceImpl implements UserDetailsService {
 
     @Autowired
     LoginIdentifierResolver loginIdentifierResolver;
+
+    @Autowired
+    UserDetailsCache userDetailsCache;
     
     /**
      * Carga el usuario por username o email.
@@ -35,4 +38,13 @@ public class UserDetailsServiceImpl implements UserDetailsService {
                 .orElseThrow(() -> new UsernameNotFoundException("Usuario no encontrado: " + normalized));
         return UserDetailsImpl.build(usuario);
     }
+
+    /**
+     * Igual que {@link #loadUserByUsername(String)} pero servido desde {@link UserDetailsCache}:
+     * es la carga que hace el filtro JWT en cada petición. No usar para el login.
+     */
+    public UserDetails loadUserForToken(String identifier) throws UsernameNotFoundException {
+        String normalized = identifier != null ? identifier.trim() : "";
+        return userDetailsCache.obtener(normalized, id -> (UserDetailsImpl) loadUserByUsername(id));
+    }
 }
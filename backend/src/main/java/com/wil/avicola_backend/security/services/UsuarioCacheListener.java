@@ -0,0 +1,27 @@
+package com.wil.avicola_backend.security.services;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.wil.avicola_backend.model.Usuario;
+
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Listener JPA de {@link Usuario}: cualquier edición o borrado guardado descarta al usuario de
+ * {@link UserDetailsCache}, venga de donde venga (servicios, herramientas de admin, inicialización).
+ * Los cambios que solo tocan los roles no pasan por aquí; quien los hace descarta a mano.
+ */
+public class UsuarioCacheListener {
+
+    @Autowired
+    private ObjectProvider<UserDetailsCache> userDetailsCache;
+
+    @PostUpdate
+    @PostRemove
+    public void cambiado(Usuario usuario) {
+        UserDetailsCache cache = userDetailsCache != null ? userDetailsCache.getIfAvailable() : null;
+        if (cache != null) cache.evictUsuario(usuario.getId());
+    }
+}
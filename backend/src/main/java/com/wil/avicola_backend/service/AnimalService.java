@@ -17,6 +17,8 @@ public class AnimalService {
     private AnimalRepository animalRepository;
     @Autowired
     private RaceRepository raceRepository;
+    @Autowired
+    private EspecieService especieService;
 
     public ResponseEntity<?> findAnimals() {
         return ResponseEntity.ok().body(animalRepository.findAll());
@@ -41,6 +43,8 @@ public class AnimalService {
             Animal animal_old = animalRepository.findById(animal.getId()).get();
             animal_old.setName(animal.getName());
             animalRepository.save(animal_old);
+            // Un cambio de nombre puede cambiar la especie: propagar a los lotes
+            especieService.sincronizar();
             return ResponseEntity.status(HttpStatus.OK).body(animal_old);
         }
         throw new RequestException("No existe animal.");
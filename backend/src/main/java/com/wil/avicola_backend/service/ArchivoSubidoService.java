@@ -0,0 +1,157 @@
+package com.wil.avicola_backend.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Resuelve los archivos de /uploads y su ETag. Los nombres por hash de {@link ImagenUploadService}
+ * ({@code {hash}.jpg}, {@code {hash}-160.jpg}, {@code {hash}-original.heic}) ya traen el ETag en el
+ * nombre; a los antiguos con UUID se les calcula el SHA-256 una sola vez y queda guardado al lado, en
+ * {@code .{nombre}.etag}, junto con el tamaño y la fecha del archivo para detectar si lo reemplazaron.
+ * Ninguno de los dos tipos de nombre se reutiliza, así que se sirven como inmutables.
+ */
+@Slf4j
+@Service
+public class ArchivoSubidoService {
+
+    /** Archivo listo para servir. {@code inmutable}: el nombre nunca cambia de contenido. */
+    public record Archivo(Path ruta, long tamano, long modificado, String etag, boolean inmutable, MediaType tipo) {}
+
+    private static final Pattern NOMBRE_HASH = Pattern.compile("^([0-9a-f]{32}(?:-\\d+|-original)?)\\.[a-z0-9]+$");
+    private static final Pattern NOMBRE_UUID =
+        Pattern.compile("^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}\\.[A-Za-z0-9]+$");
+    private static final String SUFIJO_ETAG = ".etag";
+
+    private record EtagCalculado(long tamano, long modificado, String etag) {}
+
+    @Value("${app.upload.dir}")
+    private String uploadDir;
+
+    @Value("${app.upload.etag-cache-max:10000}")
+    private int maxEtagsEnMemoria;
+
+    private Path raiz;
+    private final ConcurrentHashMap<Path, EtagCalculado> etags = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void iniciar() {
+        raiz = Paths.get(uploadDir).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Archivo para la ruta relativa a /uploads; vacío si no existe, es un directorio, sale de la carpeta
+     * de subidas o algún segmento empieza con punto (temporales de subida y archivos .etag).
+     */
+    public Optional<Archivo> resolver(String rutaRelativa) throws IOException {
+        if (rutaRelativa == null || rutaRelativa.isBlank()) return Optional.empty();
+        for (String segmento : rutaRelativa.split("[/\\\\]")) {
+            if (segmento.startsWith(".")) return Optional.empty();
+        }
+        Path ruta = raiz.resolve(rutaRelativa).normalize();
+        if (!ruta.startsWith(raiz) || !Files.isRegularFile(ruta)) return Optional.empty();
+
+        BasicFileAttributes atributos = Files.readAttributes(ruta, BasicFileAttributes.class);
+        long tamano = atributos.size();
+        long modificado = atributos.lastModifiedTime().toMillis();
+        String nombre = ruta.getFileName().toString();
+        MediaType tipo = MediaTypeFactory.getMediaType(nombre).orElse(MediaType.APPLICATION_OCTET_STREAM);
+
+        Matcher hash = NOMBRE_HASH.matcher(nombre);
+        if (hash.matches()) {
+            return Optional.of(new Archivo(ruta, tamano, modificado, hash.group(1), true, tipo));
+        }
+        String etag = etagCalculado(ruta, tamano, modificado);
+        return Optional.of(new Archivo(ruta, tamano, modificado, etag, NOMBRE_UUID.matcher(nombre).matches(), tipo));
+    }
+
+    private String etagCalculado(Path ruta, long tamano, long modificado) throws IOException {
+        EtagCalculado enMemoria = etags.get(ruta);
+        if (enMemoria != null && enMemoria.tamano() == tamano && enMemoria.modificado() == modificado) {
+            return enMemoria.etag();
+        }
+        Path lateral = ruta.resolveSibling("." + ruta.getFileName() + SUFIJO_ETAG);
+        EtagCalculado calculado = leerLateral(lateral);
+        if (calculado == null || calculado.tamano() != tamano || calculado.modificado() != modificado) {
+            calculado = new EtagCalculado(tamano, modificado, sha256(ruta));
+            guardarLateral(lateral, calculado);
+        }
+        // Solo un tope grosero: /uploads tiene pocos miles de archivos y recalcular sale del .etag
+        if (etags.size() >= maxEtagsEnMemoria) etags.clear();
+        etags.put(ruta, calculado);
+        return calculado.etag();
+    }
+
+    private static EtagCalculado leerLateral(Path lateral) {
+        try {
+            if (!Files.isRegularFile(lateral)) return null;
+            String[] partes = Files.readString(lateral, StandardCharsets.US_ASCII).trim().split(" ");
+            if (partes.length != 3) return null;
+            return new EtagCalculado(Long.parseLong(partes[1]), Long.parseLong(partes[2]), partes[0]);
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void guardarLateral(Path lateral, EtagCalculado calculado) {
+        // Si la carpeta no es escribible se sigue sirviendo; solo se recalcula tras un reinicio
+        try {
+            Path temporal = Files.createTempFile(lateral.getParent(), ".etag-", ".tmp");
+            try {
+                Files.writeString(temporal, calculado.etag() + " " + calculado.tamano() + " " + calculado.modificado(),
+                    StandardCharsets.US_ASCII);
+                try {
+                    Files.move(temporal, lateral, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temporal, lateral, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temporal);
+            }
+        } catch (IOException e) {
+            log.warn("No se pudo guardar el ETag de {}: {}", lateral.getFileName(), e.getMessage());
+        }
+    }
+
+    private static String sha256(Path ruta) throws IOException {
+        MessageDigest sha;
+        try {
+            sha = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            while (canal.read(buffer) != -1) {
+                buffer.flip();
+                sha.update(buffer);
+                buffer.clear();
+            }
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : sha.digest()) hex.append(String.format("%02x", b));
+        return hex.substring(0, 32);
+    }
+}
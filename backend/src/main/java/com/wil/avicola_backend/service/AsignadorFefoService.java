@@ -0,0 +1,344 @@
+package com.wil.avicola_backend.service;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Service;
+
+import com.wil.avicola_backend.error.RequestException;
+import com.wil.avicola_backend.model.InventarioEntradaProducto;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Asignador FEFO en memoria por producto.
+ *
+ * Mantiene, por producto, las entradas activas ordenadas por fechaVencimiento (nulos al final),
+ * fechaIngreso e id. Se calienta una sola vez con una consulta JDBC y luego se actualiza con cada
+ * entrada o consumo. Cada saldo guarda el stock y la versión de la fila que vio por última vez; los
+ * consumos concurrentes del mismo producto descuentan con CAS sobre ese par, sin bloqueo global.
+ *
+ * Al escribir, {@link #consumir} toma un candado de transacción por producto (los reintentos de un
+ * consumo no pueden cruzarse con los de otro y terminar en deadlock), bloquea las filas tocadas y
+ * compara su versión con la esperada; si otra transacción las cambió (edición, rollback de un consumo previo) descarta la cola, la vuelve a
+ * leer y reasigna. El UPDATE lleva la versión esperada en el WHERE y deja los valores exactos, de modo
+ * que el stock nunca se recorta ni se inventa.
+ */
+@Service
+@RequiredArgsConstructor
+public class AsignadorFefoService {
+
+    /** Reasignaciones por conflicto de versión antes de pedir al cliente que reintente. */
+    private static final int MAX_INTENTOS = 3;
+
+    private static final Comparator<Saldo> ORDEN_FEFO = Comparator
+        .comparing((Saldo s) -> s.fechaVencimiento, Comparator.nullsLast(Comparator.naturalOrder()))
+        .thenComparing(s -> s.fechaIngreso, Comparator.nullsLast(Comparator.naturalOrder()))
+        .thenComparing(s -> s.entradaId);
+
+    private static final String SQL_ACTIVAS =
+        "SELECT id, codigo_lote, fecha_vencimiento, fecha_ingreso, contenido_por_unidad, " +
+        "       stock_base_restante, stock_unidades_restantes, version " +
+        "FROM inventario_entrada_producto " +
+        "WHERE product_id = ? AND (activo = true OR activo IS NULL) AND stock_base_restante > 0";
+
+    /** Primera clave del pg_advisory_xact_lock(int, int) por producto; la segunda es el id del producto. */
+    private static final int CANDADO_FEFO = 0x6665666f;
+
+    private static final String SQL_CANDADO_PRODUCTO = "SELECT pg_advisory_xact_lock(?, ?)";
+
+    private static final String SQL_BLOQUEAR_VERSIONES =
+        "SELECT id, version FROM inventario_entrada_producto WHERE id = ANY(?) ORDER BY id FOR UPDATE";
+
+    private static final String SQL_DESCONTAR_TRAMO =
+        "UPDATE inventario_entrada_producto " +
+        "SET stock_base_restante = ?, " +
+        "    stock_unidades_restantes = ?, " +
+        "    activo = ?, " +
+        "    version = ?, " +
+        "    update_date = ? " +
+        "WHERE id = ? AND version = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SyncCambiosService syncCambios;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final ConcurrentHashMap<Long, ColaProducto> colas = new ConcurrentHashMap<>();
+
+    /**
+     * Porción tomada de una entrada concreta: lo consumido, los saldos que quedan en la fila y la
+     * versión que tenía la fila ({@code versionEsperada}) cuando se tomó.
+     */
+    public record Tramo(Long entradaId, String codigoLote, LocalDate fechaVencimiento,
+                        BigDecimal contenidoPorUnidad, BigDecimal consumido, BigDecimal stockBaseRestante,
+                        BigDecimal stockUnidadesRestantes, long versionEsperada) {
+
+        public BigDecimal unidadesConsumidas() {
+            return unidadesDe(consumido, contenidoPorUnidad);
+        }
+    }
+
+    /** Resultado de una asignación: tramos en orden FEFO y si había stock vencido. */
+    public record Asignacion(List<Tramo> tramos, BigDecimal consumido, boolean hayVencidas) {}
+
+    /**
+     * Asigna hasta {@code cantidad} unidades base del producto en orden FEFO y las descuenta en la
+     * base. Si alguna fila cambió desde que se leyó, vuelve a leer el producto y reasigna; tras
+     * {@value #MAX_INTENTOS} conflictos seguidos responde con RequestException.
+     */
+    public Asignacion consumir(Long productId, BigDecimal cantidad, LocalDate hoy) {
+        bloquearProducto(productId);
+        for (int intento = 1; intento <= MAX_INTENTOS; intento++) {
+            Asignacion asignacion = asignar(productId, cantidad, hoy);
+            if (asignacion.tramos().isEmpty()) return asignacion;
+            if (versionesVigentes(asignacion.tramos())) {
+                escribirTramos(productId, asignacion.tramos());
+                return asignacion;
+            }
+            invalidar(productId);
+        }
+        throw new RequestException("El stock del producto " + productId
+            + " cambió durante el consumo FEFO, intente nuevamente");
+    }
+
+    /**
+     * Reserva en memoria hasta {@code cantidad} unidades base del producto en orden FEFO, sin escribir.
+     * Dentro de una transacción, un rollback invalida el producto para no dejar saldos fantasma.
+     */
+    public Asignacion asignar(Long productId, BigDecimal cantidad, LocalDate hoy) {
+        ColaProducto cola = cola(productId);
+        List<Tramo> tramos = new ArrayList<>();
+        BigDecimal restante = cantidad;
+        BigDecimal consumido = BigDecimal.ZERO;
+        boolean hayVencidas = false;
+
+        for (Saldo s : cola.orden) {
+            if (restante.compareTo(BigDecimal.ZERO) <= 0) break;
+            if (s.fechaVencimiento != null && s.fechaVencimiento.isBefore(hoy)) {
+                if (s.estado.get().base().compareTo(BigDecimal.ZERO) > 0) hayVencidas = true;
+                continue;
+            }
+            Tramo tramo = s.tomar(restante);
+            if (tramo == null) {
+                cola.retirarSiAgotado(s);
+                continue;
+            }
+            tramos.add(tramo);
+            consumido = consumido.add(tramo.consumido());
+            restante = restante.subtract(tramo.consumido());
+            cola.retirarSiAgotado(s);
+        }
+
+        if (!tramos.isEmpty()) Transacciones.siNoConfirma(() -> invalidar(productId));
+        return new Asignacion(tramos, consumido, hayVencidas);
+    }
+
+    /**
+     * Serializa hasta el commit los consumos FEFO del producto. Sin esto, un reintento que ya retiene
+     * filas del intento anterior puede pedir otras de id menor que otro consumo tiene tomadas.
+     */
+    private void bloquearProducto(Long productId) {
+        jdbcTemplate.query(SQL_CANDADO_PRODUCTO, (ResultSetExtractor<Void>) rs -> null,
+            CANDADO_FEFO, Long.hashCode(productId));
+    }
+
+    /**
+     * Bloquea las filas de los tramos (en orden de id, para no cruzarse con otra escritura) y comprueba
+     * que sigan en la versión sobre la que se calcularon. Un tramo tomado sobre el saldo de otra
+     * transacción todavía abierta espera aquí a que ésta confirme.
+     */
+    private boolean versionesVigentes(List<Tramo> tramos) {
+        Map<Long, Long> esperadas = new HashMap<>();
+        for (Tramo t : tramos) esperadas.put(t.entradaId(), t.versionEsperada());
+        Long[] ids = esperadas.keySet().toArray(Long[]::new);
+        Map<Long, Long> actuales = new HashMap<>();
+        jdbcTemplate.query(SQL_BLOQUEAR_VERSIONES,
+            ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids)),
+            rs -> { actuales.put(rs.getLong("id"), rs.getLong("version")); });
+        return esperadas.equals(actuales);
+    }
+
+    /**
+     * Escribe los tramos en un único batch condicionado a la versión esperada de cada fila. Las filas
+     * ya están bloqueadas y verificadas, así que un 0 solo puede venir de un cambio fuera de este
+     * servicio: se invalida el producto y se aborta la transacción.
+     */
+    private void escribirTramos(Long productId, List<Tramo> tramos) {
+        LocalDateTime ahora = LocalDateTime.now();
+        List<Object[]> params = new ArrayList<>(tramos.size());
+        for (Tramo t : tramos) {
+            params.add(new Object[] {
+                t.stockBaseRestante(), t.stockUnidadesRestantes(), t.stockBaseRestante().compareTo(BigDecimal.ZERO) > 0,
+                t.versionEsperada() + 1, ahora, t.entradaId(), t.versionEsperada()
+            });
+        }
+        int[] filas = jdbcTemplate.batchUpdate(SQL_DESCONTAR_TRAMO, params,
+            new int[] { Types.NUMERIC, Types.NUMERIC, Types.BOOLEAN, Types.BIGINT, Types.TIMESTAMP, Types.BIGINT, Types.BIGINT });
+        for (int i = 0; i < filas.length; i++) {
+            if (filas[i] == 0) {
+                invalidar(productId);
+                throw new RequestException("El stock de la entrada " + tramos.get(i).entradaId()
+                    + " cambió durante el consumo FEFO, intente nuevamente");
+            }
+        }
+        refrescarGestionadas(tramos);
+        // El batch no pasa por JPA: se anotan a mano para la sincronización móvil
+        tramos.forEach(t -> syncCambios.registrar(SyncCambiosService.ENTRADAS, t.entradaId(), null));
+        syncCambios.registrar(SyncCambiosService.PRODUCTOS, productId, null);
+    }
+
+    /**
+     * Si la sesión JPA ya tenía cargada alguna de las entradas, la recarga: su stock y su versión
+     * quedaron atrás del batch y un flush posterior fallaría (o pisaría el descuento).
+     */
+    private void refrescarGestionadas(List<Tramo> tramos) {
+        if (!entityManager.isJoinedToTransaction()) return;
+        SessionImplementor sesion = entityManager.unwrap(SessionImplementor.class);
+        EntityPersister persister = sesion.getFactory().getMappingMetamodel()
+            .getEntityDescriptor(InventarioEntradaProducto.class);
+        for (Tramo t : tramos) {
+            Object gestionada = sesion.getPersistenceContextInternal()
+                .getEntity(sesion.generateEntityKey(t.entradaId(), persister));
+            if (gestionada != null) entityManager.refresh(gestionada);
+        }
+    }
+
+    /** Agrega una entrada nueva a la cola del producto cuando la transacción confirma. */
+    public void registrarEntrada(InventarioEntradaProducto e) {
+        if (e == null || e.getId() == null || e.getProduct() == null) return;
+        Long productId = e.getProduct().getId();
+        Saldo s = Saldo.de(e);
+        Transacciones.despuesDeCommit(() -> {
+            ColaProducto cola = colas.get(productId);
+            if (cola != null && s != null) cola.agregar(s);
+        });
+    }
+
+    /** Descarta la cola del producto cuando la transacción confirma (ediciones, bajas, consumos por tipo). */
+    public void invalidarDespuesDeCommit(Long productId) {
+        if (productId == null) return;
+        Transacciones.despuesDeCommit(() -> invalidar(productId));
+    }
+
+    public void invalidar(Long productId) {
+        if (productId != null) colas.remove(productId);
+    }
+
+    private ColaProducto cola(Long productId) {
+        ColaProducto cola = colas.get(productId);
+        if (cola != null) return cola;
+        ColaProducto nueva = new ColaProducto();
+        jdbcTemplate.query(SQL_ACTIVAS, rs -> {
+            Timestamp ingreso = rs.getTimestamp("fecha_ingreso");
+            nueva.agregar(new Saldo(rs.getLong("id"), rs.getString("codigo_lote"),
+                rs.getObject("fecha_vencimiento", LocalDate.class),
+                ingreso != null ? ingreso.toLocalDateTime() : null,
+                rs.getBigDecimal("contenido_por_unidad"),
+                new Estado(rs.getBigDecimal("stock_base_restante"), rs.getBigDecimal("stock_unidades_restantes"),
+                    rs.getLong("version"))));
+        }, productId);
+        ColaProducto previa = colas.putIfAbsent(productId, nueva);
+        return previa != null ? previa : nueva;
+    }
+
+
+    private static final class ColaProducto {
+        private final ConcurrentHashMap<Long, Saldo> porId = new ConcurrentHashMap<>();
+        private final ConcurrentSkipListSet<Saldo> orden = new ConcurrentSkipListSet<>(ORDEN_FEFO);
+
+        void agregar(Saldo s) {
+            if (porId.putIfAbsent(s.entradaId, s) == null) orden.add(s);
+        }
+
+        void retirarSiAgotado(Saldo s) {
+            if (s.estado.get().base().compareTo(BigDecimal.ZERO) <= 0 && orden.remove(s)) porId.remove(s.entradaId, s);
+        }
+    }
+
+    /** Saldo de una fila tal como quedó tras el último descuento conocido. */
+    private record Estado(BigDecimal base, BigDecimal unidades, long version) {}
+
+    private static final class Saldo {
+        private final Long entradaId;
+        private final String codigoLote;
+        private final LocalDate fechaVencimiento;
+        private final LocalDateTime fechaIngreso;
+        private final BigDecimal contenidoPorUnidad;
+        private final AtomicReference<Estado> estado;
+
+        private Saldo(Long entradaId, String codigoLote, LocalDate fechaVencimiento, LocalDateTime fechaIngreso,
+                      BigDecimal contenidoPorUnidad, Estado estado) {
+            this.entradaId = entradaId;
+            this.codigoLote = codigoLote;
+            this.fechaVencimiento = fechaVencimiento;
+            this.fechaIngreso = fechaIngreso;
+            this.contenidoPorUnidad = contenidoPorUnidad;
+            this.estado = new AtomicReference<>(estado);
+        }
+
+        static Saldo de(InventarioEntradaProducto e) {
+            if (e.getStockBaseRestante() == null || e.getStockBaseRestante().compareTo(BigDecimal.ZERO) <= 0) return null;
+            return new Saldo(e.getId(), e.getCodigoLote(), e.getFechaVencimiento(), e.getFechaIngreso(),
+                e.getContenidoPorUnidad(), new Estado(e.getStockBaseRestante(), e.getStockUnidadesRestantes(),
+                    e.getVersion() != null ? e.getVersion() : 0L));
+        }
+
+        /**
+         * Toma hasta {@code solicitado} de la entrada y avanza su versión; null si ya está agotada.
+         * Las unidades de control se descuentan en proporción (sin seguimiento si son null) y quedan en
+         * 0 cuando se acaba el stock base; si no alcanzan, la fila es inconsistente y se rechaza.
+         */
+        Tramo tomar(BigDecimal solicitado) {
+            while (true) {
+                Estado actual = estado.get();
+                if (actual.base().compareTo(BigDecimal.ZERO) <= 0) return null;
+                BigDecimal aTomar = actual.base().min(solicitado);
+                BigDecimal base = actual.base().subtract(aTomar);
+                BigDecimal unidades = actual.unidades();
+                if (unidades != null) {
+                    BigDecimal consumidas = unidadesDe(aTomar, contenidoPorUnidad);
+                    if (base.compareTo(BigDecimal.ZERO) == 0) {
+                        unidades = BigDecimal.ZERO;
+                    } else if (consumidas != null) {
+                        unidades = unidades.subtract(consumidas.setScale(3, RoundingMode.HALF_UP));
+                        if (unidades.signum() < 0) {
+                            throw new RequestException("La entrada " + entradaId + " tiene menos unidades ("
+                                + actual.unidades() + ") que las que corresponden a su stock base; corríjala antes de consumir");
+                        }
+                    }
+                }
+                Estado nuevo = new Estado(base, unidades, actual.version() + 1);
+                if (estado.compareAndSet(actual, nuevo)) {
+                    return new Tramo(entradaId, codigoLote, fechaVencimiento, contenidoPorUnidad, aTomar, base,
+                        unidades, actual.version());
+                }
+            }
+        }
+    }
+
+    private static BigDecimal unidadesDe(BigDecimal base, BigDecimal contenidoPorUnidad) {
+        if (contenidoPorUnidad == null || contenidoPorUnidad.compareTo(BigDecimal.ZERO) <= 0) return null;
+        return base.divide(contenidoPorUnidad, MathContext.DECIMAL64);
+    }
+}
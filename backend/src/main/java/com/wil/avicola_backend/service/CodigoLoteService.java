@@ -1,102 +1,152 @@
 package com.wil.avicola_backend.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.wil.avicola_backend.model.Race;
-import com.wil.avicola_backend.repository.AnimalRepository;
-import com.wil.avicola_backend.repository.LoteRepository;
 
 import jakarta.annotation.PostConstruct;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.PersistenceContext;
-import jakarta.persistence.Query;
 
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Genera los códigos de lote: prefijo del animal + número secuencial. Mientras el prefijo tenga dos
+ * dígitos y el número no pase de 999 se mantiene el formato histórico de ancho fijo XXYYY; si no, el
+ * número va separado con un guion (XX-1000, 105-001), porque sin ancho fijo "10" + 1001 y "101" + 001
+ * darían el mismo texto. Los números salen de un contador por prefijo en la tabla
+ * codigo_lote_secuencia, reservados por bloques en su propia transacción; cada bloque se reparte en
+ * memoria con un AtomicLong. Así crear un lote no escanea la tabla lote y dos altas concurrentes
+ * (o dos instancias) nunca reciben el mismo código. Un reinicio puede dejar huecos, como una secuencia.
+ */
 @Service
 public class CodigoLoteService {
 
-    @PersistenceContext
-    private EntityManager entityManager;
+    private static final String PREFIJO_GENERICO = "GEN";
+
+    private static final String SQL_AVANZAR =
+        "UPDATE codigo_lote_secuencia SET ultimo = ultimo + ?, actualizado_en = now() " +
+        "WHERE prefijo = ? RETURNING ultimo";
+
+    // Primera reserva de un prefijo: arranca después del mayor código existente (si otra instancia
+    // creó la fila mientras tanto, ON CONFLICT avanza la suya)
+    private static final String SQL_CREAR =
+        "INSERT INTO codigo_lote_secuencia (prefijo, ultimo, actualizado_en) VALUES (?, ? + ?, now()) " +
+        "ON CONFLICT (prefijo) DO UPDATE SET ultimo = codigo_lote_secuencia.ultimo + EXCLUDED.ultimo - ?, " +
+        "actualizado_en = now() RETURNING ultimo";
+
+    /** Números de los códigos existentes de un prefijo, según el patrón de {@link #patronExistentes}. */
+    private static final String SQL_MAXIMO_EXISTENTE =
+        "SELECT COALESCE(MAX(CAST(COALESCE(NULLIF(g[1], ''), g[2]) AS bigint)), 0) " +
+        "FROM (SELECT regexp_match(codigo, ?) AS g FROM lote WHERE starts_with(codigo, ?)) t WHERE g IS NOT NULL";
+
+    /** Números [siguiente, hasta] ya reservados en la base para un prefijo. */
+    private record Bloque(AtomicLong siguiente, long hasta) {
+        boolean agotado() {
+            return siguiente.get() > hasta;
+        }
+    }
 
     @Autowired
-    private LoteRepository loteRepository;
-    
+    private JdbcTemplate jdbcTemplate;
+
     @Autowired
-    private AnimalRepository animalRepository;
-    
-    // Mapa para almacenar los prefijos por tipo de animal
-    private Map<Long, String> prefijosPorAnimal;
-    
-    // Inicializa los prefijos ya conocidos para mantener la compatibilidad con datos existentes
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${avicola.app.codigoLoteBloque:10}")
+    private int tamanoBloque;
+
+    private TransactionTemplate transaccionPropia;
+
+    // Prefijos por tipo de animal; se completa al vuelo y puede leerse desde varios hilos
+    private final Map<Long, String> prefijosPorAnimal = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, Bloque> bloques = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Object> cerrojos = new ConcurrentHashMap<>();
+
     @PostConstruct
     public void init() {
-        prefijosPorAnimal = new HashMap<>();
-        // Prefijos conocidos (compatibilidad con datos existentes)
+        // Prefijos conocidos (compatibilidad con datos existentes); el resto es el id con dos dígitos
         prefijosPorAnimal.put(1L, "00"); // Pollo - ID 1
         prefijosPorAnimal.put(2L, "03"); // Cerdo - ID 2
-        
-        // Obtener todos los animales para inicializar prefijos dinámicamente
-        animalRepository.findAll().forEach(animal -> {
-            Long animalId = animal.getId();
-            // Solo asignar prefijos a animales que aún no tienen uno asignado
-            if (!prefijosPorAnimal.containsKey(animalId)) {
-                // Generar un prefijo de dos dígitos basado en el ID
-                prefijosPorAnimal.put(animalId, String.format("%02d", animalId));
-            }
-        });
+
+        // La reserva confirma aunque la transacción del lote haga rollback: un número no se entrega dos veces
+        transaccionPropia = new TransactionTemplate(transactionManager);
+        transaccionPropia.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
     }
 
-    @Transactional
     public String generarCodigoLote(Race raza) {
         if (raza == null || raza.getAnimal() == null) {
             return generarCodigoGenerico();
         }
-        
+
         Long animalId = raza.getAnimal().getId();
-        String prefijo;
-        
-        // Obtener el prefijo del mapa, si existe, o generar uno nuevo
-        if (prefijosPorAnimal.containsKey(animalId)) {
-            prefijo = prefijosPorAnimal.get(animalId);
-        } else {
-            // Si es un animal nuevo, generar prefijo y guardarlo
-            prefijo = String.format("%02d", animalId);
-            prefijosPorAnimal.put(animalId, prefijo);
-        }
-        
-        // Consulta para obtener el último código con este prefijo
-        String jpql = "SELECT l.codigo FROM Lote l WHERE l.codigo LIKE :prefijo ORDER BY l.codigo DESC";
-        Query query = entityManager.createQuery(jpql)
-                .setParameter("prefijo", prefijo + "%")
-                .setMaxResults(1);
-        
-        String ultimoCodigo = (String) query.getResultList().stream().findFirst().orElse(null);
-        
-        int secuencia = 1;
-        if (ultimoCodigo != null) {
-            try {
-                // Extraer la parte numérica después del prefijo
-                secuencia = Integer.parseInt(ultimoCodigo.substring(2)) + 1;
-            } catch (NumberFormatException e) {
-                // Si hay un error al parsear, empezamos desde 1
-                secuencia = 1;
-            }
-        }
-        
-        // Usamos %03d para permitir hasta 999 lotes (total 1000, desde 001 hasta 999)
-        // El formato será XXYYY donde XX es el prefijo y YYY es la secuencia
-        return String.format("%s%03d", prefijo, secuencia);
+        String prefijo = prefijosPorAnimal.computeIfAbsent(animalId, id -> String.format("%02d", id));
+
+        return formatear(prefijo, siguienteNumero(prefijo));
     }
-    
+
     private String generarCodigoGenerico() {
         // Código para cuando no se puede identificar el tipo de animal
-        String jpql = "SELECT COUNT(l) FROM Lote l";
-        Query query = entityManager.createQuery(jpql);
-        Long count = (Long) query.getSingleResult();
-        return String.format("GEN%04d", count + 1);
+        return formatear(PREFIJO_GENERICO, siguienteNumero(PREFIJO_GENERICO));
+    }
+
+    static String formatear(String prefijo, long numero) {
+        if (PREFIJO_GENERICO.equals(prefijo)) return String.format("%s%04d", prefijo, numero);
+        if (prefijo.length() == 2 && numero <= 999) return String.format("%s%03d", prefijo, numero);
+        return String.format("%s-%03d", prefijo, numero);
+    }
+
+    /**
+     * Expresión que reconoce exactamente los códigos de un prefijo (grupo 1 o 2: el número), en los
+     * dos formatos de {@link #formatear}; "10" no toma los códigos de "101". Los prefijos son dígitos
+     * o GEN, así que no hace falta escaparlos.
+     */
+    static String patronExistentes(String prefijo) {
+        if (PREFIJO_GENERICO.equals(prefijo)) return "^" + prefijo + "([0-9]{1,18})()$";
+        String fijo = prefijo.length() == 2 ? "([0-9]{3})" : "()";
+        return "^" + prefijo + "(?:" + fijo + "|-([0-9]{1,18}))$";
+    }
+
+    private long siguienteNumero(String prefijo) {
+        while (true) {
+            Bloque bloque = bloques.get(prefijo);
+            if (bloque != null) {
+                long numero = bloque.siguiente().getAndIncrement();
+                if (numero <= bloque.hasta()) {
+                    return numero;
+                }
+            }
+            // Solo un hilo por prefijo reserva el bloque nuevo (fuera del mapa, que no debe esperar I/O);
+            // los demás esperan en el cerrojo y reintentan con él
+            synchronized (cerrojos.computeIfAbsent(prefijo, p -> new Object())) {
+                Bloque actual = bloques.get(prefijo);
+                if (actual == null || actual.agotado()) {
+                    bloques.put(prefijo, reservarBloque(prefijo));
+                }
+            }
+        }
+    }
+
+    private Bloque reservarBloque(String prefijo) {
+        int tamano = Math.max(1, tamanoBloque);
+        Long hasta = transaccionPropia.execute(status -> {
+            List<Long> avanzado = jdbcTemplate.queryForList(SQL_AVANZAR, Long.class, tamano, prefijo);
+            if (!avanzado.isEmpty()) {
+                return avanzado.get(0);
+            }
+            Long existente = jdbcTemplate.queryForObject(SQL_MAXIMO_EXISTENTE, Long.class,
+                patronExistentes(prefijo), prefijo);
+            long base = existente != null ? existente : 0L;
+            return jdbcTemplate.queryForObject(SQL_CREAR, Long.class, prefijo, base, tamano, base);
+        });
+        return new Bloque(new AtomicLong(hasta - tamano + 1), hasta);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,243 @@
+package com.wil.avicola_backend.service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.wil.avicola_backend.model.Especie;
+import com.wil.avicola_backend.model.PlanEjecucion;
+import com.wil.avicola_backend.model.Product;
+
+/**
+ * Mantiene la tabla consumo_lote_diario (lote, producto, día) de forma incremental
+ * y sirve las lecturas de /api/consumos-lote sin recorrer plan_ejecucion completo.
+ *
+ * Solo cuentan ejecuciones EJECUTADO con asignación (las que tienen lote resoluble),
+ * igual que el reporte original.
+ *
+ * Las sumas incrementales toman un advisory lock compartido y la reconstrucción el mismo lock
+ * exclusivo: la reconstrucción espera a las transacciones que ya sumaron y las nuevas esperan a que
+ * termine, así que ninguna ejecución queda contada dos veces ni afuera.
+ */
+@Service
+public class ConsumoLoteResumenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConsumoLoteResumenService.class);
+
+    /** Clave del advisory lock entre las sumas incrementales y la reconstrucción. */
+    private static final long CANDADO_RESUMEN = 0x636f6e73756d6fL;
+
+    // El lock va en la misma sentencia: sin transacción alrededor se suelta recién al terminar el upsert
+    private static final String SQL_UPSERT =
+        "WITH candado AS (SELECT pg_advisory_xact_lock_shared(" + CANDADO_RESUMEN + ")) " +
+        "INSERT INTO consumo_lote_diario (lote_id, product_id, producto_nombre, fecha, cantidad_total, registros, ultima_fecha_hora) " +
+        "SELECT ?, ?, ?, ?, ?, ?, ? FROM candado " +
+        "ON CONFLICT (lote_id, product_id, fecha) DO UPDATE SET " +
+        "  cantidad_total = consumo_lote_diario.cantidad_total + EXCLUDED.cantidad_total, " +
+        "  registros = consumo_lote_diario.registros + EXCLUDED.registros, " +
+        "  producto_nombre = COALESCE(EXCLUDED.producto_nombre, consumo_lote_diario.producto_nombre), " +
+        "  ultima_fecha_hora = GREATEST(consumo_lote_diario.ultima_fecha_hora, EXCLUDED.ultima_fecha_hora)";
+
+    private static final String SQL_RECONSTRUIR =
+        "INSERT INTO consumo_lote_diario (lote_id, product_id, producto_nombre, fecha, cantidad_total, registros, ultima_fecha_hora) " +
+        "SELECT pa.lote_id, COALESCE(pd.product_id, 0), MAX(p.name), pe.execution_date, " +
+        "       SUM(COALESCE(pe.quantity_applied, 0)), COUNT(*), MAX(pe.create_date) " +
+        "FROM plan_ejecucion pe " +
+        "JOIN plan_asignacion pa ON pe.asignacion_id = pa.id " +
+        "LEFT JOIN plan_detalle pd ON pe.detalle_id = pd.id " +
+        "LEFT JOIN product p ON pd.product_id = p.id " +
+        "WHERE UPPER(pe.status) = 'EJECUTADO' AND pa.lote_id IS NOT NULL " +
+        "GROUP BY pa.lote_id, COALESCE(pd.product_id, 0), pe.execution_date " +
+        "ON CONFLICT (lote_id, product_id, fecha) DO UPDATE SET " +
+        "  cantidad_total = EXCLUDED.cantidad_total, registros = EXCLUDED.registros, " +
+        "  producto_nombre = EXCLUDED.producto_nombre, ultima_fecha_hora = EXCLUDED.ultima_fecha_hora";
+
+    private static final String SQL_CANDADO_EXCLUSIVO = "SELECT pg_advisory_xact_lock(?)";
+
+    // Tabla vacía, a medio armar o con ejecuciones que no pasaron por registrar
+    private static final String SQL_DESCUADRADA =
+        "SELECT (SELECT COALESCE(SUM(registros), 0) FROM consumo_lote_diario) <> " +
+        "       (SELECT COUNT(*) FROM plan_ejecucion pe JOIN plan_asignacion pa ON pe.asignacion_id = pa.id " +
+        "        WHERE UPPER(pe.status) = 'EJECUTADO' AND pa.lote_id IS NOT NULL)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaccion;
+
+    public ConsumoLoteResumenService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaccion = new TransactionTemplate(transactionManager);
+    }
+
+    // ============================
+    // Mantenimiento incremental
+    // ============================
+
+    /** Suma una ejecución recién registrada como EJECUTADO. */
+    public void registrar(PlanEjecucion e) {
+        aplicar(e, cantidad(e), 1);
+    }
+
+    /** Resta una ejecución que deja de contar (p.ej. pasa a OMITIDO). */
+    public void revertir(PlanEjecucion e) {
+        aplicar(e, -cantidad(e), -1);
+    }
+
+    /** Ajusta la cantidad de una ejecución ya contada (correcciones). */
+    public void ajustarCantidad(PlanEjecucion e, double delta) {
+        if (delta == 0) return;
+        aplicar(e, delta, 0);
+    }
+
+    private void aplicar(PlanEjecucion e, double deltaCantidad, int deltaRegistros) {
+        if (e == null || e.getStatus() != PlanEjecucion.Status.EJECUTADO) return;
+        if (e.getPlanAsignacion() == null || e.getPlanAsignacion().getLote() == null) return;
+        if (e.getExecutionDate() == null) return;
+        Product p = e.getPlanDetalle() != null ? e.getPlanDetalle().getProduct() : null;
+        LocalDateTime fechaHora = e.getCreateDate() != null ? e.getCreateDate() : LocalDateTime.now();
+        jdbcTemplate.update(SQL_UPSERT,
+            e.getPlanAsignacion().getLote().getId(),
+            p != null ? p.getId() : 0L,
+            p != null ? p.getName() : null,
+            e.getExecutionDate(),
+            deltaCantidad,
+            deltaRegistros,
+            Timestamp.valueOf(fechaHora));
+    }
+
+    private static double cantidad(PlanEjecucion e) {
+        return e != null && e.getQuantityApplied() != null ? e.getQuantityApplied() : 0.0;
+    }
+
+    /**
+     * Al arrancar, si la tabla no cuadra con plan_ejecucion (primer arranque o una reconstrucción que
+     * no terminó) se arma de nuevo. Corre con el servidor ya atendiendo: la comparación se hace bajo el
+     * lock exclusivo, así que las sumas de esta misma corrida no la hacen pasar por armada.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconstruirSiDescuadrada() {
+        try {
+            Integer n = transaccion.execute(status -> {
+                bloquear();
+                return Boolean.TRUE.equals(jdbcTemplate.queryForObject(SQL_DESCUADRADA, Boolean.class))
+                    ? reconstruirBloqueada() : null;
+            });
+            if (n != null) logger.info("consumo_lote_diario reconstruida: {} filas", n);
+        } catch (Exception ex) {
+            logger.warn("No se pudo reconstruir consumo_lote_diario: {}", ex.getMessage());
+        }
+    }
+
+    /** Arma la tabla desde plan_ejecucion en una transacción, sin perder sumas concurrentes. */
+    public int reconstruir() {
+        Integer n = transaccion.execute(status -> {
+            bloquear();
+            return reconstruirBloqueada();
+        });
+        return n != null ? n : 0;
+    }
+
+    private void bloquear() {
+        jdbcTemplate.query(SQL_CANDADO_EXCLUSIVO, (ResultSetExtractor<Void>) rs -> null, CANDADO_RESUMEN);
+    }
+
+    private int reconstruirBloqueada() {
+        jdbcTemplate.update("DELETE FROM consumo_lote_diario");
+        return jdbcTemplate.update(SQL_RECONSTRUIR);
+    }
+
+    // ============================
+    // Lecturas
+    // ============================
+
+    /**
+     * Totales por lote y producto de los lotes de una especie (columna indexada lote.especie).
+     */
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> totalesPorEspecie(Especie especie) {
+        String sql =
+            "SELECT c.lote_id, l.codigo AS lote_codigo, c.product_id, MAX(c.producto_nombre) AS producto_nombre, " +
+            "       SUM(c.cantidad_total) AS total, SUM(c.registros) AS registros, MAX(c.ultima_fecha_hora) AS ultima_fecha " +
+            "FROM consumo_lote_diario c " +
+            "JOIN lote l ON l.id = c.lote_id " +
+            "WHERE l.especie = ? " +
+            "GROUP BY c.lote_id, l.codigo, c.product_id " +
+            "ORDER BY l.codigo, c.product_id";
+        return jdbcTemplate.queryForList(sql, especie.name());
+    }
+
+    /** Totales por producto de un lote. */
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> totalesPorLote(String loteId) {
+        String sql =
+            "SELECT c.lote_id, l.codigo AS lote_codigo, c.product_id, MAX(c.producto_nombre) AS producto_nombre, " +
+            "       SUM(c.cantidad_total) AS total, SUM(c.registros) AS registros, MAX(c.ultima_fecha_hora) AS ultima_fecha " +
+            "FROM consumo_lote_diario c " +
+            "LEFT JOIN lote l ON l.id = c.lote_id " +
+            "WHERE c.lote_id = ? " +
+            "GROUP BY c.lote_id, l.codigo, c.product_id " +
+            "ORDER BY c.product_id";
+        return jdbcTemplate.queryForList(sql, loteId);
+    }
+
+    /**
+     * Primera página del historial de varios lotes en una sola consulta (LATERAL por lote).
+     */
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> historialReciente(List<String> loteIds, int limite) {
+        if (loteIds == null || loteIds.isEmpty()) return List.of();
+        String marcadores = String.join(", ", java.util.Collections.nCopies(loteIds.size(), "?"));
+        String sql =
+            "SELECT h.* FROM lote l CROSS JOIN LATERAL (" +
+            "  SELECT pe.id AS ejecucion_id, pe.quantity_applied AS cantidad, pe.execution_date AS fecha, " +
+            "         pe.create_date AS fecha_hora, pe.observations AS observaciones, p.name AS producto_nombre, " +
+            "         u.username AS usuario_nombre, u.name AS usuario_nombre_completo, l.id AS lote_id, l.codigo AS lote_codigo " +
+            "  FROM plan_ejecucion pe " +
+            "  JOIN plan_asignacion pa ON pe.asignacion_id = pa.id " +
+            "  LEFT JOIN plan_detalle pd ON pe.detalle_id = pd.id " +
+            "  LEFT JOIN product p ON pd.product_id = p.id " +
+            "  LEFT JOIN usuarios u ON pe.executed_by_user_id = u.id " +
+            "  WHERE pa.lote_id = l.id AND UPPER(pe.status) = 'EJECUTADO' " +
+            "  ORDER BY pe.id DESC LIMIT ?" +
+            ") h WHERE l.id IN (" + marcadores + ")";
+        Object[] args = new Object[loteIds.size() + 1];
+        args[0] = limite;
+        for (int i = 0; i < loteIds.size(); i++) args[i + 1] = loteIds.get(i);
+        return jdbcTemplate.queryForList(sql, args);
+    }
+
+    /**
+     * Historial paginado por cursor (id descendente) de las ejecuciones de un lote.
+     * {@code antesDeId} null = primera página.
+     */
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> historial(String loteId, Long antesDeId, int limite) {
+        String sql =
+            "SELECT pe.id AS ejecucion_id, pe.quantity_applied AS cantidad, pe.execution_date AS fecha, " +
+            "       pe.create_date AS fecha_hora, pe.observations AS observaciones, p.name AS producto_nombre, " +
+            "       u.username AS usuario_nombre, u.name AS usuario_nombre_completo, l.id AS lote_id, l.codigo AS lote_codigo " +
+            "FROM plan_ejecucion pe " +
+            "JOIN plan_asignacion pa ON pe.asignacion_id = pa.id " +
+            "JOIN lote l ON pa.lote_id = l.id " +
+            "LEFT JOIN plan_detalle pd ON pe.detalle_id = pd.id " +
+            "LEFT JOIN product p ON pd.product_id = p.id " +
+            "LEFT JOIN usuarios u ON pe.executed_by_user_id = u.id " +
+            "WHERE pa.lote_id = ? AND UPPER(pe.status) = 'EJECUTADO' " +
+            (antesDeId != null ? "AND pe.id < ? " : "") +
+            "ORDER BY pe.id DESC LIMIT ?";
+        return antesDeId != null
+            ? jdbcTemplate.queryForList(sql, loteId, antesDeId, limite)
+            : jdbcTemplate.queryForList(sql, loteId, limite);
+    }
+}
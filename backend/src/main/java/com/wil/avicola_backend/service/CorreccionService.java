@@ -30,6 +30,9 @@ public class CorreccionService {
     @Autowired
     private ValidacionAlimentacionRepository validacionRepository;
     
+    @Autowired
+    private ConsumoLoteResumenService consumoLoteResumenService;
+    
     /**
      * Valida una cantidad antes de registrarla
      */
@@ -145,6 +148,8 @@ public class CorreccionService {
                                 request.getUsuarioId(), request.getMotivoCorreccion(),
                                 request.getIpAddress(), request.getUserAgent());
             
+            consumoLoteResumenService.ajustarCantidad(registro,
+                request.getNuevaCantidad() - (registro.getQuantityApplied() != null ? registro.getQuantityApplied() : 0.0));
             registro.setQuantityApplied(request.getNuevaCantidad());
         }
         
@@ -0,0 +1,62 @@
+package com.wil.avicola_backend.service;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.wil.avicola_backend.model.Animal;
+import com.wil.avicola_backend.model.Especie;
+import com.wil.avicola_backend.repository.AnimalRepository;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Mantiene animal.especie y su copia en lote.especie. Al arrancar (y al renombrar un animal)
+ * clasifica los animales sin especie o con una desactualizada y copia la especie a los lotes
+ * con un único UPDATE, para que los filtros trabajen sobre lote.especie.
+ */
+@Service
+@RequiredArgsConstructor
+public class EspecieService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EspecieService.class);
+
+    private static final String SQL_SINCRONIZAR_LOTES =
+        "UPDATE lote l SET especie = a.especie " +
+        "FROM race r JOIN animal a ON r.animal_id = a.id " +
+        "WHERE l.race_id = r.id AND l.especie IS DISTINCT FROM a.especie RETURNING l.id";
+
+    private final AnimalRepository animalRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final SyncCambiosService syncCambios;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void sincronizarAlIniciar() {
+        try {
+            int lotes = sincronizar();
+            if (lotes > 0) logger.info("Especie asignada a {} lotes", lotes);
+        } catch (Exception ex) {
+            logger.warn("No se pudo sincronizar la especie de los lotes: {}", ex.getMessage());
+        }
+    }
+
+    /** Clasifica los animales sin especie (o con una desactualizada) y propaga a lote.especie. */
+    @Transactional
+    public int sincronizar() {
+        for (Animal a : animalRepository.findAll()) {
+            Especie e = Especie.deAnimal(a.getId(), a.getName());
+            if (e != a.getEspecie()) {
+                jdbcTemplate.update("UPDATE animal SET especie = ? WHERE id = ?", e.name(), a.getId());
+            }
+        }
+        List<String> lotes = jdbcTemplate.queryForList(SQL_SINCRONIZAR_LOTES, String.class);
+        syncCambios.registrarTodos(SyncCambiosService.LOTES, lotes, null);
+        return lotes.size();
+    }
+}
@@ -28,6 +28,9 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class GestacionService {
 
+    /** Lado de la miniatura que devuelven los listados (debe estar en app.upload.imagen.miniaturas). */
+    private static final int MINIATURA_LISTADO = 160;
+
     public static final int DIAS_GESTACION = 114;
 
     private final RegistroGestacionRepository gestacionRepository;
@@ -293,6 +296,7 @@ public class GestacionService {
                 .motivo(r.getMotivo())
                 .observaciones(r.getObservaciones())
                 .fotoUrl(r.getFotoUrl())
+                .fotoMiniaturaUrl(ImagenUploadService.miniatura(r.getFotoUrl(), MINIATURA_LISTADO))
                 .loteNombre(lote)
                 .build();
     }
@@ -387,6 +391,8 @@ public class GestacionService {
                 .observaciones(p.getObservaciones())
                 .fotoUrl(p.getFotoUrl())
                 .fotoChanchaUrl(fotoChanchaUrl)
+                .fotoMiniaturaUrl(ImagenUploadService.miniatura(p.getFotoUrl(), MINIATURA_LISTADO))
+                .fotoChanchaMiniaturaUrl(ImagenUploadService.miniatura(fotoChanchaUrl, MINIATURA_LISTADO))
                 .loteNombre(loteNombre)
                 .build();
     }
@@ -529,6 +535,7 @@ public class GestacionService {
                 .numeroParto(reg.getNumeroParto())
                 .observaciones(reg.getObservaciones())
                 .fotoUrl(reg.getFotoUrl())
+                .fotoMiniaturaUrl(ImagenUploadService.miniatura(reg.getFotoUrl(), MINIATURA_LISTADO))
                 .loteId(reg.getLoteId())
                 .loteCodigo(reg.getLoteCodigo())
                 .loteNombre(reg.getLoteNombre())
@@ -0,0 +1,310 @@
+package com.wil.avicola_backend.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.wil.avicola_backend.dto.HistorialResponseDto;
+import com.wil.avicola_backend.model.Especie;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Historial de ejecuciones de alimentación leído por bloques con keyset (id descendente).
+ *
+ * Cada bloque es una consulta acotada que une el lote por la asignación o por plan_ejecucion.lote_id
+ * y filtra por especie en SQL (lote.especie). Solo los registros manuales antiguos cuyo lote no se
+ * pudo resolver se buscan aparte, con una consulta por bloque.
+ * Así el historial puede escribirse al cliente a medida que se lee, sin cargar todo en memoria
+ * ni mantener una transacción abierta mientras el cliente descarga.
+ */
+@Service
+@RequiredArgsConstructor
+public class HistorialEjecucionService {
+
+    public static final int LIMITE_DEFECTO = 200;
+    public static final int LIMITE_MAXIMO = 2000;
+    private static final int TAMANO_BLOQUE = 256;
+
+    private static final Pattern LOTE_UUID = Pattern.compile(
+        "Lote:\\s*([0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12})");
+    private static final Pattern CUALQUIER_UUID = Pattern.compile(
+        "([0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12})");
+    private static final Pattern PRODUCTO = Pattern.compile("Producto:\\s*([^|]+)");
+
+    private static final String SQL_BLOQUE =
+        "SELECT pe.id, pe.execution_date, pe.quantity_applied, pe.observations, pe.status, pe.day_number, " +
+        "       pe.create_date, pe.update_date, pe.asignacion_id, pe.lote_id AS lote_ref, " +
+        "       pe.animales_vivos, pe.animales_muertos, " +
+        "       l.id AS lote_id, l.codigo AS lote_codigo, l.name AS lote_nombre, l.especie AS lote_especie, " +
+        "       p.id AS producto_id, p.name AS producto_nombre, " +
+        "       ue.id AS ejecutor_id, ue.username AS ejecutor_username, " +
+        "       ua.id AS asignado_id, ua.username AS asignado_username " +
+        "FROM plan_ejecucion pe " +
+        "LEFT JOIN plan_asignacion pa ON pe.asignacion_id = pa.id " +
+        "LEFT JOIN lote l ON l.id = COALESCE(pa.lote_id, pe.lote_id) " +
+        "LEFT JOIN plan_detalle pd ON pe.detalle_id = pd.id " +
+        "LEFT JOIN product p ON p.id = COALESCE(pd.product_id, pe.product_id) " +
+        "LEFT JOIN usuarios ue ON pe.executed_by_user_id = ue.id " +
+        "LEFT JOIN usuarios ua ON pa.assigned_user_id = ua.id " +
+        "WHERE pe.execution_date BETWEEN ? AND ? AND pe.id < ? ";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    /** Filtro de una página: rango de fechas, especie (null = todas), cursor y tamaño. */
+    public record Filtro(LocalDate desde, LocalDate hasta, Especie especie, Long antesDe, int limite) {
+
+        public static Filtro de(LocalDate desde, LocalDate hasta, Especie especie, Long antesDe, Integer limite) {
+            int n = limite == null || limite <= 0 ? LIMITE_DEFECTO : Math.min(limite, LIMITE_MAXIMO);
+            return new Filtro(desde != null ? desde : LocalDate.of(1970, 1, 1),
+                hasta != null ? hasta : LocalDate.of(9999, 12, 31), especie, antesDe, n);
+        }
+
+        /** Todo el rango, sin tope de registros: solo para escribir en streaming. */
+        public static Filtro completo(LocalDate desde, LocalDate hasta, Especie especie, Long antesDe) {
+            Filtro f = de(desde, hasta, especie, antesDe, null);
+            return new Filtro(f.desde(), f.hasta(), especie, antesDe, Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Escribe {"registros":[...],"siguienteCursor":id|null} en el stream, vaciando el buffer después
+     * de cada bloque para que el cliente reciba los primeros registros sin esperar al final.
+     */
+    public void escribir(Filtro filtro, OutputStream out) throws IOException {
+        try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out)) {
+            gen.writeStartObject();
+            gen.writeFieldName("registros");
+            Long siguiente = escribirRegistros(filtro, gen);
+            if (siguiente != null) gen.writeNumberField("siguienteCursor", siguiente);
+            else gen.writeNullField("siguienteCursor");
+            gen.writeEndObject();
+        }
+    }
+
+    /**
+     * Escribe solo el arreglo [...] de registros, con el mismo vaciado por bloque.
+     * Con {@link Filtro#completo} entrega todo el rango sin retenerlo en memoria.
+     */
+    public void escribirArreglo(Filtro filtro, OutputStream out) throws IOException {
+        try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out)) {
+            escribirRegistros(filtro, gen);
+        }
+    }
+
+    private Long escribirRegistros(Filtro filtro, JsonGenerator gen) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(HistorialResponseDto.class)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        gen.writeStartArray();
+        Long siguiente;
+        try {
+            siguiente = recorrer(filtro, dto -> {
+                try {
+                    writer.writeValue(gen, dto);
+                } catch (IOException e) {
+                    throw new java.io.UncheckedIOException(e);
+                }
+            }, () -> {
+                try {
+                    gen.flush();
+                } catch (IOException e) {
+                    throw new java.io.UncheckedIOException(e);
+                }
+            });
+        } catch (java.io.UncheckedIOException e) {
+            throw e.getCause();
+        }
+        gen.writeEndArray();
+        return siguiente;
+    }
+
+    /** Una página en memoria y el cursor de la siguiente (null si no hay más). */
+    public record Pagina(List<HistorialResponseDto> registros, Long siguienteCursor) {}
+
+    /** Variante en memoria para el endpoint que devuelve un arreglo JSON; a lo sumo {@code filtro.limite()} registros. */
+    public Pagina listar(Filtro filtro) {
+        List<HistorialResponseDto> r = new ArrayList<>();
+        Long siguiente = recorrer(filtro, r::add, () -> {});
+        return new Pagina(r, siguiente);
+    }
+
+    /**
+     * Recorre bloques hasta entregar {@code filtro.limite()} registros o agotar el rango.
+     * Devuelve el cursor para la página siguiente (null si no hay más).
+     */
+    private Long recorrer(Filtro filtro, Consumer<HistorialResponseDto> destino, Runnable finDeBloque) {
+        long cursor = filtro.antesDe() != null ? filtro.antesDe() : Long.MAX_VALUE;
+        int entregados = 0;
+        while (entregados < filtro.limite()) {
+            List<Fila> bloque = leerBloque(filtro, cursor);
+            if (bloque.isEmpty()) return null;
+            Map<String, LoteManual> lotesManuales = resolverLotesManuales(bloque);
+            for (Fila f : bloque) {
+                cursor = f.dto.getId();
+                if (f.manual) completarManual(f, lotesManuales);
+                if (!coincide(f, filtro.especie())) continue;
+                destino.accept(f.dto);
+                if (++entregados == filtro.limite()) {
+                    finDeBloque.run();
+                    return cursor;
+                }
+            }
+            finDeBloque.run();
+            if (bloque.size() < TAMANO_BLOQUE) return null;
+        }
+        return cursor;
+    }
+
+    private List<Fila> leerBloque(Filtro filtro, long cursor) {
+        String sql = SQL_BLOQUE
+            // Manuales sin lote resoluble pasan al filtro en memoria (regla histórica de pollos)
+            + (filtro.especie() != null ? "AND (l.especie = ? OR (pe.asignacion_id IS NULL AND l.id IS NULL)) " : "")
+            + "ORDER BY pe.id DESC LIMIT ?";
+        List<Object> args = new ArrayList<>(5);
+        args.add(Date.valueOf(filtro.desde()));
+        args.add(Date.valueOf(filtro.hasta()));
+        args.add(cursor);
+        if (filtro.especie() != null) args.add(filtro.especie().name());
+        args.add(TAMANO_BLOQUE);
+        return jdbcTemplate.query(sql, (rs, i) -> mapear(rs), args.toArray());
+    }
+
+    private static Fila mapear(ResultSet rs) throws SQLException {
+        Date fecha = rs.getDate("execution_date");
+        Timestamp creado = rs.getTimestamp("create_date");
+        Timestamp actualizado = rs.getTimestamp("update_date");
+        String status = rs.getString("status");
+        HistorialResponseDto dto = new HistorialResponseDto(
+            rs.getLong("id"),
+            fecha != null ? fecha.toLocalDate() : null,
+            rs.getObject("quantity_applied", Double.class),
+            rs.getString("observations"),
+            status != null ? status : "PENDIENTE",
+            rs.getObject("day_number", Integer.class),
+            null, rs.getObject("animales_vivos", Integer.class), rs.getObject("animales_muertos", Integer.class),
+            creado != null ? creado.toLocalDateTime() : null,
+            actualizado != null ? actualizado.toLocalDateTime() : null);
+
+        boolean manual = rs.getObject("asignacion_id") == null;
+        String especie = rs.getString("lote_especie");
+        Especie especieLote = especie != null ? Especie.valueOf(especie) : null;
+        if (rs.getString("lote_id") != null) {
+            dto.setLoteId(rs.getString("lote_id"));
+            dto.setLoteCodigo(rs.getString("lote_codigo"));
+            dto.setLoteDescripcion(rs.getString("lote_nombre"));
+            dto.setEspecie(especieLote != null ? especieLote.getEtiqueta() : null);
+        }
+
+        Long productoId = rs.getObject("producto_id", Long.class);
+        if (productoId != null) {
+            dto.setProductoId(productoId);
+            dto.setProductoNombre(rs.getString("producto_nombre"));
+        } else {
+            dto.setProductoNombre(extraer(PRODUCTO, dto.getObservations()));
+        }
+
+        Long ejecutor = rs.getObject("ejecutor_id", Long.class);
+        Long asignado = rs.getObject("asignado_id", Long.class);
+        if (ejecutor != null) {
+            dto.setUsuarioNombre(rs.getString("ejecutor_username"));
+            dto.setUsuarioId(ejecutor.toString());
+        } else if (asignado != null) {
+            dto.setUsuarioNombre(rs.getString("asignado_username"));
+            dto.setUsuarioId(asignado.toString());
+        } else {
+            dto.setUsuarioNombre("Usuario N/A");
+            dto.setUsuarioId("N/A");
+        }
+        // Solo los manuales sin lote en la fila necesitan la búsqueda por bloque
+        boolean pendiente = manual && dto.getLoteId() == null;
+        String loteRef = rs.getString("lote_ref");
+        return new Fila(dto, pendiente, pendiente ? (loteRef != null ? loteRef : extraerLoteId(dto.getObservations())) : null);
+    }
+
+    /** Una sola consulta por bloque para los lotes referidos por registros manuales. */
+    private Map<String, LoteManual> resolverLotesManuales(List<Fila> bloque) {
+        Set<String> ids = new LinkedHashSet<>();
+        for (Fila f : bloque) {
+            if (f.manual && f.loteIdManual != null) ids.add(f.loteIdManual);
+        }
+        if (ids.isEmpty()) return Collections.emptyMap();
+        String marcadores = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        Map<String, LoteManual> r = new HashMap<>();
+        jdbcTemplate.query("SELECT id, codigo, name, especie FROM lote WHERE id IN (" + marcadores + ")",
+            rs -> {
+                String especie = rs.getString("especie");
+                r.put(rs.getString("id"), new LoteManual(rs.getString("codigo"), rs.getString("name"),
+                    especie != null ? Especie.valueOf(especie) : null));
+            }, ids.toArray());
+        return r;
+    }
+
+    private static void completarManual(Fila f, Map<String, LoteManual> lotes) {
+        HistorialResponseDto dto = f.dto;
+        String loteId = f.loteIdManual;
+        if (loteId == null || loteId.isEmpty()) {
+            dto.setLoteId("LOT-MANUAL");
+            dto.setLoteCodigo("MANUAL");
+            dto.setLoteDescripcion("Registro Manual");
+            return;
+        }
+        dto.setLoteId(loteId);
+        LoteManual lote = lotes.get(loteId);
+        if (lote == null) {
+            dto.setLoteCodigo("MANUAL");
+            dto.setLoteDescripcion("Lote no encontrado: " + loteId.substring(0, Math.min(8, loteId.length())));
+            return;
+        }
+        dto.setLoteCodigo(lote.codigo() != null ? lote.codigo() : "S/C");
+        dto.setLoteDescripcion(lote.nombre());
+        dto.setEspecie(lote.especie() != null ? lote.especie().getEtiqueta() : null);
+    }
+
+    /**
+     * Los registros con asignación ya vienen filtrados por SQL; los manuales se filtran aquí.
+     * Los manuales sin especie resoluble se mantienen en el historial de pollos, como antes.
+     */
+    private static boolean coincide(Fila f, Especie especie) {
+        if (especie == null) return true;
+        String especieDto = f.dto.getEspecie();
+        if (especieDto == null) return especie == Especie.POLLOS && f.dto.getLoteCodigo() != null;
+        return especie.getEtiqueta().equals(especieDto);
+    }
+
+    private static String extraerLoteId(String observaciones) {
+        String id = extraer(LOTE_UUID, observaciones);
+        return id != null ? id : extraer(CUALQUIER_UUID, observaciones);
+    }
+
+    private static String extraer(Pattern patron, String texto) {
+        if (texto == null || texto.isEmpty()) return null;
+        Matcher m = patron.matcher(texto);
+        return m.find() ? m.group(1).trim() : null;
+    }
+
+    private record Fila(HistorialResponseDto dto, boolean manual, String loteIdManual) {}
+
+    private record LoteManual(String codigo, String nombre, Especie especie) {}
+}
@@ -0,0 +1,418 @@
+package com.wil.avicola_backend.service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Subida de imágenes (fotos de gestación, foto de perfil). El cuerpo multipart se copia a disco por NIO
+ * calculando su SHA-256 en la misma pasada; con ese hash se nombran las variantes, así que la misma foto
+ * subida dos veces no se reprocesa y las URLs pueden cachearse como inmutables. En un pool acotado se
+ * decodifica una vez, se corrige la orientación EXIF y se escriben la imagen principal (lado máximo
+ * acotado) y las miniaturas, todas reescritas sin metadatos (sin EXIF ni GPS del teléfono):
+ * {@code {hash}.jpg}, {@code {hash}-480.jpg}, {@code {hash}-160.jpg}.
+ */
+@Slf4j
+@Service
+public class ImagenUploadService {
+
+    /** URL de la imagen principal y de sus miniaturas por lado en px. */
+    public record ImagenGuardada(String url, Map<Integer, String> miniaturas, long bytesSubidos) {}
+
+    private static final Pattern NOMBRE_DIRECCIONADO = Pattern.compile("^(.*/)?([0-9a-f]{32})\\.(jpg|webp)$");
+    private static final Pattern EXTENSION_IMAGEN = Pattern.compile("\\.(jpe?g|png|webp|gif|heic|heif)");
+    private static final int LARGO_HASH = 32;
+    private static final long MAX_PIXELES = 60_000_000L;
+
+    @Value("${app.upload.dir}")
+    private String uploadDir;
+
+    @Value("${app.upload.imagen.lado-maximo:1920}")
+    private int ladoMaximo;
+
+    @Value("${app.upload.imagen.miniaturas:480,160}")
+    private List<Integer> tamanosMiniatura;
+
+    @Value("${app.upload.imagen.calidad:0.82}")
+    private float calidad;
+
+    /** jpg o webp; webp solo si hay un escritor ImageIO para ese formato en el classpath. */
+    @Value("${app.upload.imagen.formato:jpg}")
+    private String formatoConfigurado;
+
+    @Value("${app.upload.imagen.hilos:2}")
+    private int hilos;
+
+    @Value("${app.upload.imagen.cola:16}")
+    private int cola;
+
+    @Value("${app.upload.imagen.timeout-segundos:30}")
+    private int timeoutSegundos;
+
+    private String formato;
+    private ThreadPoolExecutor pool;
+
+    @PostConstruct
+    void iniciar() {
+        formato = "webp".equalsIgnoreCase(formatoConfigurado) && ImageIO.getImageWritersByFormatName("webp").hasNext()
+            ? "webp" : "jpg";
+        if (!formato.equalsIgnoreCase(formatoConfigurado)) {
+            log.warn("Sin escritor ImageIO para '{}'; las imágenes se guardan como {}", formatoConfigurado, formato);
+        }
+        AtomicInteger n = new AtomicInteger();
+        // Decodificar una foto de 12 MP ocupa ~50 MB: pocos hilos y cola corta; si se llena, se rechaza
+        pool = new ThreadPoolExecutor(hilos, hilos, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(cola), r -> {
+            Thread t = new Thread(r, "imagenes-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void detener() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Guarda la imagen bajo {@code /uploads/{carpeta}/} y devuelve sus URLs. Si el formato no se puede
+     * decodificar (p. ej. HEIC) se guarda el archivo tal cual, con nombre por hash y sin miniaturas.
+     */
+    public ImagenGuardada guardar(MultipartFile file, String carpeta, String extensionOriginal) throws IOException {
+        Path raiz = Paths.get(uploadDir).toAbsolutePath().normalize();
+        Path dir = carpeta == null || carpeta.isBlank() ? raiz : raiz.resolve(carpeta).normalize();
+        if (!dir.startsWith(raiz)) {
+            throw new IllegalArgumentException("Carpeta de subida inválida");
+        }
+        Files.createDirectories(dir);
+        String prefijoUrl = "/uploads/" + (dir.equals(raiz) ? "" : raiz.relativize(dir).toString().replace('\\', '/') + "/");
+
+        Path temporal = Files.createTempFile(dir, ".subida-", ".tmp");
+        try {
+            String hash;
+            long bytes;
+            try (InputStream in = file.getInputStream()) {
+                Copia copia = copiarConHash(in, temporal);
+                hash = copia.hash();
+                bytes = copia.bytes();
+            }
+
+            Future<Map<Integer, String>> trabajo;
+            try {
+                trabajo = pool.submit(() -> procesar(temporal, dir, hash));
+            } catch (RejectedExecutionException e) {
+                throw new IllegalStateException("El servidor está procesando muchas imágenes; intente de nuevo en unos segundos");
+            }
+            Map<Integer, String> variantes;
+            try {
+                variantes = trabajo.get(timeoutSegundos, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                trabajo.cancel(true);
+                throw new IOException("Tiempo de procesamiento de imagen agotado");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Procesamiento de imagen interrumpido");
+            } catch (ExecutionException e) {
+                Throwable causa = e.getCause();
+                if (causa instanceof IOException io) throw io;
+                if (causa instanceof RuntimeException re) throw re;
+                throw new IOException(causa);
+            }
+
+            if (variantes == null) {
+                // No decodificable: se conserva el original con nombre por contenido (sin miniaturas, así que
+                // el nombre no sigue el patrón {hash}.jpg que usa miniatura())
+                String ext = extensionOriginal != null && EXTENSION_IMAGEN.matcher(extensionOriginal.toLowerCase()).matches()
+                    ? extensionOriginal.toLowerCase() : ".img";
+                Path destino = dir.resolve(hash + "-original" + ext);
+                mover(temporal, destino);
+                return new ImagenGuardada(prefijoUrl + destino.getFileName(), Map.of(), bytes);
+            }
+            Map<Integer, String> miniaturas = new LinkedHashMap<>();
+            variantes.forEach((lado, nombre) -> miniaturas.put(lado, prefijoUrl + nombre));
+            return new ImagenGuardada(prefijoUrl + hash + "." + formato, miniaturas, bytes);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    /**
+     * URL de la miniatura de {@code lado} px para una imagen subida por este servicio; para URLs
+     * antiguas (sin nombre por hash) devuelve la misma URL.
+     */
+    public static String miniatura(String url, int lado) {
+        if (url == null) return null;
+        Matcher m = NOMBRE_DIRECCIONADO.matcher(url);
+        if (!m.matches()) return url;
+        return (m.group(1) != null ? m.group(1) : "") + m.group(2) + "-" + lado + "." + m.group(3);
+    }
+
+    private record Copia(String hash, long bytes) {}
+
+    private static Copia copiarConHash(InputStream in, Path destino) throws IOException {
+        MessageDigest sha = sha256();
+        long total = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        try (ReadableByteChannel origen = Channels.newChannel(in);
+             FileChannel salida = FileChannel.open(destino, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (origen.read(buffer) != -1) {
+                buffer.flip();
+                sha.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    total += salida.write(buffer);
+                }
+                buffer.clear();
+            }
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : sha.digest()) hex.append(String.format("%02x", b));
+        return new Copia(hex.substring(0, LARGO_HASH), total);
+    }
+
+    /** Escribe las variantes; null si el archivo no es una imagen que ImageIO sepa leer. */
+    private Map<Integer, String> procesar(Path origen, Path dir, String hash) throws IOException {
+        String principal = hash + "." + formato;
+        Map<Integer, String> nombres = new LinkedHashMap<>();
+        for (Integer lado : tamanosMiniatura) nombres.put(lado, hash + "-" + lado + "." + formato);
+        if (Files.exists(dir.resolve(principal)) && nombres.values().stream().allMatch(n -> Files.exists(dir.resolve(n)))) {
+            return nombres; // misma foto ya subida
+        }
+
+        BufferedImage imagen = leer(origen);
+        if (imagen == null) return null;
+        imagen = aRgb(orientar(imagen, orientacionExif(origen)));
+
+        escribir(escalar(imagen, ladoMaximo), dir.resolve(principal));
+        for (Map.Entry<Integer, String> e : nombres.entrySet()) {
+            escribir(escalar(imagen, e.getKey()), dir.resolve(e.getValue()));
+        }
+        return nombres;
+    }
+
+    private static BufferedImage leer(Path origen) throws IOException {
+        try {
+            return decodificar(origen);
+        } catch (javax.imageio.IIOException e) {
+            // Variantes que ImageIO no soporta (JPEG CMYK, etc.): se guardan sin procesar
+            log.warn("No se pudo decodificar la imagen subida: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static BufferedImage decodificar(Path origen) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(origen.toFile())) {
+            if (in == null) return null;
+            Iterator<ImageReader> lectores = ImageIO.getImageReaders(in);
+            if (!lectores.hasNext()) return null;
+            ImageReader lector = lectores.next();
+            try {
+                lector.setInput(in, true, true);
+                // Evita decodificar "bombas" de dimensiones absurdas
+                if ((long) lector.getWidth(0) * lector.getHeight(0) > MAX_PIXELES) {
+                    throw new IllegalArgumentException("La imagen tiene demasiados píxeles");
+                }
+                return lector.read(0);
+            } finally {
+                lector.dispose();
+            }
+        }
+    }
+
+    private void escribir(BufferedImage imagen, Path destino) throws IOException {
+        Iterator<ImageWriter> escritores = ImageIO.getImageWritersByFormatName("jpg".equals(formato) ? "jpeg" : formato);
+        if (!escritores.hasNext()) throw new IOException("Sin escritor de imágenes para " + formato);
+        ImageWriter escritor = escritores.next();
+        Path temporal = Files.createTempFile(destino.getParent(), ".variante-", ".tmp");
+        try {
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(temporal.toFile())) {
+                escritor.setOutput(out);
+                ImageWriteParam param = escritor.getDefaultWriteParam();
+                if (param.canWriteCompressed()) {
+                    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                    if (param.getCompressionTypes() != null && param.getCompressionType() == null) {
+                        param.setCompressionType(param.getCompressionTypes()[0]);
+                    }
+                    param.setCompressionQuality(calidad);
+                }
+                if (param.canWriteProgressive()) {
+                    param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+                }
+                // Sin metadatos: la imagen sale sin EXIF
+                escritor.write(null, new IIOImage(imagen, null, null), param);
+            } finally {
+                escritor.dispose();
+            }
+            mover(temporal, destino);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    private static void mover(Path origen, Path destino) throws IOException {
+        try {
+            Files.move(origen, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(origen, destino, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** Reduce a lado máximo {@code lado} por mitades sucesivas (mejor calidad que un solo salto). */
+    private static BufferedImage escalar(BufferedImage origen, int lado) {
+        int w = origen.getWidth();
+        int h = origen.getHeight();
+        if (Math.max(w, h) <= lado) return origen;
+        double factor = (double) lado / Math.max(w, h);
+        int finalW = Math.max(1, (int) Math.round(w * factor));
+        int finalH = Math.max(1, (int) Math.round(h * factor));
+        BufferedImage actual = origen;
+        while (w / 2 >= finalW && h / 2 >= finalH) {
+            w /= 2;
+            h /= 2;
+            actual = dibujar(actual, w, h, null);
+        }
+        return w == finalW && h == finalH ? actual : dibujar(actual, finalW, finalH, null);
+    }
+
+    private static BufferedImage dibujar(BufferedImage origen, int w, int h, AffineTransform transform) {
+        BufferedImage destino = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = destino.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, w, h);
+            if (transform != null) {
+                g.drawImage(origen, transform, null);
+            } else {
+                g.drawImage(origen, 0, 0, w, h, null);
+            }
+        } finally {
+            g.dispose();
+        }
+        return destino;
+    }
+
+    /** JPEG/PNG con alfa o paleta a RGB sobre fondo blanco (JPEG no guarda transparencia). */
+    private static BufferedImage aRgb(BufferedImage origen) {
+        if (origen.getType() == BufferedImage.TYPE_INT_RGB) return origen;
+        return dibujar(origen, origen.getWidth(), origen.getHeight(), null);
+    }
+
+    /** Aplica la orientación EXIF (1-8), ya que al quitar los metadatos se pierde. */
+    private static BufferedImage orientar(BufferedImage img, int orientacion) {
+        int w = img.getWidth();
+        int h = img.getHeight();
+        AffineTransform t = new AffineTransform();
+        boolean girada = orientacion >= 5;
+        switch (orientacion) {
+            case 2 -> { t.translate(w, 0); t.scale(-1, 1); }
+            case 3 -> { t.translate(w, h); t.rotate(Math.PI); }
+            case 4 -> { t.translate(0, h); t.scale(1, -1); }
+            case 5 -> { t.rotate(-Math.PI / 2); t.scale(-1, 1); }
+            case 6 -> { t.translate(h, 0); t.rotate(Math.PI / 2); }
+            case 7 -> { t.scale(-1, 1); t.translate(-h, 0); t.translate(0, w); t.rotate(3 * Math.PI / 2); }
+            case 8 -> { t.translate(0, w); t.rotate(3 * Math.PI / 2); }
+            default -> { return img; }
+        }
+        return dibujar(img, girada ? h : w, girada ? w : h, t);
+    }
+
+    /** Lee el tag Orientation (0x0112) del IFD0 de un JPEG; 1 si no hay o no es JPEG. */
+    private static int orientacionExif(Path archivo) {
+        byte[] cabecera = new byte[128 * 1024];
+        int leidos;
+        try (InputStream in = Files.newInputStream(archivo)) {
+            leidos = in.readNBytes(cabecera, 0, cabecera.length);
+        } catch (IOException e) {
+            return 1;
+        }
+        ByteBuffer b = ByteBuffer.wrap(cabecera, 0, leidos);
+        if (leidos < 4 || (b.get(0) & 0xFF) != 0xFF || (b.get(1) & 0xFF) != 0xD8) return 1;
+        int pos = 2;
+        while (pos + 4 <= leidos) {
+            if ((b.get(pos) & 0xFF) != 0xFF) return 1;
+            int marcador = b.get(pos + 1) & 0xFF;
+            int largo = ((b.get(pos + 2) & 0xFF) << 8) | (b.get(pos + 3) & 0xFF);
+            if (marcador == 0xDA || marcador == 0xD9) return 1; // inicio de datos: no hubo EXIF
+            if (marcador == 0xE1 && pos + 10 < leidos
+                    && b.get(pos + 4) == 'E' && b.get(pos + 5) == 'x' && b.get(pos + 6) == 'i' && b.get(pos + 7) == 'f') {
+                return orientacionTiff(b, pos + 10, Math.min(leidos, pos + 2 + largo));
+            }
+            pos += 2 + largo;
+        }
+        return 1;
+    }
+
+    private static int orientacionTiff(ByteBuffer b, int tiff, int fin) {
+        try {
+            ByteBuffer t = b.duplicate();
+            t.order(t.get(tiff) == 'I' ? java.nio.ByteOrder.LITTLE_ENDIAN : java.nio.ByteOrder.BIG_ENDIAN);
+            int ifd = tiff + t.getInt(tiff + 4);
+            int entradas = t.getShort(ifd) & 0xFFFF;
+            for (int i = 0; i < entradas; i++) {
+                int e = ifd + 2 + i * 12;
+                if (e + 12 > fin) break;
+                if ((t.getShort(e) & 0xFFFF) == 0x0112) {
+                    int valor = t.getShort(e + 8) & 0xFFFF;
+                    return valor >= 1 && valor <= 8 ? valor : 1;
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // EXIF truncado o corrupto
+        }
+        return 1;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
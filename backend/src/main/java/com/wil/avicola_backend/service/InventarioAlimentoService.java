@@ -5,11 +5,12 @@ import java.util.List;
 import java.util.Optional;
 import java.util.ArrayList;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 
 import com.wil.avicola_backend.model.InventarioAlimento;
 import com.wil.avicola_backend.model.MovimientoInventario;
@@ -18,6 +19,7 @@ import com.wil.avicola_backend.model.TypeFood;
 import com.wil.avicola_backend.dto.InventarioAlimentoResponse;
 import com.wil.avicola_backend.repository.InventarioAlimentoRepository;
 import com.wil.avicola_backend.repository.MovimientoInventarioRepository;
+import com.wil.avicola_backend.repository.StockActualizado;
 import com.wil.avicola_backend.repository.TypeFoodRepository;
 import com.wil.avicola_backend.repository.ProductRepository;
 import com.wil.avicola_backend.model.Product;
@@ -47,7 +49,10 @@ public class InventarioAlimentoService {
     private InventarioProductoService inventarioProductoService;
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private InventarioEventosService inventarioEventos;
+
+    @PersistenceContext
+    private EntityManager entityManager;
 
     /**
      * Registrar consumo de alimento por lote con deducción automática
@@ -112,10 +117,13 @@ public class InventarioAlimentoService {
             }
             System.out.println("   ✓ Stock suficiente");
             
-            // 4. Registrar movimiento ANTES de modificar el inventario
-            System.out.println("   📝 Creando movimiento...");
-            BigDecimal stockAnterior = inventario.getCantidadStock();
-            BigDecimal stockNuevo = stockAnterior.subtract(cantidad);
+            // 4. Descontar en un solo UPDATE condicionado: el stock anterior/nuevo sale de la fila
+            //    (el chequeo de arriba solo da un mensaje temprano; este es el que decide)
+            System.out.println("   📦 Actualizando inventario...");
+            StockActualizado actualizado = descontarAtomico(inventario, cantidad);
+            BigDecimal stockAnterior = actualizado.getStockAnterior();
+            BigDecimal stockNuevo = actualizado.getStockNuevo();
+            System.out.println("   ✓ Inventario actualizado");
             
             MovimientoInventario movimiento = MovimientoInventario.builder()
                     .inventario(inventario)
@@ -128,22 +136,11 @@ public class InventarioAlimentoService {
                     .usuarioRegistro(usuarioRegistro)
                     .build();
             
-            // 5. Guardar movimiento primero
+            // 5. Guardar movimiento
             System.out.println("   💾 Guardando movimiento...");
             movimiento = movimientoRepository.save(movimiento);
             System.out.println("   ✓ Movimiento guardado ID: " + movimiento.getId());
             
-            // 6. Actualizar inventario - CON MANEJO DE ERRORES
-            System.out.println("   📦 Actualizando inventario...");
-            try {
-                inventario.descontarStock(cantidad);
-                inventario = inventarioRepository.save(inventario);
-                System.out.println("   ✓ Inventario actualizado");
-            } catch (Exception invEx) {
-                System.err.println("   ❌ Error actualizando inventario: " + invEx.getMessage());
-                throw new RuntimeException("Error actualizando inventario", invEx);
-            }
-            
             System.out.println("✅ [ÉXITO] Consumo registrado exitosamente:");
             System.out.println("   - Stock anterior: " + stockAnterior + " kg");
             System.out.println("   - Stock nuevo: " + stockNuevo + " kg");
@@ -152,10 +149,9 @@ public class InventarioAlimentoService {
             // 7. Verificar alerta de stock bajo
             verificarAlertaStockBajo(inventario);
             
-            // Add WebSocket notification for inventory changes
-            if (movimiento != null) {
-                messagingTemplate.convertAndSend("/topic/inventory-update", "Inventory changed for type: " + inventario.getTipoAlimento().getName());
-            }
+            // Aviso por WebSocket al confirmar, agrupado con los demás consumos del mismo tipo
+            inventarioEventos.movimiento(InventarioEventosService.TIPO_ALIMENTO, tipoAlimentoId,
+                inventario.getCantidadStock(), movimiento.getId(), cantidad.negate(), loteId);
             
             return movimiento;
             
@@ -178,6 +174,20 @@ public class InventarioAlimentoService {
         sincronizarConsumoEnInventarioProducto(tipoAlimentoId, productId, cantidad, loteId, usuarioRegistro, observaciones);
     }
     
+    /**
+     * Descuenta con UPDATE ... WHERE cantidad_stock >= ? RETURNING y relee la entidad (la fila queda
+     * bloqueada hasta el commit), para que un flush posterior no vuelva a escribir el stock leído antes.
+     */
+    private StockActualizado descontarAtomico(InventarioAlimento inventario, BigDecimal cantidad) {
+        StockActualizado actualizado = inventarioRepository.descontarStock(inventario.getId(), cantidad).orElse(null);
+        entityManager.refresh(inventario);
+        if (actualizado == null) {
+            throw new RuntimeException(String.format("Stock insuficiente. Disponible: %.3f kg, Requerido: %.3f kg",
+                inventario.getCantidadStock(), cantidad));
+        }
+        return actualizado;
+    }
+
     /**
      * ✅ MÉTODO MEJORADO - Obtener o crear inventario de forma segura
      */
@@ -360,21 +370,24 @@ public class InventarioAlimentoService {
     public MovimientoInventario agregarStock(Long tipoAlimentoId, BigDecimal cantidad, String usuarioRegistro, String observaciones) {
         InventarioAlimento inventario = obtenerOCrearInventario(tipoAlimentoId);
         
-        BigDecimal stockAnterior = inventario.getCantidadStock();
-        inventario.agregarStock(cantidad);
-        inventario = inventarioRepository.save(inventario);
+        StockActualizado actualizado = inventarioRepository.sumarStock(inventario.getId(), cantidad)
+                .orElseThrow(() -> new RuntimeException("Inventario no encontrado para tipoAlimentoId: " + tipoAlimentoId));
+        entityManager.refresh(inventario);
         
         MovimientoInventario movimiento = MovimientoInventario.builder()
                 .inventario(inventario)
                 .tipoMovimiento(TipoMovimiento.ENTRADA)
                 .cantidad(cantidad)
-                .stockAnterior(stockAnterior)
-                .stockNuevo(inventario.getCantidadStock())
+                .stockAnterior(actualizado.getStockAnterior())
+                .stockNuevo(actualizado.getStockNuevo())
                 .observaciones(observaciones)
                 .usuarioRegistro(usuarioRegistro)
                 .build();
         
-        return movimientoRepository.save(movimiento);
+        movimiento = movimientoRepository.save(movimiento);
+        inventarioEventos.movimiento(InventarioEventosService.TIPO_ALIMENTO, tipoAlimentoId,
+            inventario.getCantidadStock(), movimiento.getId(), cantidad, null);
+        return movimiento;
     }
     
     /**
@@ -648,24 +661,22 @@ public class InventarioAlimentoService {
             );
         }
 
-        BigDecimal stockAnterior = inventario.getCantidadStock();
-        BigDecimal stockNuevo = stockAnterior.subtract(cantidad);
+        StockActualizado actualizado = descontarAtomico(inventario, cantidad);
 
         MovimientoInventario movimiento = MovimientoInventario.builder()
                 .inventario(inventario)
                 .tipoMovimiento(TipoMovimiento.CONSUMO_LOTE)
                 .cantidad(cantidad)
-                .stockAnterior(stockAnterior)
-                .stockNuevo(stockNuevo)
+                .stockAnterior(actualizado.getStockAnterior())
+                .stockNuevo(actualizado.getStockNuevo())
                 .loteId(loteId)
                 .observaciones(observaciones)
                 .usuarioRegistro(usuarioRegistro)
                 .build();
 
         movimiento = movimientoRepository.save(movimiento);
-
-        inventario.descontarStock(cantidad);
-        inventario = inventarioRepository.save(inventario);
+        inventarioEventos.movimiento(InventarioEventosService.TIPO_ALIMENTO, tipoAlimentoId,
+            inventario.getCantidadStock(), movimiento.getId(), cantidad.negate(), loteId);
 
         verificarAlertaStockBajo(inventario);
 
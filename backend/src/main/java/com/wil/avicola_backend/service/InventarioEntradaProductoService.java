@@ -34,6 +34,7 @@ public class InventarioEntradaProductoService {
     private final ProductRepository productRepository;
     private final ProviderRepository providerRepository;
     private final InventarioProductoService inventarioProductoService;
+    private final AsignadorFefoService asignadorFefo;
 
     @Transactional
     public InventarioEntradaProducto registrarEntrada(
@@ -89,6 +90,7 @@ public class InventarioEntradaProductoService {
             .observaciones(observaciones)
             .build();
         e = entradasRepo.save(e);
+        asignadorFefo.registrarEntrada(e);
 
         // Aumentar el inventario consolidado
         inventarioProductoService.registrarMovimiento(
@@ -121,71 +123,26 @@ public class InventarioEntradaProductoService {
         if (cantidadBaseSolicitada == null || cantidadBaseSolicitada.compareTo(BigDecimal.ZERO) <= 0)
             throw new RequestException("cantidad debe ser > 0");
 
-        Product p = productRepository.findById(productId)
-            .orElseThrow(() -> new RequestException("Producto no encontrado: " + productId));
-
-        List<InventarioEntradaProducto> entradas = entradasRepo.findActivasPorProducto(productId);
-        LocalDate hoy = LocalDate.now();
+        if (!productRepository.existsById(productId))
+            throw new RequestException("Producto no encontrado: " + productId);
 
-        // separar expiradas y válidas
-        List<InventarioEntradaProducto> expiradas = new ArrayList<>();
-        List<InventarioEntradaProducto> validas = new ArrayList<>();
-        for (InventarioEntradaProducto e : entradas) {
-            if (e.getStockBaseRestante() == null || e.getStockBaseRestante().compareTo(BigDecimal.ZERO) <= 0) continue;
-            if (e.getFechaVencimiento() != null && e.getFechaVencimiento().isBefore(hoy)) {
-                expiradas.add(e);
-            } else {
-                validas.add(e);
-            }
-        }
-
-        // Orden FEFO: primero por fechaVencimiento asc (nulos al final), luego por fechaIngreso asc
-        validas.sort(Comparator
-            .comparing((InventarioEntradaProducto e) -> e.getFechaVencimiento(), Comparator.nullsLast(Comparator.naturalOrder()))
-            .thenComparing(e -> e.getFechaIngreso(), Comparator.nullsLast(Comparator.naturalOrder()))
-        );
-
-        BigDecimal restante = cantidadBaseSolicitada;
-        BigDecimal consumido = BigDecimal.ZERO;
+        // Asignación FEFO en memoria (vencimiento asc, nulos al final, luego ingreso) y descuento versionado
+        AsignadorFefoService.Asignacion asignacion = asignadorFefo.consumir(productId, cantidadBaseSolicitada, LocalDate.now());
+        BigDecimal consumido = asignacion.consumido();
+        BigDecimal restante = cantidadBaseSolicitada.subtract(consumido);
         List<Map<String, Object>> detalles = new ArrayList<>();
-
-        for (InventarioEntradaProducto e : validas) {
-            if (restante.compareTo(BigDecimal.ZERO) <= 0) break;
-            BigDecimal disponible = e.getStockBaseRestante() != null ? e.getStockBaseRestante() : BigDecimal.ZERO;
-            if (disponible.compareTo(BigDecimal.ZERO) <= 0) continue;
-            BigDecimal aTomar = disponible.min(restante);
-            if (aTomar.compareTo(BigDecimal.ZERO) <= 0) continue;
-
-            // actualizar entrada
-            e.setStockBaseRestante(disponible.subtract(aTomar));
-            // actualizar unidades restantes en proporción si tenemos contenidoPorUnidad
-            if (e.getContenidoPorUnidad() != null && e.getContenidoPorUnidad().compareTo(BigDecimal.ZERO) > 0) {
-                BigDecimal unidadesConsumidas = aTomar.divide(e.getContenidoPorUnidad(), java.math.MathContext.DECIMAL64);
-                BigDecimal unidadesRestantes = (e.getStockUnidadesRestantes() != null ? e.getStockUnidadesRestantes() : BigDecimal.ZERO)
-                    .subtract(unidadesConsumidas);
-                e.setStockUnidadesRestantes(unidadesRestantes.max(BigDecimal.ZERO));
-            }
-            // desactivar si quedó en 0
-            if (e.getStockBaseRestante().compareTo(BigDecimal.ZERO) == 0) e.setActivo(false);
-            entradasRepo.save(e);
-
+        for (AsignadorFefoService.Tramo t : asignacion.tramos()) {
             Map<String, Object> d = new HashMap<>();
-            d.put("entradaId", e.getId());
-            d.put("codigoLote", e.getCodigoLote());
-            d.put("fechaVencimiento", e.getFechaVencimiento());
-            d.put("consumido", aTomar);
-            d.put("stockBaseRestante", e.getStockBaseRestante());
+            d.put("entradaId", t.entradaId());
+            d.put("codigoLote", t.codigoLote());
+            d.put("fechaVencimiento", t.fechaVencimiento());
+            d.put("consumido", t.consumido());
+            d.put("stockBaseRestante", t.stockBaseRestante());
             detalles.add(d);
-
-            consumido = consumido.add(aTomar);
-            restante = restante.subtract(aTomar);
         }
 
-        boolean bloqueoPorVencido = false;
-        if (consumido.compareTo(BigDecimal.ZERO) == 0 && !expiradas.isEmpty()) {
-            // hay stock pero todo está vencido
-            bloqueoPorVencido = true;
-        }
+        // hay stock pero todo está vencido
+        boolean bloqueoPorVencido = consumido.compareTo(BigDecimal.ZERO) == 0 && asignacion.hayVencidas();
 
         // Registrar movimiento consolidado por lo realmente consumido (si > 0)
         Long movimientoId = null;
@@ -208,23 +165,18 @@ public class InventarioEntradaProductoService {
             );
             movimientoId = mov.getId();
 
-            // Registrar detalle por entrada
-            for (Map<String, Object> d : detalles) {
-                BigDecimal cant = (BigDecimal) d.get("consumido");
-                if (cant == null || cant.compareTo(BigDecimal.ZERO) <= 0) continue;
-                InventarioEntradaProducto entrada = entradasRepo.findById((Long) d.get("entradaId"))
-                    .orElse(null);
-                if (entrada == null) continue;
-                ConsumoEntradaProducto ce = ConsumoEntradaProducto.builder()
+            // Registrar detalle por entrada (referencias sin volver a consultar la entrada)
+            List<ConsumoEntradaProducto> consumos = new ArrayList<>();
+            for (AsignadorFefoService.Tramo t : asignacion.tramos()) {
+                consumos.add(ConsumoEntradaProducto.builder()
                     .movimiento(mov)
-                    .entrada(entrada)
-                    .cantidadBaseConsumida(cant)
-                    .cantidadUnidadesConsumidas(entrada.getContenidoPorUnidad() != null && entrada.getContenidoPorUnidad().compareTo(BigDecimal.ZERO) > 0
-                        ? cant.divide(entrada.getContenidoPorUnidad(), java.math.MathContext.DECIMAL64) : null)
+                    .entrada(entradasRepo.getReferenceById(t.entradaId()))
+                    .cantidadBaseConsumida(t.consumido())
+                    .cantidadUnidadesConsumidas(t.unidadesConsumidas())
                     .observaciones(observaciones)
-                    .build();
-                consumoRepo.save(ce);
+                    .build());
             }
+            consumoRepo.saveAll(consumos);
         }
 
         Map<String, Object> resp = new HashMap<>();
@@ -281,8 +233,17 @@ public class InventarioEntradaProductoService {
     // ============================
     @Transactional(readOnly = true)
     public Map<Long, java.math.BigDecimal> obtenerStockValidoAgrupado() {
-        LocalDate hoy = LocalDate.now();
-        List<Object[]> rows = entradasRepo.sumValidStockGroupByProduct(hoy);
+        return agruparStock(entradasRepo.sumValidStockGroupByProduct(LocalDate.now()));
+    }
+
+    /** Stock válido solo de los productos indicados. */
+    @Transactional(readOnly = true)
+    public Map<Long, java.math.BigDecimal> obtenerStockValidoAgrupado(java.util.Collection<Long> productIds) {
+        if (productIds == null || productIds.isEmpty()) return new HashMap<>();
+        return agruparStock(entradasRepo.sumValidStockGroupByProductIn(LocalDate.now(), productIds));
+    }
+
+    private Map<Long, java.math.BigDecimal> agruparStock(List<Object[]> rows) {
         Map<Long, java.math.BigDecimal> map = new HashMap<>();
         if (rows != null) {
             for (Object[] r : rows) {
@@ -312,6 +273,8 @@ public class InventarioEntradaProductoService {
                                                                java.math.BigDecimal cantidadUnidades) {
         InventarioEntradaProducto e = entradasRepo.findById(entradaId)
             .orElseThrow(() -> new RequestException("Entrada no encontrada: " + entradaId));
+        // Vencimiento, ingreso o cantidades pueden cambiar el orden FEFO: recalentar tras confirmar
+        asignadorFefo.invalidarDespuesDeCommit(e.getProduct().getId());
 
         // Solo metadata, no tocar cantidades para no desbalancear inventario consolidado
         if (codigoLote != null) e.setCodigoLote(codigoLote);
@@ -395,6 +358,7 @@ public class InventarioEntradaProductoService {
         InventarioEntradaProducto e = entradasRepo.findById(entradaId)
             .orElseThrow(() -> new RequestException("Entrada no encontrada: " + entradaId));
         e.setActivo(false);
+        asignadorFefo.invalidarDespuesDeCommit(e.getProduct().getId());
         if (observacion != null && !observacion.isBlank()) {
             String prev = e.getObservaciones();
             e.setObservaciones((prev != null && !prev.isBlank()) ? prev + " | baja: " + observacion : "baja: " + observacion);
@@ -517,6 +481,8 @@ public class InventarioEntradaProductoService {
         // Registrar movimientos por producto y detalle por entrada
         Map<Long, MovimientoInventarioProducto> movPorProducto = new HashMap<>();
         for (Map.Entry<Long, BigDecimal> kv : consumoPorProducto.entrySet()) {
+            // Este camino descuenta con entidades JPA: la cola FEFO del producto se recalienta tras confirmar
+            asignadorFefo.invalidarDespuesDeCommit(kv.getKey());
             // Usar la hora actual para que coincida con createDate del PlanEjecucion
             java.time.LocalDateTime fechaMov = java.time.LocalDateTime.now();
             if (fechaRegistro != null && !fechaRegistro.equals(java.time.LocalDate.now())) {
@@ -0,0 +1,142 @@
+package com.wil.avicola_backend.service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import com.wil.avicola_backend.dto.InventarioDeltaDTO;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bus de eventos de inventario hacia los tableros por WebSocket. Los servicios anotan cada movimiento;
+ * el evento solo entra a la cola cuando la transacción confirma, se agrupa por producto durante una
+ * ventana corta y sale como un delta tipado:
+ * <ul>
+ *   <li>/topic/inventario/producto/{id} y /topic/inventario/tipo-alimento/{id}: delta del recurso</li>
+ *   <li>/topic/inventario/lote/{loteId}: deltas de los recursos que movió ese lote</li>
+ *   <li>/topic/inventory-update: lista de deltas de la ventana (compatibilidad con el frontend)</li>
+ * </ul>
+ */
+@Slf4j
+@Service
+public class InventarioEventosService {
+
+    public static final String PRODUCTO = "PRODUCTO";
+    public static final String TIPO_ALIMENTO = "TIPO_ALIMENTO";
+
+    private static final String TOPIC_GENERAL = "/topic/inventory-update";
+    private static final String TOPIC_PRODUCTO = "/topic/inventario/producto/";
+    private static final String TOPIC_TIPO_ALIMENTO = "/topic/inventario/tipo-alimento/";
+    private static final String TOPIC_LOTE = "/topic/inventario/lote/";
+
+    private record Clave(String recurso, Long id) {}
+
+    /** Movimientos de un recurso acumulados en la ventana actual. */
+    private static final class Pendiente {
+        BigDecimal stock;
+        Long movimientoId;
+        BigDecimal cantidadNeta = BigDecimal.ZERO;
+        int movimientos;
+        final Set<String> lotes = new LinkedHashSet<>();
+    }
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ConcurrentHashMap<Clave, Pendiente> pendientes = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService programador = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "eventos-inventario");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Value("${avicola.app.inventarioEventosVentanaMs:500}")
+    private long ventanaMs;
+
+    public InventarioEventosService(SimpMessagingTemplate messagingTemplate) {
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    @PostConstruct
+    void iniciar() {
+        programador.scheduleWithFixedDelay(this::publicarSeguro, ventanaMs, ventanaMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void detener() {
+        programador.shutdownNow();
+    }
+
+    /**
+     * Anota un movimiento de stock. {@code cantidadNeta} positiva para entradas y negativa para salidas;
+     * {@code stock} es el stock del recurso después del movimiento.
+     */
+    public void movimiento(String recurso, Long id, BigDecimal stock, Long movimientoId,
+                           BigDecimal cantidadNeta, String loteId) {
+        if (id == null) return;
+        Transacciones.despuesDeCommit(() -> encolar(new Clave(recurso, id), stock, movimientoId, cantidadNeta, loteId));
+    }
+
+    private void encolar(Clave clave, BigDecimal stock, Long movimientoId, BigDecimal cantidadNeta, String loteId) {
+        pendientes.compute(clave, (k, p) -> {
+            if (p == null) p = new Pendiente();
+            // Los commits llegan en orden para un mismo recurso salvo carreras; gana el movimiento más nuevo
+            if (p.movimientoId == null || movimientoId == null || movimientoId >= p.movimientoId) {
+                p.stock = stock;
+                p.movimientoId = movimientoId;
+            }
+            if (cantidadNeta != null) p.cantidadNeta = p.cantidadNeta.add(cantidadNeta);
+            p.movimientos++;
+            if (loteId != null && !loteId.isBlank()) p.lotes.add(loteId);
+            return p;
+        });
+    }
+
+    /** Publica lo acumulado; devuelve cuántos deltas salieron. */
+    public int publicar() {
+        if (pendientes.isEmpty()) return 0;
+        Instant ahora = Instant.now();
+        List<InventarioDeltaDTO> deltas = new ArrayList<>();
+        for (Clave clave : List.copyOf(pendientes.keySet())) {
+            Pendiente p = pendientes.remove(clave);
+            if (p == null) continue;
+            deltas.add(new InventarioDeltaDTO(clave.recurso(), clave.id(), p.stock, p.movimientoId,
+                p.cantidadNeta, p.movimientos, List.copyOf(p.lotes), ahora));
+        }
+
+        Map<String, List<InventarioDeltaDTO>> porLote = new LinkedHashMap<>();
+        for (InventarioDeltaDTO d : deltas) {
+            String topic = (PRODUCTO.equals(d.recurso()) ? TOPIC_PRODUCTO : TOPIC_TIPO_ALIMENTO) + d.id();
+            messagingTemplate.convertAndSend(topic, d);
+            for (String lote : d.lotes()) {
+                porLote.computeIfAbsent(lote, l -> new ArrayList<>()).add(d);
+            }
+        }
+        porLote.forEach((lote, ds) -> messagingTemplate.convertAndSend(TOPIC_LOTE + lote, ds));
+        if (!deltas.isEmpty()) messagingTemplate.convertAndSend(TOPIC_GENERAL, deltas);
+        return deltas.size();
+    }
+
+    private void publicarSeguro() {
+        try {
+            publicar();
+        } catch (Exception e) {
+            log.warn("No se pudieron publicar eventos de inventario: {}", e.getMessage());
+        }
+    }
+}
@@ -18,7 +18,11 @@ import com.wil.avicola_backend.repository.InventarioProductoRepository;
 import com.wil.avicola_backend.repository.MovimientoInventarioProductoRepository;
 import com.wil.avicola_backend.repository.ProductRepository;
 import com.wil.avicola_backend.repository.InventarioEntradaProductoRepository;
+import com.wil.avicola_backend.repository.StockActualizado;
+import com.wil.avicola_backend.service.costos.RentabilidadLoteService;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import lombok.RequiredArgsConstructor;
 
 @Service
@@ -29,6 +33,12 @@ public class InventarioProductoService {
     private final MovimientoInventarioProductoRepository movimientoInventarioProductoRepository;
     private final ProductRepository productRepository;
     private final InventarioEntradaProductoRepository inventarioEntradaProductoRepository;
+    private final AsignadorFefoService asignadorFefo;
+    private final RentabilidadLoteService rentabilidadLoteService;
+    private final InventarioEventosService inventarioEventos;
+
+    @PersistenceContext
+    private EntityManager entityManager;
 
     @Transactional(readOnly = true)
     public List<InventarioProducto> listar() {
@@ -87,39 +97,28 @@ public class InventarioProductoService {
         InventarioProducto inv = inventarioProductoRepository.findByProductId(productId)
             .orElseGet(() -> crearSiNoExiste(productId, null));
 
-        BigDecimal stockAnterior = inv.getCantidadStock() != null ? inv.getCantidadStock() : BigDecimal.ZERO;
-        BigDecimal stockNuevo = stockAnterior;
-
+        // Un solo UPDATE condicionado por movimiento: el stock anterior/nuevo sale de la fila, no de lo leído
+        StockActualizado actualizado;
         switch (tipo) {
             case ENTRADA:
-                stockNuevo = stockAnterior.add(cantidad);
-                // actualizar costo promedio si viene costoUnitario
-                if (costoUnitario != null && costoUnitario.compareTo(BigDecimal.ZERO) > 0) {
-                    BigDecimal costoExistente = inv.getCostoUnitarioPromedio() != null ? inv.getCostoUnitarioPromedio() : BigDecimal.ZERO;
-                    // promedio ponderado simple: (stockAnterior*costoAnterior + cantidad*costoUnitario) / (stockAnterior+cantidad)
-                    BigDecimal totalCostoAnterior = costoExistente.multiply(stockAnterior);
-                    BigDecimal totalCostoEntrada = costoUnitario.multiply(cantidad);
-                    BigDecimal totalCantidad = stockAnterior.add(cantidad);
-                    if (totalCantidad.compareTo(BigDecimal.ZERO) > 0) {
-                        inv.setCostoUnitarioPromedio(totalCostoAnterior.add(totalCostoEntrada).divide(totalCantidad, java.math.RoundingMode.HALF_UP));
-                    }
-                }
-                inv.setCantidadStock(stockNuevo);
+                // El costo promedio ponderado se recalcula en el mismo UPDATE con el stock real de la fila
+                actualizado = inventarioProductoRepository.sumarStock(inv.getId(), cantidad,
+                        costoUnitario != null ? costoUnitario : BigDecimal.ZERO)
+                    .orElseThrow(() -> new RequestException("Inventario no encontrado para el producto " + productId));
                 break;
             case SALIDA:
             case CONSUMO_LOTE:
             case AJUSTE:
-                if (!inv.tieneStockSuficiente(cantidad)) {
-                    throw new RequestException("Stock insuficiente para el producto " + productId);
-                }
-                stockNuevo = stockAnterior.subtract(cantidad);
-                inv.setCantidadStock(stockNuevo);
+                actualizado = inventarioProductoRepository.descontarStock(inv.getId(), cantidad)
+                    .orElseThrow(() -> new RequestException("Stock insuficiente para el producto " + productId));
                 break;
             default:
                 throw new RequestException("Tipo de movimiento inválido");
         }
-
-        inventarioProductoRepository.save(inv);
+        BigDecimal stockAnterior = actualizado.getStockAnterior();
+        BigDecimal stockNuevo = actualizado.getStockNuevo();
+        // La fila queda bloqueada hasta el commit; se relee para no volver a escribir valores viejos al hacer flush
+        entityManager.refresh(inv);
         try {
             System.out.println("🧾 [INV] Movimiento preparado -> productId=" + productId +
                 ", invId=" + inv.getId() +
@@ -147,6 +146,9 @@ public class InventarioProductoService {
             .fechaMovimiento(fechaMovimiento)
             .build();
         MovimientoInventarioProducto saved = movimientoInventarioProductoRepository.save(mov);
+        if (loteId != null) rentabilidadLoteService.invalidarLote(loteId);
+        inventarioEventos.movimiento(InventarioEventosService.PRODUCTO, productId, stockNuevo, saved.getId(),
+            tipo == MovimientoInventarioProducto.TipoMovimiento.ENTRADA ? cantidad : cantidad.negate(), loteId);
         try {
             System.out.println("✅ [INV] Movimiento guardado id=" + saved.getId() +
                 " | productId=" + productId + " | invId=" + inv.getId() +
@@ -183,7 +185,9 @@ public class InventarioProductoService {
             .activo(true)
             .observaciones(observaciones)
             .build();
-        return inventarioEntradaProductoRepository.save(e);
+        e = inventarioEntradaProductoRepository.save(e);
+        asignadorFefo.registrarEntrada(e);
+        return e;
     }
 
     /**
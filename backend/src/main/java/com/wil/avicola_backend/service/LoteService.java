@@ -1,30 +1,51 @@
 package com.wil.avicola_backend.service;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
 import java.util.ArrayList;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.wil.avicola_backend.error.RequestException;
 import com.wil.avicola_backend.model.Lote;
 import com.wil.avicola_backend.model.Race;
 import com.wil.avicola_backend.repository.LoteRepository;
 import com.wil.avicola_backend.repository.RaceRepository;
-import com.wil.avicola_backend.repository.VentaAnimalRepository;
-import com.wil.avicola_backend.repository.MortalidadRepository;
+import com.wil.avicola_backend.service.costos.ProrrateoCostoFijoService;
+import com.wil.avicola_backend.service.costos.RentabilidadLoteService;
 
 @Service
 public class LoteService {
 
+    private static final Logger logger = LoggerFactory.getLogger(LoteService.class);
+
+    private static final String SQL_BALANCE_LOTES =
+        "SELECT l.id, l.quantity, l.quantity_original, " +
+        "       COALESCE(v.vendidos, 0) AS vendidos, COALESCE(m.muertos, 0) AS muertos " +
+        "FROM lote l " +
+        "LEFT JOIN race r ON l.race_id = r.id " +
+        "LEFT JOIN (SELECT lote_id, SUM(cantidad) AS vendidos FROM venta_animal " +
+        "           WHERE estado = 'EMITIDA' GROUP BY lote_id) v ON v.lote_id = l.id " +
+        "LEFT JOIN (SELECT lote_id, SUM(cantidad_muertos) AS muertos FROM registros_mortalidad " +
+        "           GROUP BY lote_id) m ON m.lote_id = l.id";
+
+    // El guard "quantity = ?" evita pisar un cambio hecho entre la lectura y el batch
+    private static final String SQL_RECONCILIAR_LOTE =
+        "UPDATE lote SET quantity = ?, " +
+        "  fecha_cierre = CASE WHEN ? THEN CAST(? AS timestamp) WHEN ? THEN NULL ELSE fecha_cierre END, " +
+        "  update_date = ? " +
+        "WHERE id = ? AND quantity = ?";
+
     @Autowired
     private LoteRepository loteRepository;
     @Autowired
@@ -32,9 +53,15 @@ public class LoteService {
     @Autowired
     private CodigoLoteService codigoLoteService;
     @Autowired
-    private VentaAnimalRepository ventaAnimalRepository;
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ResumenLotesService resumenLotesService;
+    @Autowired
+    private RentabilidadLoteService rentabilidadLoteService;
     @Autowired
-    private MortalidadRepository mortalidadRepository;
+    private ProrrateoCostoFijoService prorrateoCostoFijoService;
+    @Autowired
+    private SyncCambiosService syncCambios;
 
     public ResponseEntity<?> findLotes() {
         return ResponseEntity.ok().body(loteRepository.findAll());
@@ -96,6 +123,9 @@ public class LoteService {
         }
 
         Lote lote_new = loteRepository.save(lote);
+        resumenLotesService.loteCreado(lote_new);
+        rentabilidadLoteService.invalidarTodo();
+        prorrateoCostoFijoService.loteCambiado(lote_new.getId());
         return ResponseEntity.status(HttpStatus.OK).body(lote_new);
     }
 
@@ -118,6 +148,8 @@ public class LoteService {
                 lote_old.setDescripcion(lote.getDescripcion().trim());
             }
             
+            Integer quantityOriginalAnterior = lote_old.getQuantityOriginal();
+
             // ✅ MANTENER LA CANTIDAD ORIGINAL - NO SE MODIFICA DESPUÉS DE LA CREACIÓN
             // Solo establecemos quantityOriginal si no existe (para lotes creados antes de esta funcionalidad)
             if (lote_old.getQuantityOriginal() == null && lote.getQuantityOriginal() == null) {
@@ -142,6 +174,10 @@ public class LoteService {
             // lote_old.setCodigo(lote.getCodigo());
 
             loteRepository.save(lote_old);
+            resumenLotesService.cantidadOriginalCambiada(lote_old, quantityOriginalAnterior);
+            // Fecha de nacimiento y cantidad original pesan en el prorrateo de todos los lotes
+            rentabilidadLoteService.invalidarTodo();
+            prorrateoCostoFijoService.loteCambiado(lote_old.getId());
             return ResponseEntity.status(HttpStatus.OK).body(lote_old);
         }
         throw new RequestException("No existe lote.");
@@ -151,6 +187,9 @@ public class LoteService {
         if (loteRepository.existsById(id)) {
             Lote lote = loteRepository.findById(id).get();
             loteRepository.deleteById(id);
+            resumenLotesService.invalidar();
+            rentabilidadLoteService.invalidarTodo();
+            prorrateoCostoFijoService.loteCambiado(id);
             return ResponseEntity.status(HttpStatus.OK).body(lote);
         }
 
@@ -165,47 +204,9 @@ public class LoteService {
     }
 
     // ================= Resumen y listados =================
+    // Servido desde ResumenLotesService (en memoria, versionado)
     public ResponseEntity<Map<String, Object>> getResumen(Long animalId) {
-        Map<String, Object> data = new HashMap<>();
-
-        long lotesTotales = (animalId == null)
-                ? loteRepository.count()
-                : loteRepository.countByRaceAnimalId(animalId);
-
-        long lotesActivos = (animalId == null)
-                ? loteRepository.countByQuantityGreaterThan(0)
-                : loteRepository.countByRaceAnimalIdAndQuantityGreaterThan(animalId, 0);
-
-        long lotesCerrados = (animalId == null)
-                ? loteRepository.countByQuantityEquals(0)
-                : loteRepository.countByRaceAnimalIdAndQuantityEquals(animalId, 0);
-
-        Long adquiridos = (animalId == null)
-                ? loteRepository.sumQuantityOriginal()
-                : loteRepository.sumQuantityOriginalByAnimalId(animalId);
-        if (adquiridos == null) adquiridos = 0L;
-
-        Long actuales = (animalId == null)
-                ? loteRepository.sumQuantity()
-                : loteRepository.sumQuantityByAnimalId(animalId);
-        if (actuales == null) actuales = 0L;
-
-        BigDecimal vendidosBD = (animalId == null)
-                ? ventaAnimalRepository.sumCantidadEmitida()
-                : ventaAnimalRepository.sumCantidadEmitidaByAnimalId(animalId);
-        long vendidos = vendidosBD != null ? vendidosBD.longValue() : 0L;
-
-        long muertos = Math.max(0L, adquiridos - actuales - vendidos);
-
-        data.put("lotesTotales", lotesTotales);
-        data.put("lotesActivos", lotesActivos);
-        data.put("lotesCerrados", lotesCerrados);
-        data.put("animalesAdquiridos", adquiridos);
-        data.put("animalesActuales", actuales);
-        data.put("animalesVendidos", vendidos);
-        data.put("animalesMuertos", muertos);
-
-        return ResponseEntity.ok(data);
+        return ResponseEntity.ok(resumenLotesService.obtener(animalId));
     }
 
     public ResponseEntity<?> findActivos(Long animalId) {
@@ -242,100 +243,98 @@ public class LoteService {
 
     // ================= Verificación por lote (vendidos y muertos) =================
     public ResponseEntity<java.util.List<java.util.Map<String, Object>>> getVerificacionPorLotes(Long animalId, boolean historico) {
-        java.util.List<Lote> lotes;
-        if (historico) {
-            lotes = (animalId == null)
-                    ? loteRepository.findByQuantityEquals(0)
-                    : loteRepository.findByRaceAnimalIdAndQuantityEquals(animalId, 0);
-        } else {
-            lotes = (animalId == null)
-                    ? loteRepository.findByQuantityGreaterThan(0)
-                    : loteRepository.findByRaceAnimalIdAndQuantityGreaterThan(animalId, 0);
-        }
-
-        java.util.List<java.util.Map<String, Object>> resp = new java.util.ArrayList<>();
-        for (Lote lote : lotes) {
-            String loteId = lote.getId();
-            long adquiridos;
-            {
-                Integer qo = lote.getQuantityOriginal();
-                adquiridos = (qo != null) ? qo.longValue() : (long) lote.getQuantity();
-            }
-
-            java.math.BigDecimal vendidosBD = ventaAnimalRepository.sumCantidadEmitidaByLoteId(loteId);
-            long vendidosRaw = (vendidosBD != null) ? vendidosBD.longValue() : 0L;
-
-            Integer muertosInt = mortalidadRepository.countMuertesByLoteId(loteId);
-            long muertosRaw = (muertosInt != null) ? muertosInt.longValue() : 0L;
-
-            // Normalización: impedir que vendidos + muertos > adquiridos
-            long vendidosCap = Math.max(0L, Math.min(vendidosRaw, adquiridos));
-            long maxMuertos = Math.max(0L, adquiridos - vendidosCap);
-            long muertosCap = Math.max(0L, Math.min(muertosRaw, maxMuertos));
+        long inicio = System.nanoTime();
+        java.util.List<BalanceLote> balances = cargarBalances(animalId, historico);
 
+        java.util.List<java.util.Map<String, Object>> resp = new java.util.ArrayList<>(balances.size());
+        for (BalanceLote b : balances) {
             java.util.Map<String, Object> item = new java.util.HashMap<>();
-            item.put("loteId", loteId);
-            item.put("vendidos", vendidosCap);
-            item.put("muertos", muertosCap);
-            item.put("adquiridos", adquiridos);
-            item.put("vivos", lote.getQuantity());
+            item.put("loteId", b.loteId());
+            item.put("vendidos", b.vendidos());
+            item.put("muertos", b.muertos());
+            item.put("adquiridos", b.adquiridos());
+            item.put("vivos", b.cantidad());
             resp.add(item);
         }
+        logger.debug("Verificación por lotes: {} lotes en {} ms", balances.size(), (System.nanoTime() - inicio) / 1_000_000);
         return ResponseEntity.ok(resp);
     }
 
     // ================= Reconciliar cantidades (quantity) por lote =================
+    @Transactional
     public ResponseEntity<java.util.Map<String, Object>> reconciliarCantidades(Long animalId) {
-        java.util.List<Lote> lotes;
-        if (animalId == null) {
-            lotes = new java.util.ArrayList<>();
-            loteRepository.findAll().forEach(lotes::add); // CrudRepository#findAll devuelve Iterable
-        } else {
-            lotes = loteRepository.findByRaceAnimalId(animalId);
+        long inicio = System.nanoTime();
+        java.util.List<BalanceLote> balances = cargarBalances(animalId, null);
+        long msConsulta = (System.nanoTime() - inicio) / 1_000_000;
+
+        LocalDateTime ahora = LocalDateTime.now();
+        java.util.List<Object[]> params = new java.util.ArrayList<>();
+        java.util.List<String> candidatos = new java.util.ArrayList<>();
+        for (BalanceLote b : balances) {
+            long vivosCalc = Math.max(0L, b.adquiridos() - b.vendidos() - b.muertos());
+            int vivosCalcInt = (int) Math.min((long) Integer.MAX_VALUE, vivosCalc);
+            int cantidadAnterior = b.cantidad();
+            if (cantidadAnterior == vivosCalcInt) continue;
+            // fecha de cierre: se fija al quedar en 0 y se limpia al reabrir
+            boolean cerrar = cantidadAnterior > 0 && vivosCalcInt == 0;
+            boolean reabrir = cantidadAnterior == 0 && vivosCalcInt > 0;
+            params.add(new Object[] { vivosCalcInt, cerrar, ahora, reabrir, ahora, b.loteId(), cantidadAnterior });
+            candidatos.add(b.loteId());
         }
 
-        int modificados = 0;
-        java.util.List<String> cambiados = new java.util.ArrayList<>();
-
-        for (Lote lote : lotes) {
-            String loteId = lote.getId();
-            long adquiridos;
-            {
-                Integer qo = lote.getQuantityOriginal();
-                adquiridos = (qo != null) ? qo.longValue() : (long) lote.getQuantity();
-            }
-
-            java.math.BigDecimal vendidosBD = ventaAnimalRepository.sumCantidadEmitidaByLoteId(loteId);
-            long vendidos = (vendidosBD != null) ? vendidosBD.longValue() : 0L;
-            Integer muertosInt = mortalidadRepository.countMuertesByLoteId(loteId);
-            long muertos = (muertosInt != null) ? muertosInt.longValue() : 0L;
-
-            if (vendidos < 0) vendidos = 0;
-            if (muertos < 0) muertos = 0;
-            if (vendidos > adquiridos) vendidos = adquiridos;
-            if (muertos > (adquiridos - vendidos)) muertos = (adquiridos - vendidos);
-
-            long vivosCalc = Math.max(0L, adquiridos - vendidos - muertos);
-            int vivosCalcInt = (int) Math.max(0L, Math.min((long) Integer.MAX_VALUE, vivosCalc));
-
-            int cantidadAnterior = lote.getQuantity();
-            if (cantidadAnterior != vivosCalcInt) {
-                lote.setQuantity(vivosCalcInt);
-                // actualizar fecha cierre si corresponde
-                if (cantidadAnterior > 0 && vivosCalcInt == 0) {
-                    lote.setFechaCierre(java.time.LocalDateTime.now());
-                } else if (cantidadAnterior == 0 && vivosCalcInt > 0) {
-                    lote.setFechaCierre(null);
-                }
-                loteRepository.save(lote);
-                modificados++;
-                cambiados.add(loteId);
+        java.util.List<String> cambiados = new java.util.ArrayList<>(candidatos.size());
+        if (!params.isEmpty()) {
+            int[] filas = jdbcTemplate.batchUpdate(SQL_RECONCILIAR_LOTE, params);
+            for (int i = 0; i < filas.length; i++) {
+                // 0 filas: el lote cambió de cantidad entre la lectura y la escritura; se deja para la próxima corrida
+                if (filas[i] != 0) cambiados.add(candidatos.get(i));
             }
         }
+        if (!cambiados.isEmpty()) {
+            resumenLotesService.invalidar();
+            rentabilidadLoteService.invalidarTodo();
+            cambiados.forEach(prorrateoCostoFijoService::loteCambiado);
+            syncCambios.registrarTodos(SyncCambiosService.LOTES, cambiados, null);
+        }
+        long msTotal = (System.nanoTime() - inicio) / 1_000_000;
+        logger.info("Reconciliación de lotes: {} revisados, {} modificados, consulta {} ms, total {} ms",
+            balances.size(), cambiados.size(), msConsulta, msTotal);
 
         java.util.Map<String, Object> res = new java.util.HashMap<>();
-        res.put("modificados", modificados);
+        res.put("modificados", cambiados.size());
         res.put("lotes", cambiados);
+        res.put("revisados", balances.size());
+        res.put("tiempoMs", msTotal);
         return ResponseEntity.ok(res);
     }
+
+    /** Vendidos y muertos ya normalizados (vendidos + muertos nunca supera adquiridos). */
+    private record BalanceLote(String loteId, int cantidad, long adquiridos, long vendidos, long muertos) {}
+
+    /**
+     * Una sola consulta agrupada con vendidos (ventas EMITIDA) y muertos por lote.
+     * {@code historico}: true = lotes en 0, false = lotes con animales, null = todos.
+     */
+    private java.util.List<BalanceLote> cargarBalances(Long animalId, Boolean historico) {
+        StringBuilder sql = new StringBuilder(SQL_BALANCE_LOTES);
+        java.util.List<Object> args = new java.util.ArrayList<>(1);
+        sql.append(" WHERE 1 = 1");
+        if (animalId != null) {
+            sql.append(" AND r.animal_id = ?");
+            args.add(animalId);
+        }
+        if (historico != null) {
+            sql.append(historico ? " AND l.quantity = 0" : " AND l.quantity > 0");
+        }
+        return jdbcTemplate.query(sql.toString(), (rs, i) -> {
+            int cantidad = rs.getInt("quantity");
+            Integer qo = rs.getObject("quantity_original", Integer.class);
+            long adquiridos = (qo != null) ? qo.longValue() : (long) cantidad;
+            long vendidosRaw = rs.getLong("vendidos");
+            long muertosRaw = rs.getLong("muertos");
+            long vendidos = Math.max(0L, Math.min(vendidosRaw, adquiridos));
+            long muertos = Math.max(0L, Math.min(muertosRaw, Math.max(0L, adquiridos - vendidos)));
+            return new BalanceLote(rs.getString("id"), cantidad, adquiridos, vendidos, muertos);
+        }, args.toArray());
+    }
 }
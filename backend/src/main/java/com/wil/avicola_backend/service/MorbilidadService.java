@@ -10,6 +10,7 @@ import com.wil.avicola_backend.repository.EnfermedadRepository;
 import com.wil.avicola_backend.repository.MedicamentoRepository;
 import com.wil.avicola_backend.repository.MorbilidadRepository;
 import com.wil.avicola_backend.repository.LoteRepository;
+import com.wil.avicola_backend.service.costos.RentabilidadLoteService;
 import org.springframework.beans.factory.annotation.Autowired;
 import jakarta.annotation.PostConstruct;
 import org.springframework.stereotype.Service;
@@ -43,6 +44,9 @@ public class MorbilidadService {
     
     @Autowired
     private LoteRepository loteRepository;
+
+    @Autowired
+    private RentabilidadLoteService rentabilidadLoteService;
     
     @PostConstruct
     public void seedEnfermedadesPorDefecto() {
@@ -88,7 +92,7 @@ public class MorbilidadService {
      */
     public RegistroMorbilidad crearRegistro(RegistroMorbilidad registro) {
         registro.setFechaRegistro(LocalDateTime.now());
-        return morbilidadRepository.save(registro);
+        return costoCambiado(morbilidadRepository.save(registro));
     }
     
     /**
@@ -126,7 +130,7 @@ public class MorbilidadService {
             registro.setCosto(registroActualizado.getCosto());
             registro.setRequiereAislamiento(registroActualizado.getRequiereAislamiento());
             registro.setContagioso(registroActualizado.getContagioso());
-            return morbilidadRepository.save(registro);
+            return costoCambiado(morbilidadRepository.save(registro));
         }
         throw new RuntimeException("Registro de morbilidad no encontrado con ID: " + id);
     }
@@ -135,8 +139,10 @@ public class MorbilidadService {
      * Eliminar un registro
      */
     public void eliminarRegistro(Long id) {
-        if (morbilidadRepository.existsById(id)) {
-            morbilidadRepository.deleteById(id);
+        Optional<RegistroMorbilidad> existente = morbilidadRepository.findById(id);
+        if (existente.isPresent()) {
+            morbilidadRepository.delete(existente.get());
+            costoCambiado(existente.get());
         } else {
             throw new RuntimeException("Registro de morbilidad no encontrado con ID: " + id);
         }
@@ -174,7 +180,7 @@ public class MorbilidadService {
         if (costo != null) {
             r.setCosto(BigDecimal.valueOf(costo));
         }
-        return morbilidadRepository.save(r);
+        return costoCambiado(morbilidadRepository.save(r));
     }
 
     public RegistroMorbilidad actualizarCosto(Long id, Double costo) {
@@ -182,7 +188,13 @@ public class MorbilidadService {
         if (registroOpt.isEmpty()) throw new RuntimeException("Registro de morbilidad no encontrado con ID: " + id);
         RegistroMorbilidad r = registroOpt.get();
         r.setCosto(costo != null ? BigDecimal.valueOf(costo) : null);
-        return morbilidadRepository.save(r);
+        return costoCambiado(morbilidadRepository.save(r));
+    }
+
+    /** El costo de morbilidad entra en la rentabilidad del lote. */
+    private RegistroMorbilidad costoCambiado(RegistroMorbilidad registro) {
+        if (registro.getLoteId() != null) rentabilidadLoteService.invalidarLote(String.valueOf(registro.getLoteId()));
+        return registro;
     }
 
     public RegistroMortalidad convertirAMortalidad(Long id, ConvertirMortalidadDTO dto) {
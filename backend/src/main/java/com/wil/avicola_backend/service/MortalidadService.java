@@ -6,6 +6,8 @@ import com.wil.avicola_backend.model.Lote;
 import com.wil.avicola_backend.repository.CausaMortalidadRepository;
 import com.wil.avicola_backend.repository.MortalidadRepository;
 import com.wil.avicola_backend.repository.LoteRepository;
+import com.wil.avicola_backend.service.costos.ProrrateoCostoFijoService;
+import com.wil.avicola_backend.service.costos.RentabilidadLoteService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -30,6 +32,15 @@ public class MortalidadService {
     @Autowired
     private LoteRepository loteRepository;
     
+    @Autowired
+    private ResumenLotesService resumenLotesService;
+
+    @Autowired
+    private ProrrateoCostoFijoService prorrateoCostoFijoService;
+
+    @Autowired
+    private RentabilidadLoteService rentabilidadLoteService;
+    
     // ========== OPERACIONES CRUD ==========
     
     /**
@@ -65,6 +76,8 @@ public class MortalidadService {
                 lote.setQuantity(nuevaCantidad);
                 actualizarFechaCierreLote(lote, cantidadAnterior);
                 loteRepository.save(lote);
+                resumenLotesService.cantidadCambiada(lote, cantidadAnterior);
+                prorrateoCostoFijoService.loteCambiado(lote.getId());
 
                 System.out.println("✅ Lote actualizado automáticamente:");
                 System.out.println("   - Lote ID: " + lote.getId());
@@ -81,7 +94,9 @@ public class MortalidadService {
             // Continuamos con el registro de mortalidad aunque falle la actualización del lote
         }
         
-        return mortalidadRepository.save(registro);
+        RegistroMortalidad guardado = mortalidadRepository.save(registro);
+        rentabilidadLoteService.invalidarLote(guardado.getLoteId());
+        return guardado;
     }
 
     /**
@@ -116,6 +131,8 @@ public class MortalidadService {
                 lote.setQuantity(nuevaCantidad);
                 actualizarFechaCierreLote(lote, cantidadAnterior);
                 loteRepository.save(lote);
+                resumenLotesService.cantidadCambiada(lote, cantidadAnterior);
+                prorrateoCostoFijoService.loteCambiado(lote.getId());
 
                 System.out.println("✅ Lote actualizado automáticamente:");
                 System.out.println("   - Lote ID: " + lote.getId());
@@ -132,7 +149,9 @@ public class MortalidadService {
             // Continuamos con el registro de mortalidad aunque falle la actualización del lote
         }
         
-        return mortalidadRepository.save(registro);
+        RegistroMortalidad guardado = mortalidadRepository.save(registro);
+        rentabilidadLoteService.invalidarLote(guardado.getLoteId());
+        return guardado;
     }
     
     /**
@@ -163,6 +182,8 @@ public class MortalidadService {
             registro.setEdad(registroActualizado.getEdad());
             registro.setUbicacion(registroActualizado.getUbicacion());
             registro.setConfirmado(registroActualizado.getConfirmado());
+            prorrateoCostoFijoService.loteCambiado(registro.getLoteId());
+            rentabilidadLoteService.invalidarLote(registro.getLoteId());
             return mortalidadRepository.save(registro);
         }
         throw new RuntimeException("Registro de mortalidad no encontrado con ID: " + id);
@@ -172,8 +193,11 @@ public class MortalidadService {
      * Eliminar un registro
      */
     public void eliminarRegistro(Long id) {
-        if (mortalidadRepository.existsById(id)) {
-            mortalidadRepository.deleteById(id);
+        Optional<RegistroMortalidad> existente = mortalidadRepository.findById(id);
+        if (existente.isPresent()) {
+            mortalidadRepository.delete(existente.get());
+            prorrateoCostoFijoService.loteCambiado(existente.get().getLoteId());
+            rentabilidadLoteService.invalidarLote(existente.get().getLoteId());
         } else {
             throw new RuntimeException("Registro de mortalidad no encontrado con ID: " + id);
         }
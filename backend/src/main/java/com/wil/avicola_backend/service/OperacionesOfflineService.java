@@ -0,0 +1,291 @@
+package com.wil.avicola_backend.service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wil.avicola_backend.dto.ConsumoManualRequestDto;
+import com.wil.avicola_backend.dto.OperacionOfflineDTO;
+import com.wil.avicola_backend.dto.ResultadoOperacionOfflineDTO;
+import com.wil.avicola_backend.dto.ResultadoOperacionOfflineDTO.Estado;
+import com.wil.avicola_backend.error.RequestException;
+import com.wil.avicola_backend.model.ConsumoManual;
+import com.wil.avicola_backend.model.PlanEjecucion;
+import com.wil.avicola_backend.model.RegistroMorbilidad;
+import com.wil.avicola_backend.model.RegistroMortalidad;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Aplica la cola de operaciones que la app móvil acumuló sin conexión (alimentación, mortalidad,
+ * morbilidad, consumo manual). Cada operación trae una clave de idempotencia generada en el
+ * dispositivo; la clave se inserta en operacion_offline, junto con el usuario que la envía, en la
+ * misma transacción que aplica la operación, así que un reintento (o dos envíos simultáneos del mismo
+ * teléfono) nunca descuenta stock dos veces: el segundo INSERT espera al primero y, si confirmó, la
+ * operación sale como DUPLICADA. La misma clave enviada por otro usuario es otra operación.
+ *
+ * Las operaciones se agrupan por lote y cada lote se aplica en una transacción, en el orden recibido.
+ * Si una operación falla por un error propio (validación, regla de negocio) se marca RECHAZADA; si
+ * falla la base de datos o deja la transacción marcada para rollback, queda PENDIENTE para que el
+ * dispositivo la reenvíe. En los dos casos el resto del lote se vuelve a aplicar sin ella.
+ */
+@Slf4j
+@Service
+public class OperacionesOfflineService {
+
+    private static final int LARGO_CLAVE = 100;
+
+    private static final String SQL_RESERVAR =
+        "INSERT INTO operacion_offline (usuario, clave, tipo, lote_id, procesado_en) VALUES (?, ?, ?, ?, ?) " +
+        "ON CONFLICT (usuario, clave) DO NOTHING";
+
+    private static final String SQL_PREVIO = "SELECT resultado_id FROM operacion_offline WHERE usuario = ? AND clave = ?";
+
+    private static final String SQL_RESULTADO = "UPDATE operacion_offline SET resultado_id = ? WHERE usuario = ? AND clave = ?";
+
+    private static final String SQL_PURGAR = "DELETE FROM operacion_offline WHERE procesado_en < ?";
+
+    /** Cuerpo de /api/plan-ejecucion/registrar-alimentacion. */
+    record Alimentacion(String loteId, String fecha, Double cantidadAplicada, Integer animalesVivos,
+                        Integer animalesMuertos, String observaciones) {}
+
+    /** Operación que falló dentro de la transacción del lote; {@code transitoria} la deja PENDIENTE. */
+    private static final class OperacionFallida extends RuntimeException {
+        final OperacionOfflineDTO operacion;
+        final boolean transitoria;
+
+        OperacionFallida(OperacionOfflineDTO operacion, String mensaje, RuntimeException causa, boolean transitoria) {
+            super(mensaje, causa);
+            this.operacion = operacion;
+            this.transitoria = transitoria;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaccion;
+    private final ObjectMapper objectMapper;
+    private final PlanEjecucionService planEjecucionService;
+    private final MortalidadService mortalidadService;
+    private final MorbilidadService morbilidadService;
+    private final ConsumoManualService consumoManualService;
+
+    private final ScheduledExecutorService programador = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "purga-operaciones-offline");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Value("${avicola.app.offlineClavesRetencionDias:30}")
+    private int retencionDias;
+
+    @Value("${avicola.app.offlineMaxOperaciones:500}")
+    private int maxOperaciones;
+
+    public OperacionesOfflineService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper, PlanEjecucionService planEjecucionService, MortalidadService mortalidadService,
+            MorbilidadService morbilidadService, ConsumoManualService consumoManualService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaccion = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.planEjecucionService = planEjecucionService;
+        this.mortalidadService = mortalidadService;
+        this.morbilidadService = morbilidadService;
+        this.consumoManualService = consumoManualService;
+    }
+
+    @PostConstruct
+    void iniciar() {
+        programador.scheduleWithFixedDelay(this::purgarSeguro, 1, 24, TimeUnit.HOURS);
+    }
+
+    @PreDestroy
+    public void detener() {
+        programador.shutdownNow();
+    }
+
+    /**
+     * Aplica las operaciones y devuelve un resultado por operación, en el mismo orden.
+     * {@code userId} y {@code usuario} son los del dispositivo autenticado; las claves de idempotencia
+     * se buscan solo entre las de {@code usuario}.
+     */
+    public List<ResultadoOperacionOfflineDTO> procesar(List<OperacionOfflineDTO> operaciones, Long userId, String usuario) {
+        if (operaciones == null || operaciones.isEmpty()) return List.of();
+        if (operaciones.size() > maxOperaciones) {
+            throw new RequestException("Máximo " + maxOperaciones + " operaciones por envío; envíe el resto en otro lote");
+        }
+
+        Map<String, ResultadoOperacionOfflineDTO> resultados = new LinkedHashMap<>();
+        Map<String, List<OperacionOfflineDTO>> porLote = new LinkedHashMap<>();
+        Set<String> claves = new HashSet<>();
+        for (OperacionOfflineDTO op : operaciones) {
+            String error = validar(op);
+            if (error != null) {
+                if (op != null && op.clave() != null) resultados.putIfAbsent(op.clave(), rechazada(op, error));
+                continue;
+            }
+            if (!claves.add(op.clave())) continue; // repetida en el mismo envío: se contesta con la primera
+            porLote.computeIfAbsent(loteDe(op), l -> new ArrayList<>()).add(op);
+        }
+
+        porLote.forEach((lote, ops) -> aplicarLote(lote, ops, userId, usuario, resultados));
+
+        List<ResultadoOperacionOfflineDTO> respuesta = new ArrayList<>(operaciones.size());
+        for (OperacionOfflineDTO op : operaciones) {
+            String clave = op != null ? op.clave() : null;
+            ResultadoOperacionOfflineDTO r = clave != null ? resultados.get(clave) : null;
+            respuesta.add(r != null ? r : new ResultadoOperacionOfflineDTO(clave, Estado.RECHAZADA, null, "Operación sin clave"));
+        }
+        return respuesta;
+    }
+
+    private void aplicarLote(String lote, List<OperacionOfflineDTO> ops, Long userId, String usuario,
+                             Map<String, ResultadoOperacionOfflineDTO> resultados) {
+        List<OperacionOfflineDTO> pendientes = new ArrayList<>(ops);
+        while (!pendientes.isEmpty()) {
+            Map<String, ResultadoOperacionOfflineDTO> intento = new LinkedHashMap<>();
+            try {
+                transaccion.executeWithoutResult(status -> {
+                    for (OperacionOfflineDTO op : pendientes) {
+                        intento.put(op.clave(), aplicarUna(op, lote, userId, usuario));
+                        // Un servicio que atrapó su propio error dejó la transacción sin salida: el commit
+                        // fallaría con UnexpectedRollbackException y arrastraría al lote entero
+                        if (status.isRollbackOnly()) {
+                            throw new OperacionFallida(op, "La transacción quedó marcada para rollback", null, true);
+                        }
+                    }
+                });
+                resultados.putAll(intento);
+                return;
+            } catch (OperacionFallida f) {
+                // Rollback del lote: se descarta la operación que falló y se reintenta el resto
+                if (f.transitoria) {
+                    log.warn("Operación offline {} ({}) pendiente en lote {}: {}",
+                        f.operacion.clave(), f.operacion.tipo(), lote, f.getMessage());
+                    resultados.put(f.operacion.clave(), pendiente(f.operacion, f.getMessage()));
+                } else {
+                    log.info("Operación offline {} ({}) rechazada en lote {}: {}",
+                        f.operacion.clave(), f.operacion.tipo(), lote, f.getMessage());
+                    resultados.put(f.operacion.clave(), rechazada(f.operacion, f.getMessage()));
+                }
+                pendientes.remove(f.operacion);
+            } catch (RuntimeException e) {
+                // Falló el commit o algo fuera de una operación: nada quedó aplicado, el dispositivo reintenta
+                log.warn("No se pudo confirmar el lote {} de operaciones offline: {}", lote, e.getMessage());
+                for (OperacionOfflineDTO op : pendientes) {
+                    resultados.put(op.clave(), pendiente(op, e.getMessage()));
+                }
+                return;
+            }
+        }
+    }
+
+    private ResultadoOperacionOfflineDTO aplicarUna(OperacionOfflineDTO op, String lote, Long userId, String usuario) {
+        int reservada = jdbcTemplate.update(SQL_RESERVAR, usuario, op.clave(), op.tipo().name(), lote,
+            Timestamp.valueOf(LocalDateTime.now()));
+        if (reservada == 0) {
+            List<String> previo = jdbcTemplate.queryForList(SQL_PREVIO, String.class, usuario, op.clave());
+            return new ResultadoOperacionOfflineDTO(op.clave(), Estado.DUPLICADA,
+                previo.isEmpty() ? null : previo.get(0), "Ya aplicada");
+        }
+        String id;
+        try {
+            id = aplicar(op, userId, usuario);
+        } catch (RuntimeException e) {
+            throw new OperacionFallida(op, e.getMessage(), e, esTransitoria(e));
+        }
+        jdbcTemplate.update(SQL_RESULTADO, id, usuario, op.clave());
+        return new ResultadoOperacionOfflineDTO(op.clave(), Estado.APLICADA, id, null);
+    }
+
+    private String aplicar(OperacionOfflineDTO op, Long userId, String usuario) {
+        switch (op.tipo()) {
+            case ALIMENTACION: {
+                Alimentacion a = objectMapper.convertValue(op.datos(), Alimentacion.class);
+                ResponseEntity<PlanEjecucion> r = planEjecucionService.registrarEjecucionCompleta(a.loteId(), a.fecha(),
+                    a.cantidadAplicada(), a.animalesVivos(), a.animalesMuertos(), a.observaciones(), userId);
+                return r.getBody() != null ? String.valueOf(r.getBody().getId()) : null;
+            }
+            case MORTALIDAD: {
+                RegistroMortalidad m = objectMapper.convertValue(op.datos(), RegistroMortalidad.class);
+                if (m.getUsuarioRegistro() == null) m.setUsuarioRegistro(usuario);
+                Object causaId = op.datos().get("causaId");
+                RegistroMortalidad creado = causaId != null
+                    ? mortalidadService.crearRegistroConCausaId(m, Long.valueOf(causaId.toString()))
+                    : mortalidadService.crearRegistro(m);
+                return String.valueOf(creado.getId());
+            }
+            case MORBILIDAD: {
+                RegistroMorbilidad m = objectMapper.convertValue(op.datos(), RegistroMorbilidad.class);
+                if (m.getUsuarioRegistro() == null) m.setUsuarioRegistro(usuario);
+                return String.valueOf(morbilidadService.crearRegistro(m).getId());
+            }
+            case CONSUMO_MANUAL: {
+                ConsumoManualRequestDto c = objectMapper.convertValue(op.datos(), ConsumoManualRequestDto.class);
+                ResponseEntity<ConsumoManual> r = consumoManualService.registrarConsumoManual(c, usuario);
+                return r.getBody() != null ? String.valueOf(r.getBody().getId()) : null;
+            }
+            default:
+                throw new RequestException("Tipo de operación no soportado: " + op.tipo());
+        }
+    }
+
+    private static String validar(OperacionOfflineDTO op) {
+        if (op == null || op.clave() == null || op.clave().isBlank()) return "Operación sin clave";
+        if (op.clave().length() > LARGO_CLAVE) return "Clave demasiado larga (máximo " + LARGO_CLAVE + ")";
+        if (op.tipo() == null) return "Tipo de operación obligatorio";
+        if (op.datos() == null || op.datos().get("loteId") == null) return "loteId es obligatorio";
+        return null;
+    }
+
+    /**
+     * Fallas de la base de datos o de la transacción (bloqueos, conexión, rollback inesperado), aunque
+     * el servicio las haya envuelto: la operación puede salir bien al reenviarla.
+     */
+    static boolean esTransitoria(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof DataAccessException || t instanceof TransactionException) return true;
+        }
+        return false;
+    }
+
+    private static String loteDe(OperacionOfflineDTO op) {
+        return String.valueOf(op.datos().get("loteId")).trim();
+    }
+
+    private static ResultadoOperacionOfflineDTO rechazada(OperacionOfflineDTO op, String mensaje) {
+        return new ResultadoOperacionOfflineDTO(op.clave(), Estado.RECHAZADA, null, mensaje);
+    }
+
+    private static ResultadoOperacionOfflineDTO pendiente(OperacionOfflineDTO op, String mensaje) {
+        return new ResultadoOperacionOfflineDTO(op.clave(), Estado.PENDIENTE, null, "No se pudo confirmar, reintente: " + mensaje);
+    }
+
+    private void purgarSeguro() {
+        try {
+            int n = jdbcTemplate.update(SQL_PURGAR, Timestamp.valueOf(LocalDateTime.now().minusDays(retencionDias)));
+            if (n > 0) log.info("Purgadas {} claves de operaciones offline", n);
+        } catch (Exception e) {
+            log.warn("No se pudieron purgar las claves de operaciones offline: {}", e.getMessage());
+        }
+    }
+}
@@ -72,6 +72,9 @@ public class PlanAlimentacionService {
     @Autowired
     private MovimientoInventarioProductoRepository movimientoInventarioProductoRepository;
 
+    @Autowired
+    private PlanCompiladoService planCompiladoService;
+
     /**
      * Obtener todos los planes (implementación real)
      */
@@ -554,6 +557,7 @@ public class PlanAlimentacionService {
             }
             
             planAlimentacionRepository.deleteById(planId);
+            planCompiladoService.invalidar(planId);
             System.out.println("✅ Service: Plan eliminado permanentemente ID: " + planId);
             
             return ResponseEntity.noContent().build();
@@ -608,12 +612,8 @@ public class PlanAlimentacionService {
                 return new ArrayList<>();
             }
 
-            List<PlanDetalle> detalles = planDetalleRepository.findByPlanIdAndDayNumber(planId, (int) diaDeVida);
-            // Inicializar relaciones para evitar LazyInitialization en la respuesta JSON
-            for (PlanDetalle d : detalles) {
-                try { if (d.getProduct() != null) d.getProduct().getId(); } catch (Exception ignore) {}
-                try { if (d.getPlanAlimentacion() != null) d.getPlanAlimentacion().getId(); } catch (Exception ignore) {}
-            }
+            // El plan compilado ya trae producto y plan inicializados (sin LazyInitialization en el JSON)
+            List<PlanDetalle> detalles = planCompiladoService.obtener(planId).detallesParaDia((int) diaDeVida);
 
             System.out.println("✅ Detalles encontrados para día " + diaDeVida + ": " + detalles.size());
             return detalles;
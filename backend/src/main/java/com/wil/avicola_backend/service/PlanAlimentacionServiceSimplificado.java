@@ -8,9 +8,10 @@ import java.util.Optional;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.transaction.TransactionException;
 
 import com.wil.avicola_backend.model.Product;
 import com.wil.avicola_backend.repository.ProductRepository;
@@ -34,8 +35,6 @@ public class PlanAlimentacionServiceSimplificado {
     @Autowired
     private InventarioEntradaProductoService inventarioEntradaProductoService;
 
-    @Autowired
-    private SimpMessagingTemplate messagingTemplate;
 
     /**
      * ✅ MÉTODO PRINCIPAL QUE RESUELVE EL ERROR 400
@@ -117,9 +116,6 @@ public class PlanAlimentacionServiceSimplificado {
 
             if (consumido.compareTo(BigDecimal.ZERO) > 0) {
                 System.out.println("✅ Consumo FEFO registrado (producto específico)");
-                try {
-                    messagingTemplate.convertAndSend("/topic/inventory-update", "INVENTORY_CHANGED_PRODUCT");
-                } catch (Exception ignore) {}
                 return ResponseEntity.ok(Map.of(
                     "success", true,
                     "message", pendiente.compareTo(BigDecimal.ZERO) == 0 ? "Consumo registrado exitosamente" : "Consumo parcial registrado por stock insuficiente",
@@ -158,6 +154,9 @@ public class PlanAlimentacionServiceSimplificado {
                 "fefoEstricto", true
             ));
 
+        } catch (DataAccessException | TransactionException dex) {
+            // Falla de la base, no de negocio: se propaga para que la transacción y quien llama la vean
+            throw dex;
         } catch (RuntimeException rex) {
             System.err.println("⚠️ Error de negocio en servicio simplificado: " + rex.getMessage());
             return ResponseEntity.ok(Map.of(
@@ -233,9 +232,6 @@ public class PlanAlimentacionServiceSimplificado {
             if (consumidoTipo.compareTo(BigDecimal.ZERO) > 0) {
                 boolean completo = pendienteTipo.compareTo(BigDecimal.ZERO) == 0;
                 System.out.println("✅ Consumo por tipo (FEFO) registrado: consumido=" + consumidoTipo + ", pendiente=" + pendienteTipo);
-                try {
-                    messagingTemplate.convertAndSend("/topic/inventory-update", "INVENTORY_CHANGED_TYPE");
-                } catch (Exception ignore) {}
                 return ResponseEntity.ok(Map.of(
                     "success", true,
                     "message", completo ? "Consumo registrado exitosamente" : "Consumo parcial registrado por stock insuficiente",
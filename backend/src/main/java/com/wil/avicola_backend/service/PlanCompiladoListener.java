@@ -0,0 +1,26 @@
+package com.wil.avicola_backend.service;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.wil.avicola_backend.model.Product;
+
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Listener JPA de {@link Product}: los planes compilados guardan el producto de cada detalle, así que
+ * renombrarlo, desactivarlo o borrarlo descarta los planes que lo usan, venga el cambio de donde venga.
+ */
+public class PlanCompiladoListener {
+
+    @Autowired
+    private ObjectProvider<PlanCompiladoService> planCompilado;
+
+    @PostUpdate
+    @PostRemove
+    public void productoCambiado(Product producto) {
+        PlanCompiladoService servicio = planCompilado != null ? planCompilado.getIfAvailable() : null;
+        if (servicio != null) servicio.invalidarProducto(producto.getId());
+    }
+}
@@ -0,0 +1,140 @@
+package com.wil.avicola_backend.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Service;
+
+import com.wil.avicola_backend.model.PlanDetalle;
+import com.wil.avicola_backend.repository.PlanDetalleRepository;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Caché de planes de alimentación "compilados": por cada PlanAlimentacion se arma una sola vez
+ * un árbol de intervalos por día de vida con sus PlanDetalle. Lo comparten la programación diaria,
+ * el registro de ejecuciones, las alertas rápidas y getProductosParaDia.
+ *
+ * Los detalles se cargan con su producto y plan ya inicializados, así que pueden usarse
+ * fuera de la transacción que los leyó. PlanDetalleService invalida el plan al editarlo y
+ * {@link PlanCompiladoListener} invalida los planes que usan un producto cuando este cambia.
+ */
+@Service
+@RequiredArgsConstructor
+public class PlanCompiladoService {
+
+    private final PlanDetalleRepository planDetalleRepository;
+
+    private final ConcurrentHashMap<Long, PlanCompilado> planes = new ConcurrentHashMap<>();
+
+    /**
+     * Plan compilado: árbol de intervalos [dayStart, dayEnd] sobre los detalles del plan.
+     *
+     * Es un árbol implícito sobre el arreglo ordenado por dayStart: el nodo de [lo, hi] es el
+     * elemento medio y maxFin[medio] guarda el mayor dayEnd del subárbol, lo que permite podar
+     * ramas completas tanto en consultas por día como por ventana de días.
+     */
+    public static final class PlanCompilado {
+        private final List<PlanDetalle> detalles;
+        private final PlanDetalle[] nodos;
+        private final int[] inicio;
+        private final int[] fin;
+        private final int[] maxFin;
+
+        private PlanCompilado(List<PlanDetalle> cargados) {
+            List<PlanDetalle> validos = new ArrayList<>();
+            for (PlanDetalle d : cargados) {
+                if (d.getDayStart() != null && d.getDayEnd() != null) validos.add(d);
+            }
+            validos.sort(Comparator.comparingInt((PlanDetalle d) -> d.getDayStart()).thenComparing(PlanDetalle::getId,
+                Comparator.nullsLast(Comparator.naturalOrder())));
+            this.detalles = Collections.unmodifiableList(validos);
+            int n = validos.size();
+            this.nodos = validos.toArray(new PlanDetalle[0]);
+            this.inicio = new int[n];
+            this.fin = new int[n];
+            this.maxFin = new int[n];
+            for (int i = 0; i < n; i++) {
+                inicio[i] = nodos[i].getDayStart();
+                fin[i] = nodos[i].getDayEnd();
+            }
+            construir(0, n - 1);
+        }
+
+        private int construir(int lo, int hi) {
+            if (lo > hi) return Integer.MIN_VALUE;
+            int medio = (lo + hi) >>> 1;
+            int max = Math.max(fin[medio], Math.max(construir(lo, medio - 1), construir(medio + 1, hi)));
+            maxFin[medio] = max;
+            return max;
+        }
+
+        public List<PlanDetalle> getDetalles() {
+            return detalles;
+        }
+
+        /** Detalles cuyo rango [dayStart, dayEnd] contiene el día indicado, en orden de dayStart. */
+        public List<PlanDetalle> detallesParaDia(int dia) {
+            return detallesEnRango(dia, dia);
+        }
+
+        /** Primer detalle (menor dayStart) que aplica al día, o null. */
+        public PlanDetalle primerDetalleParaDia(int dia) {
+            List<PlanDetalle> r = detallesEnRango(dia, dia);
+            return r.isEmpty() ? null : r.get(0);
+        }
+
+        /**
+         * Detalles que se solapan con la ventana [diaDesde, diaHasta] en una sola pasada, en orden de dayStart.
+         */
+        public List<PlanDetalle> detallesEnRango(int diaDesde, int diaHasta) {
+            List<PlanDetalle> r = new ArrayList<>();
+            if (diaDesde <= diaHasta) buscar(0, nodos.length - 1, diaDesde, diaHasta, r);
+            return r;
+        }
+
+        private void buscar(int lo, int hi, int desde, int hasta, List<PlanDetalle> r) {
+            if (lo > hi) return;
+            int medio = (lo + hi) >>> 1;
+            // Ningún intervalo del subárbol termina dentro o después de la ventana
+            if (maxFin[medio] < desde) return;
+            buscar(lo, medio - 1, desde, hasta, r);
+            // Los de la derecha empiezan en inicio[medio] o después: si ya pasó la ventana, podar
+            if (inicio[medio] > hasta) return;
+            if (fin[medio] >= desde) r.add(nodos[medio]);
+            buscar(medio + 1, hi, desde, hasta, r);
+        }
+    }
+
+    public PlanCompilado obtener(Long planId) {
+        PlanCompilado plan = planes.get(planId);
+        if (plan != null) return plan;
+        PlanCompilado nuevo = new PlanCompilado(new ArrayList<>(planDetalleRepository.findByPlanIdWithProductInfo(planId)));
+        PlanCompilado previo = planes.putIfAbsent(planId, nuevo);
+        return previo != null ? previo : nuevo;
+    }
+
+    /**
+     * Descarta el plan compilado. Si hay transacción activa se hace al confirmarla,
+     * para que una lectura concurrente no vuelva a compilar el estado anterior.
+     */
+    public void invalidar(Long planId) {
+        if (planId == null) return;
+        planes.remove(planId);
+        Transacciones.alTerminar(() -> planes.remove(planId));
+    }
+
+    /** Descarta los planes compilados con algún detalle de ese producto, igual que {@link #invalidar}. */
+    public void invalidarProducto(long productId) {
+        quitarConProducto(productId);
+        Transacciones.alTerminar(() -> quitarConProducto(productId));
+    }
+
+    private void quitarConProducto(long productId) {
+        planes.values().removeIf(plan -> plan.getDetalles().stream()
+            .anyMatch(d -> d.getProduct() != null && d.getProduct().getId() == productId));
+    }
+}
@@ -42,6 +42,9 @@ public class PlanDetalleService {
     @Autowired
     private PlanDetalleMapper planDetalleMapper;
     
+    @Autowired
+    private PlanCompiladoService planCompiladoService;
+    
     /**
      * Agregar detalle a un plan de alimentación
      */
@@ -88,6 +91,7 @@ public class PlanDetalleService {
             }
             
             planAlimentacionRepository.save(plan);
+            planCompiladoService.invalidar(planId);
             
             logger.info("Detalle agregado al plan: {} - Días {}-{} (sub-etapa permitida)", plan.getName(), 
                        nuevoDetalle.getDayStart(), nuevoDetalle.getDayEnd());
@@ -140,6 +144,7 @@ public class PlanDetalleService {
             detalleExistente.setInstructions(detalleRequest.getInstructions());
             
             planAlimentacionRepository.save(plan);
+            planCompiladoService.invalidar(planId);
             
             logger.info("Detalle actualizado en plan: {} (sub-etapa permitida)", plan.getName());
             return ResponseEntity.ok(detalleExistente);
@@ -176,6 +181,7 @@ public class PlanDetalleService {
             
             // Eliminar directamente del repositorio
             planDetalleRepository.deleteById(detalleId);
+            planCompiladoService.invalidar(planId);
             
             System.out.println("✅ Detalle eliminado exitosamente");
             
@@ -291,6 +297,7 @@ public class PlanDetalleService {
             }
             
             PlanDetalle detalleActualizado = planDetalleRepository.save(detalleExistente);
+            planCompiladoService.invalidar(detalleActualizado.getPlanAlimentacion().getId());
             logger.info("Detalle actualizado: {}", detalleId);
             
             // Convertir a DTO antes de devolver
@@ -310,11 +317,11 @@ public class PlanDetalleService {
      */
     public ResponseEntity<Void> deleteDetalle(Long detalleId) {
         try {
-            if (!planDetalleRepository.existsById(detalleId)) {
-                throw new RequestException("No existe el detalle especificado");
-            }
+            PlanDetalle detalle = planDetalleRepository.findById(detalleId)
+                .orElseThrow(() -> new RequestException("No existe el detalle especificado"));
             
             planDetalleRepository.deleteById(detalleId);
+            planCompiladoService.invalidar(detalle.getPlanAlimentacion().getId());
             logger.info("Detalle eliminado: {}", detalleId);
             
             return ResponseEntity.noContent().build();
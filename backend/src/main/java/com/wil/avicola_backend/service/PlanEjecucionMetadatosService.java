@@ -0,0 +1,163 @@
+package com.wil.avicola_backend.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Backfill único de los datos estructurados de plan_ejecucion (lote, producto, vivos, muertos,
+ * cantidad por animal, movimiento de inventario) a partir del texto de observations.
+ *
+ * Las filas pendientes son las que tienen metadatos_estructurados en null (anteriores a las columnas).
+ * Se procesan por rangos de id en paralelo sobre el ejecutor de tareas de la aplicación; cada rango se escribe con un batch JDBC y queda marcado,
+ * así que si el proceso se interrumpe el siguiente arranque continúa donde quedó.
+ */
+@Service
+public class PlanEjecucionMetadatosService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PlanEjecucionMetadatosService.class);
+
+    private static final int TAMANO_LOTE = 1000;
+    private static final int HILOS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private static final Pattern LOTE_UUID = Pattern.compile(
+        "Lote:\\s*([0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12})");
+    private static final Pattern LOTE_CODIGO = Pattern.compile("Lote:\\s*[^|(]*\\(([^)|]+)\\)");
+    private static final Pattern PRODUCTO = Pattern.compile("Producto:\\s*([^|]+)");
+    private static final Pattern VIVOS = Pattern.compile("(?i)vivos:\\s*(\\d+)");
+    private static final Pattern MUERTOS = Pattern.compile("Mortalidad registrada:\\s*(\\d+)");
+    private static final Pattern POR_ANIMAL = Pattern.compile("porAnimal:\\s*([0-9]+(?:[.,][0-9]+)?)");
+    private static final Pattern MOVIMIENTO = Pattern.compile("MovimientoInvId:\\s*(\\d+)");
+
+    private static final String SQL_RANGO =
+        "SELECT pe.id, pe.observations, pa.lote_id AS asignacion_lote_id, pd.product_id AS detalle_product_id, " +
+        "       pd.quantity_per_animal " +
+        "FROM plan_ejecucion pe " +
+        "LEFT JOIN plan_asignacion pa ON pe.asignacion_id = pa.id " +
+        "LEFT JOIN plan_detalle pd ON pe.detalle_id = pd.id " +
+        "WHERE pe.id BETWEEN ? AND ? AND pe.metadatos_estructurados IS NULL";
+
+    private static final String SQL_ACTUALIZAR =
+        "UPDATE plan_ejecucion SET lote_id = COALESCE(lote_id, ?), product_id = COALESCE(product_id, ?), " +
+        "  animales_vivos = COALESCE(animales_vivos, ?), animales_muertos = COALESCE(animales_muertos, ?), " +
+        "  cantidad_por_animal = COALESCE(cantidad_por_animal, ?), " +
+        "  movimiento_inventario_id = COALESCE(movimiento_inventario_id, ?), metadatos_estructurados = TRUE " +
+        "WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AsyncTaskExecutor taskExecutor;
+
+    public PlanEjecucionMetadatosService(JdbcTemplate jdbcTemplate,
+            @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) AsyncTaskExecutor taskExecutor) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.taskExecutor = taskExecutor;
+    }
+
+    /** Se lanza en segundo plano para no retrasar el arranque. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillAlIniciar() {
+        taskExecutor.execute(() -> {
+            try {
+                int n = backfill();
+                if (n > 0) logger.info("Metadatos de plan_ejecucion extraídos para {} filas", n);
+            } catch (Exception ex) {
+                logger.warn("No se pudo completar el backfill de plan_ejecucion: {}", ex.getMessage());
+            }
+        });
+    }
+
+    public int backfill() throws Exception {
+        Map<String, Object> limites = jdbcTemplate.queryForMap(
+            "SELECT MIN(id) AS minimo, MAX(id) AS maximo FROM plan_ejecucion WHERE metadatos_estructurados IS NULL");
+        if (limites.get("minimo") == null) return 0;
+        long minimo = ((Number) limites.get("minimo")).longValue();
+        long maximo = ((Number) limites.get("maximo")).longValue();
+
+        // Catálogos pequeños para resolver "Lote: nombre (codigo)" y "Producto: nombre"
+        Map<String, String> lotePorCodigo = new HashMap<>();
+        jdbcTemplate.query("SELECT id, codigo FROM lote WHERE codigo IS NOT NULL",
+            rs -> { lotePorCodigo.put(rs.getString("codigo").trim(), rs.getString("id")); });
+        Map<String, Long> productoPorNombre = new HashMap<>();
+        jdbcTemplate.query("SELECT id, name FROM product WHERE name IS NOT NULL",
+            rs -> { productoPorNombre.putIfAbsent(rs.getString("name").trim().toLowerCase(), rs.getLong("id")); });
+
+        // HILOS trabajadores toman rangos de un cursor común; uno corre en el hilo que llama para no
+        // quedar esperando a un ejecutor compartido que podría estar ocupado
+        AtomicLong cursor = new AtomicLong(minimo);
+        AtomicInteger total = new AtomicInteger();
+        Runnable trabajador = () -> {
+            long desde;
+            while ((desde = cursor.getAndAdd(TAMANO_LOTE)) <= maximo) {
+                long fin = Math.min(desde + TAMANO_LOTE - 1, maximo);
+                total.addAndGet(procesarRango(desde, fin, lotePorCodigo, productoPorNombre));
+            }
+        };
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int i = 1; i < HILOS; i++) tareas.add(taskExecutor.submit(trabajador));
+        trabajador.run();
+        for (Future<?> t : tareas) t.get();
+        return total.get();
+    }
+
+    private int procesarRango(long desde, long hasta, Map<String, String> lotePorCodigo, Map<String, Long> productoPorNombre) {
+        List<Object[]> params = new ArrayList<>();
+        jdbcTemplate.query(SQL_RANGO, rs -> {
+            String obs = rs.getString("observations");
+            String loteId = rs.getString("asignacion_lote_id");
+            if (loteId == null) loteId = extraer(LOTE_UUID, obs);
+            if (loteId == null) {
+                String codigo = extraer(LOTE_CODIGO, obs);
+                if (codigo != null) loteId = lotePorCodigo.get(codigo);
+            }
+            Long productId = rs.getObject("detalle_product_id", Long.class);
+            if (productId == null) {
+                String producto = extraer(PRODUCTO, obs);
+                if (producto != null) productId = productoPorNombre.get(producto.toLowerCase());
+            }
+            Double porAnimal = rs.getObject("quantity_per_animal", Double.class);
+            if (porAnimal == null) {
+                String v = extraer(POR_ANIMAL, obs);
+                if (v != null) porAnimal = Double.valueOf(v.replace(',', '.'));
+            }
+            params.add(new Object[] {
+                loteId, productId, entero(VIVOS, obs), entero(MUERTOS, obs), porAnimal,
+                largo(MOVIMIENTO, obs), rs.getLong("id")
+            });
+        }, desde, hasta);
+        if (params.isEmpty()) return 0;
+        jdbcTemplate.batchUpdate(SQL_ACTUALIZAR, params);
+        return params.size();
+    }
+
+    private static String extraer(Pattern patron, String texto) {
+        if (texto == null || texto.isEmpty()) return null;
+        Matcher m = patron.matcher(texto);
+        return m.find() ? m.group(1).trim() : null;
+    }
+
+    private static Integer entero(Pattern patron, String texto) {
+        String v = extraer(patron, texto);
+        return v != null ? Integer.valueOf(v) : null;
+    }
+
+    private static Long largo(Pattern patron, String texto) {
+        String v = extraer(patron, texto);
+        return v != null ? Long.valueOf(v) : null;
+    }
+}
@@ -1,19 +1,23 @@
 package com.wil.avicola_backend.service;
 
 import java.math.BigDecimal;
-import java.text.Normalizer;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.wil.avicola_backend.error.RequestException;
@@ -27,9 +31,7 @@ import com.wil.avicola_backend.repository.PlanAsignacionRepository;
 import com.wil.avicola_backend.repository.PlanDetalleRepository;
 import com.wil.avicola_backend.repository.PlanEjecucionRepository;
 import com.wil.avicola_backend.repository.UsuarioRepository;
-import com.wil.avicola_backend.repository.TypeFoodRepository;
 import com.wil.avicola_backend.repository.LoteRepository;
-import com.wil.avicola_backend.model.TypeFood;
 import com.wil.avicola_backend.model.Lote;
 
 @Service
@@ -51,7 +53,7 @@ public class PlanEjecucionService {
     private UsuarioRepository usuarioRepository;
     
     @Autowired
-    private TypeFoodRepository typeFoodRepository;
+    private TypeFoodService typeFoodService;
     
     @Autowired
     private LoteRepository loteRepository;
@@ -62,25 +64,53 @@ public class PlanEjecucionService {
     @Autowired
     private PlanAlimentacionServiceSimplificado planAlimentacionServiceSimplificado;
     
+    @Autowired
+    private PlanCompiladoService planCompiladoService;
+    
+    @Autowired
+    private ConsumoLoteResumenService consumoLoteResumenService;
+    
     /**
      * Obtener programación diaria para un usuario específico
      * Esta es la función clave que calcula qué debe alimentar cada usuario según la fecha de registro de los animales
      */
     public ResponseEntity<List<PlanEjecucion>> getProgramacionDiariaUsuario(Long userId, LocalDate fecha) {
         try {
-            // Validar que el usuario existe
-            if (!usuarioRepository.existsById(userId)) {
-                throw new RequestException("No existe el usuario especificado");
+            // Validar que el usuario existe (una sola lectura, se reutiliza para todas las ejecuciones)
+            Usuario usuario = usuarioRepository.findById(userId)
+                .orElseThrow(() -> new RequestException("No existe el usuario especificado"));
+            
+            // Obtener asignaciones activas del usuario con lote y plan en la misma consulta
+            List<PlanAsignacion> asignacionesActivas = planAsignacionRepository.findActivasConLoteYPlanByUser(userId);
+            if (asignacionesActivas.isEmpty()) {
+                return ResponseEntity.ok(new ArrayList<>());
             }
             
-            // Obtener asignaciones activas del usuario
-            List<PlanAsignacion> asignacionesActivas = planAsignacionRepository.findByAssignedUserIdAndStatusOrderByCreateDateDesc(userId, PlanAsignacion.Status.ACTIVO);
+            // Día de vida de cada asignación para la fecha
+            List<Long> asignacionIds = new ArrayList<>();
+            Map<Long, Integer> diaPorAsignacion = new HashMap<>();
+            int diaMin = Integer.MAX_VALUE;
+            int diaMax = Integer.MIN_VALUE;
+            for (PlanAsignacion asignacion : asignacionesActivas) {
+                int dia = (int) calcularDiaDeVida(asignacion, fecha);
+                asignacionIds.add(asignacion.getId());
+                diaPorAsignacion.put(asignacion.getId(), dia);
+                diaMin = Math.min(diaMin, dia);
+                diaMax = Math.max(diaMax, dia);
+            }
+            
+            // Todas las ejecuciones ya registradas (asignación, detalle, día) en una sola consulta
+            Set<String> ejecutadas = new HashSet<>();
+            for (Object[] fila : planEjecucionRepository.findEjecucionesRegistradas(asignacionIds, diaMin, diaMax)) {
+                ejecutadas.add(claveEjecucion((Long) fila[0], (Long) fila[1], (Integer) fila[2]));
+            }
             
             List<PlanEjecucion> programacionDiaria = new ArrayList<>();
             
             for (PlanAsignacion asignacion : asignacionesActivas) {
-                // Calcular programación para esta asignación
-                List<PlanEjecucion> ejecucionesAsignacion = calcularProgramacionParaAsignacion(asignacion, fecha, userId);
+                // Calcular programación para esta asignación desde el plan compilado
+                List<PlanEjecucion> ejecucionesAsignacion = calcularProgramacionParaAsignacion(
+                    asignacion, fecha, diaPorAsignacion.get(asignacion.getId()), usuario, ejecutadas);
                 programacionDiaria.addAll(ejecucionesAsignacion);
             }
             
@@ -97,54 +127,52 @@ public class PlanEjecucionService {
     /**
      * Calcular qué debe ejecutar el usuario para una asignación específica en una fecha
      */
-    private List<PlanEjecucion> calcularProgramacionParaAsignacion(PlanAsignacion asignacion, LocalDate fecha, Long userId) {
+    private List<PlanEjecucion> calcularProgramacionParaAsignacion(PlanAsignacion asignacion, LocalDate fecha, int diaDeVida,
+                                                                   Usuario usuario, Set<String> ejecutadas) {
         List<PlanEjecucion> ejecuciones = new ArrayList<>();
+        if (asignacion.getPlanAlimentacion() == null) return ejecuciones;
         
-        // Obtener los animales del lote (necesitamos la fecha de registro de cada animal)
-        // Por ahora asumimos que el lote tiene una fecha de registro
-        // En tu caso específico, necesitarás ajustar esto según tu modelo de Animal
-        
-        // Obtener todos los detalles del plan
-        List<PlanDetalle> detalles = planDetalleRepository.findByPlanAlimentacionIdOrderByDayStartAsc(asignacion.getPlanAlimentacion().getId());
+        // Detalles que aplican para el día de vida, resueltos en memoria
+        List<PlanDetalle> detalles = planCompiladoService.obtener(asignacion.getPlanAlimentacion().getId())
+            .detallesParaDia(diaDeVida);
         
         for (PlanDetalle detalle : detalles) {
-            // Calcular día de vida del lote (preferido) o días desde startDate como fallback
-            long diasDesdeInicio;
-            if (asignacion.getLote() != null && asignacion.getLote().getBirthdate() != null) {
-                java.time.LocalDate nacimiento = asignacion.getLote().getBirthdate().toInstant()
-                    .atZone(java.time.ZoneId.systemDefault()).toLocalDate();
-                diasDesdeInicio = ChronoUnit.DAYS.between(nacimiento, fecha) + 1;
-            } else {
-                diasDesdeInicio = ChronoUnit.DAYS.between(asignacion.getStartDate(), fecha) + 1;
-            }
+            // Verificar si ya existe una ejecución para este día
+            if (ejecutadas.contains(claveEjecucion(asignacion.getId(), detalle.getId(), diaDeVida))) continue;
             
-            // Verificar si este detalle aplica para el día actual
-            if (diasDesdeInicio >= detalle.getDayStart() && diasDesdeInicio <= detalle.getDayEnd()) {
-                
-                // Verificar si ya existe una ejecución para este día
-                boolean yaEjecutado = planEjecucionRepository.existsByAsignacionAndDetalleAndDay(
-                    asignacion.getId(), detalle.getId(), (int) diasDesdeInicio);
-                
-                if (!yaEjecutado) {
-                    // Crear ejecución pendiente
-                    PlanEjecucion ejecucion = PlanEjecucion.builder()
-                        .planAsignacion(asignacion)
-                        .planDetalle(detalle)
-                        .executedByUser(usuarioRepository.findById(userId).orElse(null))
-                        .executionDate(fecha)
-                        .dayNumber((int) diasDesdeInicio)
-                        .quantityApplied(0.0) // Inicialmente 0, se actualiza al ejecutar
-                        .status(PlanEjecucion.Status.PENDIENTE)
-                        .build();
-                    
-                    ejecuciones.add(ejecucion);
-                }
-            }
+            // Crear ejecución pendiente
+            PlanEjecucion ejecucion = PlanEjecucion.builder()
+                .planAsignacion(asignacion)
+                .planDetalle(detalle)
+                .executedByUser(usuario)
+                .executionDate(fecha)
+                .dayNumber(diaDeVida)
+                .quantityApplied(0.0) // Inicialmente 0, se actualiza al ejecutar
+                .status(PlanEjecucion.Status.PENDIENTE)
+                .build();
+            
+            ejecuciones.add(ejecucion);
         }
         
         return ejecuciones;
     }
     
+    /**
+     * Día de vida del lote (preferido) o días desde startDate de la asignación como fallback
+     */
+    private long calcularDiaDeVida(PlanAsignacion asignacion, LocalDate fecha) {
+        if (asignacion.getLote() != null && asignacion.getLote().getBirthdate() != null) {
+            java.time.LocalDate nacimiento = asignacion.getLote().getBirthdate().toInstant()
+                .atZone(java.time.ZoneId.systemDefault()).toLocalDate();
+            return ChronoUnit.DAYS.between(nacimiento, fecha) + 1;
+        }
+        return ChronoUnit.DAYS.between(asignacion.getStartDate(), fecha) + 1;
+    }
+    
+    private static String claveEjecucion(Long asignacionId, Long detalleId, Integer dia) {
+        return asignacionId + ":" + detalleId + ":" + dia;
+    }
+    
     /**
      * Registrar ejecución de alimentación
      */
@@ -171,7 +199,8 @@ public class PlanEjecucionService {
             PlanEjecucion ejecucion;
             
             if (ejecucionExistente != null) {
-                // Actualizar ejecución existente
+                // Actualizar ejecución existente (se descuenta lo que ya sumaba en el acumulado por lote)
+                consumoLoteResumenService.revertir(ejecucionExistente);
                 ejecucionExistente.setQuantityApplied(cantidadAplicada);
                 ejecucionExistente.setObservations(observaciones);
                 ejecucionExistente.setStatus(PlanEjecucion.Status.EJECUTADO);
@@ -186,11 +215,15 @@ public class PlanEjecucionService {
                     .dayNumber(dayNumber)
                     .quantityApplied(cantidadAplicada)
                     .observations(observaciones)
+                    .loteId(asignacion.getLote() != null ? asignacion.getLote().getId() : null)
+                    .productId(detalle.getProduct() != null ? detalle.getProduct().getId() : null)
+                    .cantidadPorAnimal(detalle.getQuantityPerAnimal())
                     .status(PlanEjecucion.Status.EJECUTADO)
                     .build();
                 
                 ejecucion = planEjecucionRepository.save(ejecucion);
             }
+            consumoLoteResumenService.registrar(ejecucion);
             
             logger.info("Ejecución registrada exitosamente para día {}", dayNumber);
             return ResponseEntity.status(HttpStatus.CREATED).body(ejecucion);
@@ -256,6 +289,7 @@ public class PlanEjecucionService {
                 throw new RequestException("No tiene permisos para modificar esta ejecución");
             }
             
+            consumoLoteResumenService.revertir(ejecucion);
             ejecucion.setStatus(PlanEjecucion.Status.OMITIDO);
             ejecucion.setObservations(razon);
             
@@ -375,22 +409,10 @@ public class PlanEjecucionService {
                 if (nombreProd.isEmpty()) {
                     throw new RequestException("El producto del detalle no tiene nombre válido para mapear inventario");
                 }
-                java.util.Optional<TypeFood> tipoOpt = typeFoodRepository.findByNameIgnoreCase(nombreProd);
-                if (tipoOpt.isEmpty()) {
-                    String normProd = normalizar(nombreProd);
-                    for (TypeFood tf : typeFoodRepository.findAll()) {
-                        if (tf != null && tf.getName() != null) {
-                            if (normalizar(tf.getName()).equalsIgnoreCase(normProd)) {
-                                tipoOpt = java.util.Optional.of(tf);
-                                break;
-                            }
-                        }
-                    }
-                }
-                if (tipoOpt.isEmpty()) {
+                tipoAlimentoId = typeFoodService.buscarIdPorNombre(nombreProd);
+                if (tipoAlimentoId == null) {
                     throw new RequestException("No se encontró un TypeFood para el nombre de producto: " + nombreProd + ". Configure el tipo de alimento correspondiente.");
                 }
-                tipoAlimentoId = tipoOpt.get().getId();
             }
 
             // Registrar consumo en inventario ANTES de guardar la ejecución (atómico)
@@ -450,15 +472,26 @@ public class PlanEjecucionService {
                 .dayNumber((int) diaDeVida)
                 .quantityApplied(totalAConsumir)
                 .observations(obsEjecucion)
+                .loteId(loteId)
+                .productId(detalle.getProduct().getId())
+                .animalesVivos(vivosParaCalculo)
+                .animalesMuertos(animalesMuertos)
+                .cantidadPorAnimal(porAnimal)
+                .movimientoInventarioId(movimientoId)
                 .status(PlanEjecucion.Status.EJECUTADO)
                 .build();
 
             PlanEjecucion ejecucionGuardada = planEjecucionRepository.save(ejecucion);
+            consumoLoteResumenService.registrar(ejecucionGuardada);
             logger.info("✅ Alimentación registrada exitosamente - ID: {}", ejecucionGuardada.getId());
             return ResponseEntity.ok(ejecucionGuardada);
+        } catch (DataAccessException | TransactionException e) {
+            // Bloqueo, conexión o rollback: no es un error de los datos, quien llama puede reintentar
+            logger.error("❌ Error de base de datos al registrar alimentación completa", e);
+            throw e;
         } catch (Exception e) {
             logger.error("❌ Error al registrar alimentación completa", e);
-            throw new RequestException("Error al registrar la alimentación: " + e.getMessage());
+            throw new RequestException("Error al registrar la alimentación: " + e.getMessage(), e);
         }
     }
 
@@ -476,8 +509,8 @@ public class PlanEjecucionService {
             LocalDate base = (fechaBase != null) ? fechaBase : LocalDate.now();
             int horizonte = (dias != null && dias > 0) ? Math.min(dias, 30) : 7;
 
-            List<PlanAsignacion> asignaciones = planAsignacionRepository
-                .findByAssignedUserIdAndStatusOrderByCreateDateDesc(userId, PlanAsignacion.Status.ACTIVO);
+            // Asignaciones con lote y plan en una sola consulta; los detalles salen del plan compilado
+            List<PlanAsignacion> asignaciones = planAsignacionRepository.findActivasConLoteYPlanByUser(userId);
 
             List<AlertaRapidaDto> alertas = new ArrayList<>();
 
@@ -485,37 +518,29 @@ public class PlanEjecucionService {
                 Long planId = asignacion.getPlanAlimentacion() != null ? asignacion.getPlanAlimentacion().getId() : null;
                 if (planId == null) continue;
 
-                for (int offset = 0; offset < horizonte; offset++) {
-                    LocalDate fechaObjetivo = base.plusDays(offset);
-
-                    long diaDeVida;
-                    if (asignacion.getLote() != null && asignacion.getLote().getBirthdate() != null) {
-                        java.time.LocalDate nacimiento = asignacion.getLote().getBirthdate().toInstant()
-                            .atZone(java.time.ZoneId.systemDefault()).toLocalDate();
-                        diaDeVida = ChronoUnit.DAYS.between(nacimiento, fechaObjetivo) + 1;
-                    } else {
-                        diaDeVida = ChronoUnit.DAYS.between(asignacion.getStartDate(), fechaObjetivo) + 1;
-                    }
-
-                    if (diaDeVida <= 0) continue;
-
-                    List<PlanDetalle> detalles = planDetalleRepository.findByPlanIdAndDayNumber(planId, (int) diaDeVida);
-                    for (PlanDetalle d : detalles) {
-                        if (d.getDayStart() != null && d.getDayEnd() != null && d.getDayStart().intValue() == d.getDayEnd().intValue()) {
-                            alertas.add(AlertaRapidaDto.builder()
-                                .fechaObjetivo(fechaObjetivo)
-                                .diaDeVida((int) diaDeVida)
-                                .asignacionId(asignacion.getId())
-                                .loteId(asignacion.getLote() != null ? asignacion.getLote().getId() : null)
-                                .loteCodigo(asignacion.getLote() != null ? asignacion.getLote().getCodigo() : null)
-                                .planDetalleId(d.getId())
-                                .productId(d.getProduct() != null ? d.getProduct().getId() : null)
-                                .productName(d.getProduct() != null ? d.getProduct().getName() : null)
-                                .tipo("evento_unico")
-                                .mensaje("Evento puntual del plan para el día de vida " + diaDeVida)
-                                .build());
-                        }
-                    }
+                // Ventana de días de vida cubierta por el horizonte, consultada de una vez
+                long diaInicio = calcularDiaDeVida(asignacion, base);
+                long diaFin = diaInicio + horizonte - 1;
+                if (diaFin <= 0) continue;
+
+                List<PlanDetalle> detalles = planCompiladoService.obtener(planId)
+                    .detallesEnRango((int) Math.max(diaInicio, 1), (int) diaFin);
+                for (PlanDetalle d : detalles) {
+                    if (d.getDayStart().intValue() != d.getDayEnd().intValue()) continue;
+                    long diaDeVida = d.getDayStart();
+                    LocalDate fechaObjetivo = base.plusDays(diaDeVida - diaInicio);
+                    alertas.add(AlertaRapidaDto.builder()
+                        .fechaObjetivo(fechaObjetivo)
+                        .diaDeVida((int) diaDeVida)
+                        .asignacionId(asignacion.getId())
+                        .loteId(asignacion.getLote() != null ? asignacion.getLote().getId() : null)
+                        .loteCodigo(asignacion.getLote() != null ? asignacion.getLote().getCodigo() : null)
+                        .planDetalleId(d.getId())
+                        .productId(d.getProduct() != null ? d.getProduct().getId() : null)
+                        .productName(d.getProduct() != null ? d.getProduct().getName() : null)
+                        .tipo("evento_unico")
+                        .mensaje("Evento puntual del plan para el día de vida " + diaDeVida)
+                        .build());
                 }
             }
 
@@ -580,6 +605,9 @@ public class PlanEjecucionService {
                 .dayNumber(1) // Día por defecto para registros manuales
                 .quantityApplied(cantidad)
                 .observations(observacionesCompletas)
+                .loteId(loteId)
+                .animalesVivos(animalesVivos)
+                .animalesMuertos(animalesMuertos)
                 .status(PlanEjecucion.Status.EJECUTADO)
                 .editado(false) // Registro original, no editado
                 .build();
@@ -622,21 +650,7 @@ public class PlanEjecucionService {
      * Buscar detalle del plan para un día específico
      */
     private PlanDetalle buscarDetalleParaDia(Long planId, int dia) {
-        List<PlanDetalle> detalles = planDetalleRepository.findByPlanAlimentacionIdOrderByDayStartAsc(planId);
-        
-        return detalles.stream()
-            .filter(detalle -> dia >= detalle.getDayStart() && dia <= detalle.getDayEnd())
-            .findFirst()
-            .orElse(null);
-    }
-
-    /**
-     * Normaliza un texto eliminando acentos/diacríticos y convirtiendo a minúsculas
-     */
-    private String normalizar(String texto) {
-        if (texto == null) return "";
-        String n = Normalizer.normalize(texto, Normalizer.Form.NFD);
-        return n.replaceAll("\\p{InCombiningDiacriticalMarks}+", "").toLowerCase();
+        return planCompiladoService.obtener(planId).primerDetalleParaDia(dia);
     }
 
     /**
@@ -4,7 +4,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.util.List;
+
+import com.wil.avicola_backend.dto.ProductoCatalogoDTO;
 import com.wil.avicola_backend.error.RequestException;
 import com.wil.avicola_backend.model.Product;
 import com.wil.avicola_backend.repository.AnimalRepository;
@@ -45,7 +50,15 @@ public class ProductService {
     private SubcategoryRepository subcategoryRepository;
 
     public ResponseEntity<?> findProducts() {
-        return ResponseEntity.ok().body(productRepository.findByActiveTrue());
+        return ResponseEntity.ok().body(listarCatalogo());
+    }
+
+    /** Productos activos con sus relaciones y el stock válido FEFO, en una sola consulta. */
+    @Transactional(readOnly = true)
+    public List<ProductoCatalogoDTO> listarCatalogo() {
+        return productRepository.findCatalogo(LocalDate.now()).stream()
+            .map(ProductoCatalogoDTO::desde)
+            .toList();
     }
 
     public ResponseEntity<Product> saveProduct(
@@ -0,0 +1,192 @@
+package com.wil.avicola_backend.service;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.wil.avicola_backend.model.Lote;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Resumen de lotes por animal (especie) en memoria para el dashboard de lotes.
+ *
+ * Se arma al iniciar con una sola consulta agrupada y luego se mantiene con deltas que aplican
+ * los servicios que cambian cantidades (mortalidad, ventas, alta/edición de lotes), siempre
+ * después del commit. Cada cambio incrementa la versión que se devuelve con el resumen.
+ * Las operaciones sin delta preciso (eliminar lote, editar/eliminar venta, reconciliar) invalidan
+ * el resumen y la siguiente lectura lo reconstruye.
+ */
+@Service
+@RequiredArgsConstructor
+public class ResumenLotesService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResumenLotesService.class);
+
+    /** Lotes sin raza/animal y ventas sin animal. */
+    private static final long SIN_ANIMAL = 0L;
+
+    private static final String SQL_RESUMEN =
+        "SELECT COALESCE(l.animal_id, v.animal_id) AS animal_id, " +
+        "       COALESCE(l.totales, 0) AS totales, COALESCE(l.activos, 0) AS activos, COALESCE(l.cerrados, 0) AS cerrados, " +
+        "       COALESCE(l.adquiridos, 0) AS adquiridos, COALESCE(l.actuales, 0) AS actuales, COALESCE(v.vendidos, 0) AS vendidos " +
+        "FROM (SELECT COALESCE(r.animal_id, 0) AS animal_id, COUNT(*) AS totales, " +
+        "             COUNT(*) FILTER (WHERE lo.quantity > 0) AS activos, COUNT(*) FILTER (WHERE lo.quantity = 0) AS cerrados, " +
+        "             COALESCE(SUM(lo.quantity_original), 0) AS adquiridos, COALESCE(SUM(lo.quantity), 0) AS actuales " +
+        "      FROM lote lo LEFT JOIN race r ON lo.race_id = r.id GROUP BY COALESCE(r.animal_id, 0)) l " +
+        "FULL OUTER JOIN (SELECT COALESCE(animal_id, 0) AS animal_id, SUM(cantidad) AS vendidos " +
+        "                 FROM venta_animal WHERE estado = 'EMITIDA' GROUP BY COALESCE(animal_id, 0)) v " +
+        "ON l.animal_id = v.animal_id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Object cerrojo = new Object();
+    private final AtomicLong version = new AtomicLong();
+    private volatile Map<Long, Contadores> porAnimal;
+
+    /** Contadores inmutables de un animal; los deltas crean una copia nueva. */
+    public record Contadores(long lotesTotales, long lotesActivos, long lotesCerrados,
+                             long adquiridos, long actuales, long vendidos) {
+
+        static final Contadores VACIO = new Contadores(0, 0, 0, 0, 0, 0);
+
+        Contadores mas(Contadores d) {
+            return new Contadores(lotesTotales + d.lotesTotales, lotesActivos + d.lotesActivos,
+                lotesCerrados + d.lotesCerrados, adquiridos + d.adquiridos, actuales + d.actuales, vendidos + d.vendidos);
+        }
+    }
+
+    // ============================
+    // Lectura
+    // ============================
+
+    /** Mismo contrato que LoteService.getResumen, más la versión del resumen. */
+    public Map<String, Object> obtener(Long animalId) {
+        Map<Long, Contadores> actual = porAnimal;
+        if (actual == null) actual = reconstruir();
+        Contadores c;
+        if (animalId != null) {
+            c = actual.getOrDefault(animalId, Contadores.VACIO);
+        } else {
+            c = Contadores.VACIO;
+            for (Contadores x : actual.values()) c = c.mas(x);
+        }
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("lotesTotales", c.lotesTotales());
+        data.put("lotesActivos", c.lotesActivos());
+        data.put("lotesCerrados", c.lotesCerrados());
+        data.put("animalesAdquiridos", c.adquiridos());
+        data.put("animalesActuales", c.actuales());
+        data.put("animalesVendidos", c.vendidos());
+        data.put("animalesMuertos", Math.max(0L, c.adquiridos() - c.actuales() - c.vendidos()));
+        data.put("version", version.get());
+        return data;
+    }
+
+    // ============================
+    // Deltas (se aplican al confirmar la transacción)
+    // ============================
+
+    /** Lote nuevo guardado. */
+    public void loteCreado(Lote lote) {
+        if (lote == null) return;
+        int cantidad = lote.getQuantity();
+        aplicarDespuesDeCommit(animalDe(lote), new Contadores(1, cantidad > 0 ? 1 : 0, cantidad == 0 ? 1 : 0,
+            valor(lote.getQuantityOriginal()), cantidad, 0));
+    }
+
+    /** Cambió la cantidad actual del lote (ya guardada en {@code lote}). */
+    public void cantidadCambiada(Lote lote, int cantidadAnterior) {
+        if (lote == null || lote.getQuantity() == cantidadAnterior) return;
+        int nueva = lote.getQuantity();
+        int activos = (nueva > 0 ? 1 : 0) - (cantidadAnterior > 0 ? 1 : 0);
+        aplicarDespuesDeCommit(animalDe(lote), new Contadores(0, activos, -activos, 0, nueva - cantidadAnterior, 0));
+    }
+
+    /** Cambió la cantidad original registrada del lote. */
+    public void cantidadOriginalCambiada(Lote lote, Integer anterior) {
+        if (lote == null) return;
+        long delta = valor(lote.getQuantityOriginal()) - valor(anterior);
+        if (delta != 0) aplicarDespuesDeCommit(animalDe(lote), new Contadores(0, 0, 0, delta, 0, 0));
+    }
+
+    /** Ventas EMITIDA: positivo al vender, negativo al anular. */
+    public void ventasCambiadas(Long animalId, long delta) {
+        if (delta != 0) {
+            aplicarDespuesDeCommit(animalId != null ? animalId : SIN_ANIMAL, new Contadores(0, 0, 0, 0, 0, delta));
+        }
+    }
+
+    /** Descarta el resumen al confirmar; la próxima lectura lo reconstruye. */
+    public void invalidar() {
+        Transacciones.despuesDeCommit(() -> {
+            synchronized (cerrojo) {
+                porAnimal = null;
+                version.incrementAndGet();
+            }
+        });
+    }
+
+    private void aplicarDespuesDeCommit(long animalId, Contadores delta) {
+        Transacciones.despuesDeCommit(() -> {
+            synchronized (cerrojo) {
+                Map<Long, Contadores> actual = porAnimal;
+                if (actual != null) {
+                    Map<Long, Contadores> copia = new HashMap<>(actual);
+                    copia.merge(animalId, delta, Contadores::mas);
+                    porAnimal = copia;
+                }
+                version.incrementAndGet();
+            }
+        });
+    }
+
+
+    // ============================
+    // Reconstrucción
+    // ============================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconstruirAlIniciar() {
+        try {
+            Map<Long, Contadores> r = reconstruir();
+            logger.info("Resumen de lotes cargado para {} animales", r.size());
+        } catch (Exception ex) {
+            logger.warn("No se pudo cargar el resumen de lotes: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Una consulta agrupada por animal. Si llega un delta mientras corre la consulta, el resultado
+     * se usa para responder pero no se publica: la siguiente lectura vuelve a consultar.
+     */
+    public Map<Long, Contadores> reconstruir() {
+        long versionInicial = version.get();
+        Map<Long, Contadores> nuevo = new HashMap<>();
+        jdbcTemplate.query(SQL_RESUMEN, rs -> {
+            nuevo.put(rs.getLong("animal_id"), new Contadores(
+                rs.getLong("totales"), rs.getLong("activos"), rs.getLong("cerrados"),
+                rs.getLong("adquiridos"), rs.getLong("actuales"), rs.getLong("vendidos")));
+        });
+        synchronized (cerrojo) {
+            if (version.get() == versionInicial) porAnimal = nuevo;
+        }
+        return nuevo;
+    }
+
+    private static long animalDe(Lote lote) {
+        return lote.getRace() != null && lote.getRace().getAnimal() != null ? lote.getRace().getAnimal().getId() : SIN_ANIMAL;
+    }
+
+    private static long valor(Integer n) {
+        return n != null ? n : 0L;
+    }
+}
@@ -0,0 +1,89 @@
+package com.wil.avicola_backend.service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Escribe la última actividad de las sesiones en segundo plano. Cada petición autenticada solo anota
+ * el usuario en memoria; cada pocos segundos se vuelca todo en un único batch de UPDATE, así que una
+ * ráfaga de peticiones (o de logins en el cambio de turno) no compite por filas de user_session.
+ */
+@Slf4j
+@Service
+public class SesionActividadService {
+
+    private static final String SQL_ACTIVIDAD =
+        "UPDATE user_session SET last_activity = ? " +
+        "WHERE user_id = ? AND active = true AND (last_activity IS NULL OR last_activity < ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    /** Último instante de actividad pendiente de escribir, por usuario. */
+    private final ConcurrentHashMap<Long, LocalDateTime> pendientes = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService programador = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "actividad-sesiones");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Value("${avicola.app.sessionActivityFlushMs:15000}")
+    private long intervaloMs;
+
+    public SesionActividadService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    void iniciar() {
+        programador.scheduleWithFixedDelay(this::volcarSeguro, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void detener() {
+        programador.shutdownNow();
+        volcarSeguro();
+    }
+
+    /** Anota actividad del usuario; no toca la base. */
+    public void registrar(Long userId) {
+        if (userId != null) pendientes.put(userId, LocalDateTime.now());
+    }
+
+    /** Escribe la actividad acumulada en un batch; devuelve cuántos usuarios se procesaron. */
+    public int volcar() {
+        if (pendientes.isEmpty()) return 0;
+        List<Object[]> lote = new ArrayList<>(pendientes.size());
+        for (Map.Entry<Long, LocalDateTime> e : pendientes.entrySet()) {
+            // remove(clave, valor): si llegó actividad más reciente mientras tanto, queda para el próximo volcado
+            if (pendientes.remove(e.getKey(), e.getValue())) {
+                Timestamp cuando = Timestamp.valueOf(e.getValue());
+                lote.add(new Object[] { cuando, e.getKey(), cuando });
+            }
+        }
+        if (!lote.isEmpty()) jdbcTemplate.batchUpdate(SQL_ACTIVIDAD, lote);
+        return lote.size();
+    }
+
+    private void volcarSeguro() {
+        try {
+            volcar();
+        } catch (Exception e) {
+            log.warn("No se pudo registrar la actividad de sesiones: {}", e.getMessage());
+        }
+    }
+}
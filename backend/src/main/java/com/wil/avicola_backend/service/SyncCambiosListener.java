@@ -0,0 +1,36 @@
+package com.wil.avicola_backend.service;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Listener JPA de las entidades que sincroniza la app móvil: anota cada alta, edición y borrado en
+ * {@link SyncCambiosService}. Hibernate lo crea a través de Spring; el servicio se resuelve al usarlo
+ * para no depender de él mientras se arma el EntityManagerFactory.
+ */
+public class SyncCambiosListener {
+
+    @Autowired
+    private ObjectProvider<SyncCambiosService> syncCambios;
+
+    @PostPersist
+    @PostUpdate
+    public void guardado(Object entidad) {
+        SyncCambiosService servicio = servicio();
+        if (servicio != null) servicio.registrarEntidad(entidad, false);
+    }
+
+    @PostRemove
+    public void eliminado(Object entidad) {
+        SyncCambiosService servicio = servicio();
+        if (servicio != null) servicio.registrarEntidad(entidad, true);
+    }
+
+    private SyncCambiosService servicio() {
+        return syncCambios != null ? syncCambios.getIfAvailable() : null;
+    }
+}
@@ -0,0 +1,312 @@
+package com.wil.avicola_backend.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.wil.avicola_backend.model.InventarioEntradaProducto;
+import com.wil.avicola_backend.model.Lote;
+import com.wil.avicola_backend.model.PlanAsignacion;
+import com.wil.avicola_backend.model.Product;
+import com.wil.avicola_backend.model.costos.CostoFijo;
+import com.wil.avicola_backend.model.costos.GastoLogistica;
+import com.wil.avicola_backend.model.costos.GastoManoObra;
+import com.wil.avicola_backend.model.costos.GastoOperacion;
+import com.wil.avicola_backend.model.costos.GastoSanidad;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Registro de cambios para la sincronización incremental de la app móvil. Cada alta, edición o baja
+ * de una entidad sincronizable deja en sync_cambio la fila (entidad, id) con una secuencia nueva; la
+ * app pide lo cambiado desde su última secuencia y recibe solo ids, sin recorrer el catálogo.
+ *
+ * Las entidades JPA se anotan solas con {@link SyncCambiosListener}; las escrituras por JDBC (FEFO,
+ * reconciliación de lotes) llaman a {@link #registrar}. Los cambios de una transacción se escriben
+ * juntos al confirmarla, después del último flush, con secuencia 0 (pendiente) y sin bloquear a otras
+ * transacciones. La secuencia definitiva se asigna después, ya confirmados, en {@link #numerarPendientes}
+ * (de a una numeración por vez): las secuencias quedan visibles en orden y un cliente nunca salta un
+ * cambio que confirmó tarde.
+ */
+@Slf4j
+@Service
+public class SyncCambiosService {
+
+    public static final String PRODUCTOS = "productos";
+    public static final String LOTES = "lotes";
+    public static final String ASIGNACIONES = "asignaciones";
+    public static final String ENTRADAS = "entradas";
+    public static final String COSTOS_FIJOS = "costos-fijos";
+    public static final String GASTOS_LOGISTICA = "gastos-logistica";
+    public static final String GASTOS_MANO_OBRA = "gastos-mano-obra";
+    public static final String GASTOS_OPERACION = "gastos-operacion";
+    public static final String GASTOS_SANIDAD = "gastos-sanidad";
+
+    public static final Set<String> ENTIDADES = Set.of(PRODUCTOS, LOTES, ASIGNACIONES, ENTRADAS,
+        COSTOS_FIJOS, GASTOS_LOGISTICA, GASTOS_MANO_OBRA, GASTOS_OPERACION, GASTOS_SANIDAD);
+
+    /** Secuencia de un cambio confirmado que todavía no se numeró; los clientes nunca la piden. */
+    private static final long PENDIENTE = 0L;
+
+    /** Clave del pg_try_advisory_xact_lock que deja numerar de a una transacción por vez. */
+    private static final long CANDADO_NUMERACION = 0x73796e635f6e756dL;
+
+    private static final String SQL_CANDADO_NUMERACION = "SELECT pg_try_advisory_xact_lock(?)";
+
+    // eliminado NULL: cambio derivado (p. ej. stock de un producto), conserva la marca de baja que tenga
+    private static final String SQL_REGISTRAR =
+        "INSERT INTO sync_cambio (id, entidad, entidad_id, secuencia, eliminado, actualizado_en) " +
+        "VALUES (nextval('sync_cambio_seq'), ?, ?, " + PENDIENTE + ", COALESCE(CAST(? AS boolean), false), now()) " +
+        "ON CONFLICT (entidad, entidad_id) DO UPDATE SET secuencia = " + PENDIENTE + ", " +
+        "eliminado = COALESCE(CAST(? AS boolean), sync_cambio.eliminado), actualizado_en = now()";
+
+    // SKIP LOCKED: una fila que otra transacción está reescribiendo se numera en la próxima pasada
+    private static final String SQL_NUMERAR =
+        "UPDATE sync_cambio SET secuencia = nextval('sync_cambio_seq') WHERE id IN (" +
+        "SELECT id FROM sync_cambio WHERE secuencia = " + PENDIENTE + " ORDER BY id FOR UPDATE SKIP LOCKED)";
+
+    private static final String SQL_CAMBIOS_DESDE =
+        "SELECT entidad, entidad_id, secuencia, eliminado FROM sync_cambio " +
+        "WHERE secuencia > ? AND entidad = ANY (?) ORDER BY secuencia LIMIT ?";
+
+    private static final String SQL_ULTIMA = "SELECT COALESCE(MAX(secuencia), 0) FROM sync_cambio";
+
+    // Productos con entradas que vencieron ese día: su stock válido baja sin que nadie escriba
+    private static final String SQL_VENCIDAS_EL_DIA =
+        "SELECT DISTINCT product_id FROM inventario_entrada_producto " +
+        "WHERE fecha_vencimiento = ? AND (activo = true OR activo IS NULL) AND stock_base_restante > 0";
+
+    public record Cambio(String entidad, String id, long secuencia, boolean eliminado) {}
+
+    private record Clave(String entidad, String id) {}
+
+    // Mismo orden de filas en todas las transacciones: dos escrituras no se bloquean en cruz
+    private static final Comparator<Clave> ORDEN_FILAS = Comparator.comparing(Clave::entidad).thenComparing(Clave::id);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaccion;
+    private final TransactionTemplate numeracion;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final ScheduledExecutorService programador = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "sync-vencimientos");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Value("${avicola.app.syncVencimientosRevisionMin:30}")
+    private long revisionVencimientosMin;
+
+    private volatile LocalDate ultimoDiaRevisado = LocalDate.now();
+
+    public SyncCambiosService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaccion = new TransactionTemplate(transactionManager);
+        this.numeracion = new TransactionTemplate(transactionManager);
+        this.numeracion.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    void iniciar() {
+        programador.scheduleWithFixedDelay(this::revisarVencimientosSeguro,
+            revisionVencimientosMin, revisionVencimientosMin, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void detener() {
+        programador.shutdownNow();
+    }
+
+    /** Anota el cambio de una entidad JPA sincronizable; ignora las demás. */
+    public void registrarEntidad(Object entidad, boolean eliminada) {
+        if (entidad instanceof Product p) {
+            registrar(PRODUCTOS, p.getId(), eliminada || Boolean.FALSE.equals(p.getActive()));
+        } else if (entidad instanceof Lote l) {
+            registrar(LOTES, l.getId(), eliminada);
+        } else if (entidad instanceof PlanAsignacion a) {
+            registrar(ASIGNACIONES, a.getId(), eliminada);
+        } else if (entidad instanceof InventarioEntradaProducto e) {
+            registrar(ENTRADAS, e.getId(), eliminada);
+            // El stock válido del producto sale de sus entradas
+            if (e.getProduct() != null) registrar(PRODUCTOS, e.getProduct().getId(), null);
+        } else if (entidad instanceof CostoFijo c) {
+            registrar(COSTOS_FIJOS, c.getId(), eliminada);
+        } else if (entidad instanceof GastoLogistica g) {
+            registrar(GASTOS_LOGISTICA, g.getId(), eliminada);
+        } else if (entidad instanceof GastoManoObra g) {
+            registrar(GASTOS_MANO_OBRA, g.getId(), eliminada);
+        } else if (entidad instanceof GastoOperacion g) {
+            registrar(GASTOS_OPERACION, g.getId(), eliminada);
+        } else if (entidad instanceof GastoSanidad g) {
+            registrar(GASTOS_SANIDAD, g.getId(), eliminada);
+        }
+    }
+
+    /**
+     * Anota un cambio. {@code eliminado} null deja la marca de baja como esté (cambio derivado). Dentro
+     * de una transacción se escribe al confirmar; fuera de ella, en una transacción propia.
+     */
+    public void registrar(String entidad, Object id, Boolean eliminado) {
+        if (id == null) return;
+        Clave clave = new Clave(entidad, String.valueOf(id));
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            Map<Clave, Boolean> uno = new LinkedHashMap<>();
+            uno.put(clave, eliminado);
+            transaccion.executeWithoutResult(status -> escribir(uno));
+            return;
+        }
+        Map<Clave, Boolean> pendientes = Transacciones.unicaPorTransaccion(this, this::nuevaEscritura).pendientes();
+        // Una marca explícita gana sobre una derivada
+        if (eliminado != null || !pendientes.containsKey(clave)) pendientes.put(clave, eliminado);
+    }
+
+    /**
+     * Escritura del primer cambio de la transacción. Con una sesión de Hibernate se escribe como
+     * proceso de fin de transacción, que corre después del flush del commit: así entran también las
+     * ediciones de entidades gestionadas, cuyo @PostUpdate recién se dispara en ese flush.
+     */
+    private Escritura nuevaEscritura() {
+        Escritura escritura = new Escritura(this);
+        if (entityManager.isJoinedToTransaction()) {
+            escritura.enHibernate = true;
+            entityManager.unwrap(SessionImplementor.class).getActionQueue()
+                .registerProcess(sesion -> escribir(escritura.pendientes()));
+        }
+        return escritura;
+    }
+
+    /** Cambios pendientes de una transacción; se escriben al confirmarla y se descartan si no confirma. */
+    // Clase y no record: Spring guarda las sincronizaciones en un Set y el mapa cambia
+    private static final class Escritura implements TransactionSynchronization {
+        private final SyncCambiosService servicio;
+        private final Map<Clave, Boolean> pendientes = new LinkedHashMap<>();
+        private boolean enHibernate;
+
+        Escritura(SyncCambiosService servicio) {
+            this.servicio = servicio;
+        }
+
+        Map<Clave, Boolean> pendientes() {
+            return pendientes;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            // Transacción sin sesión de Hibernate (solo JDBC): no hay flush que esperar
+            if (!enHibernate) servicio.escribir(pendientes);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            // Tras un rollback el proceso de Hibernate no corrió: que no escriba nada si la sesión sigue
+            pendientes.clear();
+        }
+    }
+
+    public void registrarTodos(String entidad, Collection<?> ids, Boolean eliminado) {
+        if (ids == null || ids.isEmpty()) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            transaccion.executeWithoutResult(status -> registrarTodos(entidad, ids, eliminado));
+            return;
+        }
+        ids.forEach(id -> registrar(entidad, id, eliminado));
+    }
+
+    /** Cambios con secuencia mayor a {@code desde}, en orden, de las entidades pedidas. */
+    public List<Cambio> cambiosDesde(long desde, Collection<String> entidades, int limite) {
+        numerarPendientes();
+        ResultSetExtractor<List<Cambio>> extractor = rs -> {
+            List<Cambio> cambios = new ArrayList<>();
+            while (rs.next()) {
+                cambios.add(new Cambio(rs.getString(1), rs.getString(2), rs.getLong(3), rs.getBoolean(4)));
+            }
+            return cambios;
+        };
+        return jdbcTemplate.query(con -> {
+            var ps = con.prepareStatement(SQL_CAMBIOS_DESDE);
+            ps.setLong(1, desde);
+            ps.setArray(2, con.createArrayOf("varchar", entidades.toArray()));
+            ps.setInt(3, limite);
+            return ps;
+        }, extractor);
+    }
+
+    /** Secuencia del último cambio confirmado; punto de partida tras una descarga completa. */
+    public long ultimaSecuencia() {
+        numerarPendientes();
+        Long ultima = jdbcTemplate.queryForObject(SQL_ULTIMA, Long.class);
+        return ultima != null ? ultima : 0L;
+    }
+
+    /**
+     * Da secuencia a los cambios confirmados que todavía no la tienen, en una transacción propia. Si
+     * otra numeración está en curso no la espera: lo que quede pendiente se numera en la próxima
+     * llamada, siempre con secuencias mayores a las ya visibles.
+     *
+     * @return cantidad de cambios numerados
+     */
+    public int numerarPendientes() {
+        Integer numerados = numeracion.execute(status -> {
+            Boolean libre = jdbcTemplate.queryForObject(SQL_CANDADO_NUMERACION, Boolean.class, CANDADO_NUMERACION);
+            return Boolean.TRUE.equals(libre) ? jdbcTemplate.update(SQL_NUMERAR) : 0;
+        });
+        return numerados != null ? numerados : 0;
+    }
+
+    private void escribir(Map<Clave, Boolean> pendientes) {
+        if (pendientes.isEmpty()) return;
+        List<Object[]> filas = new ArrayList<>(pendientes.size());
+        pendientes.entrySet().stream()
+            .sorted(Map.Entry.comparingByKey(ORDEN_FILAS))
+            .forEach(e -> filas.add(new Object[] { e.getKey().entidad(), e.getKey().id(), e.getValue(), e.getValue() }));
+        jdbcTemplate.batchUpdate(SQL_REGISTRAR, filas);
+        pendientes.clear();
+    }
+
+    /** Al cambiar el día, marca los productos cuyo stock válido cayó por una entrada vencida. */
+    int revisarVencimientos() {
+        LocalDate hoy = LocalDate.now();
+        if (!hoy.isAfter(ultimoDiaRevisado)) return 0;
+        List<Long> productos = new ArrayList<>();
+        for (LocalDate dia = ultimoDiaRevisado; dia.isBefore(hoy); dia = dia.plusDays(1)) {
+            productos.addAll(jdbcTemplate.queryForList(SQL_VENCIDAS_EL_DIA, Long.class, dia));
+        }
+        registrarTodos(PRODUCTOS, productos, null);
+        ultimoDiaRevisado = hoy;
+        return productos.size();
+    }
+
+    private void revisarVencimientosSeguro() {
+        try {
+            int n = revisarVencimientos();
+            if (n > 0) log.info("Sincronización: {} productos con entradas vencidas marcados como cambiados", n);
+        } catch (Exception e) {
+            log.warn("No se pudieron revisar los vencimientos para la sincronización: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.wil.avicola_backend.service;
+
+import java.util.function.Supplier;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Ganchos sobre la transacción actual para cachés y colas en memoria que solo deben cambiar con
+ * datos confirmados. Fuera de una transacción {@link #despuesDeCommit} corre la acción en el momento;
+ * los demás no hacen nada.
+ */
+public final class Transacciones {
+
+    private Transacciones() {
+    }
+
+    /** Corre la acción cuando la transacción actual confirma, o ya si no hay transacción. */
+    public static void despuesDeCommit(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+
+    /** Corre la acción si la transacción actual termina sin confirmar (rollback o estado desconocido). */
+    public static void siNoConfirma(Runnable accion) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) accion.run();
+            }
+        });
+    }
+
+    /** Corre la acción al terminar la transacción actual, confirme o no. */
+    public static void alTerminar(Runnable accion) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                accion.run();
+            }
+        });
+    }
+
+    /**
+     * Sincronización única por {@code clave} en la transacción actual: la primera llamada la crea y la
+     * registra, las siguientes la devuelven sin recorrer las sincronizaciones. Queda ligada al hilo
+     * mientras la transacción está activa (se suelta al suspenderla con REQUIRES_NEW y al terminar).
+     * Devuelve null si no hay transacción.
+     */
+    public static <T extends TransactionSynchronization> T unicaPorTransaccion(Object clave, Supplier<T> crear) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return null;
+        @SuppressWarnings("unchecked")
+        T actual = (T) TransactionSynchronizationManager.getResource(clave);
+        if (actual != null) return actual;
+        T nueva = crear.get();
+        TransactionSynchronizationManager.bindResource(clave, nueva);
+        TransactionSynchronizationManager.registerSynchronization(new Ligada(clave, nueva));
+        return nueva;
+    }
+
+    /** Delega en la sincronización y mantiene su enlace al hilo en suspensiones y al terminar. */
+    private static final class Ligada implements TransactionSynchronization {
+        private final Object clave;
+        private final TransactionSynchronization delegada;
+
+        Ligada(Object clave, TransactionSynchronization delegada) {
+            this.clave = clave;
+            this.delegada = delegada;
+        }
+
+        @Override
+        public int getOrder() {
+            return delegada.getOrder();
+        }
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResourceIfPossible(clave);
+            delegada.suspend();
+        }
+
+        @Override
+        public void resume() {
+            delegada.resume();
+            TransactionSynchronizationManager.bindResource(clave, delegada);
+        }
+
+        @Override
+        public void flush() {
+            delegada.flush();
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            delegada.beforeCommit(readOnly);
+        }
+
+        @Override
+        public void beforeCompletion() {
+            delegada.beforeCompletion();
+        }
+
+        @Override
+        public void afterCommit() {
+            delegada.afterCommit();
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(clave);
+            delegada.afterCompletion(status);
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package com.wil.avicola_backend.service;
 
+import java.text.Normalizer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -18,6 +22,9 @@ public class TypeFoodService {
     @Autowired
     private ProductRepository productRepository;
 
+    // Índice nombre normalizado (sin acentos, minúsculas) -> id; se arma al primer uso
+    private volatile Map<String, Long> indicePorNombre;
+
     public ResponseEntity<?> findTypeFoods() {
         return ResponseEntity.ok().body(typeFoodRepository.findAll());
     }
@@ -29,6 +36,7 @@ public class TypeFoodService {
         }
 
         TypeFood typeFood_new = typeFoodRepository.save(typeFood);
+        indicePorNombre = null;
         return ResponseEntity.status(HttpStatus.OK).body(typeFood_new);
     }
 
@@ -42,6 +50,7 @@ public class TypeFoodService {
             TypeFood typeFood_old = typeFoodRepository.findById(typeFood.getId()).get();
             typeFood_old.setName(typeFood.getName());
             typeFoodRepository.save(typeFood_old);
+            indicePorNombre = null;
             return ResponseEntity.status(HttpStatus.OK).body(typeFood_old);
         }
         throw new RequestException("No existe tipo de alimento.");
@@ -58,9 +67,31 @@ public class TypeFoodService {
         if (typeFoodRepository.existsById(id)) {
             TypeFood typeFood = typeFoodRepository.findById(id).get();
             typeFoodRepository.deleteById(id);
+            indicePorNombre = null;
             return ResponseEntity.status(HttpStatus.OK).body(typeFood);
         }
 
         throw new RequestException("No existe tipo de alimento.");
     }
+
+    /**
+     * Busca el tipo de alimento por nombre ignorando mayúsculas y acentos, sin recorrer la tabla.
+     */
+    public Long buscarIdPorNombre(String nombre) {
+        Map<String, Long> indice = indicePorNombre;
+        if (indice == null) {
+            indice = new ConcurrentHashMap<>();
+            for (TypeFood tf : typeFoodRepository.findAll()) {
+                if (tf != null && tf.getName() != null) indice.putIfAbsent(normalizar(tf.getName()), tf.getId());
+            }
+            indicePorNombre = indice;
+        }
+        return indice.get(normalizar(nombre));
+    }
+
+    private static String normalizar(String texto) {
+        if (texto == null) return "";
+        String n = Normalizer.normalize(texto.trim(), Normalizer.Form.NFD);
+        return n.replaceAll("\\p{InCombiningDiacriticalMarks}+", "").toLowerCase();
+    }
 }
@@ -4,10 +4,13 @@ import com.wil.avicola_backend.dto.UserDto;
 import com.wil.avicola_backend.exception.ResourceNotFoundException;
 import com.wil.avicola_backend.model.ERole;
 import com.wil.avicola_backend.model.Role;
+import com.wil.avicola_backend.model.UserSession;
 import com.wil.avicola_backend.model.Usuario;
 import com.wil.avicola_backend.repository.RoleRepository;
+import com.wil.avicola_backend.repository.UserSessionRepository;
 import com.wil.avicola_backend.repository.UsuarioRepository;
 import com.wil.avicola_backend.security.jwt.JwtUtils;
+import com.wil.avicola_backend.security.services.UserDetailsCache;
 import com.wil.avicola_backend.security.services.UserDetailsImpl;
 
 import lombok.RequiredArgsConstructor;
@@ -30,8 +33,10 @@ public class UserService {
 
     private final UsuarioRepository usuarioRepository;
     private final RoleRepository roleRepository;
+    private final UserSessionRepository userSessionRepository;
     private final PasswordEncoder passwordEncoder;
     private final JwtUtils jwtUtils;
+    private final UserDetailsCache userDetailsCache;
 
     public List<UserDto> getAllUsers() {
         return usuarioRepository.findAll().stream()
@@ -138,12 +143,14 @@ public class UserService {
         }
         
         Usuario updatedUser = usuarioRepository.save(user);
+        userDetailsCache.evictUsuario(id);
         return mapToDto(updatedUser);
     }    @Transactional
     public void deleteUser(Long id) {
         Usuario user = usuarioRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado con id: " + id));
         usuarioRepository.delete(user);
+        userDetailsCache.evictUsuario(id);
     }
 
     @Transactional
@@ -152,6 +159,7 @@ public class UserService {
                 .orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado con id: " + id));
         user.setActive(!user.isActive());
         usuarioRepository.save(user);
+        userDetailsCache.evictUsuario(id);
     }
 
     @Transactional
@@ -160,6 +168,7 @@ public class UserService {
                 .orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado con id: " + id));
         user.setPassword(passwordEncoder.encode(newPassword));
         usuarioRepository.save(user);
+        userDetailsCache.evictUsuario(id);
     }
 
     @Transactional
@@ -170,6 +179,17 @@ public class UserService {
         usuarioRepository.save(user);
     }
 
+    /**
+     * Registra un login en una sola transacción: último login, cierre de las sesiones anteriores
+     * con un UPDATE masivo y alta de la sesión nueva. No vuelve a leer el usuario.
+     */
+    @Transactional
+    public UserSession iniciarSesion(Usuario user, UserSession nueva) {
+        usuarioRepository.updateLastLoginDate(user.getId(), nueva.getLoginTime());
+        userSessionRepository.deactivateAllUserSessions(user.getId());
+        return userSessionRepository.save(nueva);
+    }
+
     @Transactional
     public UserDto updateProfilePicture(Long id, String imageUrl) {
         Usuario user = usuarioRepository.findById(id)
@@ -177,6 +197,7 @@ public class UserService {
         
         user.setProfilePicture(imageUrl);
         Usuario updatedUser = usuarioRepository.save(user);
+        userDetailsCache.evictUsuario(id);
         return mapToDto(updatedUser);
     }
 
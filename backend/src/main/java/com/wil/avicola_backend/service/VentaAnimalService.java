@@ -16,6 +16,8 @@ import com.wil.avicola_backend.model.Usuario;
 import com.wil.avicola_backend.model.VentaAnimal;
 import com.wil.avicola_backend.repository.LoteRepository;
 import com.wil.avicola_backend.repository.VentaAnimalRepository;
+import com.wil.avicola_backend.service.costos.ProrrateoCostoFijoService;
+import com.wil.avicola_backend.service.costos.RentabilidadLoteService;
 
 import lombok.RequiredArgsConstructor;
 
@@ -25,6 +27,9 @@ public class VentaAnimalService {
 
     private final VentaAnimalRepository ventaAnimalRepository;
     private final LoteRepository loteRepository;
+    private final ResumenLotesService resumenLotesService;
+    private final RentabilidadLoteService rentabilidadLoteService;
+    private final ProrrateoCostoFijoService prorrateoCostoFijoService;
 
     @Transactional
     public VentaAnimal crearVenta(VentaAnimalDTO dto, Usuario vendedor) {
@@ -45,6 +50,7 @@ public class VentaAnimalService {
         lote.setQuantity(nuevoStock);
         actualizarFechaCierreLote(lote, cantidadAnterior);
         loteRepository.save(lote);
+        resumenLotesService.cantidadCambiada(lote, cantidadAnterior);
 
         BigDecimal total = dto.getTotal();
         if (total == null) {
@@ -71,7 +77,10 @@ public class VentaAnimalService {
                 .observaciones(dto.getObservaciones())
                 .vendedor(vendedor)
                 .build();
-        return ventaAnimalRepository.save(venta);
+        VentaAnimal guardada = ventaAnimalRepository.save(venta);
+        resumenLotesService.ventasCambiadas(animalIdFromLote, cantidadAnimales);
+        invalidarRentabilidad(lote, cantidadAnterior);
+        return guardada;
     }
 
     @Transactional(readOnly = true)
@@ -174,6 +183,10 @@ public class VentaAnimalService {
 
         if (dto.getObservaciones() != null) existente.setObservaciones(dto.getObservaciones());
 
+        resumenLotesService.invalidar();
+        rentabilidadLoteService.invalidarTodo();
+        prorrateoCostoFijoService.loteCambiado(loteIdAnterior);
+        prorrateoCostoFijoService.loteCambiado(existente.getLoteId());
         return ventaAnimalRepository.saveAndFlush(existente);
     }
 
@@ -193,6 +206,9 @@ public class VentaAnimalService {
         }
 
         ventaAnimalRepository.deleteById(id);
+        resumenLotesService.invalidar();
+        rentabilidadLoteService.invalidarTodo();
+        prorrateoCostoFijoService.loteCambiado(venta.getLoteId());
     }
 
     @Transactional
@@ -208,6 +224,9 @@ public class VentaAnimalService {
             lote.setQuantity(qtyAnterior + cant);
             actualizarFechaCierreLote(lote, qtyAnterior);
             loteRepository.save(lote);
+            resumenLotesService.cantidadCambiada(lote, qtyAnterior);
+            resumenLotesService.ventasCambiadas(venta.getAnimalId(), -cant);
+            invalidarRentabilidad(lote, qtyAnterior);
 
             // Marcar como anulada
             venta.setEstado(VentaAnimal.Estado.ANULADA);
@@ -245,4 +264,11 @@ public class VentaAnimalService {
             lote.setFechaCierre(null);
         }
     }
+
+    /** Cerrar o reabrir el lote cambia los lotes vivos del prorrateo de gastos generales. */
+    private void invalidarRentabilidad(Lote lote, int cantidadAnterior) {
+        if ((cantidadAnterior == 0) != (lote.getQuantity() == 0)) rentabilidadLoteService.invalidarTodo();
+        else rentabilidadLoteService.invalidarLote(lote.getId());
+        prorrateoCostoFijoService.loteCambiado(lote.getId());
+    }
 }
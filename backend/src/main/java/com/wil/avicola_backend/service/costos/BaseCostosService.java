@@ -2,6 +2,9 @@ package com.wil.avicola_backend.service.costos;
 
 import java.util.Optional;
 
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Component;
 
 import com.wil.avicola_backend.error.RequestException;
@@ -13,8 +16,18 @@ import lombok.RequiredArgsConstructor;
 @Component
 @RequiredArgsConstructor
 public class BaseCostosService {
+    /** Tope de filas de los listados sin lote ni fechas; los más recientes primero. */
+    public static final int LIMITE_SIN_FILTRO = 500;
+
+    private static final Pageable PAGINA_SIN_FILTRO =
+            PageRequest.of(0, LIMITE_SIN_FILTRO, Sort.by(Sort.Order.desc("fecha"), Sort.Order.desc("id")));
+
     private final LoteRepository loteRepository;
 
+    public Pageable paginaSinFiltro() {
+        return PAGINA_SIN_FILTRO;
+    }
+
     public Lote resolveLote(String loteId, String loteCodigo) {
         if (loteId != null && !loteId.isBlank()) {
             Optional<Lote> opt = loteRepository.findById(loteId);
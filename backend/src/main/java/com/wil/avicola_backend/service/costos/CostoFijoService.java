@@ -10,6 +10,8 @@ import com.wil.avicola_backend.dto.costos.CostoFijoDTO;
 import com.wil.avicola_backend.error.RequestException;
 import com.wil.avicola_backend.model.Lote;
 import com.wil.avicola_backend.model.costos.CostoFijo;
+import com.wil.avicola_backend.model.costos.CostoFijoAsignacion;
+import com.wil.avicola_backend.repository.costos.CostoFijoAsignacionRepository;
 import com.wil.avicola_backend.repository.costos.CostoFijoRepository;
 
 import lombok.RequiredArgsConstructor;
@@ -19,7 +21,10 @@ import lombok.RequiredArgsConstructor;
 public class CostoFijoService {
 
     private final CostoFijoRepository repo;
+    private final CostoFijoAsignacionRepository asignacionRepo;
     private final BaseCostosService base;
+    private final RentabilidadLoteService rentabilidad;
+    private final ProrrateoCostoFijoService prorrateo;
 
     @Transactional
     public CostoFijo crear(CostoFijoDTO dto) {
@@ -33,7 +38,10 @@ public class CostoFijoService {
                 .fecha(dto.getFecha())
                 .lote(lote)
                 .build();
-        return repo.save(c);
+        CostoFijo guardado = repo.save(c);
+        prorrateo.recalcular(guardado);
+        rentabilidad.invalidarGasto(lote);
+        return guardado;
     }
 
     @Transactional(readOnly = true)
@@ -41,7 +49,7 @@ public class CostoFijoService {
         if (loteId != null && !loteId.isBlank()) return repo.findByLote_Id(loteId);
         if (loteCodigo != null && !loteCodigo.isBlank()) return repo.findByLote_Codigo(loteCodigo);
         if (desde != null && hasta != null) return repo.findByFechaBetween(desde, hasta);
-        return repo.findAll();
+        return repo.findAll(base.paginaSinFiltro()).getContent();
     }
 
     @Transactional(readOnly = true)
@@ -52,6 +60,7 @@ public class CostoFijoService {
     @Transactional
     public CostoFijo actualizar(String id, CostoFijoDTO dto) {
         CostoFijo c = obtener(id);
+        Lote loteAnterior = c.getLote();
         if (dto.getNombreCosto() != null) c.setNombreCosto(dto.getNombreCosto());
         if (dto.getMontoTotal() != null) c.setMontoTotal(dto.getMontoTotal());
         if (dto.getPeriodoProrrateo() != null) c.setPeriodoProrrateo(dto.getPeriodoProrrateo());
@@ -62,12 +71,29 @@ public class CostoFijoService {
             Lote lote = base.resolveLote(dto.getLoteId(), dto.getLoteCodigo());
             c.setLote(lote);
         }
-        return repo.saveAndFlush(c);
+        CostoFijo guardado = repo.saveAndFlush(c);
+        prorrateo.recalcular(guardado);
+        rentabilidad.invalidarGasto(loteAnterior);
+        rentabilidad.invalidarGasto(guardado.getLote());
+        return guardado;
     }
 
     @Transactional
     public void eliminar(String id) {
-        if (!repo.existsById(id)) throw new RequestException("costo_fijo no encontrado: id=" + id);
-        repo.deleteById(id);
+        CostoFijo c = obtener(id);
+        repo.delete(c);
+        prorrateo.eliminar(id);
+        rentabilidad.invalidarGasto(c.getLote());
+    }
+
+    @Transactional(readOnly = true)
+    public List<CostoFijoAsignacion> asignaciones(String costoFijoId, String loteId) {
+        if (costoFijoId != null && !costoFijoId.isBlank()) return asignacionRepo.findByCostoFijoIdOrderByMontoDesc(costoFijoId);
+        if (loteId != null && !loteId.isBlank()) return asignacionRepo.findByLoteIdOrderByPeriodoDesdeDesc(loteId);
+        throw new RequestException("Indique costoFijoId o loteId");
+    }
+
+    public int recalcularProrrateo() {
+        return prorrateo.recalcularTodo();
     }
 }
@@ -24,6 +24,7 @@ public class GastoLogisticaService {
 
     private final GastoLogisticaRepository repo;
     private final BaseCostosService base;
+    private final RentabilidadLoteService rentabilidad;
 
     @Transactional
     public GastoLogistica crear(GastoLogisticaDTO dto) {
@@ -38,7 +39,9 @@ public class GastoLogisticaService {
                 .observaciones(dto.getObservaciones())
                 .lote(lote)
                 .build();
-        return repo.save(g);
+        GastoLogistica guardado = repo.save(g);
+        rentabilidad.invalidarGasto(lote);
+        return guardado;
     }
 
     @Transactional(readOnly = true)
@@ -46,7 +49,7 @@ public class GastoLogisticaService {
         if (loteId != null && !loteId.isBlank()) return repo.findByLote_Id(loteId);
         if (loteCodigo != null && !loteCodigo.isBlank()) return repo.findByLote_Codigo(loteCodigo);
         if (desde != null && hasta != null) return repo.findByFechaBetween(desde, hasta);
-        return repo.findAll();
+        return repo.findAll(base.paginaSinFiltro()).getContent();
     }
 
     @Transactional(readOnly = true)
@@ -57,6 +60,7 @@ public class GastoLogisticaService {
     @Transactional
     public GastoLogistica actualizar(String id, GastoLogisticaDTO dto) {
         GastoLogistica g = obtener(id);
+        Lote loteAnterior = g.getLote();
         if (dto.getTipoTransporte() != null) g.setTipoTransporte(dto.getTipoTransporte());
         if (dto.getConcepto() != null) g.setConcepto(dto.getConcepto());
         if (dto.getUnidad() != null) g.setUnidad(dto.getUnidad());
@@ -68,13 +72,17 @@ public class GastoLogisticaService {
             Lote lote = base.resolveLote(dto.getLoteId(), dto.getLoteCodigo());
             g.setLote(lote);
         }
-        return repo.saveAndFlush(g);
+        GastoLogistica guardado = repo.saveAndFlush(g);
+        rentabilidad.invalidarGasto(loteAnterior);
+        rentabilidad.invalidarGasto(guardado.getLote());
+        return guardado;
     }
 
     @Transactional
     public void eliminar(String id) {
-        if (!repo.existsById(id)) throw new RequestException("gasto_logistica no encontrado: id=" + id);
-        repo.deleteById(id);
+        GastoLogistica g = obtener(id);
+        repo.delete(g);
+        rentabilidad.invalidarGasto(g.getLote());
     }
 
     @Transactional
@@ -20,6 +20,7 @@ public class GastoManoObraService {
 
     private final GastoManoObraRepository repo;
     private final BaseCostosService base;
+    private final RentabilidadLoteService rentabilidad;
 
     @Transactional
     public GastoManoObra crear(GastoManoObraDTO dto) {
@@ -33,7 +34,9 @@ public class GastoManoObraService {
                 .observaciones(dto.getObservaciones())
                 .lote(lote)
                 .build();
-        return repo.save(g);
+        GastoManoObra guardado = repo.save(g);
+        rentabilidad.invalidarGasto(lote);
+        return guardado;
     }
 
     @Transactional(readOnly = true)
@@ -41,7 +44,7 @@ public class GastoManoObraService {
         if (loteId != null && !loteId.isBlank()) return repo.findByLote_Id(loteId);
         if (loteCodigo != null && !loteCodigo.isBlank()) return repo.findByLote_Codigo(loteCodigo);
         if (desde != null && hasta != null) return repo.findByFechaBetween(desde, hasta);
-        return repo.findAll();
+        return repo.findAll(base.paginaSinFiltro()).getContent();
     }
 
     @Transactional(readOnly = true)
@@ -52,6 +55,7 @@ public class GastoManoObraService {
     @Transactional
     public GastoManoObra actualizar(String id, GastoManoObraDTO dto) {
         GastoManoObra g = obtener(id);
+        Lote loteAnterior = g.getLote();
         if (dto.getNombreTrabajador() != null) g.setNombreTrabajador(dto.getNombreTrabajador());
         if (dto.getCargo() != null) g.setCargo(dto.getCargo());
         if (dto.getHorasTrabajadas() != null) g.setHorasTrabajadas(dto.getHorasTrabajadas());
@@ -62,12 +66,16 @@ public class GastoManoObraService {
             Lote lote = base.resolveLote(dto.getLoteId(), dto.getLoteCodigo());
             g.setLote(lote);
         }
-        return repo.saveAndFlush(g);
+        GastoManoObra guardado = repo.saveAndFlush(g);
+        rentabilidad.invalidarGasto(loteAnterior);
+        rentabilidad.invalidarGasto(guardado.getLote());
+        return guardado;
     }
 
     @Transactional
     public void eliminar(String id) {
-        if (!repo.existsById(id)) throw new RequestException("gasto_mano_obra no encontrado: id=" + id);
-        repo.deleteById(id);
+        GastoManoObra g = obtener(id);
+        repo.delete(g);
+        rentabilidad.invalidarGasto(g.getLote());
     }
 }
@@ -20,6 +20,7 @@ public class GastoOperacionService {
 
     private final GastoOperacionRepository repo;
     private final BaseCostosService base;
+    private final RentabilidadLoteService rentabilidad;
 
     @Transactional
     public GastoOperacion crear(GastoOperacionDTO dto) {
@@ -34,7 +35,9 @@ public class GastoOperacionService {
                 .observaciones(dto.getObservaciones())
                 .lote(lote)
                 .build();
-        return repo.save(g);
+        GastoOperacion guardado = repo.save(g);
+        rentabilidad.invalidarGasto(lote);
+        return guardado;
     }
 
     @Transactional(readOnly = true)
@@ -42,7 +45,7 @@ public class GastoOperacionService {
         if (loteId != null && !loteId.isBlank()) return repo.findByLote_Id(loteId);
         if (loteCodigo != null && !loteCodigo.isBlank()) return repo.findByLote_Codigo(loteCodigo);
         if (desde != null && hasta != null) return repo.findByFechaBetween(desde, hasta);
-        return repo.findAll();
+        return repo.findAll(base.paginaSinFiltro()).getContent();
     }
 
     @Transactional(readOnly = true)
@@ -53,6 +56,7 @@ public class GastoOperacionService {
     @Transactional
     public GastoOperacion actualizar(String id, GastoOperacionDTO dto) {
         GastoOperacion g = obtener(id);
+        Lote loteAnterior = g.getLote();
         if (dto.getNombreGasto() != null) g.setNombreGasto(dto.getNombreGasto());
         if (dto.getDetalle() != null) g.setDetalle(dto.getDetalle());
         if (dto.getUnidad() != null) g.setUnidad(dto.getUnidad());
@@ -64,12 +68,16 @@ public class GastoOperacionService {
             Lote lote = base.resolveLote(dto.getLoteId(), dto.getLoteCodigo());
             g.setLote(lote);
         }
-        return repo.saveAndFlush(g);
+        GastoOperacion guardado = repo.saveAndFlush(g);
+        rentabilidad.invalidarGasto(loteAnterior);
+        rentabilidad.invalidarGasto(guardado.getLote());
+        return guardado;
     }
 
     @Transactional
     public void eliminar(String id) {
-        if (!repo.existsById(id)) throw new RequestException("gasto_operacion no encontrado: id=" + id);
-        repo.deleteById(id);
+        GastoOperacion g = obtener(id);
+        repo.delete(g);
+        rentabilidad.invalidarGasto(g.getLote());
     }
 }
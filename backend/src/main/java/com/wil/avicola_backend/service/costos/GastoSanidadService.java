@@ -3,7 +3,6 @@ package com.wil.avicola_backend.service.costos;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -11,10 +10,13 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.wil.avicola_backend.dto.costos.GastoSanidadDTO;
+import com.wil.avicola_backend.dto.costos.ResumenGastoConceptoDTO;
+import com.wil.avicola_backend.dto.costos.ResumenGastoDTO;
 import com.wil.avicola_backend.error.RequestException;
 import com.wil.avicola_backend.model.Lote;
 import com.wil.avicola_backend.model.costos.GastoSanidad;
 import com.wil.avicola_backend.repository.costos.GastoSanidadRepository;
+import com.wil.avicola_backend.service.costos.ResumenGastosService.TipoGasto;
 
 import lombok.RequiredArgsConstructor;
 
@@ -24,6 +26,8 @@ public class GastoSanidadService {
 
     private final GastoSanidadRepository repo;
     private final BaseCostosService base;
+    private final RentabilidadLoteService rentabilidad;
+    private final ResumenGastosService resumenGastos;
 
     @Transactional
     public GastoSanidad crear(GastoSanidadDTO dto) {
@@ -45,7 +49,9 @@ public class GastoSanidadService {
                 .fechaHoraAplicacion(dto.getFechaHoraAplicacion())
                 .lote(lote)
                 .build();
-        return repo.save(g);
+        GastoSanidad guardado = repo.save(g);
+        rentabilidad.invalidarGasto(lote);
+        return guardado;
     }
 
     @Transactional(readOnly = true)
@@ -58,7 +64,7 @@ public class GastoSanidadService {
             return tieneFechas ? repo.findByLote_CodigoAndFechaBetween(loteCodigo, desde, hasta) : repo.findByLote_Codigo(loteCodigo);
         }
         if (tieneFechas) return repo.findByFechaBetween(desde, hasta);
-        return repo.findAll();
+        return repo.findAll(base.paginaSinFiltro()).getContent();
     }
 
     @Transactional(readOnly = true)
@@ -69,6 +75,7 @@ public class GastoSanidadService {
     @Transactional
     public GastoSanidad actualizar(String id, GastoSanidadDTO dto) {
         GastoSanidad g = obtener(id);
+        Lote loteAnterior = g.getLote();
         if (dto.getNombreGasto() != null) g.setNombreGasto(dto.getNombreGasto());
         if (dto.getDetalle() != null) g.setDetalle(dto.getDetalle());
         if (dto.getCantidad() != null) g.setCantidad(dto.getCantidad());
@@ -87,7 +94,10 @@ public class GastoSanidadService {
             Lote lote = base.resolveLote(dto.getLoteId(), dto.getLoteCodigo());
             g.setLote(lote);
         }
-        return repo.saveAndFlush(g);
+        GastoSanidad guardado = repo.saveAndFlush(g);
+        rentabilidad.invalidarGasto(loteAnterior);
+        rentabilidad.invalidarGasto(guardado.getLote());
+        return guardado;
     }
 
     @Transactional(readOnly = true)
@@ -96,41 +106,23 @@ public class GastoSanidadService {
             throw new RequestException("Debe especificar loteId o loteCodigo");
         }
 
-        List<GastoSanidad> registros = listar(desde, hasta, loteId, loteCodigo);
-
-        double totalCantidad = 0d;
-        double totalCosto = 0d;
-        Map<String, Map<String, Object>> porProducto = new LinkedHashMap<>();
-
-        List<GastoSanidad> safeRegistros = (registros != null) ? registros : java.util.Collections.emptyList();
-        for (GastoSanidad g : safeRegistros) {
-            double c = g.getCantidad() != null ? g.getCantidad() : 0d;
-            double t = g.getTotal() != null ? g.getTotal() : (c * (g.getCostoUnitario() != null ? g.getCostoUnitario() : 0d));
-            totalCantidad += c;
-            totalCosto += t;
-
-            String key = (g.getProductId() != null) ? ("PID:" + g.getProductId()) : ("NOM:" + (g.getNombreGasto() != null ? g.getNombreGasto() : ""));
-            Map<String, Object> acc = porProducto.get(key);
-            if (acc == null) {
-                acc = new HashMap<>();
-                acc.put("productId", g.getProductId());
-                acc.put("nombre", g.getNombreGasto());
-                acc.put("cantidadTotal", 0d);
-                acc.put("costoTotal", 0d);
-                acc.put("aplicaciones", 0);
-                porProducto.put(key, acc);
-            }
-
-            acc.put("cantidadTotal", ((Double) acc.get("cantidadTotal")) + c);
-            acc.put("costoTotal", ((Double) acc.get("costoTotal")) + t);
-            acc.put("aplicaciones", ((Integer) acc.get("aplicaciones")) + 1);
+        ResumenGastoDTO r = resumenGastos.resumen(TipoGasto.SANIDAD, desde, hasta, loteId, loteCodigo);
+        List<Map<String, Object>> porProducto = new ArrayList<>(r.porConcepto().size());
+        for (ResumenGastoConceptoDTO c : r.porConcepto()) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("productId", c.productId());
+            item.put("nombre", c.concepto());
+            item.put("cantidadTotal", c.cantidadTotal());
+            item.put("costoTotal", c.costoTotal());
+            item.put("aplicaciones", c.registros());
+            porProducto.add(item);
         }
 
         Map<String, Object> resp = new HashMap<>();
-        resp.put("totalAplicaciones", registros != null ? registros.size() : 0);
-        resp.put("totalCantidad", Math.round(totalCantidad * 1000.0) / 1000.0);
-        resp.put("totalCosto", Math.round(totalCosto * 100.0) / 100.0);
-        resp.put("porProducto", new ArrayList<>(porProducto.values()));
+        resp.put("totalAplicaciones", r.registros());
+        resp.put("totalCantidad", r.cantidadTotal());
+        resp.put("totalCosto", r.costoTotal());
+        resp.put("porProducto", porProducto);
         return resp;
     }
 
@@ -153,7 +145,8 @@ public class GastoSanidadService {
 
     @Transactional
     public void eliminar(String id) {
-        if (!repo.existsById(id)) throw new RequestException("gasto_sanidad no encontrado: id=" + id);
-        repo.deleteById(id);
+        GastoSanidad g = obtener(id);
+        repo.delete(g);
+        rentabilidad.invalidarGasto(g.getLote());
     }
 }
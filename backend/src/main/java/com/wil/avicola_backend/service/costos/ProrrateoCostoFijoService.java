@@ -0,0 +1,517 @@
+package com.wil.avicola_backend.service.costos;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.wil.avicola_backend.model.Especie;
+import com.wil.avicola_backend.model.costos.CostoFijo;
+import com.wil.avicola_backend.service.Transacciones;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Prorrateo de costos fijos entre los lotes activos en su periodo, materializado en costo_fijo_asignacion.
+ *
+ * El periodo sale de fecha + periodoProrrateo (mensual por defecto) y el método de metodoProrrateo:
+ * días-animal (por defecto) o biomasa (días-animal por el peso promedio de la especie). Un costo con
+ * lote asignado va completo a ese lote.
+ *
+ * Los días-animal se calculan con un barrido por lote sobre sus eventos (nacimiento con la cantidad
+ * original, muertes, ventas EMITIDA y cierre): queda una función escalonada de animales vivos por día
+ * con su acumulado, así que la integral en cualquier ventana sale con dos búsquedas binarias. Todos
+ * los lotes y eventos de un recálculo se leen en dos consultas y se reutilizan para todos sus costos.
+ *
+ * Cambiar un costo lo recalcula en la misma transacción. Los cambios de lotes (altas, ediciones,
+ * mortalidad, ventas) marcan el lote y, pasados unos segundos, se recalculan juntos los costos cuyo
+ * periodo toca la vida de los lotes marcados. Los dos caminos bloquean las filas de costo_fijo que
+ * reescriben (el diferido en orden de id y releyéndolas ya bloqueadas), así que uno espera al commit
+ * del otro en vez de chocar en uk_costo_fijo_asignacion. Si el recálculo diferido falla, sus lotes
+ * vuelven a la cola y se reintenta.
+ */
+@Service
+public class ProrrateoCostoFijoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProrrateoCostoFijoService.class);
+
+    public static final String DIAS_ANIMAL = "DIAS_ANIMAL";
+    public static final String BIOMASA = "BIOMASA";
+
+    private static final long ESPERA_RECALCULO_MS = 5000;
+
+    /** El periodo más largo admitido; acota la búsqueda de costos afectados por un lote. */
+    private static final int MESES_PERIODO_MAXIMO = 12;
+
+    /** Textos de periodo admitidos (sin tildes, en minúsculas); cualquier otro cuenta como mensual. */
+    private static final Map<String, Period> PERIODOS = Map.ofEntries(
+        Map.entry("dia", Period.ofDays(1)), Map.entry("diario", Period.ofDays(1)), Map.entry("diaria", Period.ofDays(1)),
+        Map.entry("semana", Period.ofDays(7)), Map.entry("semanal", Period.ofDays(7)),
+        Map.entry("quincena", Period.ofDays(15)), Map.entry("quincenal", Period.ofDays(15)),
+        Map.entry("mes", Period.ofMonths(1)), Map.entry("mensual", Period.ofMonths(1)),
+        Map.entry("bimestre", Period.ofMonths(2)), Map.entry("bimestral", Period.ofMonths(2)),
+        Map.entry("trimestre", Period.ofMonths(3)), Map.entry("trimestral", Period.ofMonths(3)),
+        Map.entry("semestre", Period.ofMonths(6)), Map.entry("semestral", Period.ofMonths(6)),
+        Map.entry("ano", Period.ofMonths(MESES_PERIODO_MAXIMO)), Map.entry("anual", Period.ofMonths(MESES_PERIODO_MAXIMO)));
+
+    private static final String SQL_COSTOS =
+        "SELECT id, monto_total, fecha, periodo_prorrateo, metodo_prorrateo, lote_id FROM costo_fijo WHERE fecha IS NOT NULL";
+
+    private static final String FILTRO_LOTES =
+        "l.birthdate IS NOT NULL AND CAST(l.birthdate AS date) <= ? " +
+        "AND (l.fecha_cierre IS NULL OR CAST(l.fecha_cierre AS date) >= ?)";
+
+    private static final String SQL_LOTES =
+        "SELECT l.id, l.especie, CAST(l.birthdate AS date) AS nacimiento, COALESCE(l.quantity_original, l.quantity) AS iniciales, " +
+        "       CAST(l.fecha_cierre AS date) AS cierre " +
+        "FROM lote l WHERE " + FILTRO_LOTES;
+
+    private static final String SQL_EVENTOS =
+        "SELECT lote_id, fecha, SUM(delta) AS delta FROM (" +
+        "  SELECT m.lote_id, CAST(m.fecha_registro AS date) AS fecha, -m.cantidad_muertos AS delta " +
+        "  FROM registros_mortalidad m WHERE m.lote_id IN (SELECT l.id FROM lote l WHERE " + FILTRO_LOTES + ") " +
+        "  UNION ALL " +
+        "  SELECT v.lote_id, v.fecha, -CAST(v.cantidad AS integer) " +
+        "  FROM venta_animal v WHERE v.estado = 'EMITIDA' AND v.fecha IS NOT NULL " +
+        "    AND v.lote_id IN (SELECT l.id FROM lote l WHERE " + FILTRO_LOTES + ")" +
+        ") e GROUP BY lote_id, fecha ORDER BY lote_id, fecha";
+
+    private static final String SQL_BLOQUEAR_COSTO = "SELECT id FROM costo_fijo WHERE id = ? FOR UPDATE";
+
+    private static final String ORDEN_BLOQUEO = " ORDER BY id FOR UPDATE";
+
+    private static final String SQL_BORRAR = "DELETE FROM costo_fijo_asignacion WHERE costo_fijo_id = ?";
+
+    private static final String SQL_INSERTAR =
+        "INSERT INTO costo_fijo_asignacion (costo_fijo_id, lote_id, periodo_desde, periodo_hasta, metodo, base, proporcion, monto, calculado_en) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RentabilidadLoteService rentabilidadLoteService;
+
+    private final Set<String> lotesPendientes = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean recalculoProgramado = new AtomicBoolean();
+    private final ScheduledExecutorService programador = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "prorrateo-costos-fijos");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public ProrrateoCostoFijoService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                     RentabilidadLoteService rentabilidadLoteService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.rentabilidadLoteService = rentabilidadLoteService;
+    }
+
+    @PreDestroy
+    public void detener() {
+        programador.shutdownNow();
+    }
+
+    /** Datos del costo que usa el prorrateo. */
+    record Costo(String id, double monto, LocalDate desde, LocalDate hasta, String metodo, String loteId) {
+
+        static Costo de(String id, Double monto, LocalDate fecha, String periodo, String metodo, String loteId) {
+            return new Costo(id, monto != null ? monto : 0d, fecha, fecha.plus(periodoDe(periodo)).minusDays(1),
+                metodoDe(metodo), loteId);
+        }
+    }
+
+    // ============================
+    // Disparadores
+    // ============================
+
+    /** Recalcula un costo recién creado o editado dentro de la transacción que lo guarda. */
+    public void recalcular(CostoFijo c) {
+        if (c == null || c.getId() == null) return;
+        bloquear(c.getId());
+        if (c.getFecha() == null) {
+            jdbcTemplate.update(SQL_BORRAR, c.getId());
+            return;
+        }
+        Costo costo = Costo.de(c.getId(), c.getMontoTotal(), c.getFecha(), c.getPeriodoProrrateo(),
+            c.getMetodoProrrateo(), c.getLote() != null ? c.getLote().getId() : null);
+        escribir(List.of(costo));
+    }
+
+    public void eliminar(String costoFijoId) {
+        bloquear(costoFijoId);
+        jdbcTemplate.update(SQL_BORRAR, costoFijoId);
+    }
+
+    /** Espera a un recálculo diferido en curso sobre el costo y le impide empezar hasta el commit. */
+    private void bloquear(String costoFijoId) {
+        jdbcTemplate.queryForList(SQL_BLOQUEAR_COSTO, String.class, costoFijoId);
+    }
+
+    /**
+     * Marca un lote cuyo ciclo de vida cambió. Después del commit se programa un recálculo diferido
+     * para agrupar varios cambios seguidos (p.ej. mortalidad registrada en lote).
+     */
+    public void loteCambiado(String loteId) {
+        if (loteId == null || loteId.isBlank()) return;
+        Transacciones.despuesDeCommit(() -> {
+            lotesPendientes.add(loteId);
+            programar();
+        });
+    }
+
+    private void programar() {
+        if (!recalculoProgramado.compareAndSet(false, true)) return;
+        programador.schedule(() -> {
+            recalculoProgramado.set(false);
+            try {
+                recalcularPendientes();
+            } catch (Exception ex) {
+                logger.warn("No se pudo recalcular el prorrateo de costos fijos, se reintenta: {}", ex.getMessage());
+                programar();
+            }
+        }, ESPERA_RECALCULO_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /** Primer arranque con la tabla vacía: se prorratean todos los costos existentes. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recalcularSiVacio() {
+        try {
+            Integer filas = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM (SELECT 1 FROM costo_fijo_asignacion LIMIT 1) t", Integer.class);
+            if (filas != null && filas > 0) return;
+            int n = recalcularTodo();
+            if (n > 0) logger.info("Prorrateo de costos fijos materializado: {} costos", n);
+        } catch (Exception ex) {
+            logger.warn("No se pudo materializar el prorrateo de costos fijos: {}", ex.getMessage());
+        }
+    }
+
+    /** Recalcula todos los costos fijos en una sola pasada. */
+    public int recalcularTodo() {
+        int n = reescribir(null);
+        rentabilidadLoteService.invalidarTodo();
+        return n;
+    }
+
+    void recalcularPendientes() {
+        if (lotesPendientes.isEmpty()) return;
+        List<String> lotes = new ArrayList<>(lotesPendientes);
+        lotesPendientes.removeAll(lotes);
+        try {
+            recalcularPorLotes(lotes);
+        } catch (RuntimeException ex) {
+            // Se devuelven a la cola: el próximo intento los vuelve a tomar junto con los nuevos
+            lotesPendientes.addAll(lotes);
+            throw ex;
+        }
+    }
+
+    private void recalcularPorLotes(List<String> lotes) {
+        // Vida de los lotes marcados; un lote eliminado ya no aparece y obliga a revisar todo
+        String marcadores = String.join(", ", Collections.nCopies(lotes.size(), "?"));
+        List<LocalDate[]> vidas = jdbcTemplate.query(
+            "SELECT CAST(birthdate AS date) AS nacimiento, CAST(fecha_cierre AS date) AS cierre FROM lote WHERE id IN (" + marcadores + ")",
+            (rs, i) -> new LocalDate[] { fecha(rs.getDate("nacimiento")), fecha(rs.getDate("cierre")) },
+            lotes.toArray());
+        LocalDate desde = null;
+        LocalDate hasta = LocalDate.MIN;
+        boolean abierto = false;
+        for (LocalDate[] v : vidas) {
+            if (v[0] != null && (desde == null || v[0].isBefore(desde))) desde = v[0];
+            if (v[1] == null) abierto = true;
+            else if (v[1].isAfter(hasta)) hasta = v[1];
+        }
+        boolean faltan = vidas.size() < lotes.size();
+        final LocalDate inicio = faltan ? null : desde;
+        final LocalDate fin = faltan || abierto ? null : hasta;
+
+        List<String> afectados = new ArrayList<>();
+        for (Costo c : cargarCostos(inicio != null ? inicio.minusMonths(MESES_PERIODO_MAXIMO) : null)) {
+            if (inicio != null && c.hasta().isBefore(inicio)) continue;
+            if (fin != null && c.desde().isAfter(fin)) continue;
+            afectados.add(c.id());
+        }
+        if (afectados.isEmpty()) return;
+        int n = reescribir(afectados);
+        rentabilidadLoteService.invalidarTodo();
+        logger.debug("Prorrateo recalculado: {} costos por cambios en {} lotes", n, lotes.size());
+    }
+
+    /**
+     * Reescribe en una transacción los costos indicados (todos si es null). Las filas se bloquean en
+     * orden de id y se releen ya bloqueadas, así que una edición en curso termina antes y se usa su
+     * versión confirmada; un costo borrado entretanto simplemente no aparece.
+     */
+    private int reescribir(List<String> ids) {
+        Integer n = transactionTemplate.execute(s -> {
+            List<Costo> costos = ids != null
+                ? jdbcTemplate.query(con -> {
+                    var ps = con.prepareStatement(SQL_COSTOS + " AND id = ANY(?)" + ORDEN_BLOQUEO);
+                    ps.setArray(1, con.createArrayOf("varchar", ids.toArray()));
+                    return ps;
+                }, ProrrateoCostoFijoService::costo)
+                : jdbcTemplate.query(SQL_COSTOS + ORDEN_BLOQUEO, ProrrateoCostoFijoService::costo);
+            escribir(costos);
+            return costos.size();
+        });
+        return n != null ? n : 0;
+    }
+
+    private List<Costo> cargarCostos(LocalDate desde) {
+        String sql = desde != null ? SQL_COSTOS + " AND fecha >= ?" : SQL_COSTOS;
+        Object[] args = desde != null ? new Object[] { Date.valueOf(desde) } : new Object[0];
+        return jdbcTemplate.query(sql, ProrrateoCostoFijoService::costo, args);
+    }
+
+    private static Costo costo(ResultSet rs, int i) throws SQLException {
+        return Costo.de(rs.getString("id"), rs.getDouble("monto_total"), rs.getDate("fecha").toLocalDate(),
+            rs.getString("periodo_prorrateo"), rs.getString("metodo_prorrateo"), rs.getString("lote_id"));
+    }
+
+    // ============================
+    // Cálculo
+    // ============================
+
+    /** Reemplaza las asignaciones de los costos indicados; los lotes y eventos se leen una vez para todos. */
+    private void escribir(List<Costo> costos) {
+        if (costos.isEmpty()) return;
+        LocalDate desde = costos.get(0).desde();
+        LocalDate hasta = costos.get(0).hasta();
+        for (Costo c : costos) {
+            if (c.desde().isBefore(desde)) desde = c.desde();
+            if (c.hasta().isAfter(hasta)) hasta = c.hasta();
+        }
+        List<LineaDeVida> lineas = cargarLineas(desde, hasta);
+        Map<String, LineaDeVida> porId = new HashMap<>();
+        for (LineaDeVida l : lineas) porId.put(l.loteId, l);
+
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> borrar = new ArrayList<>(costos.size());
+        List<Object[]> insertar = new ArrayList<>();
+        for (Costo c : costos) {
+            borrar.add(new Object[] { c.id() });
+            if (c.loteId() != null) {
+                // Costo asignado a un lote: va completo a ese lote, con sus días-animal como referencia
+                LineaDeVida propia = porId.get(c.loteId());
+                double base = propia != null ? base(c, propia) : 0d;
+                insertar.add(fila(c, c.loteId(), base, 1d, c.monto(), ahora));
+            } else {
+                asignar(c, lineas, ahora, insertar);
+            }
+        }
+        jdbcTemplate.batchUpdate(SQL_BORRAR, borrar);
+        if (!insertar.isEmpty()) jdbcTemplate.batchUpdate(SQL_INSERTAR, insertar);
+    }
+
+    private void asignar(Costo c, List<LineaDeVida> lineas, Timestamp ahora, List<Object[]> filas) {
+        List<LineaDeVida> conBase = new ArrayList<>();
+        List<Double> bases = new ArrayList<>();
+        double total = 0;
+        for (LineaDeVida l : lineas) {
+            double base = base(c, l);
+            if (base <= 0) continue;
+            conBase.add(l);
+            bases.add(base);
+            total += base;
+        }
+        // Sin animales en el periodo el costo queda sin asignar
+        if (total <= 0) return;
+        // Centavos por lote; el redondeo sobrante va al de mayor base para que la suma cuadre
+        long centavos = Math.round(c.monto() * 100);
+        long repartidos = 0;
+        int mayor = 0;
+        long[] partes = new long[conBase.size()];
+        for (int i = 0; i < conBase.size(); i++) {
+            partes[i] = (long) Math.floor(centavos * bases.get(i) / total);
+            repartidos += partes[i];
+            if (bases.get(i) > bases.get(mayor)) mayor = i;
+        }
+        partes[mayor] += centavos - repartidos;
+        for (int i = 0; i < conBase.size(); i++) {
+            filas.add(fila(c, conBase.get(i).loteId, bases.get(i), bases.get(i) / total, partes[i] / 100.0, ahora));
+        }
+    }
+
+    private static double base(Costo c, LineaDeVida l) {
+        double dias = l.diasAnimal(c.desde().toEpochDay(), c.hasta().toEpochDay());
+        return BIOMASA.equals(c.metodo()) ? dias * pesoPromedio(l.especie) : dias;
+    }
+
+    private static Object[] fila(Costo c, String loteId, double base, double proporcion, double monto, Timestamp ahora) {
+        return new Object[] { c.id(), loteId, Date.valueOf(c.desde()), Date.valueOf(c.hasta()), c.metodo(),
+            base, proporcion, monto, ahora };
+    }
+
+    private List<LineaDeVida> cargarLineas(LocalDate desde, LocalDate hasta) {
+        Date d = Date.valueOf(desde);
+        Date h = Date.valueOf(hasta);
+        Map<String, LineaDeVida> lineas = new HashMap<>();
+        List<LineaDeVida> orden = new ArrayList<>();
+        jdbcTemplate.query(SQL_LOTES, rs -> {
+            LineaDeVida l = new LineaDeVida(rs.getString("id"), rs.getString("especie"),
+                rs.getDate("nacimiento").toLocalDate(), rs.getInt("iniciales"), fecha(rs.getDate("cierre")));
+            lineas.put(l.loteId, l);
+            orden.add(l);
+        }, h, d);
+        if (orden.isEmpty()) return orden;
+
+        Map<String, List<long[]>> eventos = new HashMap<>();
+        jdbcTemplate.query(SQL_EVENTOS, rs -> {
+            Date f = rs.getDate("fecha");
+            if (f == null) return;
+            eventos.computeIfAbsent(rs.getString("lote_id"), k -> new ArrayList<>())
+                .add(new long[] { f.toLocalDate().toEpochDay(), rs.getLong("delta") });
+        }, h, d, h, d);
+
+        Set<String> sinEventos = new HashSet<>(lineas.keySet());
+        for (Map.Entry<String, List<long[]>> e : eventos.entrySet()) {
+            LineaDeVida l = lineas.get(e.getKey());
+            if (l == null) continue;
+            l.barrer(e.getValue());
+            sinEventos.remove(e.getKey());
+        }
+        for (String id : sinEventos) lineas.get(id).barrer(List.of());
+        return orden;
+    }
+
+    /**
+     * Animales vivos por día de un lote como función escalonada: desde dias[i] hay cabezas[i] animales
+     * y acumulado[i] son los días-animal anteriores a dias[i].
+     */
+    static final class LineaDeVida {
+        final String loteId;
+        final String especie;
+        private final long nacimiento;
+        private final int iniciales;
+        private final Long cierre;
+        private long[] dias;
+        private long[] cabezas;
+        private long[] acumulado;
+
+        LineaDeVida(String loteId, String especie, LocalDate nacimiento, int iniciales, LocalDate cierre) {
+            this.loteId = loteId;
+            this.especie = especie;
+            this.nacimiento = nacimiento.toEpochDay();
+            this.iniciales = Math.max(iniciales, 0);
+            this.cierre = cierre != null ? cierre.toEpochDay() : null;
+        }
+
+        /**
+         * Recorre los eventos ordenados por día. Muertes y ventas descuentan desde el día siguiente
+         * (el animal cuenta el día del evento) y el cierre deja el lote en cero.
+         */
+        void barrer(List<long[]> eventos) {
+            int n = eventos.size() + 2;
+            long[] d = new long[n];
+            long[] c = new long[n];
+            long[] a = new long[n];
+            int k = 0;
+            d[k] = nacimiento;
+            c[k] = iniciales;
+            a[k] = 0;
+            k++;
+            long vivos = iniciales;
+            for (long[] e : eventos) {
+                long dia = Math.max(e[0] + 1, nacimiento);
+                if (cierre != null && dia > cierre) break;
+                vivos = Math.max(0, vivos + e[1]);
+                if (d[k - 1] == dia) {
+                    c[k - 1] = vivos;
+                } else {
+                    a[k] = a[k - 1] + c[k - 1] * (dia - d[k - 1]);
+                    d[k] = dia;
+                    c[k] = vivos;
+                    k++;
+                }
+            }
+            if (cierre != null) {
+                long dia = Math.max(cierre + 1, nacimiento);
+                if (d[k - 1] == dia) {
+                    c[k - 1] = 0;
+                } else {
+                    a[k] = a[k - 1] + c[k - 1] * (dia - d[k - 1]);
+                    d[k] = dia;
+                    c[k] = 0;
+                    k++;
+                }
+            }
+            this.dias = Arrays.copyOf(d, k);
+            this.cabezas = Arrays.copyOf(c, k);
+            this.acumulado = Arrays.copyOf(a, k);
+        }
+
+        /** Días-animal en [desde, hasta] (días epoch, inclusive). */
+        long diasAnimal(long desde, long hasta) {
+            if (hasta < desde) return 0;
+            return acumuladoAntesDe(hasta + 1) - acumuladoAntesDe(desde);
+        }
+
+        private long acumuladoAntesDe(long dia) {
+            if (dia <= dias[0]) return 0;
+            int i = Arrays.binarySearch(dias, dia);
+            if (i < 0) i = -i - 2;
+            // dias[i] <= dia: los días-animal anteriores a dia son los de dias[i] más el tramo hasta dia
+            return acumulado[i] + cabezas[i] * (dia - dias[i]);
+        }
+    }
+
+    // ============================
+    // Normalización de periodo y método
+    // ============================
+
+    static Period periodoDe(String texto) {
+        // Palabra por palabra y completa: "cada año" es anual, pero "anotado" no
+        for (String palabra : normalizar(texto).split("[^a-z]+")) {
+            Period p = PERIODOS.get(palabra);
+            if (p != null) return p;
+        }
+        return Period.ofMonths(1);
+    }
+
+    static String metodoDe(String texto) {
+        String t = normalizar(texto);
+        return t.contains("biomasa") || t.contains("peso") ? BIOMASA : DIAS_ANIMAL;
+    }
+
+    /** Peso promedio (kg) por especie, el mismo que usaba el análisis financiero del frontend. */
+    static double pesoPromedio(String especie) {
+        if (Especie.POLLOS.name().equals(especie)) return 2.5;
+        if (Especie.CHANCHOS.name().equals(especie)) return 80;
+        return 10;
+    }
+
+    private static String normalizar(String texto) {
+        if (texto == null) return "";
+        return Normalizer.normalize(texto, Normalizer.Form.NFD).replaceAll("\\p{M}", "").trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static LocalDate fecha(Date d) {
+        return d != null ? d.toLocalDate() : null;
+    }
+
+}
@@ -0,0 +1,239 @@
+package com.wil.avicola_backend.service.costos;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.wil.avicola_backend.error.RequestException;
+import com.wil.avicola_backend.model.Lote;
+import com.wil.avicola_backend.service.Transacciones;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Rentabilidad por lote calculada en el backend (antes la armaba el frontend descargando todos
+ * los gastos y movimientos de inventario).
+ *
+ * Una sola consulta agrupada devuelve, por lote, la estructura de costos completa:
+ * - compra de animales (lote.cost)
+ * - alimentación al costo FEFO real: tramos de consumo_entrada_producto por el costo base de su
+ *   entrada; los movimientos antiguos sin tramos usan su costo_total
+ * - sanidad y tratamientos de morbilidad
+ * - operación, mano de obra y logística: los asignados al lote más la parte de los generales
+ *   (sin lote) prorrateada por animales entre los lotes vivos en la fecha del gasto
+ * - costos fijos: las asignaciones materializadas por ProrrateoCostoFijoService
+ * - ingresos por ventas EMITIDA
+ *
+ * Los resultados se guardan por lote. Los servicios de costos, ventas e inventario invalidan el
+ * lote afectado después del commit; un gasto general invalida todos porque cambia el prorrateo.
+ */
+@Service
+@RequiredArgsConstructor
+public class RentabilidadLoteService {
+
+    private static final int TAMANO_BLOQUE = 500;
+
+    private static final String SQL_RENTABILIDAD =
+        "WITH lotes AS (" +
+        "  SELECT l.id, l.codigo, l.name, l.especie, l.cost, l.quantity, COALESCE(l.quantity_original, l.quantity) AS iniciales " +
+        "  FROM lote l WHERE l.id IN (%s)), " +
+        "fefo AS (" +
+        "  SELECT cep.movimiento_id, SUM(cep.cantidad_base_consumida * COALESCE(e.costo_unitario_base, 0)) AS costo " +
+        "  FROM consumo_entrada_producto cep " +
+        "  JOIN inventario_entrada_producto e ON e.id = cep.entrada_id " +
+        "  JOIN movimientos_inventario_producto m ON m.id = cep.movimiento_id " +
+        "  WHERE m.lote_id IN (SELECT id FROM lotes) " +
+        "  GROUP BY cep.movimiento_id), " +
+        "alimentacion AS (" +
+        "  SELECT m.lote_id, SUM(COALESCE(f.costo, m.costo_total, 0)) AS costo " +
+        "  FROM movimientos_inventario_producto m LEFT JOIN fefo f ON f.movimiento_id = m.id " +
+        "  WHERE m.lote_id IN (SELECT id FROM lotes) AND m.tipo_movimiento IN ('CONSUMO_LOTE', 'SALIDA') " +
+        "  GROUP BY m.lote_id), " +
+        "sanidad AS (" +
+        "  SELECT lote_id, SUM(COALESCE(total, 0)) AS costo FROM gasto_sanidad " +
+        "  WHERE lote_id IN (SELECT id FROM lotes) GROUP BY lote_id), " +
+        "morbilidad AS (" +
+        "  SELECT CAST(lote_id AS varchar) AS lote_id, SUM(COALESCE(costo, 0)) AS costo " +
+        "  FROM registros_morbilidad WHERE CAST(lote_id AS varchar) IN (SELECT id FROM lotes) GROUP BY lote_id), " +
+        "indirectos AS (" +
+        "  SELECT 'OPERACION' AS tipo, lote_id, fecha, COALESCE(total, 0) AS monto FROM gasto_operacion " +
+        "  UNION ALL SELECT 'MANO_OBRA', lote_id, fecha, COALESCE(total, 0) FROM gasto_mano_obra " +
+        "  UNION ALL SELECT 'LOGISTICA', lote_id, fecha, COALESCE(total, 0) FROM gasto_logistica), " +
+        "generales AS (" +
+        "  SELECT tipo, fecha, SUM(monto) AS monto FROM indirectos WHERE lote_id IS NULL GROUP BY tipo, fecha), " +
+        // El peso total se calcula sobre todos los lotes vivos en la fecha, no solo los pedidos
+        "prorrateo AS (" +
+        "  SELECT x.lote_id, x.tipo, SUM(x.monto * x.peso / NULLIF(x.peso_total, 0)) AS monto FROM (" +
+        "    SELECT g.tipo, g.monto, l.id AS lote_id, COALESCE(l.quantity_original, l.quantity) AS peso, " +
+        "           SUM(COALESCE(l.quantity_original, l.quantity)) OVER (PARTITION BY g.tipo, g.fecha) AS peso_total " +
+        "    FROM generales g JOIN lote l ON CAST(l.birthdate AS date) <= g.fecha " +
+        "     AND (l.fecha_cierre IS NULL OR CAST(l.fecha_cierre AS date) >= g.fecha)" +
+        "  ) x WHERE x.lote_id IN (SELECT id FROM lotes) GROUP BY x.lote_id, x.tipo), " +
+        "asignados AS (" +
+        "  SELECT lote_id, tipo, SUM(monto) AS monto FROM indirectos WHERE lote_id IN (SELECT id FROM lotes) GROUP BY lote_id, tipo " +
+        "  UNION ALL SELECT lote_id, tipo, monto FROM prorrateo " +
+        // Costos fijos: prorrateo materializado por días-animal/biomasa en su periodo
+        "  UNION ALL SELECT lote_id, 'FIJO', SUM(monto) FROM costo_fijo_asignacion WHERE lote_id IN (SELECT id FROM lotes) GROUP BY lote_id), " +
+        "indirectos_lote AS (" +
+        "  SELECT lote_id, " +
+        "         SUM(monto) FILTER (WHERE tipo = 'OPERACION') AS operacion, " +
+        "         SUM(monto) FILTER (WHERE tipo = 'MANO_OBRA') AS mano_obra, " +
+        "         SUM(monto) FILTER (WHERE tipo = 'LOGISTICA') AS logistica, " +
+        "         SUM(monto) FILTER (WHERE tipo = 'FIJO') AS fijos " +
+        "  FROM asignados GROUP BY lote_id), " +
+        "ventas AS (" +
+        "  SELECT lote_id, SUM(COALESCE(total, 0)) AS ingresos, SUM(COALESCE(cantidad, 0)) AS vendidos FROM venta_animal " +
+        "  WHERE estado = 'EMITIDA' AND lote_id IN (SELECT id FROM lotes) GROUP BY lote_id), " +
+        "muertes AS (" +
+        "  SELECT lote_id, SUM(cantidad_muertos) AS muertos FROM registros_mortalidad " +
+        "  WHERE lote_id IN (SELECT id FROM lotes) GROUP BY lote_id) " +
+        "SELECT lo.id, lo.codigo, lo.name, lo.especie, lo.iniciales, lo.quantity, " +
+        "       COALESCE(v.vendidos, 0) AS vendidos, COALESCE(mu.muertos, 0) AS muertos, " +
+        "       COALESCE(lo.cost, 0) AS compra, COALESCE(a.costo, 0) AS alimentacion, " +
+        "       COALESCE(s.costo, 0) AS sanidad, COALESCE(mb.costo, 0) AS morbilidad, " +
+        "       COALESCE(i.operacion, 0) AS operacion, COALESCE(i.mano_obra, 0) AS mano_obra, " +
+        "       COALESCE(i.logistica, 0) AS logistica, COALESCE(i.fijos, 0) AS fijos, " +
+        "       COALESCE(v.ingresos, 0) AS ingresos " +
+        "FROM lotes lo " +
+        "LEFT JOIN alimentacion a ON a.lote_id = lo.id " +
+        "LEFT JOIN sanidad s ON s.lote_id = lo.id " +
+        "LEFT JOIN morbilidad mb ON mb.lote_id = lo.id " +
+        "LEFT JOIN indirectos_lote i ON i.lote_id = lo.id " +
+        "LEFT JOIN ventas v ON v.lote_id = lo.id " +
+        "LEFT JOIN muertes mu ON mu.lote_id = lo.id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ConcurrentHashMap<String, RentabilidadLote> porLote = new ConcurrentHashMap<>();
+    /** Se incrementa con cada invalidación; un cálculo que la vio cambiar no se guarda. */
+    private final AtomicLong generacion = new AtomicLong();
+
+    /** Estructura de costos y margen de un lote. */
+    public record RentabilidadLote(String loteId, String codigo, String nombre, String especie,
+                                   int animalesIniciales, int animalesActuales, long vendidos, long muertos,
+                                   double costoCompra, double costoAlimentacion, double costoSanidad,
+                                   double costoMorbilidad, double costoOperacion, double costoManoObra,
+                                   double costoLogistica, double costosFijos,
+                                   double costoDirecto, double costoIndirecto, double costoTotal,
+                                   double ingresos, double ganancia, Double margen, Double costoPorAnimal) {}
+
+    @Transactional(readOnly = true)
+    public RentabilidadLote obtener(String loteId) {
+        RentabilidadLote r = porLote.get(loteId);
+        if (r != null) return r;
+        Map<String, RentabilidadLote> calculados = calcular(List.of(loteId));
+        r = calculados.get(loteId);
+        if (r == null) throw new RequestException("Lote no encontrado: " + loteId);
+        return r;
+    }
+
+    /**
+     * Rentabilidad de varios lotes; los que no están en caché se calculan juntos.
+     * animalId y soloActivos filtran como el listado de lotes.
+     */
+    @Transactional(readOnly = true)
+    public List<RentabilidadLote> listar(Long animalId, Boolean soloActivos) {
+        StringBuilder sql = new StringBuilder("SELECT l.id FROM lote l LEFT JOIN race r ON l.race_id = r.id WHERE 1 = 1");
+        List<Object> args = new ArrayList<>(1);
+        if (animalId != null) {
+            sql.append(" AND r.animal_id = ?");
+            args.add(animalId);
+        }
+        if (soloActivos != null) sql.append(soloActivos ? " AND l.quantity > 0" : " AND l.quantity = 0");
+        sql.append(" ORDER BY l.codigo");
+        List<String> ids = jdbcTemplate.queryForList(sql.toString(), String.class, args.toArray());
+
+        List<String> faltantes = new ArrayList<>();
+        for (String id : ids) {
+            if (!porLote.containsKey(id)) faltantes.add(id);
+        }
+        Map<String, RentabilidadLote> calculados = faltantes.isEmpty() ? Map.of() : calcular(faltantes);
+
+        List<RentabilidadLote> r = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            RentabilidadLote x = calculados.get(id);
+            if (x == null) x = porLote.get(id);
+            if (x != null) r.add(x);
+        }
+        return r;
+    }
+
+    private Map<String, RentabilidadLote> calcular(List<String> loteIds) {
+        long gen = generacion.get();
+        Map<String, RentabilidadLote> r = new LinkedHashMap<>();
+        for (int desde = 0; desde < loteIds.size(); desde += TAMANO_BLOQUE) {
+            List<String> bloque = loteIds.subList(desde, Math.min(desde + TAMANO_BLOQUE, loteIds.size()));
+            String sql = String.format(SQL_RENTABILIDAD, String.join(", ", Collections.nCopies(bloque.size(), "?")));
+            jdbcTemplate.query(sql, rs -> {
+                double compra = rs.getDouble("compra");
+                double alimentacion = rs.getDouble("alimentacion");
+                double sanidad = rs.getDouble("sanidad");
+                double morbilidad = rs.getDouble("morbilidad");
+                double operacion = rs.getDouble("operacion");
+                double manoObra = rs.getDouble("mano_obra");
+                double logistica = rs.getDouble("logistica");
+                double fijos = rs.getDouble("fijos");
+                double ingresos = rs.getDouble("ingresos");
+                int iniciales = rs.getInt("iniciales");
+
+                double directo = compra + alimentacion + sanidad + morbilidad;
+                double indirecto = operacion + manoObra + logistica + fijos;
+                double total = directo + indirecto;
+                double ganancia = ingresos - total;
+
+                RentabilidadLote x = new RentabilidadLote(
+                    rs.getString("id"), rs.getString("codigo"), rs.getString("name"), rs.getString("especie"),
+                    iniciales, rs.getInt("quantity"), rs.getLong("vendidos"), rs.getLong("muertos"),
+                    redondear(compra), redondear(alimentacion), redondear(sanidad), redondear(morbilidad),
+                    redondear(operacion), redondear(manoObra), redondear(logistica), redondear(fijos),
+                    redondear(directo), redondear(indirecto), redondear(total),
+                    redondear(ingresos), redondear(ganancia),
+                    ingresos > 0 ? redondear(ganancia * 100.0 / ingresos) : null,
+                    iniciales > 0 ? redondear(total / iniciales) : null);
+                r.put(x.loteId(), x);
+            }, bloque.toArray());
+        }
+        if (generacion.get() == gen) porLote.putAll(r);
+        return r;
+    }
+
+    private static double redondear(double v) {
+        return Math.round(v * 100.0) / 100.0;
+    }
+
+    // ============================
+    // Invalidación
+    // ============================
+
+    /** Descarta la rentabilidad del lote después del commit (gasto, venta o consumo del lote). */
+    public void invalidarLote(String loteId) {
+        if (loteId == null || loteId.isBlank()) return;
+        Transacciones.despuesDeCommit(() -> {
+            generacion.incrementAndGet();
+            porLote.remove(loteId);
+        });
+    }
+
+    /** Un gasto sin lote cambia el prorrateo de todos los lotes vivos en su fecha. */
+    public void invalidarTodo() {
+        Transacciones.despuesDeCommit(() -> {
+            generacion.incrementAndGet();
+            porLote.clear();
+        });
+    }
+
+    /** Gasto asignado a un lote o general (lote null) según corresponda. */
+    public void invalidarGasto(Lote lote) {
+        if (lote == null || lote.getId() == null) invalidarTodo();
+        else invalidarLote(lote.getId());
+    }
+
+}
@@ -0,0 +1,124 @@
+package com.wil.avicola_backend.service.costos;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.wil.avicola_backend.dto.costos.ResumenGastoConceptoDTO;
+import com.wil.avicola_backend.dto.costos.ResumenGastoDTO;
+import com.wil.avicola_backend.dto.costos.ResumenGastoLoteDTO;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Resúmenes de gastos (sanidad, logística, mano de obra, operación) calculados con GROUP BY en la base,
+ * sin cargar las entidades. Los filtros son los mismos de los listados: lote por id o código y rango
+ * de fechas (solo si vienen ambas).
+ */
+@Service
+@RequiredArgsConstructor
+public class ResumenGastosService {
+
+    /** Tabla y columnas de cada tipo de gasto; el total cae a cantidad × costo unitario si falta. */
+    public enum TipoGasto {
+        SANIDAD("gasto_sanidad", "g.nombre_gasto", "g.product_id", "g.cantidad", "g.cantidad * g.costo_unitario"),
+        LOGISTICA("gasto_logistica", "g.tipo_transporte", null, "g.cantidad_transportada", "g.cantidad_transportada * g.costo_unitario"),
+        MANO_OBRA("gasto_mano_obra", "g.nombre_trabajador", null, "g.horas_trabajadas", "g.horas_trabajadas * g.costo_por_hora"),
+        OPERACION("gasto_operacion", "g.nombre_gasto", null, "g.cantidad_consumida", "g.cantidad_consumida * g.costo_unitario");
+
+        private final String tabla;
+        private final String concepto;
+        private final String producto;
+        private final String cantidad;
+        private final String total;
+
+        TipoGasto(String tabla, String concepto, String producto, String cantidad, String calculado) {
+            this.tabla = tabla;
+            this.concepto = concepto;
+            this.producto = producto;
+            this.cantidad = "COALESCE(" + cantidad + ", 0)";
+            this.total = "COALESCE(g.total, " + calculado + ", 0)";
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private record Fila(boolean general, Long productId, String concepto, double cantidad, double total, long registros) {}
+
+    /**
+     * Totales y desglose por concepto en una sola consulta (GROUPING SETS: la fila con concepto
+     * agrupado es el total general). En sanidad el concepto es el producto, o el nombre si no tiene.
+     */
+    @Transactional(readOnly = true)
+    public ResumenGastoDTO resumen(TipoGasto tipo, LocalDate desde, LocalDate hasta, String loteId, String loteCodigo) {
+        List<Object> args = new ArrayList<>(4);
+        String where = filtro(desde, hasta, loteId, loteCodigo, args);
+        String clave = tipo.producto != null
+            ? "COALESCE(CAST(" + tipo.producto + " AS varchar), '#' || COALESCE(" + tipo.concepto + ", ''))"
+            : "COALESCE(" + tipo.concepto + ", '')";
+        String producto = tipo.producto != null ? "MAX(" + tipo.producto + ")" : "CAST(NULL AS bigint)";
+        String sql =
+            "SELECT GROUPING(" + clave + ") AS general, " + producto + " AS product_id, MAX(" + tipo.concepto + ") AS concepto, " +
+            "       SUM(" + tipo.cantidad + ") AS cantidad, SUM(" + tipo.total + ") AS total, COUNT(*) AS registros " +
+            "FROM " + tipo.tabla + " g LEFT JOIN lote l ON l.id = g.lote_id" + where +
+            " GROUP BY GROUPING SETS ((" + clave + "), ()) ORDER BY general DESC, total DESC";
+
+        List<Fila> filas = jdbcTemplate.query(sql, (rs, i) -> new Fila(rs.getInt("general") == 1,
+            rs.getObject("product_id", Long.class), rs.getString("concepto"),
+            rs.getDouble("cantidad"), rs.getDouble("total"), rs.getLong("registros")), args.toArray());
+
+        Fila general = new Fila(true, null, null, 0, 0, 0);
+        List<ResumenGastoConceptoDTO> porConcepto = new ArrayList<>(filas.size());
+        for (Fila f : filas) {
+            if (f.general()) {
+                general = f;
+            } else {
+                porConcepto.add(new ResumenGastoConceptoDTO(f.productId(), f.concepto(),
+                    redondear(f.cantidad(), 1000.0), redondear(f.total(), 100.0), f.registros()));
+            }
+        }
+        return new ResumenGastoDTO(general.registros(), redondear(general.cantidad(), 1000.0),
+            redondear(general.total(), 100.0), porConcepto);
+    }
+
+    /** Totales de todos los lotes en un rango, una fila por lote (los gastos generales con loteId null). */
+    @Transactional(readOnly = true)
+    public List<ResumenGastoLoteDTO> porLote(TipoGasto tipo, LocalDate desde, LocalDate hasta) {
+        List<Object> args = new ArrayList<>(2);
+        String where = filtro(desde, hasta, null, null, args);
+        String sql =
+            "SELECT g.lote_id, MAX(l.codigo) AS lote_codigo, SUM(" + tipo.cantidad + ") AS cantidad, " +
+            "       SUM(" + tipo.total + ") AS total, COUNT(*) AS registros " +
+            "FROM " + tipo.tabla + " g LEFT JOIN lote l ON l.id = g.lote_id" + where +
+            " GROUP BY g.lote_id ORDER BY total DESC";
+        return jdbcTemplate.query(sql, (rs, i) -> new ResumenGastoLoteDTO(rs.getString("lote_id"), rs.getString("lote_codigo"),
+            redondear(rs.getDouble("cantidad"), 1000.0), redondear(rs.getDouble("total"), 100.0), rs.getLong("registros")),
+            args.toArray());
+    }
+
+    private static String filtro(LocalDate desde, LocalDate hasta, String loteId, String loteCodigo, List<Object> args) {
+        StringBuilder where = new StringBuilder(" WHERE 1 = 1");
+        if (loteId != null && !loteId.isBlank()) {
+            where.append(" AND g.lote_id = ?");
+            args.add(loteId);
+        } else if (loteCodigo != null && !loteCodigo.isBlank()) {
+            where.append(" AND l.codigo = ?");
+            args.add(loteCodigo);
+        }
+        if (desde != null && hasta != null) {
+            where.append(" AND g.fecha BETWEEN ? AND ?");
+            args.add(Date.valueOf(desde));
+            args.add(Date.valueOf(hasta));
+        }
+        return where.toString();
+    }
+
+    private static double redondear(double v, double escala) {
+        return Math.round(v * escala) / escala;
+    }
+}
@@ -0,0 +1,7 @@
+-- Versión optimista para los descuentos FEFO en batch
+ALTER TABLE inventario_entrada_producto
+    ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+CREATE INDEX IF NOT EXISTS idx_inventario_entrada_producto_activas
+    ON inventario_entrada_producto (product_id, fecha_vencimiento, fecha_ingreso)
+    WHERE activo = true OR activo IS NULL;
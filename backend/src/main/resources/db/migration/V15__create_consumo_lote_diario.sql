@@ -0,0 +1,17 @@
+-- Acumulado incremental de consumo por lote, producto y día
+CREATE TABLE IF NOT EXISTS consumo_lote_diario (
+    id                 BIGSERIAL PRIMARY KEY,
+    lote_id            VARCHAR(255) NOT NULL,
+    product_id         BIGINT NOT NULL DEFAULT 0,
+    producto_nombre    VARCHAR(255),
+    fecha              DATE NOT NULL,
+    cantidad_total     DOUBLE PRECISION NOT NULL DEFAULT 0,
+    registros          INTEGER NOT NULL DEFAULT 0,
+    ultima_fecha_hora  TIMESTAMP,
+    CONSTRAINT uk_consumo_lote_diario UNIQUE (lote_id, product_id, fecha)
+);
+
+CREATE INDEX IF NOT EXISTS idx_consumo_lote_diario_lote ON consumo_lote_diario (lote_id);
+
+-- Historial paginado por lote (keyset sobre id)
+CREATE INDEX IF NOT EXISTS idx_plan_ejecucion_asignacion_id ON plan_ejecucion (asignacion_id, id);
@@ -0,0 +1,17 @@
+-- Especie canónica por animal y lote (POLLOS, CHANCHOS, OTROS)
+ALTER TABLE animal ADD COLUMN IF NOT EXISTS especie VARCHAR(20);
+ALTER TABLE lote ADD COLUMN IF NOT EXISTS especie VARCHAR(20);
+
+UPDATE animal SET especie = CASE
+    WHEN LOWER(nombre) LIKE '%chancho%' OR LOWER(nombre) LIKE '%cerd%' OR LOWER(nombre) LIKE '%porc%' OR LOWER(nombre) LIKE '%puerco%' THEN 'CHANCHOS'
+    WHEN LOWER(nombre) LIKE '%pollo%' OR LOWER(nombre) LIKE '%gallin%' OR LOWER(nombre) LIKE '%ave%' OR LOWER(nombre) LIKE '%broiler%' THEN 'POLLOS'
+    ELSE 'OTROS'
+END
+WHERE especie IS NULL;
+
+UPDATE lote l SET especie = a.especie
+FROM race r JOIN animal a ON r.animal_id = a.id
+WHERE l.race_id = r.id AND l.especie IS DISTINCT FROM a.especie;
+
+CREATE INDEX IF NOT EXISTS idx_animal_especie ON animal (especie);
+CREATE INDEX IF NOT EXISTS idx_lote_especie ON lote (especie);
@@ -0,0 +1,11 @@
+-- Datos estructurados de cada ejecución (antes solo dentro de observations)
+ALTER TABLE plan_ejecucion ADD COLUMN IF NOT EXISTS lote_id VARCHAR(64);
+ALTER TABLE plan_ejecucion ADD COLUMN IF NOT EXISTS product_id BIGINT;
+ALTER TABLE plan_ejecucion ADD COLUMN IF NOT EXISTS animales_vivos INTEGER;
+ALTER TABLE plan_ejecucion ADD COLUMN IF NOT EXISTS animales_muertos INTEGER;
+ALTER TABLE plan_ejecucion ADD COLUMN IF NOT EXISTS cantidad_por_animal DOUBLE PRECISION;
+ALTER TABLE plan_ejecucion ADD COLUMN IF NOT EXISTS movimiento_inventario_id BIGINT;
+-- NULL = fila anterior pendiente de backfill (PlanEjecucionMetadatosService)
+ALTER TABLE plan_ejecucion ADD COLUMN IF NOT EXISTS metadatos_estructurados BOOLEAN;
+
+CREATE INDEX IF NOT EXISTS idx_plan_ejecucion_lote_fecha ON plan_ejecucion (lote_id, execution_date);
@@ -0,0 +1,16 @@
+-- Prorrateo materializado de costos fijos por lote (días-animal o biomasa en el periodo del costo)
+CREATE TABLE IF NOT EXISTS costo_fijo_asignacion (
+    id             BIGSERIAL PRIMARY KEY,
+    costo_fijo_id  VARCHAR(255) NOT NULL,
+    lote_id        VARCHAR(255) NOT NULL,
+    periodo_desde  DATE NOT NULL,
+    periodo_hasta  DATE NOT NULL,
+    metodo         VARCHAR(20) NOT NULL,
+    base           DOUBLE PRECISION NOT NULL,
+    proporcion     DOUBLE PRECISION NOT NULL,
+    monto          DOUBLE PRECISION NOT NULL,
+    calculado_en   TIMESTAMP,
+    CONSTRAINT uk_costo_fijo_asignacion UNIQUE (costo_fijo_id, lote_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_costo_fijo_asignacion_lote ON costo_fijo_asignacion (lote_id);
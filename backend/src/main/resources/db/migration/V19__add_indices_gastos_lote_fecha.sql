@@ -0,0 +1,11 @@
+-- Resúmenes y listados de gastos por lote y rango de fechas
+CREATE INDEX IF NOT EXISTS idx_gasto_sanidad_lote_fecha ON gasto_sanidad (lote_id, fecha);
+CREATE INDEX IF NOT EXISTS idx_gasto_sanidad_fecha ON gasto_sanidad (fecha);
+CREATE INDEX IF NOT EXISTS idx_gasto_logistica_lote_fecha ON gasto_logistica (lote_id, fecha);
+CREATE INDEX IF NOT EXISTS idx_gasto_logistica_fecha ON gasto_logistica (fecha);
+CREATE INDEX IF NOT EXISTS idx_gasto_mano_obra_lote_fecha ON gasto_mano_obra (lote_id, fecha);
+CREATE INDEX IF NOT EXISTS idx_gasto_mano_obra_fecha ON gasto_mano_obra (fecha);
+CREATE INDEX IF NOT EXISTS idx_gasto_operacion_lote_fecha ON gasto_operacion (lote_id, fecha);
+CREATE INDEX IF NOT EXISTS idx_gasto_operacion_fecha ON gasto_operacion (fecha);
+CREATE INDEX IF NOT EXISTS idx_costo_fijo_lote_fecha ON costo_fijo (lote_id, fecha);
+CREATE INDEX IF NOT EXISTS idx_costo_fijo_fecha ON costo_fijo (fecha);
@@ -0,0 +1,6 @@
+-- Contador de códigos de lote por prefijo de animal; CodigoLoteService reserva bloques con un UPDATE ... RETURNING
+CREATE TABLE IF NOT EXISTS codigo_lote_secuencia (
+    prefijo VARCHAR(10) PRIMARY KEY,
+    ultimo BIGINT NOT NULL,
+    actualizado_en TIMESTAMP
+);
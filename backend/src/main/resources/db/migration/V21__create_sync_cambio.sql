@@ -0,0 +1,15 @@
+-- Registro de cambios para la sincronización incremental de la app móvil (una fila por entidad e id);
+-- SyncCambiosService escribe "secuencia" = 0 al confirmar y después la numera con sync_cambio_seq
+CREATE SEQUENCE IF NOT EXISTS sync_cambio_seq START 1 INCREMENT 1;
+
+CREATE TABLE IF NOT EXISTS sync_cambio (
+    id BIGINT PRIMARY KEY,
+    entidad VARCHAR(40) NOT NULL,
+    entidad_id VARCHAR(64) NOT NULL,
+    secuencia BIGINT NOT NULL,
+    eliminado BOOLEAN NOT NULL,
+    actualizado_en TIMESTAMP,
+    CONSTRAINT uk_sync_cambio_entidad UNIQUE (entidad, entidad_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_sync_cambio_secuencia ON sync_cambio (secuencia);
@@ -0,0 +1,12 @@
+-- Claves de idempotencia de las operaciones offline de la app móvil; se insertan en la misma
+-- transacción que aplica cada operación y se purgan pasado el período de retención
+CREATE TABLE IF NOT EXISTS operacion_offline (
+    clave VARCHAR(100) PRIMARY KEY,
+    tipo VARCHAR(30) NOT NULL,
+    lote_id VARCHAR(64),
+    usuario VARCHAR(100),
+    resultado_id VARCHAR(64),
+    procesado_en TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_operacion_offline_procesado ON operacion_offline (procesado_en);
@@ -0,0 +1,6 @@
+-- Las claves de idempotencia de las operaciones offline son de cada usuario: la misma clave enviada
+-- por otro usuario es otra operación
+UPDATE operacion_offline SET usuario = 'APP' WHERE usuario IS NULL;
+ALTER TABLE operacion_offline ALTER COLUMN usuario SET NOT NULL;
+ALTER TABLE operacion_offline DROP CONSTRAINT IF EXISTS operacion_offline_pkey;
+ALTER TABLE operacion_offline ADD CONSTRAINT operacion_offline_pkey PRIMARY KEY (usuario, clave);
@@ -0,0 +1,47 @@
+package com.wil.avicola_backend;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * Base de las pruebas que necesitan PostgreSQL de verdad (SQL nativo, bloqueos, secuencias).
+ * Nunca usa la base configurada en application.properties: levanta un contenedor de Postgres con
+ * Testcontainers, compartido por todas las pruebas de la corrida, o usa la base indicada en
+ * {@code AVICOLA_TEST_DB_URL} (más {@code AVICOLA_TEST_DB_USER} / {@code AVICOLA_TEST_DB_PASSWORD})
+ * donde no hay Docker. Cada prueba siembra sus propios datos con nombres únicos.
+ */
+@SpringBootTest
+public abstract class PruebaIntegracionPostgres {
+
+    private static PostgreSQLContainer<?> contenedor;
+
+    @DynamicPropertySource
+    static void baseDeDatos(DynamicPropertyRegistry registry) {
+        String url = System.getenv("AVICOLA_TEST_DB_URL");
+        if (url != null && !url.isBlank()) {
+            registry.add("spring.datasource.url", () -> url);
+            registry.add("spring.datasource.username", () -> variable("AVICOLA_TEST_DB_USER", "postgres"));
+            registry.add("spring.datasource.password", () -> variable("AVICOLA_TEST_DB_PASSWORD", "postgres"));
+            return;
+        }
+        PostgreSQLContainer<?> postgres = contenedor();
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    private static synchronized PostgreSQLContainer<?> contenedor() {
+        if (contenedor == null) {
+            contenedor = new PostgreSQLContainer<>("postgres:15-alpine");
+            contenedor.start();
+        }
+        return contenedor;
+    }
+
+    private static String variable(String nombre, String porDefecto) {
+        String valor = System.getenv(nombre);
+        return valor != null && !valor.isBlank() ? valor : porDefecto;
+    }
+}
@@ -0,0 +1,102 @@
+package com.wil.avicola_backend.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.WebApplicationContextRunner;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+
+/**
+ * Modo {@code avicola.websocket.broker=relay}: WebSocketConfig debe usar el relay STOMP (no el broker
+ * en memoria) y conectar su sesión de sistema al broker externo con las credenciales y el virtual host
+ * configurados. El broker externo es un servidor STOMP mínimo que solo responde al CONNECT.
+ */
+class WebSocketBrokerRelayTest {
+
+    private ServerSocket servidor;
+    private final BlockingQueue<String> tramas = new LinkedBlockingQueue<>();
+
+    @BeforeEach
+    void brokerFalso() throws Exception {
+        servidor = new ServerSocket(0, 10, InetAddress.getLoopbackAddress());
+        Thread aceptador = new Thread(this::atender, "stomp-falso");
+        aceptador.setDaemon(true);
+        aceptador.start();
+    }
+
+    @AfterEach
+    void cerrar() throws Exception {
+        servidor.close();
+    }
+
+    @Test
+    void relayConectaAlBrokerExternoConLaConfiguracion() {
+        new WebApplicationContextRunner()
+            .withUserConfiguration(WebSocketConfig.class)
+            .withPropertyValues(
+                "avicola.websocket.broker=relay",
+                "avicola.websocket.relay.host=127.0.0.1",
+                "avicola.websocket.relay.port=" + servidor.getLocalPort(),
+                "avicola.websocket.relay.login=granja",
+                "avicola.websocket.relay.passcode=secreto",
+                "avicola.websocket.relay.virtual-host=avicola")
+            .run(contexto -> {
+                assertThat(contexto).hasNotFailed();
+                assertThat(contexto).hasSingleBean(StompBrokerRelayMessageHandler.class);
+                assertThat(contexto).doesNotHaveBean(SimpleBrokerMessageHandler.class);
+
+                String connect = tramas.poll(10, TimeUnit.SECONDS);
+                assertNotNull(connect, "el relay no se conectó al broker externo");
+                assertThat(connect).startsWith("CONNECT");
+                assertThat(connect).contains("login:granja", "passcode:secreto", "host:avicola");
+
+                StompBrokerRelayMessageHandler relay = contexto.getBean(StompBrokerRelayMessageHandler.class);
+                long limite = System.currentTimeMillis() + 10_000;
+                while (!relay.isBrokerAvailable() && System.currentTimeMillis() < limite) Thread.sleep(50);
+                assertTrue(relay.isBrokerAvailable(), "la sesión de sistema no quedó conectada");
+            });
+    }
+
+    /** Acepta conexiones, guarda cada trama recibida y responde CONNECTED a los CONNECT. */
+    private void atender() {
+        while (!servidor.isClosed()) {
+            try (Socket socket = servidor.accept()) {
+                InputStream in = socket.getInputStream();
+                OutputStream out = socket.getOutputStream();
+                ByteArrayOutputStream trama = new ByteArrayOutputStream();
+                int b;
+                while ((b = in.read()) != -1) {
+                    if (b != 0) {
+                        trama.write(b);
+                        continue;
+                    }
+                    String texto = trama.toString(StandardCharsets.UTF_8).stripLeading();
+                    trama.reset();
+                    tramas.add(texto);
+                    if (texto.startsWith("CONNECT") || texto.startsWith("STOMP")) {
+                        out.write("CONNECTED\nversion:1.2\nheart-beat:0,0\n\n\0".getBytes(StandardCharsets.UTF_8));
+                        out.flush();
+                    }
+                }
+            } catch (Exception e) {
+                // Servidor cerrado o conexión cortada por el relay al terminar la prueba
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.wil.avicola_backend.config;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Latencia de fan-out del broker en memoria con 1000 suscriptores a un mismo tópico. El pool de salida
+ * se arma con las propiedades avicola.websocket.outbound.* de application.properties (con los mismos
+ * valores por defecto que WebSocketConfig). No corre en el build normal:
+ * {@code mvn test -Dtest=WebSocketFanOutBenchmarkTest -Dbenchmark=true}
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class WebSocketFanOutBenchmarkTest {
+
+    private static final int SUSCRIPTORES = 1000;
+    private static final int PUBLICACIONES = 200;
+    private static final int CALENTAMIENTO = 50;
+    private static final String TOPIC = "/topic/inventory-update";
+
+    @Test
+    void fanOutA1000Suscriptores() throws Exception {
+        Properties config = PropertiesLoaderUtils.loadProperties(new ClassPathResource("application.properties"));
+        ThreadPoolTaskExecutor salidaPool = new ThreadPoolTaskExecutor();
+        salidaPool.setCorePoolSize(entero(config, "avicola.websocket.outbound.core-pool", 4));
+        salidaPool.setMaxPoolSize(entero(config, "avicola.websocket.outbound.max-pool", 16));
+        salidaPool.setQueueCapacity(entero(config, "avicola.websocket.outbound.queue-capacity", 10000));
+        salidaPool.setKeepAliveSeconds(60);
+        salidaPool.setThreadNamePrefix("bench-outbound-");
+        salidaPool.initialize();
+
+        ExecutorSubscribableChannel entrada = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel salida = new ExecutorSubscribableChannel(salidaPool);
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+
+        SimpleBrokerMessageHandler broker = new SimpleBrokerMessageHandler(entrada, salida, brokerChannel, List.of("/topic"));
+        broker.start();
+
+        for (int i = 0; i < SUSCRIPTORES; i++) {
+            String sesion = "s" + i;
+            broker.handleMessage(mensaje(SimpMessageType.CONNECT, sesion, null));
+            SimpMessageHeaderAccessor sub = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+            sub.setSessionId(sesion);
+            sub.setSubscriptionId("sub-" + i);
+            sub.setDestination(TOPIC);
+            broker.handleMessage(MessageBuilder.createMessage(new byte[0], sub.getMessageHeaders()));
+        }
+
+        List<Long> latenciasUs = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch[] pendientes = new CountDownLatch[1];
+        long[] inicio = new long[1];
+        salida.subscribe(m -> {
+            if (SimpMessageHeaderAccessor.getMessageType(m.getHeaders()) != SimpMessageType.MESSAGE) return;
+            CountDownLatch latch = pendientes[0];
+            if (latch != null) {
+                latch.countDown();
+                if (latch.getCount() == 0) latenciasUs.add((System.nanoTime() - inicio[0]) / 1000);
+            }
+        });
+
+        for (int i = 0; i < CALENTAMIENTO + PUBLICACIONES; i++) {
+            if (i == CALENTAMIENTO) latenciasUs.clear();
+            pendientes[0] = new CountDownLatch(SUSCRIPTORES);
+            inicio[0] = System.nanoTime();
+            SimpMessageHeaderAccessor pub = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            pub.setDestination(TOPIC);
+            broker.handleMessage(MessageBuilder.createMessage(("{\"i\":" + i + "}").getBytes(), pub.getMessageHeaders()));
+            assertTrue(pendientes[0].await(10, TimeUnit.SECONDS), "no llegaron todas las entregas");
+        }
+
+        List<Long> ordenadas = new ArrayList<>(latenciasUs);
+        Collections.sort(ordenadas);
+        System.out.printf("Pool de salida: core=%d, max=%d, cola=%d%n", salidaPool.getCorePoolSize(),
+            salidaPool.getMaxPoolSize(), salidaPool.getQueueCapacity());
+        System.out.printf("Fan-out a %d suscriptores (%d publicaciones): p50=%d us, p95=%d us, p99=%d us, max=%d us%n",
+            SUSCRIPTORES, ordenadas.size(), percentil(ordenadas, 50), percentil(ordenadas, 95),
+            percentil(ordenadas, 99), ordenadas.get(ordenadas.size() - 1));
+
+        broker.stop();
+        salidaPool.shutdown();
+    }
+
+    private static Message<byte[]> mensaje(SimpMessageType tipo, String sesion, String destino) {
+        SimpMessageHeaderAccessor acc = SimpMessageHeaderAccessor.create(tipo);
+        acc.setSessionId(sesion);
+        if (destino != null) acc.setDestination(destino);
+        return MessageBuilder.createMessage(new byte[0], acc.getMessageHeaders());
+    }
+
+    private static int entero(Properties config, String clave, int porDefecto) {
+        String valor = config.getProperty(clave);
+        return valor != null && !valor.isBlank() ? Integer.parseInt(valor.trim()) : porDefecto;
+    }
+
+    private static long percentil(List<Long> ordenadas, int p) {
+        int i = (int) Math.ceil(p / 100.0 * ordenadas.size()) - 1;
+        return ordenadas.get(Math.max(0, Math.min(i, ordenadas.size() - 1)));
+    }
+}
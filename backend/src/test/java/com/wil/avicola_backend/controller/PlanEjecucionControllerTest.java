@@ -0,0 +1,101 @@
+package com.wil.avicola_backend.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wil.avicola_backend.PruebaIntegracionPostgres;
+import com.wil.avicola_backend.dto.HistorialResponseDto;
+import com.wil.avicola_backend.service.HistorialEjecucionService;
+
+/**
+ * GET /api/plan-ejecucion/debug/historial contra Postgres: sin límite devuelve la ventana completa
+ * (los clientes no siguen el cursor); con límite, una página y el cursor en el header.
+ */
+@AutoConfigureMockMvc
+@WithMockUser
+class PlanEjecucionControllerTest extends PruebaIntegracionPostgres {
+
+    private static final int REGISTROS = HistorialEjecucionService.LIMITE_MAXIMO + 10;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private LocalDate fecha;
+
+    @BeforeEach
+    void ejecuciones() {
+        // Un día propio, lejos de los datos de otras pruebas
+        fecha = LocalDate.of(1900, 1, 1).plusDays(ThreadLocalRandom.current().nextInt(30_000));
+        Long usuario = jdbcTemplate.queryForObject(
+            "INSERT INTO usuarios (username, active) VALUES (?, true) RETURNING id", Long.class,
+            "h-" + UUID.randomUUID().toString().substring(0, 12));
+        jdbcTemplate.update(
+            "INSERT INTO plan_ejecucion (day_number, execution_date, quantity_applied, executed_by_user_id, status) " +
+            "SELECT 1, ?, 1.0, ?, 'EJECUTADO' FROM generate_series(1, ?)",
+            Date.valueOf(fecha), usuario, REGISTROS);
+    }
+
+    @Test
+    void sinLimiteDevuelveLaVentanaCompleta() throws Exception {
+        MvcResult inicio = mockMvc.perform(historial())
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        String json = mockMvc.perform(asyncDispatch(inicio))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(PlanEjecucionController.HEADER_SIGUIENTE_CURSOR))
+            .andReturn().getResponse().getContentAsString();
+
+        assertThat(registros(json)).hasSize(REGISTROS);
+    }
+
+    @Test
+    void conLimiteDevuelveUnaPaginaYElCursor() throws Exception {
+        MvcResult inicio = mockMvc.perform(historial().param("limite", "100"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        String json = mockMvc.perform(asyncDispatch(inicio))
+            .andExpect(status().isOk())
+            .andExpect(header().exists(PlanEjecucionController.HEADER_SIGUIENTE_CURSOR))
+            .andReturn().getResponse().getContentAsString();
+
+        assertThat(registros(json)).hasSize(100);
+    }
+
+    private MockHttpServletRequestBuilder historial() {
+        return get("/api/plan-ejecucion/debug/historial")
+            .param("fechaInicio", fecha.toString())
+            .param("fechaFin", fecha.toString());
+    }
+
+    private List<HistorialResponseDto> registros(String json) throws Exception {
+        return objectMapper.readValue(json, new TypeReference<List<HistorialResponseDto>>() {});
+    }
+}
@@ -0,0 +1,148 @@
+package com.wil.avicola_backend.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wil.avicola_backend.PruebaIntegracionPostgres;
+import com.wil.avicola_backend.dto.SyncCambiosDTO;
+import com.wil.avicola_backend.model.Product;
+import com.wil.avicola_backend.repository.ProductRepository;
+import com.wil.avicola_backend.service.SyncCambiosService;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * GET /api/sync/cambios contra Postgres: altas, ediciones de entidades gestionadas (vistas recién en
+ * el flush del commit), bajas y transacciones que no confirman.
+ */
+@AutoConfigureMockMvc
+@WithMockUser
+class SyncControllerTest extends PruebaIntegracionPostgres {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private TransactionTemplate tx;
+
+    @BeforeEach
+    void transaccion() {
+        tx = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    void sinSecuenciaPideReiniciarDesdeLaUltima() throws Exception {
+        long antes = cambios(null).hasta();
+        nuevoProducto();
+
+        SyncCambiosDTO inicio = cambios(null);
+
+        // El alta recién confirmada ya cuenta: quien descarga todo no la vuelve a pedir
+        assertThat(inicio.reiniciar()).isTrue();
+        assertThat(inicio.entidades()).isEmpty();
+        assertThat(inicio.hasta()).isGreaterThan(antes);
+        assertThat(cambios(inicio.hasta()).entidades()).doesNotContainKey(SyncCambiosService.PRODUCTOS);
+    }
+
+    @Test
+    void devuelveAltasEdicionesYBajasDesdeLaSecuencia() throws Exception {
+        long desde = cambios(null).hasta();
+
+        Long id = nuevoProducto();
+        SyncCambiosDTO alta = cambios(desde);
+        assertThat(alta.reiniciar()).isFalse();
+        assertThat(alta.hasta()).isGreaterThan(desde);
+        assertThat(productos(alta).cambiados()).contains(String.valueOf(id));
+
+        // Edición sin save(): el @PostUpdate recién corre en el flush del commit
+        tx.executeWithoutResult(status -> productRepository.findById(id).orElseThrow().setDescription("editado"));
+        SyncCambiosDTO edicion = cambios(alta.hasta());
+        assertThat(edicion.hasta()).isGreaterThan(alta.hasta());
+        assertThat(productos(edicion).cambiados()).containsExactly(String.valueOf(id));
+
+        tx.executeWithoutResult(status -> productRepository.findById(id).orElseThrow().setActive(false));
+        SyncCambiosDTO baja = cambios(edicion.hasta());
+        assertThat(productos(baja).cambiados()).doesNotContain(String.valueOf(id));
+        assertThat(productos(baja).eliminados()).containsExactly(String.valueOf(id));
+    }
+
+    @Test
+    void ignoraLecturasYTransaccionesQueNoConfirman() throws Exception {
+        Long id = nuevoProducto();
+        long desde = cambios(null).hasta();
+
+        tx.executeWithoutResult(status -> productRepository.findById(id).orElseThrow());
+        tx.executeWithoutResult(status -> {
+            productRepository.findById(id).orElseThrow().setDescription("descartado");
+            entityManager.flush();
+            status.setRollbackOnly();
+        });
+
+        SyncCambiosDTO sinCambios = cambios(desde);
+        assertThat(sinCambios.hasta()).isEqualTo(desde);
+        assertThat(sinCambios.entidades()).doesNotContainKey(SyncCambiosService.PRODUCTOS);
+    }
+
+    @Test
+    void paginaConLimite() throws Exception {
+        long desde = cambios(null).hasta();
+        List<Long> ids = List.of(nuevoProducto(), nuevoProducto(), nuevoProducto());
+
+        SyncCambiosDTO primera = cambios(desde, "limite", "2");
+        assertThat(primera.hayMas()).isTrue();
+        SyncCambiosDTO segunda = cambios(primera.hasta(), "limite", "2");
+        assertThat(segunda.hayMas()).isFalse();
+        assertThat(productos(primera).cambiados()).hasSize(2);
+        assertThat(productos(segunda).cambiados()).hasSize(1);
+        assertThat(ids).allMatch(id -> productos(primera).cambiados().contains(String.valueOf(id))
+            || productos(segunda).cambiados().contains(String.valueOf(id)));
+    }
+
+    private Long nuevoProducto() {
+        return productRepository.save(Product.builder()
+            .name("sync-" + UUID.randomUUID())
+            .active(true)
+            .build()).getId();
+    }
+
+    private SyncCambiosDTO cambios(Long desde, String... parametros) throws Exception {
+        var pedido = get("/api/sync/cambios").param("entidades", SyncCambiosService.PRODUCTOS);
+        if (desde != null) pedido.param("desde", String.valueOf(desde));
+        for (int i = 0; i < parametros.length; i += 2) pedido.param(parametros[i], parametros[i + 1]);
+        String json = mockMvc.perform(pedido)
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(json, SyncCambiosDTO.class);
+    }
+
+    private static SyncCambiosDTO.Entidad productos(SyncCambiosDTO dto) {
+        return dto.entidades().getOrDefault(SyncCambiosService.PRODUCTOS,
+            new SyncCambiosDTO.Entidad(List.of(), List.of()));
+    }
+}
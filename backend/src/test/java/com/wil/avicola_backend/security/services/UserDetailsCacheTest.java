@@ -0,0 +1,36 @@
+package com.wil.avicola_backend.security.services;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.wil.avicola_backend.PruebaIntegracionPostgres;
+import com.wil.avicola_backend.model.Usuario;
+import com.wil.avicola_backend.repository.UsuarioRepository;
+
+class UserDetailsCacheTest extends PruebaIntegracionPostgres {
+
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Test
+    void guardarElUsuarioPorElRepositorioLoDescartaDeLaCache() {
+        String username = "c" + UUID.randomUUID().toString().substring(0, 8);
+        Usuario usuario = usuarioRepository.save(new Usuario(username, username + "@prueba.com", "x"));
+
+        assertTrue(userDetailsService.loadUserForToken(username).isEnabled());
+
+        // Igual que las herramientas de diagnóstico: sin pasar por UserService
+        usuario.setActive(false);
+        usuarioRepository.save(usuario);
+
+        assertFalse(userDetailsService.loadUserForToken(username).isEnabled());
+    }
+}
@@ -0,0 +1,225 @@
+package com.wil.avicola_backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.wil.avicola_backend.PruebaIntegracionPostgres;
+import com.wil.avicola_backend.error.RequestException;
+import com.wil.avicola_backend.model.InventarioEntradaProducto;
+import com.wil.avicola_backend.model.Product;
+import com.wil.avicola_backend.repository.InventarioEntradaProductoRepository;
+import com.wil.avicola_backend.repository.ProductRepository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+class AsignadorFefoServiceTest extends PruebaIntegracionPostgres {
+
+    private static final LocalDate HOY = LocalDate.now();
+
+    @Autowired
+    private AsignadorFefoService asignador;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private InventarioEntradaProductoRepository entradasRepo;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private TransactionTemplate tx;
+    private Long productId;
+
+    @BeforeEach
+    void producto() {
+        tx = new TransactionTemplate(transactionManager);
+        productId = productRepository.save(Product.builder()
+            .name("fefo-" + UUID.randomUUID())
+            .active(true)
+            .build()).getId();
+    }
+
+    @Test
+    void consumeEnOrdenDeVencimientoYSaltaLasVencidas() {
+        Long sinVencimiento = entrada("10", null, null, null);
+        Long tardia = entrada("10", HOY.plusDays(30), "5", "2");
+        Long proxima = entrada("4", HOY.plusDays(3), "2", "2");
+        Long vencida = entrada("8", HOY.minusDays(1), null, null);
+
+        AsignadorFefoService.Asignacion asignacion = consumir("16");
+
+        assertEquals(List.of(proxima, tardia, sinVencimiento),
+            asignacion.tramos().stream().map(AsignadorFefoService.Tramo::entradaId).toList());
+        assertEquals(0, new BigDecimal("16").compareTo(asignacion.consumido()));
+        assertTrue(asignacion.hayVencidas());
+
+        // Agotada: unidades en 0, inactiva y versión avanzada
+        Map<String, Object> agotada = fila(proxima);
+        assertEquals(0, BigDecimal.ZERO.compareTo((BigDecimal) agotada.get("stock_base_restante")));
+        assertEquals(0, BigDecimal.ZERO.compareTo((BigDecimal) agotada.get("stock_unidades_restantes")));
+        assertFalse((Boolean) agotada.get("activo"));
+        assertEquals(1L, agotada.get("version"));
+
+        assertEquals(0, BigDecimal.ZERO.compareTo((BigDecimal) fila(tardia).get("stock_unidades_restantes")));
+        Map<String, Object> ultima = fila(sinVencimiento);
+        assertEquals(0, new BigDecimal("8").compareTo((BigDecimal) ultima.get("stock_base_restante")));
+        // Sin seguimiento de unidades: sigue en null, no se convierte en 0
+        assertNull(ultima.get("stock_unidades_restantes"));
+        assertTrue((Boolean) ultima.get("activo"));
+
+        assertEquals(0, new BigDecimal("8").compareTo((BigDecimal) fila(vencida).get("stock_base_restante")));
+    }
+
+    @Test
+    void descuentaUnidadesEnProporcion() {
+        Long id = entrada("10", HOY.plusDays(10), "5", "2");
+
+        consumir("3");
+
+        Map<String, Object> f = fila(id);
+        assertEquals(0, new BigDecimal("7").compareTo((BigDecimal) f.get("stock_base_restante")));
+        assertEquals(0, new BigDecimal("3.500").compareTo((BigDecimal) f.get("stock_unidades_restantes")));
+    }
+
+    @Test
+    void reasignaCuandoLaFilaCambioFueraDeLaCache() {
+        Long id = entrada("10", HOY.plusDays(10), null, null);
+        consumir("1");
+
+        // Otra escritura (un ajuste manual) deja 2 kg y avanza la versión sin pasar por el asignador
+        jdbcTemplate.update("UPDATE inventario_entrada_producto SET stock_base_restante = 2, version = version + 1 WHERE id = ?", id);
+
+        AsignadorFefoService.Asignacion asignacion = consumir("5");
+
+        assertEquals(0, new BigDecimal("2").compareTo(asignacion.consumido()), "no debe vender el stock en caché");
+        Map<String, Object> f = fila(id);
+        assertEquals(0, BigDecimal.ZERO.compareTo((BigDecimal) f.get("stock_base_restante")));
+        assertEquals(3L, f.get("version"));
+    }
+
+    @Test
+    void rechazaUnidadesQueNoAlcanzan() {
+        Long id = entrada("10", HOY.plusDays(10), "0.5", "2");
+
+        assertThrows(RequestException.class, () -> consumir("4"));
+
+        Map<String, Object> f = fila(id);
+        assertEquals(0, new BigDecimal("10").compareTo((BigDecimal) f.get("stock_base_restante")));
+        assertEquals(0L, f.get("version"));
+    }
+
+    @Test
+    void refrescaLaEntradaYaCargadaEnLaSesion() {
+        Long id = entrada("10", HOY.plusDays(10), null, null);
+
+        tx.executeWithoutResult(status -> {
+            InventarioEntradaProducto gestionada = entradasRepo.findById(id).orElseThrow();
+            asignador.consumir(productId, new BigDecimal("4"), HOY);
+            assertEquals(0, new BigDecimal("6").compareTo(gestionada.getStockBaseRestante()));
+            gestionada.setObservaciones("editada en la misma transacción");
+            entityManager.flush();
+        });
+
+        Map<String, Object> f = fila(id);
+        assertEquals(0, new BigDecimal("6").compareTo((BigDecimal) f.get("stock_base_restante")));
+        assertEquals(2L, f.get("version"));
+        assertEquals("editada en la misma transacción", f.get("observaciones"));
+    }
+
+    @Test
+    void consumosConcurrentesNoVendenDeMas() throws Exception {
+        Long a = entrada("15", HOY.plusDays(5), null, null);
+        Long b = entrada("15", HOY.plusDays(10), null, null);
+        Long c = entrada("20", null, null, null);
+        int hilos = 8;
+        int consumosPorHilo = 10;
+
+        ExecutorService pool = Executors.newFixedThreadPool(hilos);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<BigDecimal>> resultados = new ArrayList<>();
+        try {
+            for (int h = 0; h < hilos; h++) {
+                resultados.add(pool.submit(() -> {
+                    largada.await();
+                    BigDecimal total = BigDecimal.ZERO;
+                    for (int i = 0; i < consumosPorHilo; i++) {
+                        try {
+                            total = total.add(consumir("1").consumido());
+                        } catch (RequestException e) {
+                            // Conflictos repetidos: el cliente reintentaría
+                        }
+                    }
+                    return total;
+                }));
+            }
+            largada.countDown();
+            BigDecimal consumido = BigDecimal.ZERO;
+            for (Future<BigDecimal> r : resultados) consumido = consumido.add(r.get());
+
+            BigDecimal restante = BigDecimal.ZERO;
+            for (Long id : List.of(a, b, c)) {
+                BigDecimal stock = (BigDecimal) fila(id).get("stock_base_restante");
+                assertTrue(stock.signum() >= 0);
+                restante = restante.add(stock);
+            }
+            assertTrue(consumido.signum() > 0);
+            assertEquals(0, new BigDecimal("50").compareTo(consumido.add(restante)), "se perdió o se inventó stock");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private AsignadorFefoService.Asignacion consumir(String cantidad) {
+        return tx.execute(status -> asignador.consumir(productId, new BigDecimal(cantidad), HOY));
+    }
+
+    private Long entrada(String base, LocalDate vencimiento, String unidades, String contenido) {
+        Product producto = productRepository.findById(productId).orElseThrow();
+        return entradasRepo.save(InventarioEntradaProducto.builder()
+            .product(producto)
+            .codigoLote("L-" + UUID.randomUUID().toString().substring(0, 8))
+            .fechaIngreso(LocalDateTime.now())
+            .fechaVencimiento(vencimiento)
+            .stockBaseRestante(new BigDecimal(base))
+            .stockUnidadesRestantes(unidades != null ? new BigDecimal(unidades) : null)
+            .contenidoPorUnidad(contenido != null ? new BigDecimal(contenido) : null)
+            .activo(true)
+            .build()).getId();
+    }
+
+    private Map<String, Object> fila(Long id) {
+        return jdbcTemplate.queryForMap(
+            "SELECT stock_base_restante, stock_unidades_restantes, activo, version, observaciones "
+                + "FROM inventario_entrada_producto WHERE id = ?", id);
+    }
+}
@@ -0,0 +1,88 @@
+package com.wil.avicola_backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.wil.avicola_backend.PruebaIntegracionPostgres;
+import com.wil.avicola_backend.model.Animal;
+import com.wil.avicola_backend.model.Race;
+
+class CodigoLoteServiceTest extends PruebaIntegracionPostgres {
+
+    @Autowired
+    private CodigoLoteService codigoLoteService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void formatoNoMezclaPrefijos() {
+        assertEquals("00001", CodigoLoteService.formatear("00", 1));
+        assertEquals("10999", CodigoLoteService.formatear("10", 999));
+        // Sin guion, "10" + 1001 y "101" + 001 serían ambos 101001
+        assertEquals("10-1001", CodigoLoteService.formatear("10", 1001));
+        assertEquals("101-001", CodigoLoteService.formatear("101", 1));
+        assertEquals("GEN0007", CodigoLoteService.formatear("GEN", 7));
+    }
+
+    @Test
+    void primeraReservaSoloCuentaLosCodigosDelPrefijoExacto() {
+        long animalId = ThreadLocalRandom.current().nextLong(100_000, 900_000);
+        String prefijo = String.valueOf(animalId);
+        // Un código de otro prefijo que empieza igual no debe adelantar la secuencia
+        insertarLote(prefijo + "0-500");
+        insertarLote(prefijo + "-041");
+
+        assertEquals(prefijo + "-042", codigoLoteService.generarCodigoLote(raza(animalId)));
+    }
+
+    @Test
+    void altasConcurrentesNoRepitenCodigo() throws Exception {
+        Race raza = raza(ThreadLocalRandom.current().nextLong(1_000_000, 9_000_000));
+        int hilos = 8;
+        int porHilo = 40;
+        Set<String> codigos = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(hilos);
+        CountDownLatch largada = new CountDownLatch(1);
+        try {
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int h = 0; h < hilos; h++) {
+                tareas.add(pool.submit(() -> {
+                    largada.await();
+                    for (int i = 0; i < porHilo; i++) {
+                        assertTrue(codigos.add(codigoLoteService.generarCodigoLote(raza)), "código repetido");
+                    }
+                    return null;
+                }));
+            }
+            largada.countDown();
+            for (Future<?> t : tareas) t.get();
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(hilos * porHilo, codigos.size());
+    }
+
+    private static Race raza(long animalId) {
+        return Race.builder().animal(Animal.builder().id(animalId).build()).build();
+    }
+
+    private void insertarLote(String codigo) {
+        jdbcTemplate.update("INSERT INTO lote (id, codigo, name, quantity, cost, birthdate) VALUES (gen_random_uuid()::text, ?, ?, 0, 0, now())",
+            codigo, "prueba " + codigo);
+    }
+}
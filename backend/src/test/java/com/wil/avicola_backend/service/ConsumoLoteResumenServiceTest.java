@@ -0,0 +1,103 @@
+package com.wil.avicola_backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.wil.avicola_backend.PruebaIntegracionPostgres;
+import com.wil.avicola_backend.model.Lote;
+import com.wil.avicola_backend.model.PlanAsignacion;
+import com.wil.avicola_backend.model.PlanEjecucion;
+
+/**
+ * Sumas incrementales de consumo_lote_diario contra Postgres y su convivencia con la reconstrucción.
+ * Las ejecuciones no se guardan: registrar solo lee lote, producto, fecha y cantidad.
+ */
+class ConsumoLoteResumenServiceTest extends PruebaIntegracionPostgres {
+
+    @Autowired
+    private ConsumoLoteResumenService servicio;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private String loteId;
+
+    @BeforeEach
+    void lote() {
+        loteId = "resumen-" + UUID.randomUUID();
+    }
+
+    @Test
+    void registrarYRevertirAcumulanPorDia() {
+        servicio.registrar(ejecucion(10.0));
+        servicio.registrar(ejecucion(2.5));
+        servicio.revertir(ejecucion(2.5));
+
+        Map<String, Object> fila = fila();
+        assertEquals(10.0, ((Number) fila.get("cantidad_total")).doubleValue(), 1e-9);
+        assertEquals(1, ((Number) fila.get("registros")).intValue());
+    }
+
+    @Test
+    void reconstruirEsperaALasSumasEnCurso() throws Exception {
+        CountDownLatch sumada = new CountDownLatch(1);
+        CountDownLatch confirmar = new CountDownLatch(1);
+        CompletableFuture<Void> escritura = CompletableFuture.runAsync(() ->
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                servicio.registrar(ejecucion(4.0));
+                sumada.countDown();
+                try {
+                    confirmar.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        try {
+            sumada.await(10, TimeUnit.SECONDS);
+            CompletableFuture<Integer> reconstruccion = CompletableFuture.supplyAsync(servicio::reconstruir);
+
+            Thread.sleep(300);
+            assertFalse(reconstruccion.isDone(), "la reconstrucción no esperó a la transacción que ya sumó");
+
+            confirmar.countDown();
+            escritura.get(10, TimeUnit.SECONDS);
+            reconstruccion.get(10, TimeUnit.SECONDS);
+        } finally {
+            confirmar.countDown();
+        }
+        // La ejecución no existe en plan_ejecucion: la reconstrucción, que corrió después, la descarta
+        assertEquals(0, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM consumo_lote_diario WHERE lote_id = ?", Integer.class, loteId));
+    }
+
+    private PlanEjecucion ejecucion(double cantidad) {
+        return PlanEjecucion.builder()
+            .planAsignacion(PlanAsignacion.builder().lote(Lote.builder().id(loteId).build()).build())
+            .executionDate(LocalDate.now())
+            .quantityApplied(cantidad)
+            .status(PlanEjecucion.Status.EJECUTADO)
+            .build();
+    }
+
+    private Map<String, Object> fila() {
+        return jdbcTemplate.queryForMap(
+            "SELECT cantidad_total, registros FROM consumo_lote_diario WHERE lote_id = ? AND product_id = 0", loteId);
+    }
+}
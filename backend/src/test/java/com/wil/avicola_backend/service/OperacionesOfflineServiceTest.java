@@ -0,0 +1,169 @@
+package com.wil.avicola_backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.wil.avicola_backend.PruebaIntegracionPostgres;
+import com.wil.avicola_backend.dto.OperacionOfflineDTO;
+import com.wil.avicola_backend.dto.OperacionOfflineDTO.Tipo;
+import com.wil.avicola_backend.dto.ResultadoOperacionOfflineDTO;
+import com.wil.avicola_backend.dto.ResultadoOperacionOfflineDTO.Estado;
+import com.wil.avicola_backend.error.RequestException;
+import com.wil.avicola_backend.model.RegistroMortalidad;
+import com.wil.avicola_backend.repository.PlanAsignacionRepository;
+
+/**
+ * Resultados de la cola offline contra Postgres: la clave de idempotencia es de cada usuario, los
+ * errores propios de la operación la rechazan y los de la base o la transacción la dejan pendiente,
+ * sin arrastrar al resto del lote. El servicio de mortalidad es un doble que decide cada caso por la
+ * observación de la operación; la alimentación pasa por PlanEjecucionService real, con las asignaciones
+ * de un lote que falla por bloqueo.
+ */
+class OperacionesOfflineServiceTest extends PruebaIntegracionPostgres {
+
+    private static final AtomicLong IDS = new AtomicLong(1000);
+
+    @Autowired
+    private OperacionesOfflineService servicio;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockBean
+    private MortalidadService mortalidadService;
+
+    @MockBean
+    private PlanAsignacionRepository planAsignacionRepository;
+
+    private String usuario;
+    private String lote;
+
+    @BeforeEach
+    void preparar() {
+        usuario = "offline-" + UUID.randomUUID();
+        lote = UUID.randomUUID().toString();
+        when(mortalidadService.crearRegistro(any())).thenAnswer(inv -> {
+            RegistroMortalidad m = inv.getArgument(0);
+            switch (String.valueOf(m.getObservaciones())) {
+                case "invalida" -> throw new RequestException("Cantidad de muertos mayor a los vivos");
+                case "bloqueada" -> throw new CannotAcquireLockException("lock timeout");
+                case "envuelta" -> throw new RuntimeException("Error al registrar",
+                    new CannotAcquireLockException("lock timeout"));
+                case "rollback" -> new TransactionTemplate(transactionManager)
+                    .executeWithoutResult(status -> status.setRollbackOnly());
+                default -> { }
+            }
+            m.setId(IDS.incrementAndGet());
+            return m;
+        });
+        when(planAsignacionRepository.findByLoteIdAndStatus(eq(lote), any()))
+            .thenThrow(new CannotAcquireLockException("lock timeout"));
+    }
+
+    @Test
+    void reenvioDelMismoUsuarioSaleDuplicadoYOtroUsuarioAplica() {
+        OperacionOfflineDTO op = mortalidad("ok");
+
+        ResultadoOperacionOfflineDTO primera = procesar(usuario, op).get(0);
+        ResultadoOperacionOfflineDTO reenvio = procesar(usuario, op).get(0);
+        ResultadoOperacionOfflineDTO otroUsuario = procesar(usuario + "-b", op).get(0);
+
+        assertEquals(Estado.APLICADA, primera.estado());
+        assertEquals(Estado.DUPLICADA, reenvio.estado());
+        assertEquals(primera.resultadoId(), reenvio.resultadoId());
+        assertEquals(Estado.APLICADA, otroUsuario.estado());
+        assertEquals(1, claves(usuario));
+    }
+
+    @Test
+    void errorDeNegocioRechazaSoloEsaOperacion() {
+        OperacionOfflineDTO antes = mortalidad("ok");
+        OperacionOfflineDTO invalida = mortalidad("invalida");
+        OperacionOfflineDTO despues = mortalidad("ok");
+
+        List<ResultadoOperacionOfflineDTO> r = procesar(usuario, antes, invalida, despues);
+
+        assertEquals(List.of(Estado.APLICADA, Estado.RECHAZADA, Estado.APLICADA), estados(r));
+        assertEquals("Cantidad de muertos mayor a los vivos", r.get(1).mensaje());
+        assertEquals(2, claves(usuario));
+    }
+
+    @Test
+    void fallasDeBaseOTransaccionQuedanPendientesYSePuedenReenviar() {
+        OperacionOfflineDTO bloqueada = mortalidad("bloqueada");
+        OperacionOfflineDTO envuelta = mortalidad("envuelta");
+        OperacionOfflineDTO rollback = mortalidad("rollback");
+        OperacionOfflineDTO ok = mortalidad("ok");
+
+        List<ResultadoOperacionOfflineDTO> r = procesar(usuario, bloqueada, envuelta, rollback, ok);
+
+        assertEquals(List.of(Estado.PENDIENTE, Estado.PENDIENTE, Estado.PENDIENTE, Estado.APLICADA), estados(r));
+        assertEquals(1, claves(usuario));
+
+        // Pasado el problema, el dispositivo reenvía con las mismas claves
+        List<ResultadoOperacionOfflineDTO> reenvio = procesar(usuario,
+            new OperacionOfflineDTO(bloqueada.clave(), Tipo.MORTALIDAD, datos("ok")), ok);
+        assertEquals(List.of(Estado.APLICADA, Estado.DUPLICADA), estados(reenvio));
+        assertEquals(2, claves(usuario));
+    }
+
+    @Test
+    void alimentacionBloqueadaQuedaPendienteYConFechaInvalidaSeRechaza() {
+        OperacionOfflineDTO bloqueada = alimentacion(LocalDate.now().toString());
+        OperacionOfflineDTO fechaInvalida = alimentacion("ayer");
+        OperacionOfflineDTO ok = mortalidad("ok");
+
+        List<ResultadoOperacionOfflineDTO> r = procesar(usuario, bloqueada, fechaInvalida, ok);
+
+        // PlanEjecucionService envolvía todo en RequestException: el bloqueo salía RECHAZADA y se perdía
+        assertEquals(List.of(Estado.PENDIENTE, Estado.RECHAZADA, Estado.APLICADA), estados(r));
+        assertEquals(1, claves(usuario));
+    }
+
+    private List<ResultadoOperacionOfflineDTO> procesar(String quien, OperacionOfflineDTO... ops) {
+        return servicio.procesar(List.of(ops), null, quien);
+    }
+
+    private OperacionOfflineDTO mortalidad(String caso) {
+        return new OperacionOfflineDTO(UUID.randomUUID().toString(), Tipo.MORTALIDAD, datos(caso));
+    }
+
+    private OperacionOfflineDTO alimentacion(String fecha) {
+        return new OperacionOfflineDTO(UUID.randomUUID().toString(), Tipo.ALIMENTACION,
+            Map.of("loteId", lote, "fecha", fecha, "cantidadAplicada", 12.5, "animalesVivos", 100));
+    }
+
+    private Map<String, Object> datos(String caso) {
+        return Map.of("loteId", lote, "cantidadMuertos", 1, "observaciones", caso);
+    }
+
+    private int claves(String quien) {
+        Integer n = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM operacion_offline WHERE usuario = ?",
+            Integer.class, quien);
+        return n != null ? n : 0;
+    }
+
+    private static List<Estado> estados(List<ResultadoOperacionOfflineDTO> resultados) {
+        return resultados.stream().map(ResultadoOperacionOfflineDTO::estado).toList();
+    }
+}
@@ -0,0 +1,74 @@
+package com.wil.avicola_backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.wil.avicola_backend.PruebaIntegracionPostgres;
+import com.wil.avicola_backend.model.Product;
+import com.wil.avicola_backend.repository.ProductRepository;
+
+/**
+ * Planes compilados contra Postgres: editar el producto de un detalle descarta el plan,
+ * aunque el cambio no pase por PlanDetalleService.
+ */
+class PlanCompiladoServiceTest extends PruebaIntegracionPostgres {
+
+    @Autowired
+    private PlanCompiladoService planCompiladoService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Long planId;
+    private Long productId;
+
+    @BeforeEach
+    void plan() {
+        productId = productRepository.save(Product.builder()
+            .name("plan-" + UUID.randomUUID())
+            .active(true)
+            .build()).getId();
+        Long animal = jdbcTemplate.queryForObject("INSERT INTO animal DEFAULT VALUES RETURNING id", Long.class);
+        Long usuario = jdbcTemplate.queryForObject(
+            "INSERT INTO usuarios (username, active) VALUES (?, true) RETURNING id", Long.class,
+            "p-" + UUID.randomUUID().toString().substring(0, 12));
+        planId = jdbcTemplate.queryForObject(
+            "INSERT INTO plan_alimentacion (name, animal_id, created_by_user_id, active) VALUES (?, ?, ?, true) RETURNING id",
+            Long.class, "plan-" + UUID.randomUUID(), animal, usuario);
+        jdbcTemplate.update(
+            "INSERT INTO plan_detalle (plan_id, product_id, day_start, day_end, quantity_per_animal) VALUES (?, ?, 1, 10, 0.1)",
+            planId, productId);
+    }
+
+    @Test
+    void renombrarODesactivarElProductoDescartaElPlan() {
+        assertThat(producto(5).getName()).startsWith("plan-");
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+            productRepository.findById(productId).orElseThrow().setName("renombrado"));
+        assertThat(producto(5).getName()).isEqualTo("renombrado");
+
+        Product producto = productRepository.findById(productId).orElseThrow();
+        producto.setActive(false);
+        productRepository.save(producto);
+        assertThat(producto(5).getActive()).isFalse();
+    }
+
+    private Product producto(int dia) {
+        return planCompiladoService.obtener(planId).primerDetalleParaDia(dia).getProduct();
+    }
+}
@@ -0,0 +1,113 @@
+package com.wil.avicola_backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.wil.avicola_backend.PruebaIntegracionPostgres;
+import com.wil.avicola_backend.error.RequestException;
+import com.wil.avicola_backend.model.InventarioProducto;
+import com.wil.avicola_backend.model.MovimientoInventarioProducto;
+import com.wil.avicola_backend.model.MovimientoInventarioProducto.TipoMovimiento;
+import com.wil.avicola_backend.model.Product;
+import com.wil.avicola_backend.repository.InventarioProductoRepository;
+import com.wil.avicola_backend.repository.MovimientoInventarioProductoRepository;
+import com.wil.avicola_backend.repository.ProductRepository;
+
+/**
+ * 64 consumidores descontando a la vez el mismo producto: el stock final no deriva y cada movimiento
+ * ve un stock anterior distinto (los UPDATE condicionados se serializan en la fila). Siembra su propio
+ * producto con exactamente el stock que se va a consumir, así que al final no queda nada que vender.
+ */
+class StockConcurrenteStressTest extends PruebaIntegracionPostgres {
+
+    private static final int CONSUMIDORES = 64;
+    private static final int CONSUMOS_POR_HILO = 5;
+    private static final BigDecimal CANTIDAD = new BigDecimal("0.250");
+
+    @Autowired
+    private InventarioProductoService inventarioProductoService;
+
+    @Autowired
+    private InventarioProductoRepository inventarioProductoRepository;
+
+    @Autowired
+    private MovimientoInventarioProductoRepository movimientoRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Test
+    void consumosConcurrentesNoPierdenActualizaciones() throws Exception {
+        Long productId = productRepository.save(Product.builder()
+            .name("stress-" + UUID.randomUUID())
+            .active(true)
+            .build()).getId();
+        String usuario = "stress-" + UUID.randomUUID();
+
+        BigDecimal total = CANTIDAD.multiply(BigDecimal.valueOf((long) CONSUMIDORES * CONSUMOS_POR_HILO));
+        inventarioProductoService.registrarMovimiento(productId, TipoMovimiento.ENTRADA, total, null, null, usuario, "stress test");
+        assertEquals(0, total.compareTo(stockDe(productId)));
+
+        ExecutorService pool = Executors.newFixedThreadPool(CONSUMIDORES);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<Integer>> resultados = new ArrayList<>();
+        try {
+            for (int h = 0; h < CONSUMIDORES; h++) {
+                resultados.add(pool.submit(() -> {
+                    largada.await();
+                    int hechos = 0;
+                    for (int i = 0; i < CONSUMOS_POR_HILO; i++) {
+                        inventarioProductoService.registrarMovimiento(productId, TipoMovimiento.CONSUMO_LOTE,
+                            CANTIDAD, null, null, usuario, "stress test");
+                        hechos++;
+                    }
+                    return hechos;
+                }));
+            }
+            largada.countDown();
+            int hechos = 0;
+            for (Future<Integer> r : resultados) hechos += r.get();
+            assertEquals(CONSUMIDORES * CONSUMOS_POR_HILO, hechos);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        List<MovimientoInventarioProducto> consumos = movimientoRepository.findByProductId(productId).stream()
+            .filter(m -> m.getTipoMovimiento() == TipoMovimiento.CONSUMO_LOTE)
+            .toList();
+        assertEquals(0, BigDecimal.ZERO.compareTo(stockDe(productId)), "el stock final derivó");
+        assertEquals(CONSUMIDORES * CONSUMOS_POR_HILO, consumos.size());
+        Set<BigDecimal> anteriores = new HashSet<>();
+        for (MovimientoInventarioProducto m : consumos) {
+            assertEquals(0, m.getStockAnterior().subtract(CANTIDAD).compareTo(m.getStockNuevo()));
+            assertTrue(anteriores.add(m.getStockAnterior().stripTrailingZeros()),
+                "dos movimientos vieron el mismo stock anterior: " + m.getStockAnterior());
+        }
+
+        // Agotado: un consumo más se rechaza en vez de dejar el stock en negativo
+        assertThrows(RequestException.class, () -> inventarioProductoService.registrarMovimiento(productId,
+            TipoMovimiento.CONSUMO_LOTE, CANTIDAD, null, null, usuario, "stress test"));
+        assertEquals(0, BigDecimal.ZERO.compareTo(stockDe(productId)));
+    }
+
+    private BigDecimal stockDe(Long productId) {
+        return inventarioProductoRepository.findByProductId(productId)
+            .map(InventarioProducto::getCantidadStock)
+            .orElse(BigDecimal.ZERO);
+    }
+}
@@ -0,0 +1,28 @@
+package com.wil.avicola_backend.service.costos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Period;
+
+import org.junit.jupiter.api.Test;
+
+class ProrrateoCostoFijoServiceTest {
+
+    @Test
+    void periodoReconocePalabrasCompletas() {
+        assertEquals(Period.ofMonths(12), ProrrateoCostoFijoService.periodoDe("Anual"));
+        assertEquals(Period.ofMonths(12), ProrrateoCostoFijoService.periodoDe("cada año"));
+        assertEquals(Period.ofDays(15), ProrrateoCostoFijoService.periodoDe("Quincenal"));
+        assertEquals(Period.ofMonths(6), ProrrateoCostoFijoService.periodoDe("SEMESTRAL"));
+        assertEquals(Period.ofDays(1), ProrrateoCostoFijoService.periodoDe("día"));
+    }
+
+    @Test
+    void periodoNoConfundeFragmentos() {
+        // Antes "ano" dentro de cualquier palabra lo volvía anual y "seman" cubría "semanario"
+        assertEquals(Period.ofMonths(1), ProrrateoCostoFijoService.periodoDe("anotado aparte"));
+        assertEquals(Period.ofMonths(1), ProrrateoCostoFijoService.periodoDe("semanario"));
+        assertEquals(Period.ofMonths(1), ProrrateoCostoFijoService.periodoDe("manual"));
+        assertEquals(Period.ofMonths(1), ProrrateoCostoFijoService.periodoDe(null));
+    }
+}